@@ -0,0 +1,50 @@
+package ru.girqa.myblog.cli;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+import ru.girqa.myblog.config.PostImportProperties;
+import ru.girqa.myblog.service.PostImportService;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Imports {@link PostImportProperties#file()} on startup and exits, e.g.
+ * {@code java -jar myblog.jar --spring.main.web-application-type=none --blog.posts.import.file=posts.zip}.
+ * Files ending with {@code .zip} are read as archives, other ones as NDJSON.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "blog.posts.import", name = "file")
+public class PostImportRunner implements ApplicationRunner {
+
+    private final PostImportService importService;
+
+    private final PostImportProperties properties;
+
+    private final ConfigurableApplicationContext context;
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        Path file = properties.file();
+        long start = System.nanoTime();
+        int posts;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            posts = file.getFileName().toString().endsWith(".zip")
+                    ? importService.importArchive(in)
+                    : importService.importNdjson(in);
+        }
+        log.info("Imported {} posts from {} in {} ms", posts, file, (System.nanoTime() - start) / 1_000_000);
+        System.exit(SpringApplication.exit(context));
+    }
+}
@@ -0,0 +1,13 @@
+package ru.girqa.myblog.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * @param size number of commentaries embedded into the post page and loaded by one request for more
+ */
+@ConfigurationProperties("blog.commentaries.page")
+public record CommentaryPageProperties(
+        @DefaultValue("50") int size
+) {
+}
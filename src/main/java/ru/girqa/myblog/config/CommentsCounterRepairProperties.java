@@ -0,0 +1,17 @@
+package ru.girqa.myblog.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param interval  delay between two passes over all posts
+ * @param batchSize number of posts whose counters are recomputed by one statement
+ */
+@ConfigurationProperties("blog.commentaries.counter-repair")
+public record CommentsCounterRepairProperties(
+        @DefaultValue("PT1H") Duration interval,
+        @DefaultValue("1000") int batchSize
+) {
+}
@@ -0,0 +1,20 @@
+package ru.girqa.myblog.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.lang.Nullable;
+
+import java.time.Duration;
+
+/**
+ * Cap of connections in use at once, applied in the virtual thread mode only
+ *
+ * @param permits        connections handed out at once, the Hikari pool size if not set
+ * @param acquireTimeout longest wait for a permit before the request for a connection fails
+ */
+@ConfigurationProperties("blog.datasource.connection-limit")
+public record ConnectionLimitProperties(
+        @Nullable Integer permits,
+        @DefaultValue("PT30S") Duration acquireTimeout
+) {
+}
@@ -0,0 +1,18 @@
+package ru.girqa.myblog.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param maxPages   number of cached feed pages
+ * @param staleAfter time a cached page is served for; likes and comment counts shown in the feed
+ *                   may lag behind by up to this time
+ */
+@ConfigurationProperties("blog.posts.feed-cache")
+public record FeedCacheProperties(
+        @DefaultValue("1000") int maxPages,
+        @DefaultValue("PT10S") Duration staleAfter
+) {
+}
@@ -0,0 +1,35 @@
+package ru.girqa.myblog.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * @param storage            backend keeping image bytes
+ * @param directory          root of content-addressed image files, used by the filesystem storage
+ * @param migrationBatchSize number of images moved out of the database by one migration step
+ * @param collectInterval    delay between two passes removing blobs no image refers to
+ * @param collectBatchSize   number of blobs removed in one transaction
+ */
+@ConfigurationProperties("blog.images")
+public record ImageStorageProperties(
+        @DefaultValue("jdbc") Storage storage,
+        @DefaultValue("data/images") Path directory,
+        @DefaultValue("100") int migrationBatchSize,
+        @DefaultValue("PT1H") Duration collectInterval,
+        @DefaultValue("100") int collectBatchSize
+) {
+
+    public enum Storage {
+        /**
+         * Bytes are kept in {@code image_blobs.image_data}
+         */
+        JDBC,
+        /**
+         * Bytes are kept in files named by their SHA-256, the database keeps only the hash
+         */
+        FILESYSTEM
+    }
+}
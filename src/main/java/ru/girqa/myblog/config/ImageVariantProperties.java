@@ -0,0 +1,22 @@
+package ru.girqa.myblog.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param workers           number of threads scaling images
+ * @param queueCapacity     number of images waiting for a worker, further ones are dropped
+ *                          until the next backfill pass
+ * @param backfillInterval  delay between two passes looking for images without variants
+ * @param backfillBatchSize number of images checked by one backfill query
+ */
+@ConfigurationProperties("blog.images.variants")
+public record ImageVariantProperties(
+        @DefaultValue("2") int workers,
+        @DefaultValue("100") int queueCapacity,
+        @DefaultValue("PT10M") Duration backfillInterval,
+        @DefaultValue("100") int backfillBatchSize
+) {
+}
@@ -0,0 +1,39 @@
+package ru.girqa.myblog.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param mode               how likes reach {@code posts.likes}
+ * @param flushInterval      delay between two flushes of buffered likes
+ * @param shards             number of rows likes of one post are spread over in the sharded mode
+ * @param countTtl           time a post's number of likes summed over its shards is reused for
+ * @param compactionInterval delay between two foldings of shards into {@code posts.likes}
+ */
+@ConfigurationProperties("blog.posts.likes")
+public record LikeProperties(
+        @DefaultValue("direct") Mode mode,
+        @DefaultValue("PT0.2S") Duration flushInterval,
+        @DefaultValue("16") int shards,
+        @DefaultValue("PT1S") Duration countTtl,
+        @DefaultValue("PT5S") Duration compactionInterval
+) {
+
+    public enum Mode {
+        /**
+         * Every like updates its post row
+         */
+        DIRECT,
+        /**
+         * Likes are summed in memory and written by one statement per flush
+         */
+        BUFFERED,
+        /**
+         * Every like updates one of several rows of its post, so likes from several
+         * application nodes do not wait for each other
+         */
+        SHARDED
+    }
+}
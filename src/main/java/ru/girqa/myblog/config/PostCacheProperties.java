@@ -0,0 +1,14 @@
+package ru.girqa.myblog.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * @param maxSize estimated memory cached posts may take
+ */
+@ConfigurationProperties("blog.posts.cache")
+public record PostCacheProperties(
+        @DefaultValue("64MB") DataSize maxSize
+) {
+}
@@ -0,0 +1,21 @@
+package ru.girqa.myblog.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.lang.Nullable;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+
+/**
+ * @param file         NDJSON or zip archive imported on startup, after which the application exits
+ * @param maxImageSize largest accepted image, as for uploads of single posts
+ * @param copyBuffer   bytes of each staging table buffered before they are sent by one {@code COPY}
+ */
+@ConfigurationProperties("blog.posts.import")
+public record PostImportProperties(
+        @Nullable Path file,
+        @DefaultValue("5MB") DataSize maxImageSize,
+        @DefaultValue("1MB") DataSize copyBuffer
+) {
+}
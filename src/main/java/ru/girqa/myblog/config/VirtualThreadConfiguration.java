@@ -0,0 +1,48 @@
+package ru.girqa.myblog.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.jdbc.DataSourceUnwrapper;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.girqa.myblog.repository.jdbc.ConnectionLimitingDataSource;
+
+import javax.sql.DataSource;
+
+/**
+ * Tomcat request handling and scheduled jobs run on virtual threads once
+ * {@code spring.threads.virtual.enabled} is set. The worker thread count no longer bounds
+ * the callers waiting for a connection then, so the data source is put behind
+ * {@link ConnectionLimitingDataSource}.
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfiguration {
+
+    @Bean
+    static BeanPostProcessor connectionLimitingPostProcessor(ObjectProvider<ConnectionLimitProperties> properties,
+                                                             ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof ConnectionLimitingDataSource) {
+                    return bean;
+                }
+
+                ConnectionLimitProperties limit = properties.getObject();
+                Integer permits = limit.permits();
+                if (permits == null) {
+                    HikariDataSource hikari = DataSourceUnwrapper.unwrap(dataSource, HikariDataSource.class);
+                    if (hikari == null) return bean;
+                    permits = hikari.getMaximumPoolSize();
+                }
+                return new ConnectionLimitingDataSource(dataSource, permits, limit.acquireTimeout(),
+                        meterRegistry.getObject());
+            }
+        };
+    }
+}
@@ -1,14 +1,20 @@
 package ru.girqa.myblog.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 import ru.girqa.myblog.model.domain.Commentary;
+import ru.girqa.myblog.model.dto.commentary.CommentarySliceDto;
 import ru.girqa.myblog.model.dto.commentary.CreateCommentaryDto;
 import ru.girqa.myblog.model.mapper.CommentaryMapper;
 import ru.girqa.myblog.service.CommentaryService;
@@ -22,6 +28,27 @@ public class CommentaryController {
 
     private final CommentaryMapper commentaryMapper;
 
+    /**
+     * Next slice of the post commentaries rendered as a fragment appended to the post page
+     */
+    @GetMapping(path = "/post/{postId}", produces = MediaType.TEXT_HTML_VALUE)
+    public String getSlice(@PathVariable("postId") Long postId,
+                           @RequestParam(name = "after", required = false) Long afterId,
+                           Model model) {
+        CommentarySliceDto slice = commentaryMapper.toDto(commentaryService.findSlice(postId, afterId));
+        model.addAttribute("postId", postId);
+        model.addAttribute("commentaries", slice.commentaries());
+        model.addAttribute("nextAfter", slice.nextAfter());
+        return "fragments/commentaries :: commentaries";
+    }
+
+    @GetMapping(path = "/post/{postId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public CommentarySliceDto getSliceJson(@PathVariable("postId") Long postId,
+                                           @RequestParam(name = "after", required = false) Long afterId) {
+        return commentaryMapper.toDto(commentaryService.findSlice(postId, afterId));
+    }
+
     @PostMapping("/commentary")
     public String create(@ModelAttribute("createCommentary") CreateCommentaryDto newCommentary) {
         Commentary commentary = commentaryMapper.toDomain(newCommentary);
@@ -0,0 +1,45 @@
+package ru.girqa.myblog.controller;
+
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import ru.girqa.myblog.service.PostExportService;
+
+import java.io.IOException;
+
+/**
+ * Export of the whole blog, written to the response as it is read. The status is sent
+ * with the first bytes, an export failing later breaks off the response instead.
+ */
+@Controller
+@RequestMapping("/posts/export")
+@RequiredArgsConstructor
+public class PostExportController {
+
+    private final PostExportService exportService;
+
+    @GetMapping
+    public void exportNdjson(HttpServletResponse response) throws IOException {
+        prepare(response, MediaType.APPLICATION_NDJSON_VALUE, "posts.ndjson");
+        exportService.exportNdjson(response.getOutputStream());
+    }
+
+    @GetMapping(params = "format=zip")
+    public void exportArchive(HttpServletResponse response) throws IOException {
+        prepare(response, PostImportController.APPLICATION_ZIP_VALUE, "posts.zip");
+        exportService.exportArchive(response.getOutputStream());
+    }
+
+    private static void prepare(HttpServletResponse response, String contentType, String fileName) {
+        response.setContentType(contentType);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(fileName)
+                .build()
+                .toString());
+    }
+}
@@ -0,0 +1,46 @@
+package ru.girqa.myblog.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import ru.girqa.myblog.exception.InvalidImportException;
+import ru.girqa.myblog.service.PostImportService;
+
+import java.io.InputStream;
+
+/**
+ * Bulk import of posts. The request body is read by the import as it arrives,
+ * it is kept neither in memory nor in a temporary file.
+ */
+@Controller
+@RequestMapping("/posts/import")
+@RequiredArgsConstructor
+public class PostImportController {
+
+    public static final String APPLICATION_ZIP_VALUE = "application/zip";
+
+    private final PostImportService importService;
+
+    @PostMapping(consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> importNdjson(InputStream body) {
+        return ResponseEntity
+                .ok(Integer.toString(importService.importNdjson(body)));
+    }
+
+    @PostMapping(consumes = APPLICATION_ZIP_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> importArchive(InputStream body) {
+        return ResponseEntity
+                .ok(Integer.toString(importService.importArchive(body)));
+    }
+
+    @ExceptionHandler(InvalidImportException.class)
+    public ResponseEntity<String> invalidImport(InvalidImportException e) {
+        return ResponseEntity.badRequest()
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(e.getMessage());
+    }
+}
@@ -1,7 +1,11 @@
 package ru.girqa.myblog.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
@@ -13,7 +17,11 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.ServletWebRequest;
+import ru.girqa.myblog.model.domain.PageCursor;
 import ru.girqa.myblog.model.domain.PageRequest;
+import ru.girqa.myblog.model.domain.TagExpression;
+import ru.girqa.myblog.model.domain.post.ImageMetadata;
 import ru.girqa.myblog.model.domain.post.Post;
 import ru.girqa.myblog.model.domain.post.PostsPage;
 import ru.girqa.myblog.model.dto.commentary.CreateCommentaryDto;
@@ -21,8 +29,12 @@ import ru.girqa.myblog.model.dto.post.CreatePostDto;
 import ru.girqa.myblog.model.dto.post.UpdatePostDto;
 import ru.girqa.myblog.model.mapper.PostMapper;
 import ru.girqa.myblog.service.PostsService;
+import ru.girqa.myblog.util.ResourceTransfer;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
 
 @Slf4j
 @Controller
@@ -36,19 +48,42 @@ public class PostsController {
 
     public final static List<Integer> POST_PER_PAGE_OPTIONS = List.of(10, 20, 50);
 
+    /**
+     * Pages up to this number are addressed by offset, deeper ones by keyset cursor
+     */
+    public final static int CURSOR_PAGING_THRESHOLD = 5;
+
+    private static final CacheControl FINGERPRINTED_IMAGE_CACHE = CacheControl.maxAge(Duration.ofDays(365))
+            .cachePublic()
+            .immutable();
+
+    private static final CacheControl IMAGE_CACHE = CacheControl.noCache();
+
+    private static final CacheControl PAGE_CACHE = CacheControl.noCache();
+
     private final PostsService postsService;
 
     private final PostMapper postMapper;
 
+    /**
+     * Answers {@code 304} by the feed version alone, before the page is loaded or rendered
+     */
     @GetMapping(produces = MediaType.TEXT_HTML_VALUE)
     public String getAllPosts(Model model,
                               @RequestParam(required = false, name = "page", defaultValue = "1") Integer page,
                               @RequestParam(required = false, name = "postsPerPage", defaultValue = "10") Integer postsPerPage,
-                              @RequestParam(required = false, name = "tag") String tag) {
+                              @RequestParam(required = false, name = "tag") String tag,
+                              @RequestParam(required = false, name = "cursor") String cursor,
+                              @RequestParam(required = false, name = "q") String query,
+                              ServletWebRequest webRequest) {
+        if (notModified(webRequest, postsService.findFeedVersion())) return null;
+
         PostsPage postsPage = postsService.getPostsPage(PageRequest.builder()
                 .page(page == null ? DEFAULT_PAGE : page)
                 .posts(postsPerPage == null ? DEFAULT_POSTS_PER_PAGE : postsPerPage)
-                .targetTag(tag != null ? tag.trim() : null)
+                .tags(TagExpression.parse(tag).orElse(null))
+                .cursor(PageCursor.decode(cursor).orElse(null))
+                .query(query == null || query.isBlank() ? null : query.trim())
                 .build());
 
         model.addAttribute("newPost", new CreatePostDto());
@@ -59,14 +94,27 @@ public class PostsController {
         model.addAttribute("postsPerPage", postsPerPage);
         model.addAttribute("availablePostsPerPage", POST_PER_PAGE_OPTIONS);
         model.addAttribute("totalPages", postsPage.getTotalPages());
-        model.addAttribute("searchTag", postsPage.getTargetTag() == null ? "" : postsPage.getTargetTag());
+        model.addAttribute("totalPagesCapped", postsPage.isTotalPagesCapped());
+        model.addAttribute("searchTag", postsPage.getTags() == null ? "" : postsPage.getTags().toString());
+        model.addAttribute("searchQuery", postsPage.getQuery() == null ? "" : postsPage.getQuery());
+        model.addAttribute("previousCursor", cursorFor(postsPage.getPage() - 1, postsPage.getPreviousCursor()));
+        model.addAttribute("nextCursor", cursorFor(postsPage.getPage() + 1, postsPage.getNextCursor()));
+        setPageEtag(webRequest, postsPage.getVersion());
         return "all-posts";
     }
 
+    /**
+     * Answers {@code 304} by the post version alone, before the post is loaded or rendered
+     */
     @GetMapping(path = "/post/{id}", produces = MediaType.TEXT_HTML_VALUE)
     public String getPost(@PathVariable("id") Long id,
-                          Model model) {
+                          Model model,
+                          ServletWebRequest webRequest) {
+        Optional<Long> version = postsService.findPostVersion(id);
+        if (version.isPresent() && notModified(webRequest, version.get())) return null;
+
         Post post = postsService.findPost(id);
+        setPageEtag(webRequest, post.getVersion());
         model.addAttribute("post", postMapper.toDto(post));
         model.addAttribute("editPost", postMapper.toUpdateDto(post));
         model.addAttribute("createCommentary", new CreateCommentaryDto(post.getId(), ""));
@@ -94,9 +142,29 @@ public class PostsController {
         return "redirect:/posts";
     }
 
-    @GetMapping(path = "/post/{id}/image", produces = MediaType.IMAGE_JPEG_VALUE)
-    public ResponseEntity<byte[]> getImage(@PathVariable("id") Long id) {
-        return ResponseEntity.ok(postsService.getImage(id));
+    /**
+     * Image URLs carrying the current fingerprint are cached as immutable,
+     * other ones are revalidated by the entity tag. A requested width that has no
+     * variant yet is answered with the original, which is revalidated as well,
+     * so the variant replaces it once generated.
+     */
+    @GetMapping(path = "/post/{id}/image")
+    public void getImage(@PathVariable("id") Long id,
+                         @RequestParam(required = false, name = "v") String fingerprint,
+                         @RequestParam(required = false, name = "w") Integer width,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        postsService.writeImage(id, width, (image, variant, data) -> {
+            ImageMetadata served = variant == null ? image : variant;
+            boolean asRequested = width == null || variant != null;
+            CacheControl cacheControl = asRequested && image.fingerprint().equals(fingerprint)
+                    ? FINGERPRINTED_IMAGE_CACHE
+                    : IMAGE_CACHE;
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+            if (new ServletWebRequest(request, response).checkNotModified(served.etag())) return;
+
+            ResourceTransfer.send(data.get(), MediaType.parseMediaType(served.contentType()), request, response);
+        });
     }
 
     @PostMapping(path = "/post/{id}/like", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -104,4 +172,29 @@ public class PostsController {
         return ResponseEntity
                 .ok(postsService.incrementLikes(id).toString());
     }
+
+    private static boolean notModified(ServletWebRequest webRequest, long currentVersion) {
+        webRequest.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, PAGE_CACHE.getHeaderValue());
+        return webRequest.checkNotModified(pageEtag(currentVersion));
+    }
+
+    /**
+     * Tags the page with the version it was built from, which may be older than the version
+     * checked by {@link #notModified(ServletWebRequest, long)} when it came from a cache
+     */
+    private static void setPageEtag(ServletWebRequest webRequest, long pageVersion) {
+        webRequest.getResponse().setHeader(HttpHeaders.ETAG, pageEtag(pageVersion));
+    }
+
+    /**
+     * Weak, as an equal version promises an equivalent page rather than equal bytes
+     */
+    private static String pageEtag(long version) {
+        return "W/\"" + version + "\"";
+    }
+
+    private static String cursorFor(int targetPage, PageCursor cursor) {
+        if (cursor == null || targetPage <= CURSOR_PAGING_THRESHOLD) return null;
+        return cursor.encode();
+    }
 }
@@ -6,4 +6,8 @@ public abstract class BlogException extends RuntimeException {
         super();
     }
 
+    public BlogException(String message) {
+        super(message);
+    }
+
 }
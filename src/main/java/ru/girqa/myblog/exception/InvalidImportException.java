@@ -0,0 +1,8 @@
+package ru.girqa.myblog.exception;
+
+public class InvalidImportException extends BlogException {
+
+    public InvalidImportException(String message) {
+        super(message);
+    }
+}
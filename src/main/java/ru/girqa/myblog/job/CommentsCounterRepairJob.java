@@ -0,0 +1,45 @@
+package ru.girqa.myblog.job;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.girqa.myblog.config.CommentsCounterRepairProperties;
+import ru.girqa.myblog.repository.CommentaryRepository;
+import ru.girqa.myblog.repository.CommentaryRepository.RepairedBatch;
+
+/**
+ * Walks over all posts in batches and fixes {@code posts.comments_count} values
+ * that drifted away from the actual number of commentaries.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CommentsCounterRepairJob {
+
+    private final CommentaryRepository commentaryRepository;
+
+    private final CommentsCounterRepairProperties properties;
+
+    @Scheduled(
+            initialDelayString = "${blog.commentaries.counter-repair.interval:PT1H}",
+            fixedDelayString = "${blog.commentaries.counter-repair.interval:PT1H}"
+    )
+    public void repair() {
+        long afterPostId = 0;
+        int repaired = 0;
+        while (true) {
+            RepairedBatch batch = commentaryRepository.repairCommentsCounts(afterPostId, properties.batchSize());
+            if (batch.lastPostId() == null) break;
+
+            repaired += batch.repaired();
+            afterPostId = batch.lastPostId();
+        }
+
+        if (repaired > 0) {
+            log.warn("Repaired {} drifted comments counters", repaired);
+        } else {
+            log.debug("Comments counters are consistent");
+        }
+    }
+}
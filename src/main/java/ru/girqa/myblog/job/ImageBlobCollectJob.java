@@ -0,0 +1,42 @@
+package ru.girqa.myblog.job;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.girqa.myblog.config.ImageStorageProperties;
+import ru.girqa.myblog.repository.ImageRepository;
+
+/**
+ * Removes image blobs no image refers to anymore, together with the variants
+ * generated from them, one batch per transaction.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ImageBlobCollectJob {
+
+    private final ImageRepository imageRepository;
+
+    private final ImageStorageProperties properties;
+
+    @Scheduled(
+            initialDelayString = "${blog.images.collect-interval:PT1H}",
+            fixedDelayString = "${blog.images.collect-interval:PT1H}"
+    )
+    public void collect() {
+        int collected = 0;
+        while (true) {
+            int batch = imageRepository.collectGarbage(properties.collectBatchSize());
+            if (batch == 0) break;
+
+            collected += batch;
+        }
+
+        if (collected > 0) {
+            log.info("Removed {} unreferenced image blobs", collected);
+        } else {
+            log.debug("No unreferenced image blobs");
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package ru.girqa.myblog.job;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.girqa.myblog.config.ImageStorageProperties;
+import ru.girqa.myblog.repository.fs.FileSystemImageRepository;
+import ru.girqa.myblog.repository.fs.FileSystemImageRepository.MigratedBatch;
+
+/**
+ * Moves image bytes still kept in {@code image_blobs.image_data} into the filesystem
+ * blob store once the application is started. Not migrated images stay readable
+ * meanwhile, so the application serves requests during the migration.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "blog.images", name = "storage", havingValue = "filesystem")
+public class ImageBlobMigrationJob {
+
+    private final FileSystemImageRepository imageRepository;
+
+    private final ImageStorageProperties properties;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        String afterHash = "";
+        int migrated = 0;
+        while (true) {
+            MigratedBatch batch = imageRepository.migrateBatch(afterHash, properties.migrationBatchSize());
+            if (batch.lastHash() == null) break;
+
+            migrated += batch.migrated();
+            afterHash = batch.lastHash();
+        }
+
+        if (migrated > 0) {
+            log.info("Moved {} images from the database to {}", migrated, properties.directory());
+        } else {
+            log.debug("No images left in the database");
+        }
+    }
+}
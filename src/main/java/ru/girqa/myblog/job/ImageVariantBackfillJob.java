@@ -0,0 +1,53 @@
+package ru.girqa.myblog.job;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.girqa.myblog.config.ImageVariantProperties;
+import ru.girqa.myblog.repository.ImageRepository;
+import ru.girqa.myblog.service.ImageVariantService;
+
+import java.util.List;
+
+/**
+ * Queues images stored before variants were introduced and ones dropped
+ * while the queue of {@link ImageVariantService} was full.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ImageVariantBackfillJob {
+
+    private final ImageRepository imageRepository;
+
+    private final ImageVariantService imageVariantService;
+
+    private final ImageVariantProperties properties;
+
+    @Scheduled(
+            initialDelay = 0,
+            fixedDelayString = "${blog.images.variants.backfill-interval:PT10M}"
+    )
+    public void backfill() {
+        long afterPostId = 0;
+        int queued = 0;
+        while (true) {
+            List<Long> postIds = imageRepository.findPostIdsWithoutVariants(afterPostId, properties.backfillBatchSize());
+            if (postIds.isEmpty()) break;
+
+            for (Long postId : postIds) {
+                if (!imageVariantService.submit(postId)) {
+                    log.info("Queued {} images for variants, the rest is left for the next pass", queued);
+                    return;
+                }
+                queued++;
+            }
+            afterPostId = postIds.getLast();
+        }
+
+        if (queued > 0) {
+            log.info("Queued {} images for variants", queued);
+        }
+    }
+}
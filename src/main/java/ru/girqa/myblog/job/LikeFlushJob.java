@@ -0,0 +1,28 @@
+package ru.girqa.myblog.job;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.girqa.myblog.service.BufferedLikeCounter;
+
+/**
+ * Writes likes buffered by {@link BufferedLikeCounter} into {@code posts.likes}
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "blog.posts.likes", name = "mode", havingValue = "buffered")
+public class LikeFlushJob {
+
+    private final BufferedLikeCounter likeCounter;
+
+    @Scheduled(fixedDelayString = "${blog.posts.likes.flush-interval:PT0.2S}")
+    public void flush() {
+        int flushed = likeCounter.flush();
+        if (flushed > 0) {
+            log.debug("Flushed likes of {} posts", flushed);
+        }
+    }
+}
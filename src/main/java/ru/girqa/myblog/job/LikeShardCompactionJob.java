@@ -0,0 +1,37 @@
+package ru.girqa.myblog.job;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.girqa.myblog.repository.jdbc.PostLikeShardRepository;
+import ru.girqa.myblog.repository.memory.PostCache;
+
+import java.util.List;
+
+/**
+ * Folds likes kept in {@code post_like_shards} into {@code posts.likes}, so pages reading
+ * {@code posts.likes} lag behind by at most the compaction interval. Runs in every mode
+ * to fold shards left behind after switching away from the sharded one.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LikeShardCompactionJob {
+
+    private final PostLikeShardRepository shardRepository;
+
+    private final PostCache postCache;
+
+    @Scheduled(
+            initialDelayString = "${blog.posts.likes.compaction-interval:PT5S}",
+            fixedDelayString = "${blog.posts.likes.compaction-interval:PT5S}"
+    )
+    public void compact() {
+        List<Long> postIds = shardRepository.compact();
+        postIds.forEach(postCache::invalidate);
+        if (!postIds.isEmpty()) {
+            log.debug("Folded like shards of {} posts", postIds.size());
+        }
+    }
+}
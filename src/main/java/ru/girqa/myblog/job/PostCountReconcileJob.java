@@ -0,0 +1,42 @@
+package ru.girqa.myblog.job;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.girqa.myblog.repository.PostRepository;
+import ru.girqa.myblog.repository.TagRepository;
+import ru.girqa.myblog.repository.memory.PostCountRegistry;
+import ru.girqa.myblog.repository.memory.PostCountRegistry.Snapshot;
+
+/**
+ * Loads {@link PostCountRegistry} on startup and periodically reconciles it
+ * with the actual number of posts in the database.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PostCountReconcileJob {
+
+    private final PostRepository postRepository;
+
+    private final TagRepository tagRepository;
+
+    private final PostCountRegistry postCountRegistry;
+
+    @Scheduled(
+            initialDelay = 0,
+            fixedDelayString = "${blog.posts.count-reconcile.interval:PT5M}"
+    )
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public void reconcile() {
+        // the first statement of the transaction pins the snapshot both counts are read from
+        postCountRegistry.reconcile(postRepository::findFeedVersion, () -> new Snapshot(
+                postRepository.countAll(),
+                tagRepository.countPostsByTagName()
+        ));
+        log.debug("Post counts reconciled");
+    }
+}
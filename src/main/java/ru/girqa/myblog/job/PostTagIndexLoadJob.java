@@ -0,0 +1,33 @@
+package ru.girqa.myblog.job;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.girqa.myblog.repository.TagRepository;
+import ru.girqa.myblog.repository.memory.PostTagIndex;
+
+/**
+ * Builds {@link PostTagIndex} once the application is started. Until then
+ * tag filtering of the feed falls back to SQL.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PostTagIndexLoadJob {
+
+    private final TagRepository tagRepository;
+
+    private final PostTagIndex postTagIndex;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public void load() {
+        postTagIndex.load(tagRepository::loadIndex);
+        postTagIndex.footprint()
+                .ifPresent(footprint -> log.info("Post tag index loaded: {}", footprint));
+    }
+}
@@ -0,0 +1,31 @@
+package ru.girqa.myblog.job;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.girqa.myblog.repository.PostRepository;
+
+/**
+ * Rebuilds the search champions of frequent words on startup and then periodically:
+ * new posts join the champions right away, edited posts and newly frequent words only here.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SearchChampionsRebuildJob {
+
+    private final PostRepository postRepository;
+
+    @Scheduled(
+            initialDelay = 0,
+            fixedDelayString = "${blog.posts.search-champions.rebuild-interval:PT1H}"
+    )
+    @Transactional(isolation = Isolation.REPEATABLE_READ)
+    public void rebuild() {
+        int champions = postRepository.rebuildSearchChampions();
+        log.debug("Search champions rebuilt: {}", champions);
+    }
+}
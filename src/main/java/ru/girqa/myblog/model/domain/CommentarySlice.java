@@ -0,0 +1,26 @@
+package ru.girqa.myblog.model.domain;
+
+import lombok.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.util.List;
+
+/**
+ * Commentaries of a post in id order, following a keyset cursor
+ *
+ * @param nextAfter id of the last commentary of the slice if the post has more commentaries,
+ *                  otherwise {@code null}
+ */
+public record CommentarySlice(@NonNull List<Commentary> commentaries, @Nullable Long nextAfter) {
+
+    /**
+     * @param fetched commentaries fetched with the limit of {@code size + 1},
+     *                the extra one only tells whether there are more of them
+     */
+    public static CommentarySlice of(@NonNull List<Commentary> fetched, int size) {
+        if (fetched.size() <= size) return new CommentarySlice(fetched, null);
+
+        List<Commentary> commentaries = fetched.subList(0, size);
+        return new CommentarySlice(List.copyOf(commentaries), commentaries.getLast().getId());
+    }
+}
@@ -0,0 +1,72 @@
+package ru.girqa.myblog.model.domain;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+import org.springframework.lang.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Position in the posts feed used for keyset pagination.
+ * Rendered to clients as an opaque token, see {@link #encode()} and {@link #decode(String)}.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@EqualsAndHashCode
+@ToString
+public class PageCursor {
+
+    public enum Direction {
+        /**
+         * Page of posts with ids greater than the cursor post id
+         */
+        AFTER,
+        /**
+         * Page of posts with ids less than the cursor post id
+         */
+        BEFORE
+    }
+
+    @NonNull
+    private final Direction direction;
+    @NonNull
+    private final Long postId;
+
+    public static PageCursor after(@NonNull Long postId) {
+        return new PageCursor(Direction.AFTER, postId);
+    }
+
+    public static PageCursor before(@NonNull Long postId) {
+        return new PageCursor(Direction.BEFORE, postId);
+    }
+
+    public String encode() {
+        String raw = (direction == Direction.AFTER ? "a" : "b") + postId;
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static Optional<PageCursor> decode(@Nullable String token) {
+        if (token == null || token.isBlank()) return Optional.empty();
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token.trim()), StandardCharsets.US_ASCII);
+            if (raw.length() < 2) return Optional.empty();
+
+            long postId = Long.parseLong(raw.substring(1));
+            return switch (raw.charAt(0)) {
+                case 'a' -> Optional.of(after(postId));
+                case 'b' -> Optional.of(before(postId));
+                default -> Optional.empty();
+            };
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+}
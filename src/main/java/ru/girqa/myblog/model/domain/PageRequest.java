@@ -19,5 +19,12 @@ public class PageRequest {
     @NonNull
     private final Integer posts;
     @Nullable
-    private String targetTag;
+    private TagExpression tags;
+    @Nullable
+    private PageCursor cursor;
+    /**
+     * Full-text search query, pages are ordered by relevance when present
+     */
+    @Nullable
+    private String query;
 }
@@ -0,0 +1,86 @@
+package ru.girqa.myblog.model.domain;
+
+import lombok.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Filter of the posts feed by tags. Parsed from text like {@code java AND (spring OR NOT kotlin)}:
+ * {@code NOT} binds tighter than {@code AND}, which binds tighter than {@code OR}.
+ * Keywords are recognized in upper case only, adjacent words form one tag name.
+ */
+public sealed interface TagExpression {
+
+    /**
+     * Posts bound to the tag with the given name
+     */
+    record HasTag(@NonNull String name) implements TagExpression {
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    record And(@NonNull List<TagExpression> operands) implements TagExpression {
+        @Override
+        public String toString() {
+            return operands.stream()
+                    .map(o -> o instanceof Or ? "(" + o + ")" : o.toString())
+                    .collect(Collectors.joining(" AND "));
+        }
+    }
+
+    record Or(@NonNull List<TagExpression> operands) implements TagExpression {
+        @Override
+        public String toString() {
+            return operands.stream()
+                    .map(TagExpression::toString)
+                    .collect(Collectors.joining(" OR "));
+        }
+    }
+
+    record Not(@NonNull TagExpression operand) implements TagExpression {
+        @Override
+        public String toString() {
+            return "NOT " + (operand instanceof HasTag || operand instanceof Not ? operand : "(" + operand + ")");
+        }
+    }
+
+    /**
+     * @return whether a post bound to tags with the given names passes the filter
+     */
+    default boolean matches(@NonNull Collection<String> tagNames) {
+        return switch (this) {
+            case HasTag hasTag -> tagNames.contains(hasTag.name());
+            case And and -> and.operands().stream().allMatch(operand -> operand.matches(tagNames));
+            case Or or -> or.operands().stream().anyMatch(operand -> operand.matches(tagNames));
+            case Not not -> !not.operand().matches(tagNames);
+        };
+    }
+
+    /**
+     * Text without operators is a single tag name. Text that can not be parsed
+     * is also treated as a single tag name, so it simply matches nothing.
+     *
+     * @return empty for blank text
+     */
+    static Optional<TagExpression> parse(@Nullable String text) {
+        if (text == null || text.isBlank()) return Optional.empty();
+
+        String trimmed = text.trim();
+        List<String> tokens = TagExpressionParser.tokenize(trimmed);
+        if (tokens.stream().noneMatch(TagExpressionParser::isOperator)) {
+            return Optional.of(new HasTag(trimmed));
+        }
+
+        try {
+            return Optional.of(new TagExpressionParser(tokens).parse());
+        } catch (IllegalArgumentException e) {
+            return Optional.of(new HasTag(trimmed));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package ru.girqa.myblog.model.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recursive descent parser of {@link TagExpression} text
+ */
+final class TagExpressionParser {
+
+    private final List<String> tokens;
+
+    private int position;
+
+    TagExpressionParser(List<String> tokens) {
+        this.tokens = tokens;
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (char c : text.toCharArray()) {
+            if (c == '(' || c == ')' || Character.isWhitespace(c)) {
+                if (!word.isEmpty()) tokens.add(word.toString());
+                word.setLength(0);
+                if (!Character.isWhitespace(c)) tokens.add(String.valueOf(c));
+            } else {
+                word.append(c);
+            }
+        }
+        if (!word.isEmpty()) tokens.add(word.toString());
+        return tokens;
+    }
+
+    static boolean isOperator(String token) {
+        return switch (token) {
+            case "AND", "OR", "NOT", "(", ")" -> true;
+            default -> false;
+        };
+    }
+
+    TagExpression parse() {
+        TagExpression expression = or();
+        if (position != tokens.size()) throw new IllegalArgumentException("Unexpected " + peek());
+        return expression;
+    }
+
+    private TagExpression or() {
+        List<TagExpression> operands = new ArrayList<>();
+        operands.add(and());
+        while (accept("OR")) operands.add(and());
+        return operands.size() == 1 ? operands.getFirst() : new TagExpression.Or(List.copyOf(operands));
+    }
+
+    private TagExpression and() {
+        List<TagExpression> operands = new ArrayList<>();
+        operands.add(unary());
+        while (accept("AND")) operands.add(unary());
+        return operands.size() == 1 ? operands.getFirst() : new TagExpression.And(List.copyOf(operands));
+    }
+
+    private TagExpression unary() {
+        if (accept("NOT")) return new TagExpression.Not(unary());
+        if (accept("(")) {
+            TagExpression expression = or();
+            if (!accept(")")) throw new IllegalArgumentException("Missing closing parenthesis");
+            return expression;
+        }
+
+        List<String> words = new ArrayList<>();
+        while (peek() != null && !isOperator(peek())) words.add(tokens.get(position++));
+        if (words.isEmpty()) throw new IllegalArgumentException("Expected tag name at " + position);
+        return new TagExpression.HasTag(String.join(" ", words));
+    }
+
+    private boolean accept(String token) {
+        if (!token.equals(peek())) return false;
+        position++;
+        return true;
+    }
+
+    private String peek() {
+        return position < tokens.size() ? tokens.get(position) : null;
+    }
+}
@@ -8,6 +8,11 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.apache.commons.lang3.builder.EqualsExclude;
 import org.apache.commons.lang3.builder.HashCodeExclude;
+import org.springframework.core.io.InputStreamSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 
 @Getter
 @Setter
@@ -23,4 +28,21 @@ public class Image {
     @EqualsExclude
     @HashCodeExclude
     private byte[] data;
+
+    /**
+     * Bytes of an uploaded image, streamed to the storage instead of {@link #data}
+     */
+    @EqualsAndHashCode.Exclude
+    private InputStreamSource source;
+
+    public Image(Long postId, String name, long size, byte[] data) {
+        this(postId, name, size, data, null);
+    }
+
+    /**
+     * @return a new stream over the image bytes, taken from {@link #source} if present
+     */
+    public InputStream openStream() throws IOException {
+        return source != null ? source.getInputStream() : new ByteArrayInputStream(data);
+    }
 }
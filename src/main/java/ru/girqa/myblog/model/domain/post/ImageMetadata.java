@@ -0,0 +1,36 @@
+package ru.girqa.myblog.model.domain.post;
+
+import lombok.NonNull;
+
+/**
+ * Stored image without its bytes
+ *
+ * @param contentHash SHA-256 of the image bytes in lower case hex
+ */
+public record ImageMetadata(
+        @NonNull Long postId,
+        long size,
+        @NonNull String contentType,
+        @NonNull String contentHash
+) {
+
+    /**
+     * Length of the hash prefix put into image URLs
+     */
+    public static final int FINGERPRINT_LENGTH = 16;
+
+    /**
+     * @return strong entity tag of the image
+     */
+    public String etag() {
+        return "\"" + contentHash + "\"";
+    }
+
+    public String fingerprint() {
+        return fingerprintOf(contentHash);
+    }
+
+    public static String fingerprintOf(@NonNull String contentHash) {
+        return contentHash.substring(0, FINGERPRINT_LENGTH);
+    }
+}
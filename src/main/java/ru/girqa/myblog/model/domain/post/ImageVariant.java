@@ -0,0 +1,34 @@
+package ru.girqa.myblog.model.domain.post;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Copy of an image scaled down to one of {@link #WIDTHS}. An image not wider than
+ * the requested width, or one that cannot be decoded, is kept as is.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+@EqualsAndHashCode
+public class ImageVariant {
+
+    /**
+     * Widths in pixels every image is scaled to, in ascending order; templates list them in {@code srcset}
+     */
+    public static final List<Integer> WIDTHS = List.of(320, 640, 1280);
+
+    /**
+     * SHA-256 of the original image bytes
+     */
+    private String sourceHash;
+    private int width;
+    private String contentType;
+
+    @EqualsAndHashCode.Exclude
+    private byte[] data;
+}
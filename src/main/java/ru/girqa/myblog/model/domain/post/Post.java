@@ -20,13 +20,36 @@ import java.util.List;
 @NoArgsConstructor
 @EqualsAndHashCode
 public class Post {
+
+    /**
+     * Longest excerpt shown in the feed, longer first lines are cut
+     */
+    public static final int EXCERPT_MAX_LENGTH = 500;
+
     private Long id;
     private String title;
     private Integer likes;
     private String text;
+    private String excerpt;
     private Image image;
+    /**
+     * Content hash of the stored image, {@code null} if the post has no image
+     */
+    private String imageHash;
     private List<Tag> tags;
     private List<Commentary> commentaries = new ArrayList<>();
+    /**
+     * Id of the last of {@link #commentaries} if the post has more of them, otherwise {@code null}
+     */
+    private Long commentariesCursor;
+    /**
+     * Stored number of all commentaries of the post
+     */
+    private long commentsCount;
+    /**
+     * Version of the post when it was loaded, see {@link ru.girqa.myblog.repository.PostRepository#findVersion(Long)}
+     */
+    private long version;
 
     public Post(
             @NonNull String title,
@@ -46,4 +69,26 @@ public class Post {
         this.tags = updatedPost.getTags();
         this.image = updatedPost.getImage();
     }
+
+    /**
+     * Recomputes {@link #excerpt} from the current text
+     */
+    public void refreshExcerpt() {
+        this.excerpt = excerptOf(text);
+    }
+
+    /**
+     * @return first non-blank line of the text, cut to {@link #EXCERPT_MAX_LENGTH} characters
+     */
+    public static String excerptOf(@NonNull String text) {
+        String line = text.lines()
+                .filter(l -> !l.isBlank())
+                .findFirst()
+                .orElse("");
+        if (line.length() <= EXCERPT_MAX_LENGTH) return line;
+
+        int end = EXCERPT_MAX_LENGTH;
+        if (Character.isHighSurrogate(line.charAt(end - 1))) end--;
+        return line.substring(0, end) + "…";
+    }
 }
@@ -18,7 +18,11 @@ public class PostPreview {
     private Long id;
     private String title;
     private Integer likes;
-    private String text;
+    private String excerpt;
+    /**
+     * Content hash of the post image, {@code null} if the post has no image
+     */
+    private String imageHash;
     private Long comments;
     private List<Tag> tags;
 }
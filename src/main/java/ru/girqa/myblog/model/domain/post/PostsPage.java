@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
+import ru.girqa.myblog.model.domain.PageCursor;
+import ru.girqa.myblog.model.domain.TagExpression;
 
 import java.util.List;
 
@@ -17,6 +19,17 @@ public class PostsPage {
     private List<PostPreview> posts;
     private Integer page;
     private Integer totalPages;
+    /**
+     * Whether search stopped counting matches, so there are more of them than {@link #totalPages} hold
+     */
+    private boolean totalPagesCapped;
     private Integer postsPerPage;
-    private String targetTag;
+    private TagExpression tags;
+    private String query;
+    private PageCursor nextCursor;
+    private PageCursor previousCursor;
+    /**
+     * Feed version read before the page was loaded, see {@link ru.girqa.myblog.repository.PostRepository#findFeedVersion()}
+     */
+    private long version;
 }
@@ -0,0 +1,11 @@
+package ru.girqa.myblog.model.dto.commentary;
+
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+
+public record CommentarySliceDto(
+        @NotNull List<CommentaryDto> commentaries,
+        Long nextAfter
+) {
+}
@@ -0,0 +1,46 @@
+package ru.girqa.myblog.model.dto.post;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * One line of an exported NDJSON file. Read back by the import as an {@link ImportPostDto},
+ * which skips the id, likes and commentaries.
+ *
+ * @param image     file of the image in the exported zip archive,
+ *                  or just the image name if the bytes are in {@code imageData}
+ * @param imageData image bytes in Base64, encoded as they are read from the storage
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ExportPostDto(
+        Long id,
+        String title,
+        String text,
+        List<String> tags,
+        Integer likes,
+        List<String> commentaries,
+        String image,
+        @JsonSerialize(using = ResourceSerializer.class) Resource imageData
+) {
+
+    /**
+     * Writes the resource in Base64 without loading it on the heap
+     */
+    public static class ResourceSerializer extends JsonSerializer<Resource> {
+
+        @Override
+        public void serialize(Resource value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            try (InputStream in = value.getInputStream()) {
+                gen.writeBinary(in, (int) value.contentLength());
+            }
+        }
+    }
+}
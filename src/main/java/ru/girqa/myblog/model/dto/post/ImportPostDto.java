@@ -0,0 +1,19 @@
+package ru.girqa.myblog.model.dto.post;
+
+import java.util.List;
+
+/**
+ * One line of an imported NDJSON file
+ *
+ * @param image     name of the image file next to the NDJSON in a zip archive,
+ *                  or just the image name if the bytes are in {@code imageData}
+ * @param imageData image bytes in Base64, preferred over a file of the archive
+ */
+public record ImportPostDto(
+        String title,
+        String text,
+        List<String> tags,
+        String image,
+        byte[] imageData
+) {
+}
@@ -23,4 +23,12 @@ public class PostDto {
     private List<String> tags;
     @NotNull
     private List<CommentaryDto> commentaries;
+    /**
+     * Id of the last of {@link #commentaries} if the post has more of them
+     */
+    private Long commentariesCursor;
+    @NotNull
+    private long commentsCount;
+    @NotNull
+    private String imageUrl;
 }
@@ -10,6 +10,7 @@ public record PostPreviewDto(
         @NotNull String text,
         @NotNull Integer likes,
         @NotNull Integer comments,
-        @NotNull List<String> tags
+        @NotNull List<String> tags,
+        @NotNull String imageUrl
 ) {
 }
@@ -4,6 +4,9 @@ import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.MappingConstants;
 import ru.girqa.myblog.model.domain.Commentary;
+import ru.girqa.myblog.model.domain.CommentarySlice;
+import ru.girqa.myblog.model.dto.commentary.CommentaryDto;
+import ru.girqa.myblog.model.dto.commentary.CommentarySliceDto;
 import ru.girqa.myblog.model.dto.commentary.CreateCommentaryDto;
 
 @Mapper(componentModel = MappingConstants.ComponentModel.SPRING)
@@ -11,4 +14,8 @@ public interface CommentaryMapper {
 
     @Mapping(target = "id", ignore = true)
     Commentary toDomain(CreateCommentaryDto dto);
+
+    CommentaryDto toDto(Commentary domain);
+
+    CommentarySliceDto toDto(CommentarySlice domain);
 }
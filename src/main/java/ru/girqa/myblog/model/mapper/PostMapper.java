@@ -3,9 +3,9 @@ package ru.girqa.myblog.model.mapper;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.MappingConstants;
-import org.mapstruct.Named;
 import org.springframework.web.multipart.MultipartFile;
 import ru.girqa.myblog.model.domain.post.Image;
+import ru.girqa.myblog.model.domain.post.ImageMetadata;
 import ru.girqa.myblog.model.domain.post.Post;
 import ru.girqa.myblog.model.domain.post.PostPreview;
 import ru.girqa.myblog.model.dto.post.CreatePostDto;
@@ -13,8 +13,6 @@ import ru.girqa.myblog.model.dto.post.PostDto;
 import ru.girqa.myblog.model.dto.post.PostPreviewDto;
 import ru.girqa.myblog.model.dto.post.UpdatePostDto;
 
-import java.io.IOException;
-
 @Mapper(componentModel = MappingConstants.ComponentModel.SPRING,
         uses = {TagMapper.class, CommentaryMapper.class})
 public interface PostMapper {
@@ -22,42 +20,53 @@ public interface PostMapper {
     @Mapping(target = "likes", constant = "0")
     @Mapping(target = "id", ignore = true)
     @Mapping(target = "commentaries", ignore = true)
+    @Mapping(target = "excerpt", ignore = true)
+    @Mapping(target = "imageHash", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "commentariesCursor", ignore = true)
+    @Mapping(target = "commentsCount", ignore = true)
     Post toDomain(CreatePostDto dto);
 
     @Mapping(target = "likes", constant = "0")
     @Mapping(target = "id", ignore = true)
     @Mapping(target = "commentaries", ignore = true)
+    @Mapping(target = "excerpt", ignore = true)
+    @Mapping(target = "imageHash", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "commentariesCursor", ignore = true)
+    @Mapping(target = "commentsCount", ignore = true)
     Post toDomain(UpdatePostDto dto);
 
+    @Mapping(target = "imageUrl", expression = "java(imageUrl(domain.getId(), domain.getImageHash()))")
     PostDto toDto(Post domain);
 
     @Mapping(target = "tags", source = "tags")
-    @Mapping(target = "text", source = "text", qualifiedByName = "shortenText")
+    @Mapping(target = "text", source = "excerpt")
+    @Mapping(target = "imageUrl", expression = "java(imageUrl(domain.getId(), domain.getImageHash()))")
     PostPreviewDto toDto(PostPreview domain);
 
     @Mapping(target = "image", ignore = true)
     @Mapping(target = "tags", ignore = true)
     UpdatePostDto toUpdateDto(Post post);
 
-    default Image map(MultipartFile file) {
-        try {
-            return Image.builder()
-                    .name(file.getName())
-                    .size(file.getSize())
-                    .data(file.getBytes())
-                    .build();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    /**
+     * @return image URL fingerprinted by the content hash, so the response can be cached
+     * as immutable; a new image gets a new URL
+     */
+    default String imageUrl(Long postId, String imageHash) {
+        String url = "/posts/post/%d/image".formatted(postId);
+        return imageHash == null ? url : url + "?v=" + ImageMetadata.fingerprintOf(imageHash);
     }
 
-    @Named("shortenText")
-    default String shortenText(String text) {
-        String[] parts = text.split("\n");
-        if (parts.length == 1) return parts[0];
-        for (String part: parts) {
-            if (!part.isBlank()) return part;
-        }
-        return "";
+    /**
+     * The upload is streamed to the storage by {@link Image#openStream()}, parts are kept
+     * in temporary files since {@code spring.servlet.multipart.file-size-threshold} is zero
+     */
+    default Image map(MultipartFile file) {
+        return Image.builder()
+                .name(file.getName())
+                .size(file.getSize())
+                .source(file)
+                .build();
     }
 }
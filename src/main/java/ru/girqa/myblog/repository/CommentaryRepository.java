@@ -14,9 +14,30 @@ public interface CommentaryRepository {
 
     void update(@NonNull Commentary commentary);
 
-    void delete(@NonNull Long id);
+    /**
+     * @return id of the post of the deleted commentary or empty if there was no such commentary
+     */
+    Optional<Long> delete(@NonNull Long id);
 
     List<Commentary> findByPostIdOrderById(@NonNull Long postId);
 
+    /**
+     * @return up to {@code limit} commentaries of the post with ids greater than {@code afterId}, in id order
+     */
+    List<Commentary> findByPostIdAfter(@NonNull Long postId, long afterId, int limit);
+
     Long countByPostId(@NonNull Long postId);
+
+    /**
+     * Recomputes stored comments counters of the next {@code batchSize} posts
+     * with ids greater than {@code afterPostId}
+     */
+    RepairedBatch repairCommentsCounts(@NonNull Long afterPostId, int batchSize);
+
+    /**
+     * @param lastPostId id of the last checked post or {@code null} if there were no posts to check
+     * @param repaired   number of posts whose counter had drifted
+     */
+    record RepairedBatch(Long lastPostId, int repaired) {
+    }
 }
@@ -1,15 +1,63 @@
 package ru.girqa.myblog.repository;
 
 import lombok.NonNull;
+import org.springframework.core.io.Resource;
 import ru.girqa.myblog.model.domain.post.Image;
+import ru.girqa.myblog.model.domain.post.ImageMetadata;
+import ru.girqa.myblog.model.domain.post.ImageVariant;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface ImageRepository {
 
     void save(@NonNull Image image);
 
+    /**
+     * Points the post image at the blob of the new bytes and releases the old one
+     */
     void update(@NonNull Image image);
 
-    Optional<Image> findByPostId(@NonNull Long postId);
+    /**
+     * Removes the post image, its blob is left for {@link #collectGarbage(int)}
+     * if no other image refers to it
+     */
+    void deleteByPostId(@NonNull Long postId);
+
+    /**
+     * Looks up the image without touching its bytes
+     */
+    Optional<ImageMetadata> findMetadataByPostId(@NonNull Long postId);
+
+    /**
+     * @return bytes of an image or a variant by the hash found in its metadata, read only when
+     * the resource is written out where the storage allows it. Blobs never change, so the bytes
+     * match the metadata however long ago it was looked up, unless the blob is collected meanwhile.
+     */
+    Optional<Resource> findDataByHash(@NonNull String contentHash);
+
+    /**
+     * Stores the variant unless one of the same source and width already exists
+     */
+    void saveVariant(@NonNull ImageVariant variant);
+
+    List<Integer> findVariantWidths(@NonNull String sourceHash);
+
+    /**
+     * Looks up the variant of the current post image without touching its bytes
+     */
+    Optional<ImageMetadata> findVariantMetadataByPostId(@NonNull Long postId, int width);
+
+    /**
+     * @return ids of the next {@code limit} posts with ids greater than {@code afterPostId}
+     * whose images lack some of the {@link ImageVariant#WIDTHS}
+     */
+    List<Long> findPostIdsWithoutVariants(@NonNull Long afterPostId, int limit);
+
+    /**
+     * Removes up to {@code batchSize} blobs no image refers to, in a transaction of its own
+     *
+     * @return number of removed blobs
+     */
+    int collectGarbage(int batchSize);
 }
@@ -5,6 +5,7 @@ import ru.girqa.myblog.model.domain.PageRequest;
 import ru.girqa.myblog.model.domain.post.Post;
 import ru.girqa.myblog.model.domain.post.PostsPage;
 
+import java.util.Map;
 import java.util.Optional;
 
 public interface PostRepository {
@@ -14,9 +15,50 @@ public interface PostRepository {
 
     Optional<Post> findById(@NonNull Long id);
 
+    /**
+     * @param commentaries number of the first commentaries, in id order, to read with the post
+     * @return post with its tags and first commentaries, read with one statement
+     */
+    Optional<Post> findAggregateById(@NonNull Long id, int commentaries);
+
+    /**
+     * @return version of the post, changed by every change of what its page shows
+     */
+    Optional<Long> findVersion(@NonNull Long id);
+
+    /**
+     * @return opaque version of all posts and deletions, changed by every committed change
+     * of what any feed page shows, in whatever order the changes commit
+     */
+    long findFeedVersion();
+
     PostsPage findAllPaged(@NonNull PageRequest page);
 
     Integer incrementLikes(@NonNull Long id);
 
-    void deleteById(@NonNull Long id);
+    Optional<Integer> findLikes(@NonNull Long id);
+
+    /**
+     * Adds likes to several posts with one statement
+     *
+     * @param deltas number of likes to add by post id
+     * @return resulting number of likes by post id, deleted posts are absent
+     */
+    Map<Long, Integer> addLikes(@NonNull Map<Long, Long> deltas);
+
+    /**
+     * @return {@code true} if the post existed
+     */
+    boolean deleteById(@NonNull Long id);
+
+    long countAll();
+
+    /**
+     * Replaces the search champions of the words met in many posts with the posts most relevant
+     * to each word now, so they follow edited posts and words that became frequent;
+     * expected to run within a repeatable read transaction
+     *
+     * @return number of search champions of all words
+     */
+    int rebuildSearchChampions();
 }
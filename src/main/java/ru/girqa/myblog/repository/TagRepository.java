@@ -2,8 +2,10 @@ package ru.girqa.myblog.repository;
 
 import lombok.NonNull;
 import ru.girqa.myblog.model.domain.Tag;
+import ru.girqa.myblog.repository.memory.PostTagIndex;
 
 import java.util.List;
+import java.util.Map;
 
 public interface TagRepository {
 
@@ -14,4 +16,15 @@ public interface TagRepository {
     void unboundTagsFromPost(@NonNull Long postId);
 
     List<Tag> merge(@NonNull List<Tag> tags);
+
+    /**
+     * @return number of posts bound to each tag name
+     */
+    Map<String, Long> countPostsByTagName();
+
+    /**
+     * Streams ids of all posts, all tags and all post to tag bindings into the loader.
+     * Should run in a transaction, so rows are fetched in chunks.
+     */
+    void loadIndex(@NonNull PostTagIndex.Loader loader);
 }
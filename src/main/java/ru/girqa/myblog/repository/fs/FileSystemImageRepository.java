@@ -0,0 +1,274 @@
+package ru.girqa.myblog.repository.fs;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.girqa.myblog.model.domain.post.Image;
+import ru.girqa.myblog.model.domain.post.ImageMetadata;
+import ru.girqa.myblog.model.domain.post.ImageVariant;
+import ru.girqa.myblog.repository.ImageRepository;
+import ru.girqa.myblog.repository.fs.ImageBlobStore.StagedBlob;
+import ru.girqa.myblog.repository.jdbc.ChunkedImageResource;
+import ru.girqa.myblog.repository.jdbc.ImageBlobRepository;
+import ru.girqa.myblog.util.InspectingInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Keeps image bytes in {@link ImageBlobStore} and only their hash in {@code image_blobs}.
+ * Blobs written by {@link ru.girqa.myblog.repository.jdbc.ImageJdbcRepository} still have
+ * their bytes in {@code image_data} and are readable until {@link #migrateBatch(String, int)}
+ * moves the bytes out.
+ */
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "blog.images", name = "storage", havingValue = "filesystem")
+public class FileSystemImageRepository implements ImageRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ImageBlobStore blobStore;
+
+    private final ImageBlobRepository blobRepository;
+
+    @Override
+    public void save(@NonNull Image image) {
+        StoredImage stored = store(image);
+        jdbcTemplate.update("""
+                        insert into images(post_id, image_name, image_size, content_type, content_hash)
+                        values (?, ?, ?, ?, ?);
+                        """,
+                image.getPostId(),
+                image.getName(),
+                image.getSize(),
+                stored.contentType(),
+                stored.hash()
+        );
+    }
+
+    @Override
+    public void update(@NonNull Image image) {
+        Optional<String> oldHash = findContentHash(image.getPostId());
+        if (oldHash.isEmpty()) return;
+
+        StoredImage stored = store(image);
+        jdbcTemplate.update("""
+                        update images
+                        set image_name = ?, image_size = ?, content_type = ?, content_hash = ?
+                        where post_id = ?
+                        """,
+                image.getName(),
+                image.getSize(),
+                stored.contentType(),
+                stored.hash(),
+                image.getPostId()
+        );
+        blobRepository.release(oldHash.get());
+    }
+
+    @Override
+    public void deleteByPostId(@NonNull Long postId) {
+        findContentHash(postId).ifPresent(hash -> {
+            jdbcTemplate.update("delete from images where post_id = ?", postId);
+            blobRepository.release(hash);
+        });
+    }
+
+    @Override
+    public Optional<ImageMetadata> findMetadataByPostId(@NonNull Long postId) {
+        return jdbcTemplate.query("""
+                                select i.post_id, i.image_size, i.content_type, i.content_hash from images i
+                                where i.post_id = ?
+                                """,
+                        (rs, n) -> new ImageMetadata(
+                                rs.getLong("post_id"),
+                                rs.getLong("image_size"),
+                                rs.getString("content_type"),
+                                rs.getString("content_hash")
+                        ),
+                        postId
+                ).stream()
+                .findFirst();
+    }
+
+    /**
+     * @return the blob file, blobs not migrated yet are still read from the database in chunks
+     */
+    @Override
+    public Optional<Resource> findDataByHash(@NonNull String contentHash) {
+        return jdbcTemplate.query(
+                        "select octet_length(image_data) as image_length from image_blobs where content_hash = ?",
+                        (rs, n) -> blobResource(contentHash, rs.getLong("image_length"), rs.wasNull()),
+                        contentHash
+                ).stream()
+                .findFirst();
+    }
+
+    /**
+     * A variant equal to its source shares the source blob without referencing it
+     */
+    @Override
+    public void saveVariant(@NonNull ImageVariant variant) {
+        String hash;
+        boolean ownBlob;
+        try (StagedBlob staged = blobStore.stage(new ByteArrayInputStream(variant.getData()))) {
+            hash = staged.hash();
+            ownBlob = !hash.equals(variant.getSourceHash());
+            if (ownBlob) {
+                acquire(staged);
+            }
+        }
+
+        int inserted = jdbcTemplate.update("""
+                        insert into image_variants(source_hash, width, content_type, content_hash, image_size)
+                        values (?, ?, ?, ?, ?)
+                        on conflict do nothing
+                        """,
+                variant.getSourceHash(),
+                variant.getWidth(),
+                variant.getContentType(),
+                hash,
+                variant.getData().length
+        );
+        if (ownBlob && inserted == 0) {
+            blobRepository.release(hash);
+        }
+    }
+
+    @Override
+    public List<Integer> findVariantWidths(@NonNull String sourceHash) {
+        return jdbcTemplate.queryForList("select width from image_variants where source_hash = ? order by width",
+                Integer.class, sourceHash);
+    }
+
+    @Override
+    public Optional<ImageMetadata> findVariantMetadataByPostId(@NonNull Long postId, int width) {
+        return jdbcTemplate.query("""
+                                select i.post_id, v.image_size, v.content_type, v.content_hash
+                                from images i
+                                join image_variants v on v.source_hash = i.content_hash
+                                where i.post_id = ? and v.width = ?
+                                """,
+                        (rs, n) -> new ImageMetadata(
+                                rs.getLong("post_id"),
+                                rs.getLong("image_size"),
+                                rs.getString("content_type"),
+                                rs.getString("content_hash")
+                        ),
+                        postId, width
+                ).stream()
+                .findFirst();
+    }
+
+    @Override
+    public List<Long> findPostIdsWithoutVariants(@NonNull Long afterPostId, int limit) {
+        return jdbcTemplate.queryForList("""
+                        select i.post_id from images i
+                        where i.post_id > ?
+                          and (select count(*) from image_variants v where v.source_hash = i.content_hash) < ?
+                        order by i.post_id
+                        limit ?
+                        """,
+                Long.class, afterPostId, ImageVariant.WIDTHS.size(), limit);
+    }
+
+    /**
+     * Files are deleted while their rows are still locked, so an upload of the same bytes
+     * waits for the collection and then writes the file again
+     */
+    @Override
+    @Transactional
+    public int collectGarbage(int batchSize) {
+        List<String> hashes = blobRepository.collect(batchSize);
+        hashes.forEach(blobStore::delete);
+        return hashes.size();
+    }
+
+    /**
+     * Moves bytes of the next {@code batchSize} referenced blobs with hashes greater than
+     * {@code afterHash} from {@code image_blobs.image_data} into the blob store.
+     * Blobs are read one at a time, so at most one is held in memory.
+     */
+    public MigratedBatch migrateBatch(@NonNull String afterHash, int batchSize) {
+        List<String> hashes = jdbcTemplate.queryForList("""
+                        select content_hash from image_blobs
+                        where content_hash > ? and image_data is not null and ref_count > 0
+                        order by content_hash
+                        limit ?
+                        """,
+                String.class, afterHash, batchSize);
+        if (hashes.isEmpty()) return new MigratedBatch(null, 0);
+
+        int migrated = 0;
+        for (String hash : hashes) {
+            byte[] data = jdbcTemplate.query(
+                    "select image_data from image_blobs where content_hash = ? and image_data is not null",
+                    rs -> rs.next() ? rs.getBytes("image_data") : null,
+                    hash);
+            if (data == null) continue;
+
+            blobStore.write(data);
+            // a blob collected meanwhile leaves an unreferenced file behind
+            migrated += jdbcTemplate.update(
+                    "update image_blobs set image_data = null where content_hash = ? and image_data is not null",
+                    hash);
+        }
+        return new MigratedBatch(hashes.getLast(), migrated);
+    }
+
+    private Optional<String> findContentHash(Long postId) {
+        return jdbcTemplate.queryForList("select content_hash from images where post_id = ? for update",
+                        String.class, postId)
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Stages the image in the blob store, detecting its format on the way, and references its blob
+     */
+    private StoredImage store(Image image) {
+        try (InspectingInputStream in = new InspectingInputStream(image.openStream(), image.getSize());
+             StagedBlob staged = blobStore.stage(in)) {
+            acquire(staged);
+            return new StoredImage(staged.hash(), in.contentType());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The row is referenced before the file is stored: a blob being collected is locked,
+     * so its file is deleted before the reference is taken and stored anew after it
+     */
+    private void acquire(StagedBlob staged) {
+        if (!blobRepository.acquire(staged.hash())) {
+            blobRepository.insert(staged.hash(), null, 0);
+        }
+        staged.store();
+    }
+
+    private Resource blobResource(String hash, long length, boolean inFile) {
+        return inFile
+                ? new FileSystemResource(blobStore.path(hash))
+                : new ChunkedImageResource(jdbcTemplate, hash, length);
+    }
+
+    private record StoredImage(String hash, String contentType) {
+    }
+
+    /**
+     * @param lastHash hash of the last checked blob or {@code null} if there were no blobs to check
+     * @param migrated number of blobs whose bytes were moved out of the database
+     */
+    public record MigratedBatch(String lastHash, int migrated) {
+    }
+}
@@ -0,0 +1,191 @@
+package ru.girqa.myblog.repository.fs;
+
+import lombok.NonNull;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.girqa.myblog.config.ImageStorageProperties;
+import ru.girqa.myblog.util.ContentHash;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed directory of image files. Every file is named by the SHA-256
+ * of its bytes and placed under two levels of subdirectories taken from the hash,
+ * e.g. {@code 3a/7f/3a7f...}. Equal images are stored once and files are never
+ * modified after they are written.
+ */
+@Component
+@ConditionalOnProperty(prefix = "blog.images", name = "storage", havingValue = "filesystem")
+public class ImageBlobStore {
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path root;
+
+    public ImageBlobStore(@NonNull ImageStorageProperties properties) {
+        this.root = properties.directory().toAbsolutePath();
+    }
+
+    /**
+     * @return SHA-256 of the written bytes in lower case hex
+     */
+    public String write(@NonNull byte[] data) {
+        return write(new ByteArrayInputStream(data));
+    }
+
+    /**
+     * Stages the stream and stores it at once
+     *
+     * @return SHA-256 of the written bytes in lower case hex
+     */
+    public String write(@NonNull InputStream data) {
+        try (StagedBlob staged = stage(data)) {
+            staged.store();
+            return staged.hash();
+        }
+    }
+
+    /**
+     * Copies the stream into a temporary file while hashing it. The file reaches
+     * its content address only by {@link StagedBlob#store()}, so the caller may
+     * reference the hash before the file becomes visible.
+     */
+    public StagedBlob stage(@NonNull InputStream data) {
+        return stage(data, true);
+    }
+
+    /**
+     * @param force whether the bytes reach the disk before the method returns; otherwise
+     *              the caller has to {@link StagedBlob#force()} them before committing the hash,
+     *              which lets a batch of files be written before the first of them is flushed
+     */
+    public StagedBlob stage(@NonNull InputStream data, boolean force) {
+        try {
+            Files.createDirectories(root);
+            Path temp = Files.createTempFile(root, "upload-", ".tmp");
+            try {
+                MessageDigest digest = ContentHash.newDigest();
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+                     OutputStream out = new DigestOutputStream(Channels.newOutputStream(channel), digest)) {
+                    data.transferTo(out);
+                    if (force) {
+                        // the hash is committed to the database right after, the bytes must survive a crash
+                        channel.force(true);
+                    }
+                }
+                return new StagedBlob(temp, ContentHash.hex(digest.digest()));
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public byte[] read(@NonNull String hash) {
+        try {
+            return Files.readAllBytes(path(hash));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public boolean exists(@NonNull String hash) {
+        return Files.exists(path(hash));
+    }
+
+    public void delete(@NonNull String hash) {
+        try {
+            Files.deleteIfExists(path(hash));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Path path(@NonNull String hash) {
+        if (!HASH.matcher(hash).matches()) {
+            throw new IllegalArgumentException("Not a SHA-256 hex string: " + hash);
+        }
+        return root.resolve(hash.substring(0, 2))
+                .resolve(hash.substring(2, 4))
+                .resolve(hash);
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // written concurrently by another upload of the same bytes
+        }
+    }
+
+    /**
+     * Bytes written to a temporary file, which is removed on close unless stored
+     */
+    public class StagedBlob implements AutoCloseable {
+
+        private final Path temp;
+
+        private final String hash;
+
+        private StagedBlob(Path temp, String hash) {
+            this.temp = temp;
+            this.hash = hash;
+        }
+
+        public String hash() {
+            return hash;
+        }
+
+        /**
+         * Flushes the bytes of a blob staged without forcing them to the disk
+         */
+        public void force() {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Moves the file to its content address unless a file of the same bytes is there already.
+         * The move is atomic, so readers never see a partial file.
+         */
+        public void store() {
+            try {
+                Path target = path(hash);
+                if (!Files.exists(target)) {
+                    Files.createDirectories(target.getParent());
+                    moveAtomically(temp, target);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
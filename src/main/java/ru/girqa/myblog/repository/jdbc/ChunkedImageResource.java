@@ -0,0 +1,128 @@
+package ru.girqa.myblog.repository.jdbc;
+
+import lombok.NonNull;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Image kept in {@code image_blobs.image_data}, read lazily in chunks of
+ * {@link #CHUNK_SIZE} bytes, so at most one chunk is held on the heap.
+ * Blobs never change once written, so the chunks may be read by separate
+ * statements; only a blob garbage collected while being read outside of a
+ * repeatable read transaction ends the stream early.
+ */
+public class ChunkedImageResource extends AbstractResource {
+
+    public static final int CHUNK_SIZE = 256 * 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final String contentHash;
+
+    private final long length;
+
+    public ChunkedImageResource(@NonNull JdbcTemplate jdbcTemplate, @NonNull String contentHash, long length) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.contentHash = contentHash;
+        this.length = length;
+    }
+
+    @Override
+    public long contentLength() {
+        return length;
+    }
+
+    @Override
+    public String getDescription() {
+        return "image blob " + contentHash;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return new ChunkedInputStream();
+    }
+
+    private byte[] readChunk(long position) throws IOException {
+        // substring() of bytea counts from 1, an external (not compressed) value is read partially
+        List<byte[]> chunk = jdbcTemplate.query(
+                "select substring(image_data from ?::int for ?) as chunk from image_blobs where content_hash = ?",
+                (rs, n) -> rs.getBytes("chunk"),
+                position + 1, CHUNK_SIZE, contentHash);
+        if (chunk.isEmpty() || chunk.getFirst() == null || chunk.getFirst().length == 0) {
+            throw new EOFException("Image blob %s ended at %d of %d bytes".formatted(contentHash, position, length));
+        }
+        return chunk.getFirst();
+    }
+
+    private class ChunkedInputStream extends InputStream {
+
+        private long position;
+
+        private byte[] chunk = new byte[0];
+
+        private int offset;
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) return -1;
+            return chunk[offset++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (!fill()) return -1;
+
+            int read = Math.min(len, chunk.length - offset);
+            System.arraycopy(chunk, offset, b, off, read);
+            offset += read;
+            return read;
+        }
+
+        /**
+         * Skips without reading, the next chunk is fetched from the new position
+         */
+        @Override
+        public long skip(long n) {
+            if (n <= 0) return 0;
+
+            long skipped = Math.min(n, length - position());
+            long remainingInChunk = chunk.length - offset;
+            if (skipped <= remainingInChunk) {
+                offset += (int) skipped;
+            } else {
+                position = position() + skipped;
+                chunk = new byte[0];
+                offset = 0;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return chunk.length - offset;
+        }
+
+        /**
+         * @return position in the image of the next byte to read
+         */
+        private long position() {
+            return position + offset - chunk.length;
+        }
+
+        private boolean fill() throws IOException {
+            if (offset < chunk.length) return true;
+            if (position >= length) return false;
+
+            chunk = readChunk(position);
+            offset = 0;
+            position += chunk.length;
+            return true;
+        }
+    }
+}
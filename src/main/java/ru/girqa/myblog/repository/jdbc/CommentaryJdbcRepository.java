@@ -21,10 +21,21 @@ public class CommentaryJdbcRepository implements CommentaryRepository {
     @Override
     public Commentary save(@NonNull Commentary commentary) {
         Long id = jdbcTemplate.queryForObject("""
-                        insert into commentaries(post_id, commentary_text)
-                        values (?, ?)
-                        returning id
-                        """,
+                        with inserted as (
+                            insert into commentaries(post_id, commentary_text)
+                            values (?, ?)
+                            returning id, post_id
+                        ), counter as (
+                            update posts p
+                            set comments_count = p.comments_count + 1
+                            from inserted i
+                            where p.id = i.post_id
+                            returning p.id
+                        ), versioned as (
+                            %s
+                        )
+                        select id from inserted
+                        """.formatted(PostJdbcRepository.BUMP_VERSIONS.formatted("select id from counter")),
                 Long.class,
                 commentary.getPostId(), commentary.getText()
         );
@@ -47,19 +58,38 @@ public class CommentaryJdbcRepository implements CommentaryRepository {
     @Override
     public void update(@NonNull Commentary commentary) {
         jdbcTemplate.update("""
+                        with updated as (
                             update commentaries
                             set commentary_text = ?
                             where id = ?
-                        """,
+                            returning post_id
+                        )
+                        %s
+                        """.formatted(PostJdbcRepository.BUMP_VERSIONS.formatted("select post_id from updated")),
                 commentary.getText(), commentary.getId());
     }
 
     @Override
-    public void delete(@NonNull Long id) {
-        jdbcTemplate.update("""
+    public Optional<Long> delete(@NonNull Long id) {
+        return jdbcTemplate.queryForList("""
+                                with deleted as (
                                     delete from commentaries
                                     where id = ?
-                """, id);
+                                    returning post_id
+                                ), counter as (
+                                    update posts p
+                                    set comments_count = p.comments_count - 1
+                                    from deleted d
+                                    where p.id = d.post_id
+                                    returning p.id
+                                ), versioned as (
+                                    %s
+                                )
+                                select post_id from deleted
+                                """.formatted(PostJdbcRepository.BUMP_VERSIONS.formatted("select id from counter")),
+                        Long.class, id)
+                .stream()
+                .findFirst();
     }
 
     @Override
@@ -74,14 +104,67 @@ public class CommentaryJdbcRepository implements CommentaryRepository {
         );
     }
 
+    /**
+     * Seeks the {@code (post_id, id)} index, so a slice deep into a long thread is as cheap as the first one
+     */
+    @Override
+    public List<Commentary> findByPostIdAfter(@NonNull Long postId, long afterId, int limit) {
+        return jdbcTemplate.query("""
+                        select id, post_id, commentary_text from commentaries
+                        where post_id = ? and id > ?
+                        order by id
+                        limit ?
+                        """,
+                (rs, rowNum) -> extractCommentary(rs),
+                postId, afterId, limit
+        );
+    }
+
     @Override
     public Long countByPostId(@NonNull Long postId) {
+        return jdbcTemplate.query("""
+                                select comments_count from posts
+                                where id = ?
+                                """,
+                        (rs, rowNum) -> rs.getLong("comments_count"),
+                        postId
+                ).stream()
+                .findFirst()
+                .orElse(0L);
+    }
+
+    @Override
+    public RepairedBatch repairCommentsCounts(@NonNull Long afterPostId, int batchSize) {
+        // the drift is applied as a delta, so counter changes committed
+        // by concurrent writers after the statement snapshot are preserved
         return jdbcTemplate.queryForObject("""
-                        select count(*) from commentaries
-                        where post_id = ?
-                        """,
-                Long.class,
-                postId);
+                        with batch as (
+                            select p.id, p.comments_count from posts p
+                            where p.id > ?
+                            order by p.id
+                            limit ?
+                        ), actual as (
+                            select b.id, b.comments_count stored,
+                                   (select count(*) from commentaries c where c.post_id = b.id) comments
+                            from batch b
+                        ), repaired as (
+                            update posts p
+                            set comments_count = p.comments_count + (a.comments - a.stored)
+                            from actual a
+                            where p.id = a.id and a.comments <> a.stored
+                            returning p.id
+                        ), versioned as (
+                            %s
+                        )
+                        select (select max(id) from batch) last_post_id,
+                               (select count(*) from repaired) repaired
+                        """.formatted(PostJdbcRepository.BUMP_VERSIONS.formatted("select id from repaired")),
+                (rs, rowNum) -> new RepairedBatch(
+                        rs.getObject("last_post_id", Long.class),
+                        rs.getInt("repaired")
+                ),
+                afterPostId, batchSize
+        );
     }
 
     private static Commentary extractCommentary(ResultSet rs) throws SQLException {
@@ -0,0 +1,142 @@
+package ru.girqa.myblog.repository.jdbc;
+
+import lombok.NonNull;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Collection;
+
+/**
+ * Rows of one table encoded in the text format of {@code COPY ... from stdin}. The rows are
+ * sent by one {@code COPY} whenever the buffer fills up, so several tables can be loaded
+ * through one connection in turns while at most a buffer of each is held in memory.
+ */
+class CopyBuffer {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final String copySql;
+
+    private final int flushSize;
+
+    private final ByteArrayOutputStream buffer;
+
+    private boolean firstField = true;
+
+    /**
+     * @param copySql   {@code copy <table>(<columns>) from stdin}
+     * @param flushSize number of buffered bytes sent at once
+     */
+    CopyBuffer(@NonNull JdbcTemplate jdbcTemplate, @NonNull String copySql, int flushSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.copySql = copySql;
+        this.flushSize = flushSize;
+        this.buffer = new ByteArrayOutputStream(flushSize);
+    }
+
+    CopyBuffer field(@Nullable String value) {
+        delimit();
+        if (value == null) {
+            writeNull();
+            return this;
+        }
+        StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> escaped.append("\\\\");
+                case '\n' -> escaped.append("\\n");
+                case '\r' -> escaped.append("\\r");
+                case '\t' -> escaped.append("\\t");
+                default -> escaped.append(c);
+            }
+        }
+        buffer.writeBytes(escaped.toString().getBytes(StandardCharsets.UTF_8));
+        return this;
+    }
+
+    CopyBuffer field(long value) {
+        delimit();
+        buffer.writeBytes(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+        return this;
+    }
+
+    /**
+     * Writes a {@code bytea} in the hex format, its leading backslash escaped for {@code COPY}
+     */
+    CopyBuffer field(@Nullable byte[] value) {
+        delimit();
+        if (value == null) {
+            writeNull();
+            return this;
+        }
+        buffer.write('\\');
+        buffer.write('\\');
+        buffer.write('x');
+        for (byte b : value) {
+            buffer.write(HEX[(b >> 4) & 0xF]);
+            buffer.write(HEX[b & 0xF]);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a {@code text[]} literal with every element quoted
+     */
+    CopyBuffer field(@NonNull Collection<String> values) {
+        StringBuilder array = new StringBuilder("{");
+        for (String value : values) {
+            if (array.length() > 1) array.append(',');
+            array.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') array.append('\\');
+                array.append(c);
+            }
+            array.append('"');
+        }
+        return field(array.append('}').toString());
+    }
+
+    void endRow() {
+        buffer.write('\n');
+        firstField = true;
+        if (buffer.size() >= flushSize) flush();
+    }
+
+    void flush() {
+        if (buffer.size() == 0) return;
+
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PGCopyOutputStream out = new PGCopyOutputStream(connection.unwrap(PGConnection.class), copySql)) {
+                buffer.writeTo(out);
+            } catch (IOException e) {
+                // errors reported by the server are translated like those of any other statement
+                if (e.getCause() instanceof SQLException cause) throw cause;
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        });
+        buffer.reset();
+    }
+
+    private void delimit() {
+        if (!firstField) buffer.write('\t');
+        firstField = false;
+    }
+
+    private void writeNull() {
+        buffer.write('\\');
+        buffer.write('N');
+    }
+}
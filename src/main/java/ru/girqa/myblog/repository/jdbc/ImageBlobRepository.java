@@ -0,0 +1,97 @@
+package ru.girqa.myblog.repository.jdbc;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Repository;
+
+import java.io.InputStream;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Reference counts of {@code image_blobs}. Every image and every variant that is not
+ * equal to its source holds one reference to the blob of its bytes; a blob nobody
+ * references is removed by {@link #collect(int)}.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ImageBlobRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Adds a reference to an existing blob, so equal bytes are neither sent nor stored again
+     *
+     * @return {@code false} if there is no blob of the hash
+     */
+    public boolean acquire(@NonNull String contentHash) {
+        return jdbcTemplate.update(
+                "update image_blobs set ref_count = ref_count + 1 where content_hash = ?",
+                contentHash) > 0;
+    }
+
+    /**
+     * Creates a blob holding one reference, or adds a reference to the blob
+     * created concurrently by another upload of the same bytes
+     *
+     * @param data bytes kept in the database or {@code null} if they are in the blob store
+     */
+    public void insert(@NonNull String contentHash, @Nullable InputStream data, long length) {
+        jdbcTemplate.update("""
+                        insert into image_blobs(content_hash, image_data, ref_count)
+                        values (?, ?, 1)
+                        on conflict (content_hash) do update set ref_count = image_blobs.ref_count + 1
+                        """,
+                ps -> {
+                    ps.setString(1, contentHash);
+                    if (data == null) {
+                        ps.setNull(2, Types.BINARY);
+                    } else {
+                        ps.setBinaryStream(2, data, length);
+                    }
+                });
+    }
+
+    public void release(@NonNull String contentHash) {
+        jdbcTemplate.update("update image_blobs set ref_count = ref_count - 1 where content_hash = ?", contentHash);
+    }
+
+    /**
+     * Removes up to {@code limit} unreferenced blobs together with the variants generated
+     * from them, releasing the blobs of those variants for a later pass. Has to run within
+     * a transaction: the blobs stay locked until it ends, and blobs locked by concurrent
+     * uploads are skipped.
+     *
+     * @return hashes of the removed blobs
+     */
+    public List<String> collect(int limit) {
+        List<String> hashes = jdbcTemplate.queryForList("""
+                        select content_hash from image_blobs
+                        where ref_count = 0
+                        order by content_hash
+                        limit ?
+                        for update skip locked
+                        """,
+                String.class, limit);
+        if (hashes.isEmpty()) return hashes;
+
+        Object[] sources = hashes.toArray();
+        jdbcTemplate.update("""
+                        update image_blobs b
+                        set ref_count = b.ref_count - v.refs
+                        from (select content_hash, count(*) as refs
+                              from image_variants
+                              where source_hash = any(?::char(64)[]) and content_hash <> source_hash
+                              group by content_hash) v
+                        where b.content_hash = v.content_hash
+                        """,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", sources)));
+        jdbcTemplate.update("delete from image_variants where source_hash = any(?::char(64)[])",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", sources)));
+        jdbcTemplate.update("delete from image_blobs where content_hash = any(?::char(64)[])",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", sources)));
+        return hashes;
+    }
+}
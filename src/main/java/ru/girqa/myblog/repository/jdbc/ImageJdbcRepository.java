@@ -2,60 +2,214 @@ package ru.girqa.myblog.repository.jdbc;
 
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.Resource;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.girqa.myblog.model.domain.post.Image;
+import ru.girqa.myblog.model.domain.post.ImageMetadata;
+import ru.girqa.myblog.model.domain.post.ImageVariant;
 import ru.girqa.myblog.repository.ImageRepository;
+import ru.girqa.myblog.util.ContentHash;
+import ru.girqa.myblog.util.InspectingInputStream;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
 import java.util.Optional;
 
+/**
+ * Keeps image bytes in {@code image_blobs.image_data}, once per distinct content.
+ * Blobs already moved to the filesystem storage are not readable by this backend.
+ */
 @Repository
+@ConditionalOnProperty(prefix = "blog.images", name = "storage", havingValue = "jdbc", matchIfMissing = true)
 @RequiredArgsConstructor
 public class ImageJdbcRepository implements ImageRepository {
 
     private final JdbcTemplate jdbcTemplate;
 
+    private final ImageBlobRepository blobRepository;
+
     @Override
     public void save(@NonNull Image image) {
+        InspectingInputStream inspected = inspect(image);
+        storeBlob(image, inspected.contentHash());
         jdbcTemplate.update("""
-                        insert into images(post_id, image_name, image_size, image_data)
-                        values (?, ?, ?, ?);
+                        insert into images(post_id, image_name, image_size, content_type, content_hash)
+                        values (?, ?, ?, ?, ?);
                         """,
                 image.getPostId(),
                 image.getName(),
                 image.getSize(),
-                image.getData()
+                inspected.contentType(),
+                inspected.contentHash()
         );
     }
 
     @Override
     public void update(@NonNull Image image) {
+        Optional<String> oldHash = findContentHash(image.getPostId());
+        if (oldHash.isEmpty()) return;
+
+        InspectingInputStream inspected = inspect(image);
+        storeBlob(image, inspected.contentHash());
         jdbcTemplate.update("""
                         update images
-                        set image_name = ?, image_size = ?, image_data = ?
+                        set image_name = ?, image_size = ?, content_type = ?, content_hash = ?
                         where post_id = ?
                         """,
                 image.getName(),
                 image.getSize(),
-                image.getData(),
+                inspected.contentType(),
+                inspected.contentHash(),
                 image.getPostId()
         );
+        blobRepository.release(oldHash.get());
+    }
+
+    @Override
+    public void deleteByPostId(@NonNull Long postId) {
+        findContentHash(postId).ifPresent(hash -> {
+            jdbcTemplate.update("delete from images where post_id = ?", postId);
+            blobRepository.release(hash);
+        });
     }
 
     @Override
-    public Optional<Image> findByPostId(@NonNull Long postId) {
+    public Optional<ImageMetadata> findMetadataByPostId(@NonNull Long postId) {
         return jdbcTemplate.query("""
-                                select i.post_id, i.image_name, i.image_size, i.image_data from images i
+                                select i.post_id, i.image_size, i.content_type, i.content_hash from images i
                                 where i.post_id = ?
                                 """,
-                        (rs, n) -> Image.builder()
-                                .postId(rs.getLong("post_id"))
-                                .name(rs.getString("image_name"))
-                                .size(rs.getLong("image_size"))
-                                .data(rs.getBytes("image_data"))
-                                .build(),
+                        (rs, n) -> new ImageMetadata(
+                                rs.getLong("post_id"),
+                                rs.getLong("image_size"),
+                                rs.getString("content_type"),
+                                rs.getString("content_hash")
+                        ),
                         postId
                 ).stream()
                 .findFirst();
     }
+
+    /**
+     * @return image or variant read in chunks when the resource is written out
+     */
+    @Override
+    public Optional<Resource> findDataByHash(@NonNull String contentHash) {
+        return jdbcTemplate.query("""
+                                select octet_length(image_data) as image_length from image_blobs
+                                where content_hash = ? and image_data is not null
+                                """,
+                        (rs, n) -> (Resource) new ChunkedImageResource(
+                                jdbcTemplate, contentHash, rs.getLong("image_length")),
+                        contentHash
+                ).stream()
+                .findFirst();
+    }
+
+    /**
+     * A variant equal to its source shares the source blob without referencing it
+     */
+    @Override
+    public void saveVariant(@NonNull ImageVariant variant) {
+        String hash = ContentHash.of(variant.getData());
+        boolean ownBlob = !hash.equals(variant.getSourceHash());
+        if (ownBlob && !blobRepository.acquire(hash)) {
+            blobRepository.insert(hash, new ByteArrayInputStream(variant.getData()), variant.getData().length);
+        }
+
+        int inserted = jdbcTemplate.update("""
+                        insert into image_variants(source_hash, width, content_type, content_hash, image_size)
+                        values (?, ?, ?, ?, ?)
+                        on conflict do nothing
+                        """,
+                variant.getSourceHash(),
+                variant.getWidth(),
+                variant.getContentType(),
+                hash,
+                variant.getData().length
+        );
+        if (ownBlob && inserted == 0) {
+            blobRepository.release(hash);
+        }
+    }
+
+    @Override
+    public List<Integer> findVariantWidths(@NonNull String sourceHash) {
+        return jdbcTemplate.queryForList("select width from image_variants where source_hash = ? order by width",
+                Integer.class, sourceHash);
+    }
+
+    @Override
+    public Optional<ImageMetadata> findVariantMetadataByPostId(@NonNull Long postId, int width) {
+        return jdbcTemplate.query("""
+                                select i.post_id, v.image_size, v.content_type, v.content_hash
+                                from images i
+                                join image_variants v on v.source_hash = i.content_hash
+                                where i.post_id = ? and v.width = ?
+                                """,
+                        (rs, n) -> new ImageMetadata(
+                                rs.getLong("post_id"),
+                                rs.getLong("image_size"),
+                                rs.getString("content_type"),
+                                rs.getString("content_hash")
+                        ),
+                        postId, width
+                ).stream()
+                .findFirst();
+    }
+
+    @Override
+    public List<Long> findPostIdsWithoutVariants(@NonNull Long afterPostId, int limit) {
+        return jdbcTemplate.queryForList("""
+                        select i.post_id from images i
+                        where i.post_id > ?
+                          and (select count(*) from image_variants v where v.source_hash = i.content_hash) < ?
+                        order by i.post_id
+                        limit ?
+                        """,
+                Long.class, afterPostId, ImageVariant.WIDTHS.size(), limit);
+    }
+
+    @Override
+    @Transactional
+    public int collectGarbage(int batchSize) {
+        return blobRepository.collect(batchSize).size();
+    }
+
+    private Optional<String> findContentHash(Long postId) {
+        return jdbcTemplate.queryForList("select content_hash from images where post_id = ? for update",
+                        String.class, postId)
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Adds a reference to the blob of equal bytes if there is one, otherwise streams the image
+     * into a new blob. The image is read a second time for that, so it is never held on the heap.
+     */
+    private void storeBlob(Image image, String hash) {
+        if (blobRepository.acquire(hash)) return;
+
+        try (InputStream data = image.openStream()) {
+            blobRepository.insert(hash, data, image.getSize());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static InspectingInputStream inspect(Image image) {
+        try (InspectingInputStream in = new InspectingInputStream(image.openStream(), image.getSize())) {
+            in.transferTo(OutputStream.nullOutputStream());
+            return in;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
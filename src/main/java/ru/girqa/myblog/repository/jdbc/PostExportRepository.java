@@ -0,0 +1,114 @@
+package ru.girqa.myblog.repository.jdbc;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads the whole blog through server-side cursors, so only a fetch of rows is held
+ * in memory at a time. Has to run within a transaction, otherwise the driver reads
+ * every row at once; a repeatable read one makes several passes see the same posts.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PostExportRepository {
+
+    private static final int POSTS_FETCH_SIZE = 100;
+
+    private static final int IMAGES_FETCH_SIZE = 1_000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Passes every post to the consumer in the order of ids, together with its tags,
+     * commentaries and image metadata. Likes include shards not compacted yet.
+     */
+    public void forEachPost(@NonNull Consumer<ExportedPost> consumer) {
+        stream("""
+                        select p.id, p.title, p.post_text,
+                               p.likes + coalesce((select sum(s.count) from post_like_shards s
+                                                   where s.post_id = p.id), 0) as likes,
+                               array(select t.tag_name from post_tags pt
+                                     join tags t on t.id = pt.tag_id
+                                     where pt.post_id = p.id
+                                     order by t.tag_name) as tags,
+                               array(select c.commentary_text from commentaries c
+                                     where c.post_id = p.id
+                                     order by c.id) as commentaries,
+                               i.image_name, i.content_hash
+                        from posts p
+                        left join images i on i.post_id = p.id
+                        order by p.id
+                        """,
+                POSTS_FETCH_SIZE,
+                rs -> consumer.accept(new ExportedPost(
+                        rs.getLong("id"),
+                        rs.getString("title"),
+                        rs.getString("post_text"),
+                        rs.getInt("likes"),
+                        strings(rs.getArray("tags")),
+                        strings(rs.getArray("commentaries")),
+                        rs.getString("image_name"),
+                        rs.getString("content_hash")
+                )));
+    }
+
+    /**
+     * Passes metadata of every post image to the consumer in the order of post ids
+     */
+    public void forEachImage(@NonNull Consumer<ExportedImage> consumer) {
+        stream("""
+                        select post_id, image_name, content_hash from images
+                        order by post_id
+                        """,
+                IMAGES_FETCH_SIZE,
+                rs -> consumer.accept(new ExportedImage(
+                        rs.getLong("post_id"),
+                        rs.getString("image_name"),
+                        rs.getString("content_hash")
+                )));
+    }
+
+    private void stream(String query, int fetchSize, RowCallbackHandler handler) {
+        jdbcTemplate.query(
+                con -> {
+                    PreparedStatement ps = con.prepareStatement(query);
+                    ps.setFetchSize(fetchSize);
+                    return ps;
+                },
+                handler
+        );
+    }
+
+    private static List<String> strings(Array array) throws SQLException {
+        try {
+            return List.of((String[]) array.getArray());
+        } finally {
+            array.free();
+        }
+    }
+
+    /**
+     * @param imageName   {@code null} with {@code contentHash} for a post without an image
+     * @param contentHash hash of the image blob
+     */
+    public record ExportedPost(long id, String title, String text, int likes, List<String> tags,
+                               List<String> commentaries, @Nullable String imageName, @Nullable String contentHash) {
+    }
+
+    /**
+     * @param contentHash hash of the image blob
+     */
+    public record ExportedImage(long postId, String imageName, String contentHash) {
+    }
+}
@@ -0,0 +1,232 @@
+package ru.girqa.myblog.repository.jdbc;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Repository;
+import ru.girqa.myblog.repository.memory.PostTagIndex;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Creates posts in bulk: rows are streamed by {@code COPY} into temporary staging tables
+ * and published into the blog tables by a few set-based statements. Has to run within
+ * a transaction, the staging tables are dropped when it ends.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PostImportRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final PostTagIndex postTagIndex;
+
+    /**
+     * @param bufferSize number of bytes of each staging table sent by one {@code COPY}
+     */
+    public Staging stage(int bufferSize) {
+        jdbcTemplate.execute("""
+                create temp table import_posts
+                (
+                    line       integer not null,
+                    title      text    not null,
+                    post_text  text    not null,
+                    excerpt    text    not null,
+                    tags       text[]  not null,
+                    image_key  text    not null,
+                    post_id    bigint
+                ) on commit drop;
+
+                create temp table import_images
+                (
+                    image_key    text     not null primary key,
+                    image_name   text     not null,
+                    image_size   bigint   not null,
+                    content_type text     not null,
+                    content_hash char(64) not null,
+                    image_data   bytea
+                ) on commit drop;
+                """);
+        return new Staging(
+                new CopyBuffer(jdbcTemplate,
+                        "copy import_posts(line, title, post_text, excerpt, tags, image_key) from stdin",
+                        bufferSize),
+                new CopyBuffer(jdbcTemplate,
+                        "copy import_images(image_key, image_name, image_size, content_type, content_hash, image_data) from stdin",
+                        bufferSize)
+        );
+    }
+
+    /**
+     * @return the first staged post referring to an image that was not staged
+     */
+    public Optional<MissingImage> findMissingImage() {
+        return jdbcTemplate.query("""
+                                select p.line, p.image_key from import_posts p
+                                where not exists (select 1 from import_images i where i.image_key = p.image_key)
+                                order by p.line
+                                limit 1
+                                """,
+                        (rs, n) -> new MissingImage(rs.getInt("line"), rs.getString("image_key")))
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Creates the staged posts in the order of their lines, together with their images and tags;
+     * staged images no post refers to are skipped. Blobs are created or referenced in
+     * the order of their hashes, so concurrent imports and collections do not deadlock;
+     * the posts and their bindings reach {@link PostTagIndex} after the transaction commits.
+     */
+    public PublishedPosts publish() {
+        jdbcTemplate.execute("analyze import_posts, import_images");
+        jdbcTemplate.update("""
+                update import_posts p
+                set post_id = ids.post_id
+                from (select line, nextval(pg_get_serial_sequence('posts', 'id')) as post_id
+                      from (select line from import_posts order by line) ordered) ids
+                where ids.line = p.line
+                """);
+
+        List<String> referencedHashes = jdbcTemplate.queryForList("""
+                        insert into image_blobs(content_hash, image_data, ref_count)
+                        select distinct on (i.content_hash) i.content_hash, i.image_data, r.refs
+                        from import_images i
+                        join (select i.content_hash, count(*) as refs
+                              from import_posts p
+                              join import_images i on i.image_key = p.image_key
+                              group by i.content_hash) r on r.content_hash = i.content_hash
+                        order by i.content_hash, i.image_data is null
+                        on conflict (content_hash) do update set ref_count = image_blobs.ref_count + excluded.ref_count
+                        returning content_hash
+                        """,
+                String.class);
+
+        int posts = jdbcTemplate.update("""
+                insert into posts(id, title, post_text, excerpt)
+                overriding system value
+                select post_id, title, post_text, excerpt from import_posts
+                order by post_id
+                """);
+        jdbcTemplate.update("""
+                insert into post_versions(post_id)
+                select post_id from import_posts
+                order by post_id
+                """);
+        jdbcTemplate.update(PostJdbcRepository.ADD_SEARCH_CHAMPIONS.formatted(
+                "posts p join import_posts i on i.post_id = p.id"));
+        jdbcTemplate.update("""
+                insert into images(post_id, image_name, image_size, content_type, content_hash)
+                select p.post_id, i.image_name, i.image_size, i.content_type, i.content_hash
+                from import_posts p
+                join import_images i on i.image_key = p.image_key
+                """);
+
+        jdbcTemplate.update("""
+                insert into tags(tag_name)
+                select distinct unnest(tags) from import_posts
+                order by 1
+                on conflict do nothing
+                """);
+        jdbcTemplate.update("""
+                insert into post_tags(post_id, tag_id)
+                select p.post_id, t.id
+                from import_posts p
+                cross join unnest(p.tags) as n(tag_name)
+                join tags t on t.tag_name = n.tag_name
+                """);
+
+        Map<String, Long> postsByTag = new HashMap<>();
+        postTagIndex.postsImported(loader -> jdbcTemplate.query("""
+                        select p.post_id, t.id as tag_id, t.tag_name
+                        from import_posts p
+                        left join post_tags pt on pt.post_id = p.post_id
+                        left join tags t on t.id = pt.tag_id
+                        """,
+                rs -> {
+                    long postId = rs.getLong("post_id");
+                    loader.post(postId);
+
+                    String tagName = rs.getString("tag_name");
+                    if (tagName == null) return;
+                    long tagId = rs.getLong("tag_id");
+                    loader.tag(tagId, tagName);
+                    loader.binding(postId, tagId);
+                    postsByTag.merge(tagName, 1L, Long::sum);
+                }));
+
+        return new PublishedPosts(posts, postsByTag, new HashSet<>(referencedHashes));
+    }
+
+    /**
+     * Staging tables filled in turns; rows reach the database in batches,
+     * the last one is sent by {@link #flush()}
+     */
+    public static class Staging {
+
+        private final CopyBuffer posts;
+
+        private final CopyBuffer images;
+
+        private Staging(CopyBuffer posts, CopyBuffer images) {
+            this.posts = posts;
+            this.images = images;
+        }
+
+        /**
+         * @param line     position of the post in the imported file, posts are created in this order
+         * @param imageKey key of the post image staged by {@link #image}
+         */
+        public void post(int line, @NonNull String title, @NonNull String text, @NonNull String excerpt,
+                         @NonNull List<String> tags, @NonNull String imageKey) {
+            posts.field(line)
+                    .field(title)
+                    .field(text)
+                    .field(excerpt)
+                    .field(tags)
+                    .field(imageKey)
+                    .endRow();
+        }
+
+        /**
+         * @param data bytes kept in the database, sent once for images of equal hashes,
+         *             or {@code null} if they are in the blob store
+         */
+        public void image(@NonNull String key, @NonNull String name, long size, @NonNull String contentType,
+                          @NonNull String contentHash, @Nullable byte[] data) {
+            images.field(key)
+                    .field(name)
+                    .field(size)
+                    .field(contentType)
+                    .field(contentHash)
+                    .field(data)
+                    .endRow();
+        }
+
+        public void flush() {
+            posts.flush();
+            images.flush();
+        }
+    }
+
+    /**
+     * @param line     position of the post in the imported file
+     * @param imageKey key of the image the post refers to
+     */
+    public record MissingImage(int line, String imageKey) {
+    }
+
+    /**
+     * @param posts            number of created posts
+     * @param postsByTag       number of created posts bound to each tag name
+     * @param referencedHashes hashes of the blobs the created images refer to
+     */
+    public record PublishedPosts(int posts, Map<String, Long> postsByTag, Set<String> referencedHashes) {
+    }
+}
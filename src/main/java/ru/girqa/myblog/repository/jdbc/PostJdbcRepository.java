@@ -3,41 +3,110 @@ package ru.girqa.myblog.repository.jdbc;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
+import ru.girqa.myblog.model.domain.Commentary;
+import ru.girqa.myblog.model.domain.CommentarySlice;
+import ru.girqa.myblog.model.domain.PageCursor;
 import ru.girqa.myblog.model.domain.PageRequest;
 import ru.girqa.myblog.model.domain.Tag;
+import ru.girqa.myblog.model.domain.TagExpression;
 import ru.girqa.myblog.model.domain.post.Post;
 import ru.girqa.myblog.model.domain.post.PostPreview;
 import ru.girqa.myblog.model.domain.post.PostsPage;
 import ru.girqa.myblog.repository.PostRepository;
+import ru.girqa.myblog.repository.memory.PostCountRegistry;
+import ru.girqa.myblog.repository.memory.PostTagIndex;
 
+import java.sql.Array;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.OptionalLong;
+import java.util.StringJoiner;
 
 @Slf4j
 @Repository
 @RequiredArgsConstructor
 public class PostJdbcRepository implements PostRepository {
 
+    /**
+     * Sets versions of the posts whose ids the format argument selects to the next value,
+     * a post inserted without a version row gets one
+     */
+    static final String BUMP_VERSIONS = """
+            insert into post_versions(post_id)
+            %s
+            on conflict (post_id) do update set version = excluded.version""";
+
+    /**
+     * Tag ids and names of the post aliased by the format argument
+     */
+    private static final String TAGS_OF_POST = """
+            select array_agg(t.id order by t.id) tag_ids, array_agg(t.tag_name order by t.id) tag_names
+            from post_tags pt
+            join tags t on t.id = pt.tag_id
+            where pt.post_id = %s.id""";
+
+    /**
+     * Ids and texts of the first commentaries of the post aliased by the format argument,
+     * ordered by id; the number of commentaries is the statement argument
+     */
+    private static final String COMMENTARIES_OF_POST = """
+            select array_agg(c.id order by c.id) commentary_ids,
+                   array_agg(c.commentary_text order by c.id) commentary_texts
+            from (select id, commentary_text from commentaries
+                  where post_id = %s.id
+                  order by id
+                  limit ?) c""";
+
+    /**
+     * Number of the most relevant posts search ranks for a word met in more posts than that,
+     * less relevant posts of such a word are not shown
+     */
+    static final int SEARCH_CHAMPIONS = 500;
+
+    /**
+     * Adds the posts the format argument selects, aliased {@code p}, to the search champions
+     * of their words that have them
+     */
+    static final String ADD_SEARCH_CHAMPIONS = """
+            insert into post_search_champions(lexeme, post_id, term_rank)
+            select u.lexeme, p.id, ts_rank(p.search_vector, plainto_tsquery('simple', u.lexeme))
+            from %s
+            cross join unnest(p.search_vector) u
+            where exists (select 1 from post_search_champions c where c.lexeme = u.lexeme)""";
+
     private final JdbcTemplate jdbcTemplate;
 
+    private final PostCountRegistry postCountRegistry;
+
+    private final PostTagIndex postTagIndex;
+
     @Override
     public Post save(@NonNull Post post) {
         Long postId = jdbcTemplate.queryForObject(
                 """
-                        insert into posts(title, likes, post_text) values (?, ?, ?)
-                        returning id
-                        """,
+                        with inserted as (
+                            insert into posts(title, likes, post_text, excerpt) values (?, ?, ?, ?)
+                            returning id, search_vector
+                        ), versioned as (
+                            %s
+                        ), championed as (
+                            %s
+                        )
+                        select id from inserted
+                        """.formatted(
+                        BUMP_VERSIONS.formatted("select id from inserted"),
+                        ADD_SEARCH_CHAMPIONS.formatted("inserted p")),
                 Long.class,
-                post.getTitle(), post.getLikes(), post.getText()
+                post.getTitle(), post.getLikes(), post.getText(), post.getExcerpt()
         );
 
         if (postId == null) {
@@ -54,11 +123,15 @@ public class PostJdbcRepository implements PostRepository {
     public void update(@NonNull Post post) {
         jdbcTemplate.update(
                 """
-                update posts
-                set title = ?, post_text = ?
-                where id = ?
-                """,
-                post.getTitle(), post.getText(), post.getId()
+                with updated as (
+                    update posts
+                    set title = ?, post_text = ?, excerpt = ?
+                    where id = ?
+                    returning id
+                )
+                %s
+                """.formatted(BUMP_VERSIONS.formatted("select id from updated")),
+                post.getTitle(), post.getText(), post.getExcerpt(), post.getId()
         );
     }
 
@@ -66,7 +139,11 @@ public class PostJdbcRepository implements PostRepository {
     public Optional<Post> findById(@NonNull Long id) {
         Optional<Post> opPost = jdbcTemplate.query(
                         """
-                                select p.id, p.title, p.post_text, p.likes from posts p
+                                select p.id, p.title, p.post_text, p.excerpt, p.likes, v.version,
+                                       i.content_hash image_hash
+                                from posts p
+                                left join post_versions v on v.post_id = p.id
+                                left join images i on i.post_id = p.id
                                 where p.id = ?
                                 """,
                         (rs, rowNum) -> extractPost(rs),
@@ -80,156 +157,420 @@ public class PostJdbcRepository implements PostRepository {
         return Optional.of(post);
     }
 
+    /**
+     * Tags and commentaries are aggregated into arrays next to the post row,
+     * so the whole page is read in a single round trip. One commentary more than asked
+     * is read to tell whether the post has more of them.
+     */
+    @Override
+    public Optional<Post> findAggregateById(@NonNull Long id, int commentaries) {
+        return jdbcTemplate.query("""
+                                select p.id, p.title, p.post_text, p.excerpt, p.likes, v.version, p.comments_count,
+                                       i.content_hash image_hash,
+                                       tg.tag_ids, tg.tag_names, cm.commentary_ids, cm.commentary_texts
+                                from posts p
+                                left join post_versions v on v.post_id = p.id
+                                left join images i on i.post_id = p.id
+                                left join lateral (%s) tg on true
+                                left join lateral (%s) cm on true
+                                where p.id = ?
+                                """.formatted(TAGS_OF_POST.formatted("p"), COMMENTARIES_OF_POST.formatted("p")),
+                        (rs, rowNum) -> {
+                            Post post = extractPost(rs);
+                            post.setTags(extractTags(rs));
+                            post.setCommentsCount(rs.getLong("comments_count"));
+                            CommentarySlice slice = CommentarySlice.of(extractCommentaries(rs, post.getId()), commentaries);
+                            post.setCommentaries(slice.commentaries());
+                            post.setCommentariesCursor(slice.nextAfter());
+                            return post;
+                        },
+                        commentaries + 1, id
+                ).stream()
+                .findFirst();
+    }
+
+    @Override
+    public Optional<Long> findVersion(@NonNull Long id) {
+        return jdbcTemplate.queryForList("select version from post_versions where post_id = ?", Long.class, id)
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Hashes the greatest version from the index and the version of the last deletion together
+     * with the snapshot of running transactions. Versions are drawn before their transactions
+     * commit, so a change may commit below a version already seen and leave the greatest one as is;
+     * the snapshot changes whenever a writing transaction starts or ends, so such a commit still
+     * changes the feed version.
+     */
+    @Override
+    public long findFeedVersion() {
+        Long version = jdbcTemplate.queryForObject("""
+                select hashtextextended(
+                        greatest((select max(version) from post_versions), (select version from posts_deletion_version))
+                            || '/' || pg_current_snapshot(),
+                        0)
+                """, Long.class);
+        return version == null ? 0 : version;
+    }
+
     @Override
     public PostsPage findAllPaged(@NonNull PageRequest page) {
-        Optional<Integer> totalPages;
-        List<PostPreview> posts;
-        if (Objects.isNull(page.getTargetTag()) || page.getTargetTag().isBlank()) {
-            totalPages = jdbcTemplate.query(
-                            "select ceil(count(*) / ?::float) total_pages from posts",
-                            (rs, rowNum) -> rs.getInt("total_pages"),
-                            page.getPosts())
-                    .stream().findFirst();
-            posts = jdbcTemplate.query(
-                    """
-                            select id, title, likes, post_text from posts
-                            limit ?
-                            offset ?
-                            """,
-                    (rs, rowNum) -> extractPreview(rs),
-                    page.getPosts(), (page.getPage() - 1) * page.getPosts()
-            );
+        TagExpression tags = page.getTags();
+        boolean search = page.getQuery() != null;
+        FeedSlice slice;
+        if (search) {
+            slice = searchSlice(page);
+        } else if (tags == null) {
+            slice = findSlice(page);
         } else {
-            totalPages = jdbcTemplate.query(
-                            """
-                                    select ceil(count(*) / ?::float) total_pages from posts p
-                                    left join post_tags pt on pt.post_id = p.id
-                                    left join tags t on t.id = pt.tag_id
-                                    where t.tag_name = ?
-                                    """,
-                            (rs, rowNum) -> rs.getInt("total_pages"),
-                            page.getPosts(),
-                            page.getTargetTag())
-                    .stream().findFirst();
-            posts = jdbcTemplate.query(
-                    """
-                            select p.id, p.title, p.likes, p.post_text from posts p
-                            left join post_tags pt on pt.post_id = p.id
-                            left join tags t on t.id = pt.tag_id
-                            where t.tag_name = ?
-                            group by p.id
-                            limit ?
-                            offset ?
-                            """,
-                    (rs, rowNum) -> extractPreview(rs),
-                    page.getTargetTag(), page.getPosts(), (page.getPage() - 1) * page.getPosts()
-            );
+            slice = postTagIndex.evaluate(tags)
+                    .map(matching -> findSlice(page, matching))
+                    .orElseGet(() -> findSlice(page));
         }
 
-        fillCommentsCounts(posts);
-        fillTags(posts);
+        List<PostPreview> posts = slice.posts();
+        PageCursor cursor = page.getCursor();
+        boolean backward = cursor != null && cursor.getDirection() == PageCursor.Direction.BEFORE;
+
+        // search results are ordered by rank, so they are paged by offset only
+        PageCursor nextCursor = null;
+        PageCursor previousCursor = null;
+        if (!search && !posts.isEmpty()) {
+            boolean hasNext = backward || slice.hasMore();
+            boolean hasPrevious = backward ? slice.hasMore() : cursor != null || page.getPage() > 1;
+            if (hasNext) nextCursor = PageCursor.after(posts.getLast().getId());
+            if (hasPrevious) previousCursor = PageCursor.before(posts.getFirst().getId());
+        }
 
         return PostsPage.builder()
                 .page(page.getPage())
                 .postsPerPage(page.getPosts())
-                .targetTag(page.getTargetTag())
+                .tags(tags)
+                .query(page.getQuery())
                 .posts(posts)
-                .totalPages(totalPages.orElse(0))
+                .totalPages((int) ((slice.totalPosts() + page.getPosts() - 1) / page.getPosts()))
+                .totalPagesCapped(slice.totalCapped())
+                .nextCursor(nextCursor)
+                .previousCursor(previousCursor)
                 .build();
     }
 
-    @Override
-    public Integer incrementLikes(@NonNull Long id) {
-        jdbcTemplate.update("""
-                update posts
-                set likes = likes + 1
-                where id = ?
-                """, id);
-        return jdbcTemplate.queryForObject("""
-                select likes from posts
-                where id = ?
-                """, Integer.class, id);
-    }
+    /**
+     * Selects the page by SQL, used for the unfiltered feed and until {@link PostTagIndex} is loaded
+     */
+    private FeedSlice findSlice(PageRequest page) {
+        PageCursor cursor = page.getCursor();
+        boolean backward = cursor != null && cursor.getDirection() == PageCursor.Direction.BEFORE;
+        String order = backward ? "desc" : "asc";
 
-    @Override
-    public void deleteById(@NonNull Long id) {
-        jdbcTemplate.update("""
-                delete from posts
-                where id = ?
-                """, id);
-    }
+        List<Object> filterArgs = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+        if (page.getTags() != null) conditions.add(tagPredicate(page.getTags(), filterArgs));
+        String filter = conditions.isEmpty() ? "" : "where " + conditions.getFirst();
 
-    private void fillCommentsCounts(List<PostPreview> posts) {
-        if (posts.isEmpty()) return;
+        List<Object> args = new ArrayList<>(filterArgs);
+        if (cursor != null) {
+            conditions.add(backward ? "p.id < ?" : "p.id > ?");
+            args.add(cursor.getPostId());
+        }
+        String where = conditions.isEmpty() ? "" : "where " + String.join(" and ", conditions);
+        // one extra row tells whether there is anything beyond the requested page
+        args.add(page.getPosts() + 1);
+        String offset = "";
+        if (cursor == null) {
+            offset = "offset ?";
+            args.add((page.getPage() - 1) * page.getPosts());
+        }
 
-        record PostComments(Long postId, Long comments) {
+        // the registry answers the total without a scan, counting is only a fallback until it is loaded
+        OptionalLong knownTotal = switch (page.getTags()) {
+            case null -> postCountRegistry.count(null);
+            case TagExpression.HasTag hasTag -> postCountRegistry.count(hasTag.name());
+            default -> OptionalLong.empty();
+        };
+        String total;
+        if (knownTotal.isPresent()) {
+            total = "select ?::bigint total_posts";
+            args.add(knownTotal.getAsLong());
+        } else {
+            total = "select count(*) total_posts from posts p " + filter;
+            args.addAll(filterArgs);
         }
 
-        String inSql = String.join(", ", Collections.nCopies(posts.size(), "?"));
+        // total, page rows and tags are fetched in a single round trip;
+        // the total row is always present, so an empty page still reports the total
         String query = """
-                select p.id, count(*) as comments from posts p
-                left join commentaries c on p.id = c.post_id
-                where p.id in (%s) and c.id is not null
-                group by p.id
-                """.formatted(inSql);
-        Map<Long, Long> comments = jdbcTemplate.query(
-                        query,
-                        (rs, rowNum) -> new PostComments(
-                                rs.getLong("id"),
-                                rs.getLong("comments")
-                        ),
-                        posts.stream()
-                                .map(PostPreview::getId)
-                                .toArray()
-                ).stream()
-                .collect(Collectors.toMap(
-                        PostComments::postId,
-                        PostComments::comments
-                ));
-
+                with page as (
+                    select p.id, p.title, p.likes, p.excerpt, p.comments_count from posts p
+                    %1$s
+                    order by p.id %2$s
+                    limit ?
+                    %3$s
+                )
+                select total.total_posts, false total_capped, pg.id, pg.title, pg.likes, pg.excerpt,
+                       pg.comments_count, tg.tag_ids, tg.tag_names, i.content_hash image_hash
+                from (%4$s) total
+                left join page pg on true
+                left join lateral (%5$s) tg on true
+                left join images i on i.post_id = pg.id
+                order by pg.id %2$s
+                """.formatted(where, order, offset, total, TAGS_OF_POST.formatted("pg"));
 
-        for (PostPreview post : posts) {
-            Long postComments = comments.getOrDefault(post.getId(), 0L);
-            post.setComments(postComments);
+        FeedRows rows = jdbcTemplate.query(query, this::extractFeedRows, args.toArray());
+        if (rows == null) {
+            log.error("Can not load posts page {}. Database returned no rows.", page);
+            throw new IllegalStateException("Feed query returned no rows");
         }
+
+        List<PostPreview> posts = rows.previews();
+        boolean hasMore = posts.size() > page.getPosts();
+        if (hasMore) posts.removeLast();
+        if (backward) Collections.reverse(posts);
+        return new FeedSlice(rows.totalPosts(), rows.totalCapped(), posts, hasMore);
     }
 
-    private void fillTags(List<PostPreview> posts) {
-        if (posts.isEmpty()) return;
+    /**
+     * Selects the page from ids of matching posts by rank, then fetches it by primary key
+     */
+    private FeedSlice findSlice(PageRequest page, Roaring64NavigableMap matching) {
+        long total = matching.getLongCardinality();
+        PageCursor cursor = page.getCursor();
+
+        long from;
+        long to;
+        boolean hasMore;
+        if (cursor != null && cursor.getDirection() == PageCursor.Direction.BEFORE) {
+            to = matching.rankLong(cursor.getPostId() - 1);
+            from = Math.max(0, to - page.getPosts());
+            hasMore = from > 0;
+        } else {
+            from = cursor == null
+                    ? (long) (page.getPage() - 1) * page.getPosts()
+                    : matching.rankLong(cursor.getPostId());
+            to = Math.min(total, from + page.getPosts());
+            hasMore = to < total;
+        }
+        if (from >= to) return new FeedSlice(total, false, new ArrayList<>(), false);
 
-        record PostTag(Long postId, Tag tag) {
+        Long[] ids = new Long[(int) (to - from)];
+        for (int i = 0; i < ids.length; ++i) {
+            ids[i] = matching.select(from + i);
         }
 
-        String inSql = String.join(", ", Collections.nCopies(posts.size(), "?"));
+        List<PostPreview> posts = jdbcTemplate.query("""
+                        select p.id, p.title, p.likes, p.excerpt, p.comments_count, tg.tag_ids, tg.tag_names,
+                               i.content_hash image_hash
+                        from posts p
+                        left join lateral (%s) tg on true
+                        left join images i on i.post_id = p.id
+                        where p.id = any(?)
+                        order by p.id
+                        """.formatted(TAGS_OF_POST.formatted("p")),
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids)),
+                (rs, rowNum) -> extractFeedPreview(rs)
+        );
+        return new FeedSlice(total, false, posts, hasMore);
+    }
+
+    /**
+     * Selects the page of posts matching the full-text query, most relevant first.
+     * Every post of a word is ranked only while the word is met in at most {@link #SEARCH_CHAMPIONS}
+     * posts; of a more frequent word, only its search champions are, so a query of a common word
+     * costs no more than one of a rare word and its total is reported as capped.
+     */
+    private FeedSlice searchSlice(PageRequest page) {
+        List<Object> args = new ArrayList<>();
+        args.add(page.getQuery());
+        args.add(page.getQuery());
+        args.add(SEARCH_CHAMPIONS);
+        String filter = page.getTags() == null ? "" : "and " + tagPredicate(page.getTags(), args);
+        args.add(page.getPosts());
+        args.add((page.getPage() - 1) * page.getPosts());
+
+        // candidates are the posts of every word of the query, found by the search index for a word
+        // without champions and by its champions otherwise; the candidates matching the query are ranked,
+        // once for a post found by several words. Candidates are materialized with their search vectors,
+        // so that no plan (a generic one included) can match the query by the search index instead,
+        // which reads every matching post
         String query = """
-                select p.id post_id, t.tag_name tag_name, t.id tag_id from posts p
-                left join post_tags pt on pt.post_id = p.id
-                left join tags t on t.id = pt.tag_id
-                where p.id in (%s)
-                """.formatted(inSql);
-        Map<Long, List<Tag>> tags = jdbcTemplate.query(
-                        query,
-                        (rs, rowNum) -> new PostTag(
-                                rs.getLong("post_id"),
-                                Tag.builder()
-                                        .id(rs.getLong("tag_id"))
-                                        .name(rs.getString("tag_name"))
-                                        .build()
-                        ),
-                        posts.stream()
-                                .map(PostPreview::getId)
-                                .toArray()
-                ).stream()
-                .collect(Collectors.groupingBy(
-                        PostTag::postId,
-                        Collectors.mapping(PostTag::tag, Collectors.toList())
-                ));
+                with query as (
+                    select websearch_to_tsquery('russian', ?) query
+                ),
+                words as (
+                    select w.lexeme, exists (select 1 from post_search_champions c where c.lexeme = w.lexeme) championed
+                    from unnest(tsvector_to_array(to_tsvector('russian', ?))) w(lexeme)
+                ),
+                candidates as materialized (
+                    select p.id, p.search_vector
+                    from words w
+                    cross join lateral (select p.id, p.search_vector from post_search_champions c
+                                        join posts p on p.id = c.post_id
+                                        where c.lexeme = w.lexeme
+                                        order by c.term_rank desc, c.post_id desc
+                                        limit ?) p
+                    where w.championed
+                    union all
+                    select p.id, p.search_vector
+                    from words w
+                    join posts p on p.search_vector @@ plainto_tsquery('simple', w.lexeme)
+                    where not w.championed
+                ),
+                matches as (
+                    select distinct p.id, ts_rank(p.search_vector, q.query) search_rank
+                    from candidates p
+                    cross join query q
+                    where p.search_vector @@ q.query
+                    %1$s
+                ),
+                page as (
+                    select m.id, m.search_rank from matches m
+                    order by m.search_rank desc, m.id desc
+                    limit ?
+                    offset ?
+                )
+                select total.total_posts, total.total_capped, p.id, p.title, p.likes, p.excerpt,
+                       p.comments_count, tg.tag_ids, tg.tag_names, i.content_hash image_hash
+                from (select count(*) total_posts,
+                             exists (select 1 from words w where w.championed) total_capped
+                      from matches) total
+                left join page pg on true
+                left join posts p on p.id = pg.id
+                left join lateral (%2$s) tg on true
+                left join images i on i.post_id = p.id
+                order by pg.search_rank desc, pg.id desc
+                """.formatted(filter, TAGS_OF_POST.formatted("p"));
 
+        FeedRows rows = jdbcTemplate.query(query, this::extractFeedRows, args.toArray());
+        if (rows == null) {
+            log.error("Can not search posts page {}. Database returned no rows.", page);
+            throw new IllegalStateException("Search query returned no rows");
+        }
+        return new FeedSlice(rows.totalPosts(), rows.totalCapped(), rows.previews(), false);
+    }
+
+    /**
+     * Renders the expression as a condition on posts aliased {@code p}, adding its arguments in order
+     */
+    private static String tagPredicate(TagExpression expression, List<Object> args) {
+        return switch (expression) {
+            case TagExpression.HasTag hasTag -> {
+                args.add(hasTag.name());
+                yield """
+                        exists (select 1 from post_tags pt join tags t on t.id = pt.tag_id \
+                        where pt.post_id = p.id and t.tag_name = ?)""";
+            }
+            case TagExpression.Not not -> "not " + tagPredicate(not.operand(), args);
+            case TagExpression.And and -> joinPredicates(and.operands(), " and ", args);
+            case TagExpression.Or or -> joinPredicates(or.operands(), " or ", args);
+        };
+    }
 
-        for (PostPreview post : posts) {
-            List<Tag> postTags = tags.getOrDefault(post.getId(), new ArrayList<>());
-            post.setTags(postTags);
+    private static String joinPredicates(List<TagExpression> operands, String delimiter, List<Object> args) {
+        StringJoiner joiner = new StringJoiner(delimiter, "(", ")");
+        for (TagExpression operand : operands) {
+            joiner.add(tagPredicate(operand, args));
         }
+        return joiner.toString();
+    }
+
+    @Override
+    public Integer incrementLikes(@NonNull Long id) {
+        jdbcTemplate.update("""
+                with liked as (
+                    update posts
+                    set likes = likes + 1
+                    where id = ?
+                    returning id
+                )
+                %s
+                """.formatted(BUMP_VERSIONS.formatted("select id from liked")), id);
+        return jdbcTemplate.queryForObject("""
+                select likes from posts
+                where id = ?
+                """, Integer.class, id);
+    }
+
+    @Override
+    public Optional<Integer> findLikes(@NonNull Long id) {
+        return jdbcTemplate.queryForList("select likes from posts where id = ?", Integer.class, id)
+                .stream()
+                .findFirst();
+    }
+
+    @Override
+    public Map<Long, Integer> addLikes(@NonNull Map<Long, Long> deltas) {
+        if (deltas.isEmpty()) return Map.of();
+
+        List<Long> ids = new ArrayList<>(deltas.keySet());
+        Object[] counts = ids.stream().map(deltas::get).toArray();
+        Map<Long, Integer> likes = new HashMap<>();
+        jdbcTemplate.query("""
+                        with liked as (
+                            update posts p
+                            set likes = p.likes + d.delta
+                            from unnest(?::bigint[], ?::bigint[]) as d(id, delta)
+                            where p.id = d.id
+                            returning p.id, p.likes
+                        ), versioned as (
+                            %s
+                        )
+                        select id, likes from liked
+                        """.formatted(BUMP_VERSIONS.formatted("select id from liked")),
+                ps -> {
+                    ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids.toArray()));
+                    ps.setArray(2, ps.getConnection().createArrayOf("bigint", counts));
+                },
+                rs -> {
+                    likes.put(rs.getLong("id"), rs.getInt("likes"));
+                });
+        return likes;
+    }
+
+    @Override
+    public boolean deleteById(@NonNull Long id) {
+        return jdbcTemplate.update("""
+                with deleted as (
+                    delete from posts
+                    where id = ?
+                    returning id
+                )
+                update posts_deletion_version
+                set version = nextval('posts_version_seq')
+                where exists (select 1 from deleted)
+                """, id) > 0;
+    }
+
+    @Override
+    public long countAll() {
+        Long total = jdbcTemplate.queryForObject("select count(*) from posts", Long.class);
+        return total == null ? 0 : total;
+    }
+
+    /**
+     * Words met in more than {@link #SEARCH_CHAMPIONS} posts get that many champions.
+     * Search keeps reading the previous champions until the transaction commits,
+     * new posts inserted meanwhile add themselves to them and are kept
+     */
+    @Override
+    public int rebuildSearchChampions() {
+        jdbcTemplate.update("delete from post_search_champions");
+        return jdbcTemplate.update("""
+                        insert into post_search_champions(lexeme, post_id, term_rank)
+                        select r.lexeme, r.post_id, r.term_rank
+                        from (select w.lexeme, w.post_id, w.term_rank,
+                                     row_number() over (partition by w.lexeme
+                                                        order by w.term_rank desc, w.post_id desc) place
+                              from (select u.lexeme, p.id post_id,
+                                           ts_rank(p.search_vector, plainto_tsquery('simple', u.lexeme)) term_rank
+                                    from posts p
+                                    cross join unnest(p.search_vector) u
+                                    where u.lexeme in (select s.word
+                                                       from ts_stat('select search_vector from posts') s
+                                                       where s.ndoc > ?)) w) r
+                        where r.place <= ?
+                        """,
+                SEARCH_CHAMPIONS, SEARCH_CHAMPIONS);
     }
 
     private static Post extractPost(ResultSet rs) throws SQLException {
@@ -237,16 +578,90 @@ public class PostJdbcRepository implements PostRepository {
                 .id(rs.getLong("id"))
                 .title(rs.getString("title"))
                 .text(rs.getString("post_text"))
+                .excerpt(rs.getString("excerpt"))
                 .likes(rs.getInt("likes"))
+                .imageHash(rs.getString("image_hash"))
+                .version(rs.getLong("version"))
                 .build();
     }
 
+    private record FeedRows(long totalPosts, boolean totalCapped, List<PostPreview> previews) {
+    }
+
+    /**
+     * @param totalCapped whether search stopped counting matches at {@code totalPosts}
+     * @param posts       page posts in ascending id order, or by relevance for search
+     * @param hasMore     whether there are posts beyond the page in the paging direction
+     */
+    private record FeedSlice(long totalPosts, boolean totalCapped, List<PostPreview> posts, boolean hasMore) {
+    }
+
+    private FeedRows extractFeedRows(ResultSet rs) throws SQLException {
+        long totalPosts = 0;
+        boolean totalCapped = false;
+        List<PostPreview> previews = new ArrayList<>();
+        boolean hasRows = false;
+        while (rs.next()) {
+            hasRows = true;
+            totalPosts = rs.getLong("total_posts");
+            totalCapped = rs.getBoolean("total_capped");
+            rs.getLong("id");
+            if (rs.wasNull()) continue;
+
+            previews.add(extractFeedPreview(rs));
+        }
+        return hasRows ? new FeedRows(totalPosts, totalCapped, previews) : null;
+    }
+
+    private PostPreview extractFeedPreview(ResultSet rs) throws SQLException {
+        PostPreview preview = extractPreview(rs);
+        preview.setComments(rs.getLong("comments_count"));
+        preview.setTags(extractTags(rs));
+        return preview;
+    }
+
+    private static List<Tag> extractTags(ResultSet rs) throws SQLException {
+        Array ids = rs.getArray("tag_ids");
+        Array names = rs.getArray("tag_names");
+        if (ids == null || names == null) return new ArrayList<>();
+
+        Long[] tagIds = (Long[]) ids.getArray();
+        String[] tagNames = (String[]) names.getArray();
+        List<Tag> tags = new ArrayList<>(tagIds.length);
+        for (int i = 0; i < tagIds.length; ++i) {
+            tags.add(Tag.builder()
+                    .id(tagIds[i])
+                    .name(tagNames[i])
+                    .build());
+        }
+        return tags;
+    }
+
+    private static List<Commentary> extractCommentaries(ResultSet rs, Long postId) throws SQLException {
+        Array ids = rs.getArray("commentary_ids");
+        Array texts = rs.getArray("commentary_texts");
+        if (ids == null || texts == null) return new ArrayList<>();
+
+        Long[] commentaryIds = (Long[]) ids.getArray();
+        String[] commentaryTexts = (String[]) texts.getArray();
+        List<Commentary> commentaries = new ArrayList<>(commentaryIds.length);
+        for (int i = 0; i < commentaryIds.length; ++i) {
+            commentaries.add(Commentary.builder()
+                    .id(commentaryIds[i])
+                    .postId(postId)
+                    .text(commentaryTexts[i])
+                    .build());
+        }
+        return commentaries;
+    }
+
     protected PostPreview extractPreview(ResultSet rs) throws SQLException {
         return PostPreview.builder()
                 .id(rs.getLong("id"))
                 .title(rs.getString("title"))
                 .likes(rs.getInt("likes"))
-                .text(rs.getString("post_text"))
+                .excerpt(rs.getString("excerpt"))
+                .imageHash(rs.getString("image_hash"))
                 .build();
     }
 }
@@ -0,0 +1,77 @@
+package ru.girqa.myblog.repository.jdbc;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Likes kept in {@code post_like_shards} until {@link #compact()} folds them into {@code posts.likes}
+ */
+@Repository
+@RequiredArgsConstructor
+public class PostLikeShardRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Adds a like to one shard of the post with a single statement. The post row is only
+     * read by the existence check, so likes of different shards never wait for each other.
+     *
+     * @return number of likes in the shard or empty if there is no such post
+     */
+    public Optional<Integer> increment(@NonNull Long postId, int shard) {
+        return jdbcTemplate.queryForList("""
+                                insert into post_like_shards(post_id, shard, count)
+                                select p.id, ?, 1 from posts p
+                                where p.id = ?
+                                on conflict (post_id, shard) do update set count = post_like_shards.count + 1
+                                returning count
+                                """,
+                        Integer.class, shard, postId)
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * @return likes of the post including not compacted shards or empty if there is no such post
+     */
+    public Optional<Integer> countLikes(@NonNull Long postId) {
+        return jdbcTemplate.queryForList("""
+                                select p.likes + coalesce((select sum(s.count) from post_like_shards s
+                                                           where s.post_id = p.id), 0)
+                                from posts p
+                                where p.id = ?
+                                """,
+                        Integer.class, postId)
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Moves likes of all shards into {@code posts.likes} with one statement. Likes arriving
+     * meanwhile wait for the removed shard rows and then start new ones.
+     *
+     * @return ids of posts whose likes were folded
+     */
+    public List<Long> compact() {
+        return jdbcTemplate.queryForList("""
+                with folded as (
+                    delete from post_like_shards
+                    returning post_id, count
+                ), compacted as (
+                    update posts p
+                    set likes = p.likes + f.likes
+                    from (select post_id, sum(count) as likes from folded group by post_id) f
+                    where p.id = f.post_id
+                    returning p.id
+                ), versioned as (
+                    %s
+                )
+                select id from compacted
+                """.formatted(PostJdbcRepository.BUMP_VERSIONS.formatted("select id from compacted")), Long.class);
+    }
+}
@@ -3,20 +3,27 @@ package ru.girqa.myblog.repository.jdbc;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
 import ru.girqa.myblog.model.domain.Tag;
 import ru.girqa.myblog.repository.TagRepository;
+import ru.girqa.myblog.repository.memory.PostTagIndex;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Repository
 @RequiredArgsConstructor
 public class TagJdbcRepository implements TagRepository {
 
+    private static final int INDEX_FETCH_SIZE = 10_000;
+
     private final JdbcTemplate jdbcTemplate;
 
     @Override
@@ -79,6 +86,43 @@ public class TagJdbcRepository implements TagRepository {
         );
     }
 
+    @Override
+    public Map<String, Long> countPostsByTagName() {
+        Map<String, Long> counts = new HashMap<>();
+        jdbcTemplate.query("""
+                        select t.tag_name, count(*) posts from post_tags pt
+                        join tags t on t.id = pt.tag_id
+                        group by t.tag_name
+                        """,
+                rs -> {
+                    counts.put(rs.getString("tag_name"), rs.getLong("posts"));
+                }
+        );
+        return counts;
+    }
+
+    @Override
+    public void loadIndex(@NonNull PostTagIndex.Loader loader) {
+        stream("select id from posts order by id",
+                rs -> loader.post(rs.getLong("id")));
+        stream("select id, tag_name from tags",
+                rs -> loader.tag(rs.getLong("id"), rs.getString("tag_name")));
+        // ordered by the (tag_id, post_id) index, so each bitmap is filled in ascending order
+        stream("select tag_id, post_id from post_tags order by tag_id, post_id",
+                rs -> loader.binding(rs.getLong("post_id"), rs.getLong("tag_id")));
+    }
+
+    private void stream(String query, RowCallbackHandler handler) {
+        jdbcTemplate.query(
+                con -> {
+                    PreparedStatement ps = con.prepareStatement(query);
+                    ps.setFetchSize(INDEX_FETCH_SIZE);
+                    return ps;
+                },
+                handler
+        );
+    }
+
     protected List<Tag> findByNames(List<String> names) {
         if (names.isEmpty()) return new ArrayList<>();
 
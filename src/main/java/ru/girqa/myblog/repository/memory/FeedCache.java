@@ -0,0 +1,111 @@
+package ru.girqa.myblog.repository.memory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.girqa.myblog.config.FeedCacheProperties;
+import ru.girqa.myblog.model.domain.PageRequest;
+import ru.girqa.myblog.model.domain.TagExpression;
+import ru.girqa.myblog.model.domain.post.PostsPage;
+import ru.girqa.myblog.util.SingleFlight;
+import ru.girqa.myblog.util.TransactionHooks;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Feed pages by their {@link PageRequest}; search results are not cached. A created, changed or
+ * deleted post drops only the pages of the plain feed and of tag filters the post passes before
+ * or after the change. Changed likes and comment counts drop nothing, pages simply expire after
+ * {@link FeedCacheProperties#staleAfter()}. Concurrent requests of one page, searches included,
+ * share a single load through {@link SingleFlight}. Cached pages are shared and must not be modified.
+ */
+@Component
+public class FeedCache {
+
+    private final Cache<PageRequest, PostsPage> cache;
+
+    private final SingleFlight<PageRequest, PostsPage> loads;
+
+    /**
+     * Incremented by every invalidation, so a page loaded while a post was changing is not kept
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    @Autowired
+    public FeedCache(@NonNull FeedCacheProperties properties, @NonNull MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, Ticker.systemTicker());
+    }
+
+    FeedCache(FeedCacheProperties properties, MeterRegistry meterRegistry, Ticker ticker) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.maxPages())
+                .expireAfterWrite(properties.staleAfter())
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        this.loads = new SingleFlight<>("feed", meterRegistry);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "feed");
+    }
+
+    public PostsPage get(@NonNull PageRequest request, @NonNull Function<PageRequest, PostsPage> loader) {
+        if (request.getQuery() != null) return loads.load(request, () -> loader.apply(request));
+
+        PostsPage cached = cache.getIfPresent(request);
+        if (cached != null) return cached;
+
+        return loads.load(request, () -> {
+            long loadedAt = generation.get();
+            PostsPage page = loader.apply(request);
+            cache.put(request, page);
+            if (generation.get() != loadedAt) {
+                cache.asMap().remove(request, page);
+            }
+            return page;
+        });
+    }
+
+    public void postCreated(@NonNull Collection<String> tags) {
+        TransactionHooks.afterCommit(() -> invalidate(List.of(tags)));
+    }
+
+    /**
+     * Posts created in bulk may pass any tag filter, so every page is dropped
+     */
+    public void postsCreated() {
+        TransactionHooks.afterCommit(() -> {
+            generation.incrementAndGet();
+            cache.invalidateAll();
+            loads.forgetIf(request -> true);
+        });
+    }
+
+    public void postChanged(@NonNull Collection<String> oldTags, @NonNull Collection<String> newTags) {
+        TransactionHooks.afterCommit(() -> invalidate(List.of(oldTags, newTags)));
+    }
+
+    public void postDeleted(@NonNull Collection<String> tags) {
+        TransactionHooks.afterCommit(() -> invalidate(List.of(tags)));
+    }
+
+    /**
+     * @param tagSets tag names the post had before and after the change
+     */
+    private void invalidate(List<Collection<String>> tagSets) {
+        generation.incrementAndGet();
+        cache.asMap().keySet().removeIf(request -> isAffected(request, tagSets));
+        loads.forgetIf(request -> request.getQuery() != null || isAffected(request, tagSets));
+    }
+
+    private static boolean isAffected(PageRequest request, List<Collection<String>> tagSets) {
+        TagExpression tags = request.getTags();
+        return tags == null || tagSets.stream().anyMatch(tags::matches);
+    }
+}
@@ -0,0 +1,126 @@
+package ru.girqa.myblog.repository.memory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.NonNull;
+import org.springframework.stereotype.Component;
+import ru.girqa.myblog.config.PostCacheProperties;
+import ru.girqa.myblog.model.domain.Commentary;
+import ru.girqa.myblog.model.domain.Tag;
+import ru.girqa.myblog.model.domain.post.Post;
+import ru.girqa.myblog.util.SingleFlight;
+import ru.girqa.myblog.util.TransactionHooks;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Posts with their tags and commentaries, as shown on the post page. Bounded by the estimated
+ * memory of the posts; Caffeine admits and evicts them by frequency (W-TinyLFU), so a scan over
+ * rarely read posts does not push out the popular ones. Concurrent misses of one post share a single
+ * load through {@link SingleFlight}. Cached posts are shared and must not be modified.
+ */
+@Component
+public class PostCache {
+
+    /**
+     * Rough size of an object header with a few references and boxed fields
+     */
+    private static final int OBJECT_OVERHEAD = 64;
+
+    private final Cache<Long, Post> cache;
+
+    private final SingleFlight<Long, Post> loads;
+
+    /**
+     * Incremented by every invalidation, so a post loaded while it was changing is not kept
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    public PostCache(@NonNull PostCacheProperties properties, @NonNull MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.maxSize().toBytes())
+                .weigher((Long id, Post post) -> estimateSize(post))
+                .recordStats()
+                .build();
+
+        this.loads = new SingleFlight<>("posts", meterRegistry);
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "posts");
+        Gauge.builder("blog.posts.cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .description("Share of post page views answered from the cache")
+                .register(meterRegistry);
+        // writes are applied to the weighted size by asynchronous maintenance, run it before reading
+        Gauge.builder("blog.posts.cache.memory", cache, c -> {
+                    c.cleanUp();
+                    return c.policy().eviction().orElseThrow().weightedSize().orElse(0);
+                })
+                .description("Estimated memory taken by cached posts")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Loads outside of {@link Cache#get}, which would hold a lock of the map for the whole
+     * load and make an invalidating writer wait for it
+     *
+     * @param loader loads the post on a miss; its exceptions are rethrown to every caller
+     *               sharing the load and nothing is cached
+     */
+    public Post get(@NonNull Long postId, @NonNull Function<Long, Post> loader) {
+        Post cached = cache.getIfPresent(postId);
+        if (cached != null) return cached;
+
+        return loads.load(postId, () -> {
+            long loadedAt = generation.get();
+            Post post = loader.apply(postId);
+            cache.put(postId, post);
+            if (generation.get() != loadedAt) {
+                cache.asMap().remove(postId, post);
+            }
+            return post;
+        });
+    }
+
+    /**
+     * Drops the post once the current transaction commits, so a concurrent view
+     * cannot cache the post as it was before the commit, and lets views arriving
+     * from then on load the post anew instead of joining a load already running
+     */
+    public void invalidate(@NonNull Long postId) {
+        TransactionHooks.afterCommit(() -> {
+            generation.incrementAndGet();
+            cache.invalidate(postId);
+            loads.forget(postId);
+        });
+    }
+
+    static int estimateSize(Post post) {
+        long size = OBJECT_OVERHEAD
+                + sizeOf(post.getTitle())
+                + sizeOf(post.getText())
+                + sizeOf(post.getExcerpt())
+                + sizeOf(post.getImageHash());
+        List<Tag> tags = post.getTags();
+        if (tags != null) {
+            for (Tag tag : tags) {
+                size += OBJECT_OVERHEAD + sizeOf(tag.getName());
+            }
+        }
+        List<Commentary> commentaries = post.getCommentaries();
+        if (commentaries != null) {
+            for (Commentary commentary : commentaries) {
+                size += OBJECT_OVERHEAD + sizeOf(commentary.getText());
+            }
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    private static long sizeOf(String value) {
+        return value == null ? 0 : OBJECT_OVERHEAD + 2L * value.length();
+    }
+}
@@ -0,0 +1,179 @@
+package ru.girqa.myblog.repository.memory;
+
+import lombok.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * In-process number of posts in total and per tag name. Incremental updates are applied
+ * after the surrounding transaction commits; {@link #reconcile(Supplier)} periodically
+ * replaces the counters with values loaded from the database.
+ */
+@Component
+public class PostCountRegistry {
+
+    private static final String ALL_POSTS = "";
+
+    /**
+     * Incremental updates take the read lock from their commit until they are applied,
+     * reconciliation takes the write lock only to pin its snapshot and start journaling
+     * and to finish journaling
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    private volatile Map<String, AtomicLong> journal;
+
+    private volatile boolean initialized;
+
+    /**
+     * @param tag tag name or {@code null} for all posts
+     * @return known number of posts or empty if the registry was not loaded yet
+     */
+    public OptionalLong count(@Nullable String tag) {
+        if (!initialized) return OptionalLong.empty();
+
+        AtomicLong counter = counters.get(tag == null ? ALL_POSTS : tag);
+        return OptionalLong.of(counter == null ? 0 : Math.max(0, counter.get()));
+    }
+
+    public void postCreated(@NonNull Collection<String> tags) {
+        Map<String, Long> deltas = new HashMap<>();
+        deltas.put(ALL_POSTS, 1L);
+        tags.forEach(tag -> deltas.merge(tag, 1L, Long::sum));
+        applyAfterCommit(deltas);
+    }
+
+    /**
+     * @param postsByTag number of the created posts bound to each tag name
+     */
+    public void postsCreated(long posts, @NonNull Map<String, Long> postsByTag) {
+        Map<String, Long> deltas = new HashMap<>(postsByTag);
+        deltas.put(ALL_POSTS, posts);
+        applyAfterCommit(deltas);
+    }
+
+    public void postDeleted(@NonNull Collection<String> tags) {
+        Map<String, Long> deltas = new HashMap<>();
+        deltas.put(ALL_POSTS, -1L);
+        tags.forEach(tag -> deltas.merge(tag, -1L, Long::sum));
+        applyAfterCommit(deltas);
+    }
+
+    public void postRetagged(@NonNull Collection<String> oldTags, @NonNull Collection<String> newTags) {
+        Map<String, Long> deltas = new HashMap<>();
+        oldTags.forEach(tag -> deltas.merge(tag, -1L, Long::sum));
+        newTags.forEach(tag -> deltas.merge(tag, 1L, Long::sum));
+        applyAfterCommit(deltas);
+    }
+
+    /**
+     * Replaces counters with a snapshot from the database. The snapshot is pinned while
+     * no update is between its commit and its application, so updates applied before
+     * are in the snapshot and those applied after it are journaled and replayed on top of it.
+     *
+     * @param pin    takes the database snapshot the counts are read from, e.g. by the first
+     *               statement of a repeatable read transaction; commits of updates wait for it
+     * @param loader reads the counts from the pinned snapshot
+     */
+    public void reconcile(@NonNull Runnable pin, @NonNull Supplier<Snapshot> loader) {
+        lock.writeLock().lock();
+        try {
+            pin.run();
+            journal = new ConcurrentHashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Snapshot snapshot;
+        try {
+            snapshot = loader.get();
+        } catch (RuntimeException e) {
+            journal = null;
+            throw e;
+        }
+
+        Map<String, AtomicLong> loaded = new ConcurrentHashMap<>();
+        loaded.put(ALL_POSTS, new AtomicLong(snapshot.total()));
+        snapshot.byTag().forEach((tag, count) -> loaded.put(tag, new AtomicLong(count)));
+
+        lock.writeLock().lock();
+        try {
+            journal.forEach((key, delta) -> loaded
+                    .computeIfAbsent(key, k -> new AtomicLong())
+                    .addAndGet(delta.get()));
+            counters = loaded;
+            journal = null;
+            initialized = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Holds the read lock from right before the commit until the deltas are applied,
+     * so a snapshot is never pinned in between. Without a transaction the deltas are
+     * applied immediately.
+     */
+    private void applyAfterCommit(Map<String, Long> deltas) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(deltas);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+            private boolean locked;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                lock.readLock().lock();
+                locked = true;
+            }
+
+            @Override
+            public void afterCommit() {
+                apply(deltas);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (locked) lock.readLock().unlock();
+            }
+        });
+    }
+
+    private void apply(Map<String, Long> deltas) {
+        lock.readLock().lock();
+        try {
+            Map<String, AtomicLong> currentJournal = journal;
+            deltas.forEach((key, delta) -> {
+                counters.computeIfAbsent(key, k -> new AtomicLong()).addAndGet(delta);
+                if (currentJournal != null) {
+                    currentJournal.computeIfAbsent(key, k -> new AtomicLong()).addAndGet(delta);
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param total number of all posts
+     * @param byTag number of posts bound to each tag name
+     */
+    public record Snapshot(long total, Map<String, Long> byTag) {
+    }
+}
@@ -0,0 +1,286 @@
+package ru.girqa.myblog.repository.memory;
+
+import lombok.NonNull;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.springframework.stereotype.Component;
+import ru.girqa.myblog.model.domain.Tag;
+import ru.girqa.myblog.model.domain.TagExpression;
+import ru.girqa.myblog.util.TransactionHooks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * In-process inverted index from tag id to a compressed bitmap of post ids.
+ * Loaded once with {@link #load(Consumer)}, then kept up to date by services;
+ * updates are applied after the surrounding transaction commits.
+ */
+@Component
+public class PostTagIndex {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Guarded by {@link #lock}, {@code null} until loaded
+     */
+    private State state;
+
+    /**
+     * Updates committed before the index is loaded, replayed on top of the loaded state.
+     * Guarded by {@link #lock}.
+     */
+    private List<Consumer<State>> pending = new ArrayList<>();
+
+    /**
+     * Held while a retag reads the bindings of a post and applies them
+     */
+    private final Lock retagLock = new ReentrantLock();
+
+    /**
+     * @return ids of posts matching the expression or empty if the index was not loaded yet
+     */
+    public Optional<Roaring64NavigableMap> evaluate(@NonNull TagExpression expression) {
+        lock.readLock().lock();
+        try {
+            if (state == null) return Optional.empty();
+            return Optional.of(state.evaluate(expression));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void postSaved(long postId) {
+        update(state -> state.allPosts.addLong(postId));
+    }
+
+    public void postDeleted(long postId) {
+        update(state -> {
+            state.allPosts.removeLong(postId);
+            state.postsByTagId.values().forEach(posts -> posts.removeLong(postId));
+        });
+    }
+
+    /**
+     * Sets the tags of the post to its bindings read after the surrounding transaction commits.
+     * Hooks of transactions retagging one post may run in any order, so the bindings are read
+     * again instead of applying what each transaction changed; reads and writes of retags are
+     * serialized, so the last one applied has read bindings no older than any committed retag.
+     *
+     * @param currentTags reads the committed tags of the post
+     */
+    public void postRetagged(long postId, @NonNull Supplier<? extends Collection<Tag>> currentTags) {
+        TransactionHooks.afterCommit(() -> {
+            retagLock.lock();
+            try {
+                List<Tag> tags = List.copyOf(currentTags.get());
+                apply(state -> state.retag(postId, tags));
+            } finally {
+                retagLock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Adds posts and bindings created in bulk. The source is read at once, while
+     * the transaction creating them is still open, and applied after it commits.
+     */
+    public void postsImported(@NonNull Consumer<Loader> source) {
+        State imported = new State();
+        source.accept(imported);
+        update(state -> state.add(imported));
+    }
+
+    /**
+     * Builds the index from a snapshot of posts, tags and bindings. Updates committed
+     * while the snapshot is read are replayed on top of it; they are idempotent set
+     * operations, so replaying one the snapshot already contains changes nothing.
+     */
+    public void load(@NonNull Consumer<Loader> source) {
+        State loaded = new State();
+        source.accept(loaded);
+        loaded.allPosts.runOptimize();
+        loaded.postsByTagId.values().forEach(Roaring64NavigableMap::runOptimize);
+
+        lock.writeLock().lock();
+        try {
+            if (state != null) throw new IllegalStateException("Post tag index is already loaded");
+
+            pending.forEach(update -> update.accept(loaded));
+            pending = null;
+            state = loaded;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isLoaded() {
+        lock.readLock().lock();
+        try {
+            return state != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Optional<Footprint> footprint() {
+        lock.readLock().lock();
+        try {
+            if (state == null) return Optional.empty();
+
+            long bindings = 0;
+            long sizeInBytes = state.allPosts.getLongSizeInBytes();
+            for (Roaring64NavigableMap posts : state.postsByTagId.values()) {
+                bindings += posts.getLongCardinality();
+                sizeInBytes += posts.getLongSizeInBytes();
+            }
+            return Optional.of(new Footprint(
+                    state.allPosts.getLongCardinality(),
+                    state.postsByTagId.size(),
+                    bindings,
+                    sizeInBytes
+            ));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void update(Consumer<State> update) {
+        TransactionHooks.afterCommit(() -> apply(update));
+    }
+
+    private void apply(Consumer<State> update) {
+        lock.writeLock().lock();
+        try {
+            if (state == null) {
+                pending.add(update);
+            } else {
+                update.accept(state);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Receives the snapshot the index is built from
+     */
+    public interface Loader {
+
+        void post(long postId);
+
+        void tag(long tagId, @NonNull String name);
+
+        void binding(long postId, long tagId);
+    }
+
+    /**
+     * @param posts       number of all posts
+     * @param tags        number of tags
+     * @param bindings    number of post to tag bindings
+     * @param sizeInBytes estimated heap size of all bitmaps
+     */
+    public record Footprint(long posts, int tags, long bindings, long sizeInBytes) {
+    }
+
+    private static class State implements Loader {
+
+        private final Roaring64NavigableMap allPosts = new Roaring64NavigableMap();
+
+        private final Map<Long, Roaring64NavigableMap> postsByTagId = new HashMap<>();
+
+        private final Map<String, Long> tagIdsByName = new HashMap<>();
+
+        @Override
+        public void post(long postId) {
+            allPosts.addLong(postId);
+        }
+
+        @Override
+        public void tag(long tagId, @NonNull String name) {
+            tagIdsByName.put(name, tagId);
+        }
+
+        @Override
+        public void binding(long postId, long tagId) {
+            postsByTagId.computeIfAbsent(tagId, id -> new Roaring64NavigableMap()).addLong(postId);
+        }
+
+        private void retag(long postId, List<Tag> tags) {
+            postsByTagId.values().forEach(posts -> posts.removeLong(postId));
+            for (Tag tag : tags) {
+                if (tag.getName() != null) tag(tag.getId(), tag.getName());
+                binding(postId, tag.getId());
+            }
+        }
+
+        private void add(State other) {
+            allPosts.or(other.allPosts);
+            tagIdsByName.putAll(other.tagIdsByName);
+            other.postsByTagId.forEach((tagId, posts) -> postsByTagId
+                    .computeIfAbsent(tagId, id -> new Roaring64NavigableMap())
+                    .or(posts));
+        }
+
+        private Roaring64NavigableMap evaluate(TagExpression expression) {
+            return switch (expression) {
+                case TagExpression.HasTag hasTag -> copy(postsByName(hasTag.name()));
+                case TagExpression.Not not -> {
+                    Roaring64NavigableMap result = copy(allPosts);
+                    result.andNot(evaluate(not.operand()));
+                    yield result;
+                }
+                case TagExpression.Or or -> {
+                    Roaring64NavigableMap result = new Roaring64NavigableMap();
+                    or.operands().forEach(operand -> result.or(evaluate(operand)));
+                    yield result;
+                }
+                case TagExpression.And and -> evaluateAnd(and);
+            };
+        }
+
+        /**
+         * Negated operands are subtracted from the result instead of being
+         * complemented against all posts first
+         */
+        private Roaring64NavigableMap evaluateAnd(TagExpression.And and) {
+            Roaring64NavigableMap result = null;
+            List<TagExpression> negated = new ArrayList<>();
+            for (TagExpression operand : and.operands()) {
+                if (operand instanceof TagExpression.Not not) {
+                    negated.add(not.operand());
+                } else if (result == null) {
+                    result = evaluate(operand);
+                } else {
+                    result.and(evaluate(operand));
+                }
+            }
+
+            if (result == null) result = copy(allPosts);
+            for (TagExpression operand : negated) {
+                result.andNot(evaluate(operand));
+            }
+            return result;
+        }
+
+        private Roaring64NavigableMap postsByName(String name) {
+            Long tagId = tagIdsByName.get(name);
+            return tagId == null ? null : postsByTagId.get(tagId);
+        }
+
+        private static Roaring64NavigableMap copy(Roaring64NavigableMap source) {
+            Roaring64NavigableMap copy = new Roaring64NavigableMap();
+            if (source != null) copy.or(source);
+            return copy;
+        }
+    }
+}
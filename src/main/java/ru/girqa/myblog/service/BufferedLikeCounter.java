@@ -0,0 +1,124 @@
+package ru.girqa.myblog.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import ru.girqa.myblog.exception.PostNotFoundException;
+import ru.girqa.myblog.repository.PostRepository;
+import ru.girqa.myblog.repository.memory.PostCache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sums likes in memory and writes them by {@link #flush()}, called by
+ * {@link ru.girqa.myblog.job.LikeFlushJob} and once more on shutdown. Likes of one post
+ * land on the striped cells of a {@link LongAdder} instead of waiting for each other.
+ * Keeps one counter per post liked since the start, so its size is bounded by the number of posts.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "blog.posts.likes", name = "mode", havingValue = "buffered")
+public class BufferedLikeCounter implements LikeCounter {
+
+    private final PostRepository postRepository;
+
+    private final PostCache postCache;
+
+    private final Map<Long, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Not a monitor: a virtual thread blocked on the statement within {@code synchronized}
+     * would keep its carrier thread
+     */
+    private final Lock flushLock = new ReentrantLock();
+
+    /**
+     * @return last flushed number of likes plus likes not flushed yet
+     */
+    @Override
+    public int increment(@NonNull Long postId) {
+        Counter counter = counters.get(postId);
+        if (counter == null) {
+            int likes = postRepository.findLikes(postId)
+                    .orElseThrow(PostNotFoundException::new);
+            counter = counters.computeIfAbsent(postId, id -> new Counter(likes));
+        }
+        counter.likes.increment();
+        Flushed flushed = counter.flushed;
+        return flushed.persisted() + (int) (counter.likes.sum() - flushed.likes());
+    }
+
+    /**
+     * Writes likes summed so far with one statement. Likes arriving meanwhile stay for the
+     * next flush, and nothing is lost if the statement fails. Counters of deleted posts are dropped.
+     *
+     * @return number of posts whose likes were written
+     */
+    public int flush() {
+        flushLock.lock();
+        try {
+            return flushPending();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private int flushPending() {
+        Map<Long, Long> deltas = new HashMap<>();
+        counters.forEach((postId, counter) -> {
+            long pending = counter.likes.sum() - counter.flushed.likes();
+            if (pending != 0) deltas.put(postId, pending);
+        });
+        if (deltas.isEmpty()) return 0;
+
+        Map<Long, Integer> persisted = postRepository.addLikes(deltas);
+        deltas.forEach((postId, delta) -> {
+            Integer likes = persisted.get(postId);
+            if (likes == null) {
+                counters.remove(postId);
+                return;
+            }
+            Counter counter = counters.get(postId);
+            counter.flushed = new Flushed(likes, counter.flushed.likes() + delta);
+            postCache.invalidate(postId);
+        });
+        return persisted.size();
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        int flushed = flush();
+        log.info("Flushed likes of {} posts on shutdown", flushed);
+    }
+
+    /**
+     * Likes counted since the start are never decremented; the flushed part of them is
+     * published together with the number written, so no reader sees one without the other
+     */
+    private static final class Counter {
+
+        private final LongAdder likes = new LongAdder();
+
+        private volatile Flushed flushed;
+
+        private Counter(int persisted) {
+            this.flushed = new Flushed(persisted, 0);
+        }
+    }
+
+    /**
+     * @param persisted number of likes in the database after the last flush
+     * @param likes     likes counted through this node up to the last flush
+     */
+    private record Flushed(int persisted, long likes) {
+    }
+}
@@ -2,11 +2,15 @@ package ru.girqa.myblog.service;
 
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.girqa.myblog.config.CommentaryPageProperties;
 import ru.girqa.myblog.exception.CommentaryNotFoundException;
 import ru.girqa.myblog.model.domain.Commentary;
+import ru.girqa.myblog.model.domain.CommentarySlice;
 import ru.girqa.myblog.repository.CommentaryRepository;
+import ru.girqa.myblog.repository.memory.PostCache;
 
 @Service
 @RequiredArgsConstructor
@@ -14,9 +18,26 @@ public class CommentaryService {
 
     private final CommentaryRepository repository;
 
+    private final PostCache postCache;
+
+    private final CommentaryPageProperties pageProperties;
+
+    /**
+     * @param afterId id of the last loaded commentary, {@code null} for the first slice
+     */
+    public CommentarySlice findSlice(@NonNull Long postId, @Nullable Long afterId) {
+        int size = pageProperties.size();
+        return CommentarySlice.of(
+                repository.findByPostIdAfter(postId, afterId == null ? 0 : afterId, size + 1),
+                size
+        );
+    }
+
     @Transactional
     public Commentary save(@NonNull Commentary commentary) {
-        return repository.save(commentary);
+        Commentary saved = repository.save(commentary);
+        postCache.invalidate(saved.getPostId());
+        return saved;
     }
 
     @Transactional
@@ -25,10 +46,12 @@ public class CommentaryService {
                 .orElseThrow(CommentaryNotFoundException::new);
         commentary.setText(text);
         repository.update(commentary);
+        postCache.invalidate(commentary.getPostId());
     }
 
     @Transactional
     public void delete(@NonNull Long commentaryId) {
-        repository.delete(commentaryId);
+        repository.delete(commentaryId)
+                .ifPresent(postCache::invalidate);
     }
 }
@@ -0,0 +1,30 @@
+package ru.girqa.myblog.service;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.girqa.myblog.repository.PostRepository;
+import ru.girqa.myblog.repository.memory.PostCache;
+
+/**
+ * Updates the post row on every like, so concurrent likes of one post wait for its row lock
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "blog.posts.likes", name = "mode", havingValue = "direct", matchIfMissing = true)
+public class DirectLikeCounter implements LikeCounter {
+
+    private final PostRepository postRepository;
+
+    private final PostCache postCache;
+
+    @Override
+    @Transactional
+    public int increment(@NonNull Long postId) {
+        int likes = postRepository.incrementLikes(postId);
+        postCache.invalidate(postId);
+        return likes;
+    }
+}
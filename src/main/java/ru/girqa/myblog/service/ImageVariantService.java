@@ -0,0 +1,154 @@
+package ru.girqa.myblog.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import ru.girqa.myblog.config.ImageVariantProperties;
+import ru.girqa.myblog.model.domain.post.ImageMetadata;
+import ru.girqa.myblog.model.domain.post.ImageVariant;
+import ru.girqa.myblog.repository.ImageRepository;
+import ru.girqa.myblog.util.ImageResizer;
+import ru.girqa.myblog.util.TransactionHooks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates {@link ImageVariant}s of post images on a bounded pool of workers.
+ * When the queue is full further images are dropped and picked up later by
+ * {@link ru.girqa.myblog.job.ImageVariantBackfillJob}; until then their original is served.
+ */
+@Slf4j
+@Service
+public class ImageVariantService {
+
+    private final ImageRepository imageRepository;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Set<Long> pendingPostIds = ConcurrentHashMap.newKeySet();
+
+    private final Timer resizeTimer;
+
+    private final Counter rejectedCounter;
+
+    /**
+     * Workers are virtual threads in the virtual thread mode; their number still bounds
+     * the CPU spent on resizing, while reads and writes of images no longer hold a carrier
+     */
+    public ImageVariantService(@NonNull ImageRepository imageRepository,
+                               @NonNull ImageVariantProperties properties,
+                               @NonNull MeterRegistry meterRegistry,
+                               @NonNull Environment environment) {
+        this.imageRepository = imageRepository;
+        ThreadFactory threadFactory = Threading.VIRTUAL.isActive(environment)
+                ? Thread.ofVirtual().name("image-variants-", 1).factory()
+                : new CustomizableThreadFactory("image-variants-");
+        this.executor = new ThreadPoolExecutor(
+                properties.workers(), properties.workers(),
+                0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.queueCapacity()),
+                threadFactory,
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+
+        Gauge.builder("blog.images.variants.queue", executor, e -> e.getQueue().size())
+                .description("Images waiting for their variants to be generated")
+                .register(meterRegistry);
+        this.resizeTimer = Timer.builder("blog.images.variants.resize")
+                .description("Time to decode an image and scale it to all missing widths")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("blog.images.variants.rejected")
+                .description("Images dropped because the queue was full")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues the post image once the current transaction commits, so workers
+     * never read an image that may still be rolled back
+     */
+    public void generateAfterCommit(@NonNull Long postId) {
+        TransactionHooks.afterCommit(() -> submit(postId));
+    }
+
+    /**
+     * @return {@code false} if the queue is full and the image was dropped
+     */
+    public boolean submit(@NonNull Long postId) {
+        if (!pendingPostIds.add(postId)) return true;
+
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(postId);
+                } catch (RuntimeException e) {
+                    log.error("Failed to generate variants of image of post {}", postId, e);
+                } finally {
+                    pendingPostIds.remove(postId);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            pendingPostIds.remove(postId);
+            rejectedCounter.increment();
+            log.warn("Image variants queue is full, image of post {} is left for the backfill", postId);
+            return false;
+        }
+    }
+
+    /**
+     * Reads the image bytes only when some variant is missing. The bytes are read by the hash
+     * of the metadata, so the variants are keyed by the hash of the bytes they are scaled from
+     * even if the post image is replaced meanwhile.
+     */
+    void generate(Long postId) {
+        Optional<ImageMetadata> image = imageRepository.findMetadataByPostId(postId);
+        if (image.isEmpty()) return;
+
+        String sourceHash = image.get().contentHash();
+        List<Integer> existing = imageRepository.findVariantWidths(sourceHash);
+        List<Integer> missing = ImageVariant.WIDTHS.stream()
+                .filter(width -> !existing.contains(width))
+                .toList();
+        if (missing.isEmpty()) return;
+
+        Optional<byte[]> data = imageRepository.findDataByHash(sourceHash).map(ImageVariantService::readAll);
+        if (data.isEmpty()) return;
+
+        List<ImageVariant> variants = resizeTimer.record(() -> ImageResizer.resize(data.get(), sourceHash, missing));
+        variants.forEach(imageRepository::saveVariant);
+        log.debug("Generated {} variants of image of post {}", variants.size(), postId);
+    }
+
+    private static byte[] readAll(Resource resource) {
+        try (InputStream in = resource.getInputStream()) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,15 @@
+package ru.girqa.myblog.service;
+
+import lombok.NonNull;
+
+/**
+ * Drops a post from {@link ru.girqa.myblog.repository.memory.PostCache} when {@code posts.likes}
+ * it shows changes, not on every like
+ */
+public interface LikeCounter {
+
+    /**
+     * @return number of likes of the post including this one
+     */
+    int increment(@NonNull Long postId);
+}
@@ -0,0 +1,147 @@
+package ru.girqa.myblog.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.NonNull;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StreamUtils;
+import ru.girqa.myblog.model.dto.post.ExportPostDto;
+import ru.girqa.myblog.repository.ImageRepository;
+import ru.girqa.myblog.repository.jdbc.PostExportRepository;
+import ru.girqa.myblog.repository.jdbc.PostExportRepository.ExportedPost;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes every post with its tags, commentaries and image in the format read by
+ * {@link PostImportService}. Posts are read through a cursor and written out one by one,
+ * image bytes are copied from the storage as they are read, so the memory held does not
+ * grow with the blog. The export reads a snapshot of a repeatable read transaction and
+ * takes no locks writers wait for; image bytes of the filesystem storage are outside the
+ * snapshot though, a blob collected while the export runs fails it.
+ */
+@Service
+public class PostExportService {
+
+    static final String POSTS_ENTRY = "posts.ndjson";
+
+    private static final String IMAGES_DIRECTORY = "images/";
+
+    private static final String DEFAULT_IMAGE_NAME = "image";
+
+    private final PostExportRepository exportRepository;
+
+    private final ImageRepository imageRepository;
+
+    private final ObjectMapper objectMapper;
+
+    private final ObjectWriter postWriter;
+
+    public PostExportService(@NonNull PostExportRepository exportRepository,
+                             @NonNull ImageRepository imageRepository,
+                             @NonNull ObjectMapper objectMapper) {
+        this.exportRepository = exportRepository;
+        this.imageRepository = imageRepository;
+        this.objectMapper = objectMapper;
+        // the stream is flushed by the servlet container as its buffer fills up, not after every post
+        this.postWriter = objectMapper.writerFor(ExportPostDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Every post carries its image in {@code imageData}
+     *
+     * @return number of exported posts
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public int exportNdjson(@NonNull OutputStream out) {
+        return writePosts(out, true);
+    }
+
+    /**
+     * The archive holds {@value POSTS_ENTRY} followed by the images its posts refer to,
+     * each in a directory of its post
+     *
+     * @return number of exported posts
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public int exportArchive(@NonNull OutputStream out) {
+        try {
+            ZipOutputStream archive = new ZipOutputStream(StreamUtils.nonClosing(out));
+            archive.putNextEntry(new ZipEntry(POSTS_ENTRY));
+            int posts = writePosts(archive, false);
+            archive.closeEntry();
+
+            // images are compressed by their formats already
+            archive.setLevel(Deflater.NO_COMPRESSION);
+            exportRepository.forEachImage(image -> {
+                try (InputStream in = imageData(image.contentHash()).getInputStream()) {
+                    archive.putNextEntry(new ZipEntry(imageKey(image.postId(), image.imageName())));
+                    in.transferTo(archive);
+                    archive.closeEntry();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            archive.finish();
+            return posts;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int writePosts(OutputStream out, boolean inlineImages) {
+        AtomicInteger posts = new AtomicInteger();
+        try (JsonGenerator json = objectMapper.createGenerator(StreamUtils.nonClosing(out))) {
+            json.setRootValueSeparator(null);
+            exportRepository.forEachPost(post -> {
+                try {
+                    postWriter.writeValue(json, toDto(post, inlineImages));
+                    json.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                posts.incrementAndGet();
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return posts.get();
+    }
+
+    private ExportPostDto toDto(ExportedPost post, boolean inlineImages) {
+        String image = null;
+        Resource imageData = null;
+        if (post.contentHash() != null) {
+            image = inlineImages ? post.imageName() : imageKey(post.id(), post.imageName());
+            imageData = inlineImages ? imageData(post.contentHash()) : null;
+        }
+        return new ExportPostDto(post.id(), post.title(), post.text(), post.tags(), post.likes(),
+                post.commentaries(), image, imageData);
+    }
+
+    private Resource imageData(String contentHash) {
+        return imageRepository.findDataByHash(contentHash)
+                .orElseThrow(() -> new IllegalStateException("Image blob %s is gone".formatted(contentHash)));
+    }
+
+    /**
+     * The import names images by the last part of their keys, so the name must not add directories
+     */
+    private static String imageKey(long postId, String imageName) {
+        String name = imageName.isBlank() ? DEFAULT_IMAGE_NAME : imageName.replace('/', '_');
+        return IMAGES_DIRECTORY + postId + "/" + name;
+    }
+}
@@ -0,0 +1,269 @@
+package ru.girqa.myblog.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.NonNull;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StreamUtils;
+import ru.girqa.myblog.config.PostImportProperties;
+import ru.girqa.myblog.exception.InvalidImportException;
+import ru.girqa.myblog.model.domain.post.Post;
+import ru.girqa.myblog.model.dto.post.ImportPostDto;
+import ru.girqa.myblog.repository.fs.ImageBlobStore;
+import ru.girqa.myblog.repository.fs.ImageBlobStore.StagedBlob;
+import ru.girqa.myblog.repository.jdbc.PostImportRepository;
+import ru.girqa.myblog.repository.jdbc.PostImportRepository.PublishedPosts;
+import ru.girqa.myblog.repository.jdbc.PostImportRepository.Staging;
+import ru.girqa.myblog.repository.memory.FeedCache;
+import ru.girqa.myblog.repository.memory.PostCountRegistry;
+import ru.girqa.myblog.util.ContentHash;
+import ru.girqa.myblog.util.ImageFormats;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Creates posts in bulk from an NDJSON file of {@link ImportPostDto}, one post per line,
+ * or from a zip archive of such a file and the image files its posts refer to. Everything
+ * is streamed into staging tables and published in one transaction, so an invalid post
+ * leaves the blog untouched. Image variants are left to the backfill job.
+ */
+@Service
+public class PostImportService {
+
+    private static final String NDJSON_EXTENSION = ".ndjson";
+
+    private static final int MAX_TAG_LENGTH = 255;
+
+    private static final int MAX_IMAGE_NAME_LENGTH = 50;
+
+    private static final String DEFAULT_IMAGE_NAME = "image";
+
+    private final PostImportRepository importRepository;
+
+    private final PostCountRegistry postCountRegistry;
+
+    private final FeedCache feedCache;
+
+    private final ObjectProvider<ImageBlobStore> blobStore;
+
+    private final PostImportProperties properties;
+
+    private final ObjectReader postReader;
+
+    /**
+     * @param blobStore present with the filesystem image storage only
+     */
+    public PostImportService(@NonNull PostImportRepository importRepository,
+                             @NonNull PostCountRegistry postCountRegistry,
+                             @NonNull FeedCache feedCache,
+                             @NonNull ObjectProvider<ImageBlobStore> blobStore,
+                             @NonNull PostImportProperties properties,
+                             @NonNull ObjectMapper objectMapper) {
+        this.importRepository = importRepository;
+        this.postCountRegistry = postCountRegistry;
+        this.feedCache = feedCache;
+        this.blobStore = blobStore;
+        this.properties = properties;
+        this.postReader = objectMapper.readerFor(ImportPostDto.class);
+    }
+
+    /**
+     * Every post carries its image in {@code imageData}
+     *
+     * @return number of created posts
+     */
+    @Transactional
+    public int importNdjson(@NonNull InputStream ndjson) {
+        return importPosts(run -> run.readPosts(ndjson));
+    }
+
+    /**
+     * The archive holds one {@code .ndjson} file, its posts refer to the other files
+     * of the archive by their full names
+     *
+     * @return number of created posts
+     */
+    @Transactional
+    public int importArchive(@NonNull InputStream zip) {
+        return importPosts(run -> {
+            ZipInputStream archive = new ZipInputStream(zip);
+            boolean postsRead = false;
+            for (ZipEntry entry = archive.getNextEntry(); entry != null; entry = archive.getNextEntry()) {
+                if (entry.isDirectory()) continue;
+
+                if (entry.getName().endsWith(NDJSON_EXTENSION)) {
+                    if (postsRead) throw new InvalidImportException("Archive holds more than one NDJSON file");
+                    run.readPosts(StreamUtils.nonClosing(archive));
+                    postsRead = true;
+                } else {
+                    run.image(entry.getName(), fileName(entry.getName()), archive);
+                }
+            }
+            if (!postsRead) throw new InvalidImportException("Archive holds no NDJSON file");
+        });
+    }
+
+    private int importPosts(ImportReader reader) {
+        ImportRun run = new ImportRun(importRepository.stage((int) properties.copyBuffer().toBytes()),
+                blobStore.getIfAvailable());
+        try {
+            reader.read(run);
+            run.staging.flush();
+            importRepository.findMissingImage().ifPresent(missing -> {
+                throw new InvalidImportException("Post %d refers to image %s which is not in the archive"
+                        .formatted(missing.line(), missing.imageKey()));
+            });
+            run.stagedBlobs.values().forEach(StagedBlob::force);
+
+            PublishedPosts published = importRepository.publish();
+            // the blobs are referenced and locked, a collection running meanwhile has to wait for the commit
+            run.stagedBlobs.forEach((hash, blob) -> {
+                if (published.referencedHashes().contains(hash)) blob.store();
+            });
+            postCountRegistry.postsCreated(published.posts(), published.postsByTag());
+            feedCache.postsCreated();
+            return published.posts();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            run.stagedBlobs.values().forEach(StagedBlob::close);
+        }
+    }
+
+    private static String fileName(String path) {
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        // the name is shown only, a longer one is cut instead of failing the import
+        return name.length() > MAX_IMAGE_NAME_LENGTH ? name.substring(0, MAX_IMAGE_NAME_LENGTH) : name;
+    }
+
+    @FunctionalInterface
+    private interface ImportReader {
+
+        void read(ImportRun run) throws IOException;
+    }
+
+    /**
+     * State of one import: posts and images are staged as they are read, image bytes
+     * go either to the staging table or to files of the blob store
+     */
+    private class ImportRun {
+
+        private final Staging staging;
+
+        private final ImageBlobStore blobStore;
+
+        /**
+         * Files staged without forcing them to the disk, by their hashes
+         */
+        private final Map<String, StagedBlob> stagedBlobs = new HashMap<>();
+
+        /**
+         * Hashes of the bytes sent to the staging table
+         */
+        private final Set<String> stagedHashes = new HashSet<>();
+
+        private final Set<String> imageKeys = new HashSet<>();
+
+        private int lastLine;
+
+        private ImportRun(Staging staging, ImageBlobStore blobStore) {
+            this.staging = staging;
+            this.blobStore = blobStore;
+        }
+
+        private void readPosts(InputStream ndjson) throws IOException {
+            try (MappingIterator<ImportPostDto> posts = postReader.readValues(ndjson)) {
+                while (posts.hasNextValue()) {
+                    post(++lastLine, posts.nextValue());
+                }
+            } catch (JsonProcessingException e) {
+                throw new InvalidImportException("Post %d is malformed: %s".formatted(lastLine + 1, e.getOriginalMessage()));
+            }
+        }
+
+        private void post(int line, ImportPostDto post) {
+            if (post.title() == null || post.title().isBlank()) {
+                throw new InvalidImportException("Post %d has no title".formatted(line));
+            }
+            if (post.text() == null || post.text().isBlank()) {
+                throw new InvalidImportException("Post %d has no text".formatted(line));
+            }
+
+            String imageKey;
+            if (post.imageData() != null) {
+                // inlined images are keyed by their posts, the names may repeat
+                imageKey = "#" + line;
+                String name = post.image() == null || post.image().isBlank() ? DEFAULT_IMAGE_NAME : post.image();
+                image(imageKey, fileName(name), new ByteArrayInputStream(post.imageData()));
+            } else if (post.image() != null && !post.image().isBlank()) {
+                imageKey = post.image();
+            } else {
+                throw new InvalidImportException("Post %d has no image".formatted(line));
+            }
+
+            staging.post(line, post.title(), post.text(), Post.excerptOf(post.text()), tags(line, post), imageKey);
+        }
+
+        private List<String> tags(int line, ImportPostDto post) {
+            if (post.tags() == null) return List.of();
+
+            Set<String> tags = new LinkedHashSet<>();
+            for (String tag : post.tags()) {
+                if (tag == null || tag.isBlank()) continue;
+                String trimmed = tag.trim();
+                if (trimmed.length() > MAX_TAG_LENGTH) {
+                    throw new InvalidImportException("Post %d has a tag longer than %d characters"
+                            .formatted(line, MAX_TAG_LENGTH));
+                }
+                tags.add(trimmed);
+            }
+            return List.copyOf(tags);
+        }
+
+        private void image(String key, String name, InputStream in) {
+            if (!imageKeys.add(key)) throw new InvalidImportException("Archive holds image %s twice".formatted(key));
+            byte[] data = readImage(key, in);
+            String contentType = ImageFormats.contentTypeOf(data);
+
+            if (blobStore == null) {
+                String hash = ContentHash.of(data);
+                // equal bytes are sent once, the other images only refer to them by the hash
+                staging.image(key, name, data.length, contentType, hash, stagedHashes.add(hash) ? data : null);
+                return;
+            }
+
+            StagedBlob staged = blobStore.stage(new ByteArrayInputStream(data), false);
+            StagedBlob previous = stagedBlobs.putIfAbsent(staged.hash(), staged);
+            if (previous != null) staged.close();
+            staging.image(key, name, data.length, contentType, staged.hash(), null);
+        }
+
+        private byte[] readImage(String key, InputStream in) {
+            long maxSize = properties.maxImageSize().toBytes();
+            try {
+                byte[] data = in.readNBytes((int) maxSize + 1);
+                if (data.length > maxSize) {
+                    throw new InvalidImportException("Image %s is larger than %s".formatted(key, properties.maxImageSize()));
+                }
+                return data;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
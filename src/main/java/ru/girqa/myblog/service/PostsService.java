@@ -1,24 +1,35 @@
 package ru.girqa.myblog.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
+import org.springframework.lang.Nullable;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.girqa.myblog.config.CommentaryPageProperties;
 import ru.girqa.myblog.exception.PostNotFoundException;
 import ru.girqa.myblog.model.domain.PageRequest;
 import ru.girqa.myblog.model.domain.Tag;
 import ru.girqa.myblog.model.domain.post.Image;
+import ru.girqa.myblog.model.domain.post.ImageMetadata;
+import ru.girqa.myblog.model.domain.post.ImageVariant;
 import ru.girqa.myblog.model.domain.post.Post;
 import ru.girqa.myblog.model.domain.post.PostsPage;
-import ru.girqa.myblog.repository.CommentaryRepository;
 import ru.girqa.myblog.repository.ImageRepository;
 import ru.girqa.myblog.repository.PostRepository;
 import ru.girqa.myblog.repository.TagRepository;
+import ru.girqa.myblog.repository.memory.FeedCache;
+import ru.girqa.myblog.repository.memory.PostCache;
+import ru.girqa.myblog.repository.memory.PostCountRegistry;
+import ru.girqa.myblog.repository.memory.PostTagIndex;
+import ru.girqa.myblog.util.SingleFlight;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
 
 @Service
-@RequiredArgsConstructor
 public class PostsService {
 
     private final PostRepository postRepository;
@@ -27,19 +38,64 @@ public class PostsService {
 
     private final TagRepository tagRepository;
 
-    private final CommentaryRepository commentaryRepository;
+    private final PostCountRegistry postCountRegistry;
+
+    private final PostTagIndex postTagIndex;
+
+    private final ImageVariantService imageVariantService;
+
+    private final LikeCounter likeCounter;
+
+    private final PostCache postCache;
+
+    private final FeedCache feedCache;
+
+    private final CommentaryPageProperties commentaryPageProperties;
+
+    private final SingleFlight<ImageRequest, FoundImage> imageLookups;
+
+    public PostsService(@NonNull PostRepository postRepository,
+                        @NonNull ImageRepository imageRepository,
+                        @NonNull TagRepository tagRepository,
+                        @NonNull PostCountRegistry postCountRegistry,
+                        @NonNull PostTagIndex postTagIndex,
+                        @NonNull ImageVariantService imageVariantService,
+                        @NonNull LikeCounter likeCounter,
+                        @NonNull PostCache postCache,
+                        @NonNull FeedCache feedCache,
+                        @NonNull CommentaryPageProperties commentaryPageProperties,
+                        @NonNull MeterRegistry meterRegistry) {
+        this.postRepository = postRepository;
+        this.imageRepository = imageRepository;
+        this.tagRepository = tagRepository;
+        this.postCountRegistry = postCountRegistry;
+        this.postTagIndex = postTagIndex;
+        this.imageVariantService = imageVariantService;
+        this.likeCounter = likeCounter;
+        this.postCache = postCache;
+        this.feedCache = feedCache;
+        this.commentaryPageProperties = commentaryPageProperties;
+        this.imageLookups = new SingleFlight<>("images", meterRegistry);
+    }
 
     @Transactional
     public Post create(@NonNull Post post) {
+        post.refreshExcerpt();
         post = postRepository.save(post);
 
         Image image = post.getImage().toBuilder()
                 .postId(post.getId())
                 .build();
         imageRepository.save(image);
+        imageVariantService.generateAfterCommit(post.getId());
 
         List<Tag> mergedTags = tagRepository.merge(post.getTags());
         tagRepository.bindTagsToPost(post.getId(), mergedTags);
+        Long postId = post.getId();
+        postTagIndex.postSaved(postId);
+        postTagIndex.postRetagged(postId, () -> tagRepository.findByPostId(postId));
+        postCountRegistry.postCreated(tagNames(mergedTags));
+        feedCache.postCreated(tagNames(mergedTags));
 
         return post.toBuilder()
                 .image(image)
@@ -54,43 +110,131 @@ public class PostsService {
 
         updatedPost.getImage().setPostId(dbPost.getId());
         dbPost.update(updatedPost);
+        dbPost.refreshExcerpt();
         imageRepository.update(dbPost.getImage());
+        imageVariantService.generateAfterCommit(dbPost.getId());
 
         postRepository.update(dbPost);
+        List<Tag> oldTags = tagRepository.findByPostId(dbPost.getId());
         tagRepository.unboundTagsFromPost(dbPost.getId());
 
         List<Tag> mergedTags = tagRepository.merge(dbPost.getTags());
         tagRepository.bindTagsToPost(dbPost.getId(), mergedTags);
-
+        Long postId = dbPost.getId();
+        postTagIndex.postRetagged(postId, () -> tagRepository.findByPostId(postId));
+        postCountRegistry.postRetagged(tagNames(oldTags), tagNames(mergedTags));
+        feedCache.postChanged(tagNames(oldTags), tagNames(mergedTags));
+        postCache.invalidate(dbPost.getId());
     }
 
-    @Transactional(readOnly = true)
+    /**
+     * @return post with its tags and first commentaries, shared with other views through {@link PostCache},
+     * so a cache hit does not touch the database at all. The rest of the commentaries are loaded
+     * by {@link CommentaryService#findSlice(Long, Long)}
+     */
     public Post findPost(@NonNull Long id) {
-        Post post = postRepository.findById(id)
-                .orElseThrow(PostNotFoundException::new);
-        post.setTags(tagRepository.findByPostId(post.getId()));
-        post.setCommentaries(commentaryRepository.findByPostIdOrderById(post.getId()));
-        return post;
+        return postCache.get(id, this::loadPost);
+    }
+
+    /**
+     * @return version of the post page, looked up by primary key without loading the post
+     */
+    public Optional<Long> findPostVersion(@NonNull Long id) {
+        return postRepository.findVersion(id);
     }
 
-    @Transactional(readOnly = true)
+    /**
+     * @return page shared with other views through {@link FeedCache}
+     */
     public PostsPage getPostsPage(@NonNull PageRequest request) {
-        return postRepository.findAllPaged(request);
+        return feedCache.get(request, this::loadPostsPage);
     }
 
-    @Transactional(readOnly = true)
-    public byte[] getImage(@NonNull Long id) {
-        return imageRepository.findByPostId(id)
-                .orElseThrow(PostNotFoundException::new)
-                .getData();
+    /**
+     * @return version of every feed page, looked up without loading any of them
+     */
+    public long findFeedVersion() {
+        return postRepository.findFeedVersion();
+    }
+
+    /**
+     * Passes the post image to the writer without holding a connection while it is written out:
+     * concurrent requests of one image share a single metadata lookup, and bytes are looked up
+     * by the content hash of that metadata only if the writer asks for them.
+     *
+     * @param width one of {@link ImageVariant#WIDTHS}; the original is passed when the variant
+     *              is not generated yet, other widths are ignored
+     */
+    public void writeImage(@NonNull Long id, @Nullable Integer width, @NonNull ImageWriter writer) throws IOException {
+        Integer variantWidth = width != null && ImageVariant.WIDTHS.contains(width) ? width : null;
+        FoundImage found = imageLookups.load(new ImageRequest(id, variantWidth), () -> findImage(id, variantWidth));
+
+        ImageMetadata served = found.variant() == null ? found.image() : found.variant();
+        writer.write(found.image(), found.variant(), () -> imageRepository.findDataByHash(served.contentHash())
+                .orElseThrow(PostNotFoundException::new));
     }
 
-    @Transactional
     public Integer incrementLikes(@NonNull Long id) {
-        return postRepository.incrementLikes(id);
+        return likeCounter.increment(id);
     }
 
+    @Transactional
     public void delete(@NonNull Long id) {
-        postRepository.deleteById(id);
+        List<Tag> tags = tagRepository.findByPostId(id);
+        imageRepository.deleteByPostId(id);
+        if (postRepository.deleteById(id)) {
+            postTagIndex.postDeleted(id);
+            postCountRegistry.postDeleted(tagNames(tags));
+            feedCache.postDeleted(tagNames(tags));
+        }
+        postCache.invalidate(id);
+    }
+
+    private Post loadPost(Long id) {
+        return postRepository.findAggregateById(id, commentaryPageProperties.size())
+                .orElseThrow(PostNotFoundException::new);
+    }
+
+    /**
+     * The version is read first, so a change committed meanwhile makes the page
+     * newer than its version rather than older
+     */
+    private PostsPage loadPostsPage(PageRequest request) {
+        long version = postRepository.findFeedVersion();
+        PostsPage page = postRepository.findAllPaged(request);
+        page.setVersion(version);
+        return page;
+    }
+
+    private FoundImage findImage(Long id, @Nullable Integer width) {
+        ImageMetadata image = imageRepository.findMetadataByPostId(id)
+                .orElseThrow(PostNotFoundException::new);
+        ImageMetadata variant = width == null
+                ? null
+                : imageRepository.findVariantMetadataByPostId(id, width).orElse(null);
+        return new FoundImage(image, variant);
+    }
+
+    private static List<String> tagNames(List<Tag> tags) {
+        return tags.stream()
+                .map(Tag::getName)
+                .toList();
+    }
+
+    private record ImageRequest(Long postId, Integer width) {
+    }
+
+    private record FoundImage(ImageMetadata image, ImageMetadata variant) {
+    }
+
+    @FunctionalInterface
+    public interface ImageWriter {
+
+        /**
+         * @param image   the original image
+         * @param variant the variant passed by {@code data} or {@code null} if it is the original
+         */
+        void write(@NonNull ImageMetadata image, @Nullable ImageMetadata variant,
+                   @NonNull Supplier<Resource> data) throws IOException;
     }
 }
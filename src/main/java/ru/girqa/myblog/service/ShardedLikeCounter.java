@@ -0,0 +1,78 @@
+package ru.girqa.myblog.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import ru.girqa.myblog.config.LikeProperties;
+import ru.girqa.myblog.exception.PostNotFoundException;
+import ru.girqa.myblog.repository.jdbc.PostLikeShardRepository;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes every like into a random one of {@link LikeProperties#shards()} rows of its post.
+ * Summing the shards is reused for {@link LikeProperties#countTtl()}, meanwhile likes
+ * made through this node are added on top of the sum. Sums expire after the same time, so only
+ * posts liked recently are kept. A like leaves the cached post as it is, the post page reads
+ * {@code posts.likes} which {@link ru.girqa.myblog.job.LikeShardCompactionJob} folds the shards into.
+ */
+@Service
+@ConditionalOnProperty(prefix = "blog.posts.likes", name = "mode", havingValue = "sharded")
+public class ShardedLikeCounter implements LikeCounter {
+
+    private final PostLikeShardRepository shardRepository;
+
+    private final int shards;
+
+    private final Cache<Long, Count> counts;
+
+    @Autowired
+    public ShardedLikeCounter(@NonNull PostLikeShardRepository shardRepository,
+                              @NonNull LikeProperties properties) {
+        this(shardRepository, properties, Ticker.systemTicker());
+    }
+
+    ShardedLikeCounter(PostLikeShardRepository shardRepository, LikeProperties properties, Ticker ticker) {
+        this.shardRepository = shardRepository;
+        this.shards = properties.shards();
+        this.counts = Caffeine.newBuilder()
+                .expireAfterWrite(properties.countTtl())
+                .ticker(ticker)
+                .build();
+    }
+
+    /**
+     * @return number of likes including likes of other nodes made up to {@link LikeProperties#countTtl()} ago
+     */
+    @Override
+    public int increment(@NonNull Long postId) {
+        shardRepository.increment(postId, ThreadLocalRandom.current().nextInt(shards))
+                .orElseThrow(PostNotFoundException::new);
+
+        Count count = counts.getIfPresent(postId);
+        if (count != null) {
+            count.since.increment();
+            return count.likes + count.since.intValue();
+        }
+
+        int likes = shardRepository.countLikes(postId)
+                .orElseThrow(PostNotFoundException::new);
+        counts.put(postId, new Count(likes));
+        return likes;
+    }
+
+    /**
+     * Number of likes summed over the shards and likes made through this node since
+     */
+    private record Count(int likes, LongAdder since) {
+
+        private Count(int likes) {
+            this(likes, new LongAdder());
+        }
+    }
+}
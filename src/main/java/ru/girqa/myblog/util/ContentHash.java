@@ -0,0 +1,32 @@
+package ru.girqa.myblog.util;
+
+import lombok.NonNull;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * SHA-256 of stored content in lower case hex, used as its address and validator
+ */
+public final class ContentHash {
+
+    private ContentHash() {
+    }
+
+    public static String of(@NonNull byte[] data) {
+        return hex(newDigest().digest(data));
+    }
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String hex(@NonNull byte[] digest) {
+        return HexFormat.of().formatHex(digest);
+    }
+}
@@ -0,0 +1,42 @@
+package ru.girqa.myblog.util;
+
+import lombok.NonNull;
+import org.springframework.http.MediaType;
+
+import java.util.Arrays;
+
+/**
+ * Detects the format of an image by its leading bytes instead of trusting
+ * the content type sent with the upload
+ */
+public final class ImageFormats {
+
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private static final byte[] GIF = {'G', 'I', 'F', '8'};
+
+    private static final byte[] RIFF = {'R', 'I', 'F', 'F'};
+
+    private static final byte[] WEBP = {'W', 'E', 'B', 'P'};
+
+    private ImageFormats() {
+    }
+
+    /**
+     * @return content type of the image or {@code application/octet-stream} for unknown formats
+     */
+    public static String contentTypeOf(@NonNull byte[] data) {
+        if (startsWith(data, 0, JPEG)) return MediaType.IMAGE_JPEG_VALUE;
+        if (startsWith(data, 0, PNG)) return MediaType.IMAGE_PNG_VALUE;
+        if (startsWith(data, 0, GIF)) return MediaType.IMAGE_GIF_VALUE;
+        if (startsWith(data, 0, RIFF) && startsWith(data, 8, WEBP)) return "image/webp";
+        return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+    }
+
+    private static boolean startsWith(byte[] data, int offset, byte[] signature) {
+        return data.length >= offset + signature.length
+                && Arrays.equals(data, offset, offset + signature.length, signature, 0, signature.length);
+    }
+}
@@ -0,0 +1,161 @@
+package ru.girqa.myblog.util;
+
+import lombok.NonNull;
+import org.springframework.http.MediaType;
+import ru.girqa.myblog.model.domain.post.ImageVariant;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Scales JPEG and PNG images down with ImageIO. Other formats, animated GIFs included,
+ * and images that cannot be decoded are kept as is.
+ */
+public final class ImageResizer {
+
+    static final float JPEG_QUALITY = 0.85f;
+
+    /**
+     * Larger images are kept as is instead of being decoded
+     */
+    static final long MAX_PIXELS = 100_000_000L;
+
+    private static final Set<String> SCALABLE = Set.of(MediaType.IMAGE_JPEG_VALUE, MediaType.IMAGE_PNG_VALUE);
+
+    private ImageResizer() {
+    }
+
+    /**
+     * The image is decoded once, subsampled to about twice the largest requested width,
+     * and every width is scaled from the previous larger one, halving at most at each step.
+     *
+     * @return a variant per width, in the order of {@code widths}
+     */
+    public static List<ImageVariant> resize(@NonNull byte[] data, @NonNull String sourceHash,
+                                            @NonNull List<Integer> widths) {
+        String contentType = ImageFormats.contentTypeOf(data);
+        List<Integer> descending = widths.stream()
+                .sorted(Comparator.reverseOrder())
+                .toList();
+
+        List<ImageVariant> variants = new ArrayList<>();
+        BufferedImage image = SCALABLE.contains(contentType) ? decode(data, descending) : null;
+        for (Integer width : descending) {
+            if (image == null || image.getWidth() <= width) {
+                variants.add(variant(sourceHash, width, contentType, data));
+                continue;
+            }
+            image = scale(image, width);
+            variants.add(variant(sourceHash, width, contentType, encode(image, contentType)));
+        }
+        return variants.stream()
+                .sorted(Comparator.comparingInt(v -> widths.indexOf(v.getWidth())))
+                .toList();
+    }
+
+    /**
+     * @return decoded image or {@code null} if it is not wider than any of the widths or cannot be decoded
+     */
+    private static BufferedImage decode(byte[] data, List<Integer> descending) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return null;
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > MAX_PIXELS) return null;
+
+                int largest = descending.stream()
+                        .filter(w -> w < width)
+                        .findFirst()
+                        .orElse(width);
+                if (largest == width) return null;
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, width / (2 * largest));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            // broken or unsupported image, e.g. a CMYK JPEG
+            return null;
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage image, int width) {
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        double ratio = (double) image.getHeight() / image.getWidth();
+        while (image.getWidth() > width) {
+            int stepWidth = Math.max(width, image.getWidth() / 2);
+            int stepHeight = Math.max(1, (int) Math.round(stepWidth * ratio));
+
+            BufferedImage scaled = new BufferedImage(stepWidth, stepHeight, type);
+            Graphics2D graphics = scaled.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(image, 0, 0, stepWidth, stepHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            image = scaled;
+        }
+        return image;
+    }
+
+    private static byte[] encode(BufferedImage image, String contentType) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            if (MediaType.IMAGE_PNG_VALUE.equals(contentType)) {
+                ImageIO.write(image, "png", out);
+                return out.toByteArray();
+            }
+
+            ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+            try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+                writer.setOutput(stream);
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(JPEG_QUALITY);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ImageVariant variant(String sourceHash, int width, String contentType, byte[] data) {
+        return ImageVariant.builder()
+                .sourceHash(sourceHash)
+                .width(width)
+                .contentType(contentType)
+                .data(data)
+                .build();
+    }
+}
@@ -0,0 +1,115 @@
+package ru.girqa.myblog.util;
+
+import lombok.NonNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Passes an image stream through while hashing it, counting its bytes and keeping
+ * its leading bytes for format detection, so nothing but the caller's buffer holds
+ * the image. Fails as soon as the stream turns out longer or shorter than expected.
+ */
+public class InspectingInputStream extends FilterInputStream {
+
+    /**
+     * Number of leading bytes enough for {@link ImageFormats#contentTypeOf(byte[])}
+     */
+    static final int HEADER_LENGTH = 12;
+
+    private final MessageDigest digest = ContentHash.newDigest();
+
+    private final byte[] header = new byte[HEADER_LENGTH];
+
+    private final long expectedSize;
+
+    private long size;
+
+    private String contentHash;
+
+    public InspectingInputStream(@NonNull InputStream in, long expectedSize) {
+        super(in);
+        this.expectedSize = expectedSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            end();
+        } else {
+            consumed(new byte[]{(byte) b}, 0, 1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(@NonNull byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, len);
+        if (read < 0) {
+            end();
+        } else {
+            consumed(b, off, read);
+        }
+        return read;
+    }
+
+    /**
+     * Skipped bytes would not be hashed
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        throw new IOException("Skipping is not supported");
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * @return SHA-256 of the stream in lower case hex, available once it is read to the end
+     */
+    public String contentHash() {
+        checkEnded();
+        return contentHash;
+    }
+
+    public String contentType() {
+        checkEnded();
+        return ImageFormats.contentTypeOf(Arrays.copyOf(header, (int) Math.min(size, HEADER_LENGTH)));
+    }
+
+    public long size() {
+        return size;
+    }
+
+    private void consumed(byte[] b, int off, int len) throws IOException {
+        if (size < HEADER_LENGTH) {
+            System.arraycopy(b, off, header, (int) size, (int) Math.min(len, HEADER_LENGTH - size));
+        }
+        size += len;
+        if (size > expectedSize) {
+            throw new IOException("Image is longer than %d bytes".formatted(expectedSize));
+        }
+        digest.update(b, off, len);
+    }
+
+    private void end() throws IOException {
+        if (size != expectedSize) {
+            throw new IOException("Image ended at %d of %d bytes".formatted(size, expectedSize));
+        }
+        if (contentHash == null) {
+            contentHash = ContentHash.hex(digest.digest());
+        }
+    }
+
+    private void checkEnded() {
+        if (contentHash == null) {
+            throw new IllegalStateException("Image is not read to the end");
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package ru.girqa.myblog.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.NonNull;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourceRegion;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Writes a resource to the response without loading it on the heap. Supports a single
+ * {@code Range} of bytes, several ranges are answered with the whole resource.
+ * Files are handed to the servlet container for {@code sendfile} when it supports it,
+ * otherwise they are copied with {@link FileChannel#transferTo}.
+ */
+public final class ResourceTransfer {
+
+    static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+    static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+    static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+
+    static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private ResourceTransfer() {
+    }
+
+    public static void send(@NonNull Resource resource,
+                            @NonNull MediaType contentType,
+                            @NonNull HttpServletRequest request,
+                            @NonNull HttpServletResponse response) throws IOException {
+        long length = resource.contentLength();
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(contentType.toString());
+
+        ResourceRegion region = new ResourceRegion(resource, 0, length);
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(range);
+                if (ranges.size() == 1) {
+                    region = ranges.getFirst().toResourceRegion(resource);
+                    response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes %d-%d/%d".formatted(
+                            region.getPosition(), region.getPosition() + region.getCount() - 1, length));
+                }
+            } catch (IllegalArgumentException e) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return;
+            }
+        }
+        response.setContentLengthLong(region.getCount());
+
+        if (resource.isFile()) {
+            Path file = resource.getFile().toPath();
+            if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+                request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START, region.getPosition());
+                request.setAttribute(SENDFILE_END, region.getPosition() + region.getCount());
+                return;
+            }
+            transfer(file, region.getPosition(), region.getCount(), response.getOutputStream());
+        } else {
+            try (InputStream in = resource.getInputStream()) {
+                StreamUtils.copyRange(in, response.getOutputStream(),
+                        region.getPosition(), region.getPosition() + region.getCount() - 1);
+            }
+        }
+    }
+
+    private static void transfer(Path file, long position, long count, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            while (count > 0) {
+                long sent = channel.transferTo(position, count, target);
+                if (sent <= 0) break;
+                position += sent;
+                count -= sent;
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package ru.girqa.myblog.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.NonNull;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller runs the load, callers arriving
+ * while it runs wait for and share its result or exception instead of loading again.
+ * Nothing is kept once the load ends.
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter loads;
+
+    private final Counter coalesced;
+
+    /**
+     * @param name tag telling the coalesced loads apart in metrics
+     */
+    public SingleFlight(@NonNull String name, @NonNull MeterRegistry meterRegistry) {
+        this.loads = Counter.builder("blog.singleflight.loads")
+                .description("Loads run on behalf of one or more callers")
+                .tag("name", name)
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("blog.singleflight.coalesced")
+                .description("Callers that shared a load run by another caller")
+                .tag("name", name)
+                .register(meterRegistry);
+    }
+
+    public V load(@NonNull K key, @NonNull Supplier<V> loader) {
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, own);
+        if (running != null) {
+            coalesced.increment();
+            return join(running);
+        }
+
+        loads.increment();
+        try {
+            V value = loader.get();
+            own.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    /**
+     * Lets callers arriving from now on start a new load of the key instead of sharing
+     * a load that may have read data changed meanwhile
+     */
+    public void forget(@NonNull K key) {
+        inFlight.remove(key);
+    }
+
+    public void forgetIf(@NonNull Predicate<? super K> condition) {
+        inFlight.keySet().removeIf(condition);
+    }
+
+    private static <V> V join(CompletableFuture<V> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw e;
+        }
+    }
+}
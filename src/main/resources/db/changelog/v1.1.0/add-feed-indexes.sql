@@ -0,0 +1,6 @@
+--liquibase formatted sql
+--changeset Reso11er:add-feed-indexes
+
+create index commentaries_post_id_idx on commentaries (post_id, id);
+
+create index post_tags_tag_id_idx on post_tags (tag_id, post_id);
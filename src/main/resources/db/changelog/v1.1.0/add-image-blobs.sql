@@ -0,0 +1,55 @@
+--liquibase formatted sql
+--changeset Reso11er:add-image-blobs
+
+-- bytes of equal images are kept once; ref_count is the number of images and image variants pointing at a blob,
+-- blobs whose ref_count dropped to zero are removed in batches by the garbage collection job;
+-- bytes are in image_data or, when it is null, in the blob store under content_hash
+create table image_blobs
+(
+    content_hash char(64) not null,
+    image_data   bytea,
+    ref_count    integer  not null,
+    constraint image_blobs_pk primary key (content_hash),
+    constraint image_blobs_ref_count_ck check (ref_count >= 0)
+);
+
+alter table image_blobs
+    alter column image_data set storage external;
+
+create index image_blobs_unreferenced_idx on image_blobs (content_hash) where ref_count = 0;
+
+-- bytes kept in the database win over a copy moved to the blob store, the migration job moves them again
+insert into image_blobs(content_hash, image_data, ref_count)
+select distinct on (content_hash) content_hash, image_data, count(*) over (partition by content_hash)
+from images
+order by content_hash, image_data is null;
+
+-- variants of images replaced before are never served
+delete
+from image_variants v
+where not exists (select 1 from image_blobs b where b.content_hash = v.source_hash);
+
+-- a variant equal to its source does not reference it, otherwise the source would never be collected
+insert into image_blobs(content_hash, image_data, ref_count)
+select distinct on (content_hash) content_hash, image_data, 0
+from image_variants
+where content_hash <> source_hash
+order by content_hash, image_data is null
+on conflict (content_hash) do nothing;
+
+update image_blobs b
+set ref_count = b.ref_count + v.refs
+from (select content_hash, count(*) as refs
+      from image_variants
+      where content_hash <> source_hash
+      group by content_hash) v
+where b.content_hash = v.content_hash;
+
+alter table images
+    drop column image_data,
+    add constraint images_image_blobs_fk foreign key (content_hash) references image_blobs (content_hash);
+
+alter table image_variants
+    drop column image_data,
+    add constraint image_variants_sources_fk foreign key (source_hash) references image_blobs (content_hash),
+    add constraint image_variants_image_blobs_fk foreign key (content_hash) references image_blobs (content_hash);
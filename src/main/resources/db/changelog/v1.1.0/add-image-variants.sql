@@ -0,0 +1,18 @@
+--liquibase formatted sql
+--changeset Reso11er:add-image-variants
+
+-- downscaled copies of an image, keyed by the hash of the source bytes so a replaced image never gets stale variants;
+-- bytes are in image_data or, when it is null, in the blob store under content_hash
+create table image_variants
+(
+    source_hash  char(64)     not null,
+    width        integer      not null,
+    content_type varchar(100) not null,
+    content_hash char(64)     not null,
+    image_size   bigint       not null,
+    image_data   bytea,
+    constraint image_variants_pk primary key (source_hash, width)
+);
+
+alter table image_variants
+    alter column image_data set storage external;
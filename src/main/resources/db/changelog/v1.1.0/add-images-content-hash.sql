@@ -0,0 +1,12 @@
+--liquibase formatted sql
+--changeset Reso11er:add-images-content-hash
+
+-- SHA-256 of image bytes kept by the filesystem storage, image_data is cleared then
+alter table images
+    add column content_hash char(64);
+
+alter table images
+    alter column image_data drop not null;
+
+alter table images
+    add constraint images_data_or_hash_ck check (image_data is not null or content_hash is not null);
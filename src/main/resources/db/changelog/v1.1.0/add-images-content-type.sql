@@ -0,0 +1,27 @@
+--liquibase formatted sql
+--changeset Reso11er:add-images-content-type
+
+alter table images
+    add column content_type varchar(100);
+
+-- content_hash now identifies the bytes in both storages, image_data tells where they are kept
+update images
+set content_hash = encode(sha256(image_data), 'hex')
+where content_hash is null;
+
+-- formats recognized by ImageFormats; bytes already moved to files were served as jpeg before
+update images
+set content_type = case
+                       when image_data is null then 'image/jpeg'
+                       when substring(image_data from 1 for 3) = '\xffd8ff'::bytea then 'image/jpeg'
+                       when substring(image_data from 1 for 8) = '\x89504e470d0a1a0a'::bytea then 'image/png'
+                       when substring(image_data from 1 for 4) = '\x47494638'::bytea then 'image/gif'
+                       when substring(image_data from 1 for 4) = '\x52494646'::bytea
+                           and substring(image_data from 9 for 4) = '\x57454250'::bytea then 'image/webp'
+                       else 'application/octet-stream'
+    end;
+
+alter table images
+    drop constraint images_data_or_hash_ck,
+    alter column content_hash set not null,
+    alter column content_type set not null;
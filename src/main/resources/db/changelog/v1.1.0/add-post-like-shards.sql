@@ -0,0 +1,12 @@
+--liquibase formatted sql
+--changeset Reso11er:add-post-like-shards
+
+-- likes not yet folded into posts.likes, spread over several rows per post so concurrent likes
+-- rarely wait for the same row lock; the number of likes of a post is posts.likes plus the sum of its shards
+create table post_like_shards
+(
+    post_id bigint   not null references posts (id) on delete cascade,
+    shard   smallint not null,
+    count   integer  not null check ( count > 0 ),
+    constraint post_like_shards_pk primary key (post_id, shard)
+);
@@ -0,0 +1,15 @@
+--liquibase formatted sql
+--changeset Reso11er:add-post-search-champions
+
+-- the posts most relevant to each word met in many posts, by ts_rank of the word alone: search ranks these
+-- instead of every post of such a word, which the search index could only hand over all at once.
+-- Rebuilt periodically, new posts are added on insert; there is no foreign key, so deleting a post
+-- does not wait for a rebuild, the rows of deleted posts are skipped by search and dropped by the next rebuild
+create table post_search_champions
+(
+    lexeme    text   not null,
+    post_id   bigint not null,
+    term_rank real   not null
+);
+
+create index post_search_champions_rank_idx on post_search_champions (lexeme, term_rank desc, post_id desc);
@@ -0,0 +1,12 @@
+--liquibase formatted sql
+--changeset Reso11er:add-posts-comments-count
+
+alter table posts
+    add column comments_count bigint not null default 0 check ( comments_count >= 0 );
+
+update posts p
+set comments_count = c.comments
+from (select post_id, count(*) comments
+      from commentaries
+      group by post_id) c
+where c.post_id = p.id;
@@ -0,0 +1,16 @@
+--liquibase formatted sql
+--changeset Reso11er:add-posts-excerpt
+
+alter table posts
+    add column excerpt text not null default '';
+
+-- first non-blank line of the text, cut to 500 characters as in Post.excerptOf
+update posts p
+set excerpt = coalesce((select case
+                                   when char_length(l.line) > 500 then left(l.line, 500) || '…'
+                                   else l.line
+                                   end
+                        from regexp_split_to_table(p.post_text, E'\r\n|\r|\n') with ordinality l(line, n)
+                        where l.line ~ '\S'
+                        order by l.n
+                        limit 1), '');
@@ -0,0 +1,10 @@
+--liquibase formatted sql
+--changeset Reso11er:add-posts-search-vector
+
+alter table posts
+    add column search_vector tsvector generated always as (
+        setweight(to_tsvector('russian', title), 'A') ||
+        setweight(to_tsvector('russian', post_text), 'B')
+        ) stored;
+
+create index posts_search_vector_idx on posts using gin (search_vector);
@@ -0,0 +1,30 @@
+--liquibase formatted sql
+--changeset Reso11er:add-posts-version
+
+-- every change of what a post or feed page shows sets the version of the post to the next value,
+-- so a page is unchanged as long as the versions it was built from are
+create sequence posts_version_seq;
+
+-- kept apart from the wide posts row: an indexed column there would make every like and comment
+-- update all indexes of posts, the search one included, instead of updating the row in place
+create table post_versions
+(
+    post_id bigint not null references posts (id) on delete cascade,
+    version bigint not null default nextval('posts_version_seq'),
+    constraint post_versions_pk primary key (post_id)
+);
+
+create index post_versions_version_idx on post_versions (version);
+
+insert into post_versions(post_id)
+select id from posts
+order by id;
+
+-- deleted posts take their versions with them, so a deletion leaves a version of its own here
+create table posts_deletion_version
+(
+    version bigint not null
+);
+
+insert into posts_deletion_version(version)
+values (nextval('posts_version_seq'));
@@ -0,0 +1,6 @@
+--liquibase formatted sql
+--changeset Reso11er:set-images-data-storage-external
+
+-- image formats are compressed already; uncompressed out-of-line values let substring() read only the requested chunks
+alter table images
+    alter column image_data set storage external;
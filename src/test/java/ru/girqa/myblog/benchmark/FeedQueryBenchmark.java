@@ -0,0 +1,168 @@
+package ru.girqa.myblog.benchmark;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.girqa.myblog.benchmark.common.BenchmarkDataset;
+import ru.girqa.myblog.benchmark.common.LatencyReport;
+import ru.girqa.myblog.model.domain.PageRequest;
+import ru.girqa.myblog.model.domain.TagExpression;
+import ru.girqa.myblog.model.domain.post.PostPreview;
+import ru.girqa.myblog.repository.PostRepository;
+import ru.girqa.myblog.repository.common.PostgresTestConfiguration;
+import ru.girqa.myblog.repository.jdbc.PostJdbcRepository;
+import ru.girqa.myblog.repository.memory.PostCountRegistry;
+import ru.girqa.myblog.repository.memory.PostTagIndex;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the single statement feed query with the former four query implementation
+ * (total pages, previews, comment counts and tags fetched one after another).
+ */
+@Tag("benchmark")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@Import(PostgresTestConfiguration.class)
+@SpringBootTest(classes = {PostJdbcRepository.class, PostCountRegistry.class, PostTagIndex.class})
+class FeedQueryBenchmark {
+
+    static final int WARMUP = 200;
+
+    static final int ITERATIONS = 2_000;
+
+    static final int MAX_PAGE = 50;
+
+    @Autowired
+    PostRepository postRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    List<PageRequest> requests;
+
+    @BeforeAll
+    void seed() {
+        BenchmarkDataset.seed(jdbcTemplate);
+
+        Random random = new Random(42);
+        requests = random.ints(WARMUP + ITERATIONS, 0, MAX_PAGE * 2)
+                .mapToObj(i -> PageRequest.builder()
+                        .page(i / 2 + 1)
+                        .posts(10)
+                        .tags(i % 2 == 0 ? null : new TagExpression.HasTag("tag" + (random.nextInt(BenchmarkDataset.TAGS) + 1)))
+                        .build())
+                .toList();
+    }
+
+    @Test
+    void compareFeedLatency() {
+        LegacyFeedQueries legacy = new LegacyFeedQueries(jdbcTemplate);
+        assertEquals(
+                legacy.findPage(requests.getFirst()).size(),
+                postRepository.findAllPaged(requests.getFirst()).getPosts().size()
+        );
+
+        LatencyReport legacyReport = LatencyReport.measure(
+                "four queries (previous implementation)", WARMUP, ITERATIONS,
+                i -> legacy.findPage(requests.get(i % requests.size())));
+        LatencyReport singleReport = LatencyReport.measure(
+                "single statement", WARMUP, ITERATIONS,
+                i -> postRepository.findAllPaged(requests.get(i % requests.size())));
+
+        System.out.printf("Feed latency on %d posts%n%s%n%s%n",
+                BenchmarkDataset.POSTS, legacyReport, singleReport);
+    }
+
+    /**
+     * Copy of the feed queries as they were before the single statement rewrite
+     */
+    record LegacyFeedQueries(JdbcTemplate jdbcTemplate) {
+
+        List<PostPreview> findPage(PageRequest page) {
+            String tag = page.getTags() instanceof TagExpression.HasTag hasTag ? hasTag.name() : null;
+            boolean byTag = tag != null;
+            if (byTag) {
+                jdbcTemplate.queryForObject("""
+                                select ceil(count(*) / ?::float) total_pages from posts p
+                                left join post_tags pt on pt.post_id = p.id
+                                left join tags t on t.id = pt.tag_id
+                                where t.tag_name = ?
+                                """,
+                        Integer.class, page.getPosts(), tag);
+            } else {
+                jdbcTemplate.queryForObject("select ceil(count(*) / ?::float) total_pages from posts",
+                        Integer.class, page.getPosts());
+            }
+
+            List<PostPreview> posts = byTag
+                    ? jdbcTemplate.query("""
+                            select p.id, p.title, p.likes, p.post_text from posts p
+                            left join post_tags pt on pt.post_id = p.id
+                            left join tags t on t.id = pt.tag_id
+                            where t.tag_name = ?
+                            group by p.id
+                            limit ?
+                            offset ?
+                            """,
+                    (rs, n) -> preview(rs.getLong("id"), rs.getString("title"), rs.getString("post_text")),
+                    tag, page.getPosts(), (page.getPage() - 1) * page.getPosts())
+                    : jdbcTemplate.query("""
+                            select id, title, likes, post_text from posts
+                            limit ?
+                            offset ?
+                            """,
+                    (rs, n) -> preview(rs.getLong("id"), rs.getString("title"), rs.getString("post_text")),
+                    page.getPosts(), (page.getPage() - 1) * page.getPosts());
+            if (posts.isEmpty()) return posts;
+
+            String inSql = String.join(", ", Collections.nCopies(posts.size(), "?"));
+            Object[] ids = posts.stream().map(PostPreview::getId).toArray();
+            Map<Long, Long> comments = jdbcTemplate.query("""
+                                    select p.id, count(*) as comments from posts p
+                                    left join commentaries c on p.id = c.post_id
+                                    where p.id in (%s) and c.id is not null
+                                    group by p.id
+                                    """.formatted(inSql),
+                            (rs, n) -> Map.entry(rs.getLong("id"), rs.getLong("comments")),
+                            ids)
+                    .stream()
+                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+            Map<Long, List<String>> tags = jdbcTemplate.query("""
+                                    select p.id post_id, t.tag_name tag_name, t.id tag_id from posts p
+                                    left join post_tags pt on pt.post_id = p.id
+                                    left join tags t on t.id = pt.tag_id
+                                    where p.id in (%s)
+                                    """.formatted(inSql),
+                            (rs, n) -> Map.entry(rs.getLong("post_id"), String.valueOf(rs.getString("tag_name"))),
+                            ids)
+                    .stream()
+                    .collect(Collectors.groupingBy(Map.Entry::getKey,
+                            Collectors.mapping(Map.Entry::getValue, Collectors.toList())));
+
+            posts.forEach(p -> p.setComments(comments.getOrDefault(p.getId(), 0L)));
+            posts.forEach(p -> p.setTags(tags.getOrDefault(p.getId(), List.of()).stream()
+                    .map(ru.girqa.myblog.model.domain.Tag::new)
+                    .toList()));
+            return posts;
+        }
+
+        private static PostPreview preview(Long id, String title, String text) {
+            return PostPreview.builder()
+                    .id(id)
+                    .title(title)
+                    .excerpt(text)
+                    .build();
+        }
+    }
+}
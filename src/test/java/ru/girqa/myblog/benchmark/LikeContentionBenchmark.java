@@ -0,0 +1,98 @@
+package ru.girqa.myblog.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+import ru.girqa.myblog.benchmark.common.ThroughputReport;
+import ru.girqa.myblog.config.PostCacheProperties;
+import ru.girqa.myblog.repository.PostRepository;
+import ru.girqa.myblog.repository.common.PostgresTestConfiguration;
+import ru.girqa.myblog.repository.jdbc.PostJdbcRepository;
+import ru.girqa.myblog.repository.memory.PostCache;
+import ru.girqa.myblog.repository.memory.PostCountRegistry;
+import ru.girqa.myblog.repository.memory.PostTagIndex;
+import ru.girqa.myblog.service.BufferedLikeCounter;
+import ru.girqa.myblog.service.DirectLikeCounter;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares likes of one post by many concurrent users written row by row
+ * with likes buffered in memory and flushed periodically
+ */
+@Tag("benchmark")
+@Import(PostgresTestConfiguration.class)
+@SpringBootTest(classes = {PostJdbcRepository.class, PostCountRegistry.class, PostTagIndex.class})
+class LikeContentionBenchmark {
+
+    static final int LIKERS = 1_000;
+
+    static final int LIKES_PER_LIKER = 10;
+
+    static final long FLUSH_INTERVAL_MILLIS = 200;
+
+    @Autowired
+    PostRepository postRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    PostCache postCache = new PostCache(new PostCacheProperties(DataSize.ofMegabytes(1)), new SimpleMeterRegistry());
+
+    Long postId;
+
+    @BeforeEach
+    void seed() {
+        jdbcTemplate.execute("truncate table posts, tags restart identity cascade");
+        postId = jdbcTemplate.queryForObject("""
+                insert into posts(title, post_text, excerpt)
+                values ('Viral', 'text', 'text')
+                returning id
+                """, Long.class);
+    }
+
+    @Test
+    void measureDirectLikes() {
+        DirectLikeCounter likeCounter = new DirectLikeCounter(postRepository, postCache);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        ThroughputReport report = ThroughputReport.measure(
+                "direct row update", LIKERS, LIKES_PER_LIKER,
+                liker -> transaction.execute(status -> likeCounter.increment(postId)));
+
+        assertEquals(LIKERS * LIKES_PER_LIKER, postRepository.findLikes(postId).orElseThrow());
+        System.out.printf("%d concurrent likers of one post%n%s%n", LIKERS, report);
+    }
+
+    @Test
+    void measureBufferedLikes() {
+        BufferedLikeCounter likeCounter = new BufferedLikeCounter(postRepository, postCache);
+        ThroughputReport report;
+        try (ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor()) {
+            flusher.scheduleWithFixedDelay(likeCounter::flush,
+                    FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            report = ThroughputReport.measure(
+                    "buffered, flushed every " + FLUSH_INTERVAL_MILLIS + " ms", LIKERS, LIKES_PER_LIKER,
+                    liker -> likeCounter.increment(postId));
+        }
+        likeCounter.flush();
+
+        assertEquals(LIKERS * LIKES_PER_LIKER, postRepository.findLikes(postId).orElseThrow());
+        System.out.printf("%d concurrent likers of one post%n%s%n", LIKERS, report);
+    }
+}
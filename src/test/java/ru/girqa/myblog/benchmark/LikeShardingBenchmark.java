@@ -0,0 +1,102 @@
+package ru.girqa.myblog.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+import ru.girqa.myblog.benchmark.common.ThroughputReport;
+import ru.girqa.myblog.config.LikeProperties;
+import ru.girqa.myblog.config.LikeProperties.Mode;
+import ru.girqa.myblog.config.PostCacheProperties;
+import ru.girqa.myblog.repository.PostRepository;
+import ru.girqa.myblog.repository.common.PostgresTestConfiguration;
+import ru.girqa.myblog.repository.jdbc.PostJdbcRepository;
+import ru.girqa.myblog.repository.jdbc.PostLikeShardRepository;
+import ru.girqa.myblog.repository.memory.PostCache;
+import ru.girqa.myblog.repository.memory.PostCountRegistry;
+import ru.girqa.myblog.repository.memory.PostTagIndex;
+import ru.girqa.myblog.service.DirectLikeCounter;
+import ru.girqa.myblog.service.ShardedLikeCounter;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares likes of one post written by as many database sessions as several application
+ * nodes would hold, once into the single {@code posts.likes} row and once into shards
+ */
+@Tag("benchmark")
+@Import(PostgresTestConfiguration.class)
+@SpringBootTest(
+        classes = {PostJdbcRepository.class, PostLikeShardRepository.class, PostCountRegistry.class, PostTagIndex.class},
+        properties = "spring.datasource.hikari.maximum-pool-size=" + LikeShardingBenchmark.SESSIONS
+)
+class LikeShardingBenchmark {
+
+    static final int SESSIONS = 32;
+
+    static final int LIKES_PER_SESSION = 500;
+
+    static final int SHARDS = 16;
+
+    @Autowired
+    PostRepository postRepository;
+
+    @Autowired
+    PostLikeShardRepository shardRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    PostCache postCache = new PostCache(new PostCacheProperties(DataSize.ofMegabytes(1)), new SimpleMeterRegistry());
+
+    Long postId;
+
+    @BeforeEach
+    void seed() {
+        jdbcTemplate.execute("truncate table posts, tags restart identity cascade");
+        postId = jdbcTemplate.queryForObject("""
+                insert into posts(title, post_text, excerpt)
+                values ('Viral', 'text', 'text')
+                returning id
+                """, Long.class);
+    }
+
+    @Test
+    void measureSingleRowLikes() {
+        DirectLikeCounter likeCounter = new DirectLikeCounter(postRepository, postCache);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        ThroughputReport report = ThroughputReport.measure(
+                "single row update", SESSIONS, LIKES_PER_SESSION,
+                session -> transaction.execute(status -> likeCounter.increment(postId)));
+
+        assertEquals(SESSIONS * LIKES_PER_SESSION, postRepository.findLikes(postId).orElseThrow());
+        System.out.printf("%d sessions liking one post%n%s%n", SESSIONS, report);
+    }
+
+    @Test
+    void measureShardedLikes() {
+        ShardedLikeCounter likeCounter = new ShardedLikeCounter(shardRepository, new LikeProperties(
+                Mode.SHARDED, Duration.ofMillis(200), SHARDS, Duration.ofSeconds(1), Duration.ofSeconds(5)));
+
+        ThroughputReport report = ThroughputReport.measure(
+                SHARDS + " shards, one upsert", SESSIONS, LIKES_PER_SESSION,
+                session -> likeCounter.increment(postId));
+
+        shardRepository.compact();
+        assertEquals(SESSIONS * LIKES_PER_SESSION, postRepository.findLikes(postId).orElseThrow());
+        System.out.printf("%d sessions liking one post%n%s%n", SESSIONS, report);
+    }
+}
@@ -0,0 +1,113 @@
+package ru.girqa.myblog.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.girqa.myblog.benchmark.common.BenchmarkDataset;
+import ru.girqa.myblog.benchmark.common.DelayingProxy;
+import ru.girqa.myblog.benchmark.common.LatencyReport;
+import ru.girqa.myblog.model.domain.post.Post;
+import ru.girqa.myblog.repository.common.PostgresTestConfiguration;
+import ru.girqa.myblog.repository.jdbc.CommentaryJdbcRepository;
+import ru.girqa.myblog.repository.jdbc.PostJdbcRepository;
+import ru.girqa.myblog.repository.jdbc.TagJdbcRepository;
+import ru.girqa.myblog.repository.memory.PostCountRegistry;
+import ru.girqa.myblog.repository.memory.PostTagIndex;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the single statement post page query with the former post, tags and commentaries
+ * queries run in one transaction, both through a proxy adding {@link #ROUND_TRIP_MILLIS}
+ * to every round trip to the database.
+ */
+@Tag("benchmark")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@Import(PostgresTestConfiguration.class)
+@SpringBootTest(classes = {PostCountRegistry.class, PostTagIndex.class})
+class PostDetailQueryBenchmark {
+
+    static final int POSTS = 10_000;
+
+    static final long ROUND_TRIP_MILLIS = 2;
+
+    static final int COMMENTARIES = 50;
+
+    static final int WARMUP = 200;
+
+    static final int ITERATIONS = 2_000;
+
+    @Autowired
+    HikariDataSource dataSource;
+
+    @Autowired
+    PostCountRegistry postCountRegistry;
+
+    @Autowired
+    PostTagIndex postTagIndex;
+
+    DelayingProxy proxy;
+
+    HikariDataSource proxiedDataSource;
+
+    @BeforeAll
+    void seed() {
+        BenchmarkDataset.seed(new JdbcTemplate(dataSource), POSTS);
+
+        URI database = URI.create(dataSource.getJdbcUrl().substring("jdbc:".length()));
+        proxy = DelayingProxy.start(database.getHost(), database.getPort(), ROUND_TRIP_MILLIS);
+        proxiedDataSource = new HikariDataSource();
+        proxiedDataSource.setJdbcUrl("jdbc:postgresql://localhost:%d%s".formatted(proxy.port(), database.getRawPath()));
+        proxiedDataSource.setUsername(dataSource.getUsername());
+        proxiedDataSource.setPassword(dataSource.getPassword());
+        proxiedDataSource.setMaximumPoolSize(1);
+    }
+
+    @AfterAll
+    void stopProxy() throws IOException {
+        proxiedDataSource.close();
+        proxy.close();
+    }
+
+    @Test
+    void comparePostPageLatency() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(proxiedDataSource);
+        PostJdbcRepository postRepository = new PostJdbcRepository(jdbcTemplate, postCountRegistry, postTagIndex);
+        TagJdbcRepository tagRepository = new TagJdbcRepository(jdbcTemplate);
+        CommentaryJdbcRepository commentaryRepository = new CommentaryJdbcRepository(jdbcTemplate);
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(proxiedDataSource));
+        long[] postIds = new Random(42).longs(WARMUP + ITERATIONS, 1, POSTS + 1).toArray();
+
+        Post aggregate = postRepository.findAggregateById(postIds[0], COMMENTARIES).orElseThrow();
+        assertEquals(BenchmarkDataset.COMMENTARIES_PER_POST, aggregate.getCommentaries().size());
+        assertEquals(tagRepository.findByPostId(postIds[0]).size(), aggregate.getTags().size());
+
+        LatencyReport separateReport = LatencyReport.measure(
+                "post, tags and commentaries (previous implementation)", WARMUP, ITERATIONS,
+                i -> transaction.execute(status -> {
+                    Post post = postRepository.findById(postIds[i]).orElseThrow();
+                    post.setTags(tagRepository.findByPostId(post.getId()));
+                    post.setCommentaries(commentaryRepository.findByPostIdOrderById(post.getId()));
+                    return post;
+                }));
+        LatencyReport aggregateReport = LatencyReport.measure(
+                "single statement", WARMUP, ITERATIONS,
+                i -> postRepository.findAggregateById(postIds[i], COMMENTARIES).orElseThrow());
+
+        System.out.printf("Post page latency with %d ms round trips%n%s%n%s%n",
+                ROUND_TRIP_MILLIS, separateReport, aggregateReport);
+    }
+}
@@ -0,0 +1,144 @@
+package ru.girqa.myblog.benchmark;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import ru.girqa.myblog.MyBlogConfig;
+import ru.girqa.myblog.model.domain.post.Image;
+import ru.girqa.myblog.model.domain.post.Post;
+import ru.girqa.myblog.repository.common.PostgresTestConfiguration;
+import ru.girqa.myblog.service.ImageVariantService;
+import ru.girqa.myblog.service.PostImportService;
+import ru.girqa.myblog.service.PostsService;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Creates posts with distinct images one {@link PostsService#create(Post)} at a time, as a migration
+ * through {@code POST /posts/post} would, and by a bulk import of a zip archive. Images are kept
+ * by the filesystem storage and their variants are not generated in both cases.
+ */
+@Tag("benchmark")
+@Import(PostgresTestConfiguration.class)
+@SpringBootTest(
+        classes = MyBlogConfig.class,
+        properties = {"blog.images.storage=filesystem", "blog.images.directory=build/benchmark-images"}
+)
+class PostImportBenchmark {
+
+    static final int SINGLE_POSTS = 1_000;
+
+    static final int IMPORTED_POSTS = 10_000;
+
+    static final int IMPORT_RUNS = 3;
+
+    static final int IMAGE_SIZE = 16 * 1024;
+
+    static final int TAGS = 100;
+
+    static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    @Autowired
+    PostsService postsService;
+
+    @Autowired
+    PostImportService importService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    ImageVariantService imageVariantService;
+
+    final Random random = new Random(42);
+
+    @BeforeEach
+    void clear() {
+        jdbcTemplate.execute("truncate table posts, tags, image_blobs cascade");
+    }
+
+    @Test
+    void compareSingleCreationWithImport() throws IOException {
+        long start = System.nanoTime();
+        for (int i = 0; i < SINGLE_POSTS; i++) {
+            byte[] image = image();
+            postsService.create(Post.builder()
+                    .title("Post " + i)
+                    .text("Headline of post " + i + "\n" + "Lorem ipsum dolor sit amet. ".repeat(8))
+                    .likes(0)
+                    .tags(tags(i))
+                    .image(new Image(null, "image", image.length, image))
+                    .build());
+        }
+        String single = report("PostsService.create per post", SINGLE_POSTS, System.nanoTime() - start);
+
+        StringBuilder imports = new StringBuilder();
+        for (int run = 1; run <= IMPORT_RUNS; run++) {
+            byte[] archive = archive();
+            start = System.nanoTime();
+            int imported = importService.importArchive(new ByteArrayInputStream(archive));
+            long elapsed = System.nanoTime() - start;
+
+            assertEquals(IMPORTED_POSTS, imported);
+            imports.append(report("bulk import of a %d MB archive, run %d".formatted(archive.length >> 20, run),
+                    imported, elapsed));
+        }
+
+        System.out.printf("Posts with %d KB images%n%s%s", IMAGE_SIZE / 1024, single, imports);
+    }
+
+    byte[] archive() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry("posts.ndjson"));
+            for (int i = 0; i < IMPORTED_POSTS; i++) {
+                zip.write("""
+                        {"title": "Imported %d", "text": "Headline of post %d\\n%s", "tags": ["tag%d", "tag%d"], "image": "images/%d.png"}
+                        """.formatted(i, i, "Lorem ipsum dolor sit amet. ".repeat(8), i % TAGS, (i * 7) % TAGS, i)
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+            zip.closeEntry();
+            for (int i = 0; i < IMPORTED_POSTS; i++) {
+                zip.putNextEntry(new ZipEntry("images/%d.png".formatted(i)));
+                zip.write(image());
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    static List<ru.girqa.myblog.model.domain.Tag> tags(int post) {
+        return List.of(
+                new ru.girqa.myblog.model.domain.Tag(null, "tag" + post % TAGS),
+                new ru.girqa.myblog.model.domain.Tag(null, "tag" + (post * 7) % TAGS)
+        );
+    }
+
+    byte[] image() {
+        byte[] image = new byte[IMAGE_SIZE];
+        random.nextBytes(image);
+        System.arraycopy(PNG_SIGNATURE, 0, image, 0, PNG_SIGNATURE.length);
+        return image;
+    }
+
+    static String report(String name, int posts, long elapsedNanos) {
+        return String.format(Locale.ROOT, "%-45s %6d posts in %6d ms, %8.0f posts/s%n",
+                name, posts, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), posts * 1e9 / elapsedNanos);
+    }
+}
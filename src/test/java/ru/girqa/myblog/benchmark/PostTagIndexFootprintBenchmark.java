@@ -0,0 +1,76 @@
+package ru.girqa.myblog.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import ru.girqa.myblog.model.domain.TagExpression;
+import ru.girqa.myblog.repository.memory.PostTagIndex;
+import ru.girqa.myblog.repository.memory.PostTagIndex.Footprint;
+
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Heap footprint of {@link PostTagIndex} holding {@code benchmark.bindings} post to tag bindings
+ * (10M by default), compared with plain sorted {@code long[]} posting lists.
+ */
+@Tag("benchmark")
+class PostTagIndexFootprintBenchmark {
+
+    static final long BINDINGS = Long.getLong("benchmark.bindings", 10_000_000L);
+
+    static final int TAGS_PER_POST = 5;
+
+    static final int TAGS = 1_000;
+
+    @Test
+    void reportFootprint() {
+        long posts = BINDINGS / TAGS_PER_POST;
+        SplittableRandom random = new SplittableRandom(42);
+
+        PostTagIndex index = new PostTagIndex();
+        long start = System.nanoTime();
+        index.load(loader -> {
+            for (int tag = 1; tag <= TAGS; ++tag) {
+                loader.tag(tag, "tag" + tag);
+            }
+            for (long post = 1; post <= posts; ++post) {
+                loader.post(post);
+                // skewed popularity: low tag ids are bound to most posts
+                for (int i = 0; i < TAGS_PER_POST; ++i) {
+                    double skew = random.nextDouble();
+                    loader.binding(post, 1 + (long) (skew * skew * TAGS));
+                }
+            }
+        });
+        long loadMillis = (System.nanoTime() - start) / 1_000_000;
+
+        Footprint footprint = index.footprint().orElseThrow();
+        long sortedArraysBytes = footprint.bindings() * Long.BYTES + footprint.posts() * Long.BYTES;
+
+        start = System.nanoTime();
+        long matching = index.evaluate(TagExpression.parse("tag1 AND tag2 AND NOT tag3").orElseThrow())
+                .orElseThrow()
+                .getLongCardinality();
+        long queryMicros = (System.nanoTime() - start) / 1_000;
+
+        System.out.printf(Locale.ROOT, """
+                        Post tag index footprint
+                        posts: %d, tags: %d, bindings: %d, loaded in %d ms
+                        bitmaps: %.1f MiB (%.2f bytes per binding)
+                        sorted long[] posting lists: %.1f MiB (%.2f bytes per binding)
+                        'tag1 AND tag2 AND NOT tag3' matched %d posts in %d us
+                        """,
+                footprint.posts(), footprint.tags(), footprint.bindings(), loadMillis,
+                mib(footprint.sizeInBytes()), (double) footprint.sizeInBytes() / footprint.bindings(),
+                mib(sortedArraysBytes), (double) sortedArraysBytes / footprint.bindings(),
+                matching, queryMicros);
+
+        assertEquals(posts, footprint.posts());
+    }
+
+    private static double mib(long bytes) {
+        return bytes / 1024.0 / 1024.0;
+    }
+}
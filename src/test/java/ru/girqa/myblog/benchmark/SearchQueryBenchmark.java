@@ -0,0 +1,115 @@
+package ru.girqa.myblog.benchmark;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.girqa.myblog.benchmark.common.BenchmarkDataset;
+import ru.girqa.myblog.benchmark.common.LatencyReport;
+import ru.girqa.myblog.model.domain.PageRequest;
+import ru.girqa.myblog.repository.PostRepository;
+import ru.girqa.myblog.repository.common.PostgresTestConfiguration;
+import ru.girqa.myblog.repository.jdbc.PostJdbcRepository;
+import ru.girqa.myblog.repository.memory.PostCountRegistry;
+import ru.girqa.myblog.repository.memory.PostTagIndex;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Latency of ranked full-text search pages. Queries are one or two vocabulary words
+ * picked uniformly, so most of them are as selective as ordinary words of a real corpus;
+ * the most frequent word, met in hundreds of thousands of posts, is measured on its own.
+ * Search champions are built once after seeding, as the rebuild job would.
+ */
+@Tag("benchmark")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@Import(PostgresTestConfiguration.class)
+@SpringBootTest(classes = {PostJdbcRepository.class, PostCountRegistry.class, PostTagIndex.class})
+class SearchQueryBenchmark {
+
+    static final int WARMUP = 200;
+
+    static final int ITERATIONS = 2_000;
+
+    static final int MAX_PAGE = 5;
+
+    static final double LATENCY_BUDGET_MILLIS = 20;
+
+    /**
+     * Vocabulary words are log-uniform, so {@code term1} is met in over 40% of the posts
+     */
+    static final String MOST_FREQUENT_WORD = "term1";
+
+    @Autowired
+    PostRepository postRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    List<PageRequest> requests;
+
+    @BeforeAll
+    void seed() {
+        BenchmarkDataset.seed(jdbcTemplate);
+        postRepository.rebuildSearchChampions();
+
+        Random random = new Random(42);
+        requests = random.ints(WARMUP + ITERATIONS, 1, BenchmarkDataset.VOCABULARY)
+                .mapToObj(term -> PageRequest.builder()
+                        .page(random.nextInt(MAX_PAGE) + 1)
+                        .posts(10)
+                        .query(random.nextBoolean()
+                                ? "term" + term
+                                : "term" + term + " OR term" + (random.nextInt(BenchmarkDataset.VOCABULARY - 1) + 1))
+                        .build())
+                .toList();
+    }
+
+    @Test
+    void measureSearchLatency() {
+        assertFalse(postRepository.findAllPaged(PageRequest.builder()
+                .page(1)
+                .posts(10)
+                .query("term" + BenchmarkDataset.VOCABULARY / 2)
+                .build()
+        ).getPosts().isEmpty());
+
+        LatencyReport report = LatencyReport.measure(
+                "ranked search", WARMUP, ITERATIONS,
+                i -> postRepository.findAllPaged(requests.get(i % requests.size())));
+
+        System.out.printf("Search latency on %d posts%n%s%n", BenchmarkDataset.POSTS, report);
+        assertTrue(report.percentileMillis(99) < LATENCY_BUDGET_MILLIS,
+                "p99 search latency exceeds " + LATENCY_BUDGET_MILLIS + " ms: " + report);
+    }
+
+    @Test
+    void measureMostFrequentWordLatency() {
+        Random random = new Random(42);
+        List<PageRequest> frequent = random.ints(WARMUP + ITERATIONS, 1, MAX_PAGE + 1)
+                .mapToObj(page -> PageRequest.builder()
+                        .page(page)
+                        .posts(10)
+                        .query(MOST_FREQUENT_WORD)
+                        .build())
+                .toList();
+        assertTrue(postRepository.findAllPaged(frequent.getFirst()).isTotalPagesCapped());
+
+        LatencyReport report = LatencyReport.measure(
+                "most frequent word search", WARMUP, ITERATIONS,
+                i -> postRepository.findAllPaged(frequent.get(i % frequent.size())));
+
+        System.out.printf("Search latency of %s on %d posts%n%s%n",
+                MOST_FREQUENT_WORD, BenchmarkDataset.POSTS, report);
+        assertTrue(report.percentileMillis(99) < LATENCY_BUDGET_MILLIS,
+                "p99 search latency of the most frequent word exceeds " + LATENCY_BUDGET_MILLIS + " ms: " + report);
+    }
+}
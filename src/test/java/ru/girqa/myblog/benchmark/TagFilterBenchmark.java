@@ -0,0 +1,103 @@
+package ru.girqa.myblog.benchmark;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.girqa.myblog.benchmark.common.BenchmarkDataset;
+import ru.girqa.myblog.benchmark.common.LatencyReport;
+import ru.girqa.myblog.model.domain.PageRequest;
+import ru.girqa.myblog.model.domain.TagExpression;
+import ru.girqa.myblog.repository.PostRepository;
+import ru.girqa.myblog.repository.common.PostgresTestConfiguration;
+import ru.girqa.myblog.repository.jdbc.PostJdbcRepository;
+import ru.girqa.myblog.repository.jdbc.TagJdbcRepository;
+import ru.girqa.myblog.repository.memory.PostCountRegistry;
+import ru.girqa.myblog.repository.memory.PostTagIndex;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares tag filtered feed pages answered by SQL with the ones answered by {@link PostTagIndex}
+ */
+@Tag("benchmark")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@Import(PostgresTestConfiguration.class)
+@SpringBootTest(classes = {PostJdbcRepository.class, PostCountRegistry.class, PostTagIndex.class})
+class TagFilterBenchmark {
+
+    static final int WARMUP = 200;
+
+    static final int ITERATIONS = 2_000;
+
+    static final int MAX_PAGE = 50;
+
+    static final List<String> EXPRESSIONS = List.of("%s", "%s AND %s", "%s OR %s", "%s AND NOT %s");
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    PostRepository sqlRepository;
+
+    PostRepository indexRepository;
+
+    List<PageRequest> requests;
+
+    @BeforeAll
+    void seed() {
+        BenchmarkDataset.seed(jdbcTemplate);
+
+        PostTagIndex index = new PostTagIndex();
+        TagJdbcRepository tagRepository = new TagJdbcRepository(jdbcTemplate);
+        new TransactionTemplate(transactionManager)
+                .executeWithoutResult(status -> index.load(tagRepository::loadIndex));
+        System.out.println(index.footprint().orElseThrow());
+
+        sqlRepository = new PostJdbcRepository(jdbcTemplate, new PostCountRegistry(), new PostTagIndex());
+        indexRepository = new PostJdbcRepository(jdbcTemplate, new PostCountRegistry(), index);
+
+        Random random = new Random(42);
+        requests = random.ints(WARMUP + ITERATIONS, 0, EXPRESSIONS.size())
+                .mapToObj(i -> PageRequest.builder()
+                        .page(random.nextInt(MAX_PAGE) + 1)
+                        .posts(10)
+                        .tags(TagExpression.parse(EXPRESSIONS.get(i).formatted(
+                                "tag" + (random.nextInt(BenchmarkDataset.TAGS) + 1),
+                                "tag" + (random.nextInt(BenchmarkDataset.TAGS) + 1)
+                        )).orElseThrow())
+                        .build())
+                .toList();
+    }
+
+    @Test
+    void compareTagFilterLatency() {
+        for (PageRequest request : requests.subList(0, EXPRESSIONS.size() * 5)) {
+            assertEquals(
+                    sqlRepository.findAllPaged(request).getTotalPages(),
+                    indexRepository.findAllPaged(request).getTotalPages()
+            );
+        }
+
+        LatencyReport sqlReport = LatencyReport.measure(
+                "sql tag predicates", WARMUP, ITERATIONS,
+                i -> sqlRepository.findAllPaged(requests.get(i % requests.size())));
+        LatencyReport indexReport = LatencyReport.measure(
+                "bitmap index", WARMUP, ITERATIONS,
+                i -> indexRepository.findAllPaged(requests.get(i % requests.size())));
+
+        System.out.printf("Tag filtered feed latency on %d posts%n%s%n%s%n",
+                BenchmarkDataset.POSTS, sqlReport, indexReport);
+    }
+}
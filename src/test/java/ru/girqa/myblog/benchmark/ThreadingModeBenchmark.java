@@ -0,0 +1,109 @@
+package ru.girqa.myblog.benchmark;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import ru.girqa.myblog.MyBlogConfig;
+import ru.girqa.myblog.benchmark.common.BenchmarkDataset;
+import ru.girqa.myblog.benchmark.common.ThroughputReport;
+import ru.girqa.myblog.repository.common.PostgresTestConfiguration;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Serves post pages to more concurrent clients than Tomcat has platform worker threads,
+ * once with platform and once with virtual threads. The post cache is off,
+ * so every request reads the post from the database.
+ */
+@Tag("benchmark")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@Import(PostgresTestConfiguration.class)
+@SpringBootTest(
+        classes = MyBlogConfig.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"blog.posts.cache.max-size=0B", "blog.images.directory=build/benchmark-images"}
+)
+abstract class ThreadingModeBenchmark {
+
+    static final int POSTS = 10_000;
+
+    static final int CLIENTS = 400;
+
+    static final int WARMUP_REQUESTS = 10;
+
+    static final int REQUESTS_PER_CLIENT = 50;
+
+    final HttpClient httpClient = HttpClient.newHttpClient();
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @LocalServerPort
+    int port;
+
+    @BeforeAll
+    void seed() {
+        BenchmarkDataset.seed(jdbcTemplate, POSTS);
+    }
+
+    @Test
+    void measurePostPages() {
+        Random random = new Random(42);
+        long[] postIds = random.longs(CLIENTS * (WARMUP_REQUESTS + REQUESTS_PER_CLIENT), 1, POSTS + 1).toArray();
+
+        ThroughputReport.measure("warmup", CLIENTS, WARMUP_REQUESTS, client -> getPost(postIds[client]));
+        int[] sent = new int[CLIENTS];
+        ThroughputReport report = ThroughputReport.measure(mode(), CLIENTS, REQUESTS_PER_CLIENT,
+                client -> getPost(postIds[CLIENTS * WARMUP_REQUESTS + client * REQUESTS_PER_CLIENT + sent[client]++]));
+
+        System.out.printf("%d concurrent clients of post pages%n%s%n", CLIENTS, report);
+    }
+
+    abstract String mode();
+
+    private void getPost(long postId) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:%d/posts/post/%d".formatted(port, postId)))
+                .GET()
+                .build();
+        try {
+            assertEquals(200, httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @TestPropertySource(properties = "spring.threads.virtual.enabled=false")
+    static class PlatformThreads extends ThreadingModeBenchmark {
+
+        @Override
+        String mode() {
+            return "platform threads (Tomcat pool of 200)";
+        }
+    }
+
+    @TestPropertySource(properties = "spring.threads.virtual.enabled=true")
+    static class VirtualThreads extends ThreadingModeBenchmark {
+
+        @Override
+        String mode() {
+            return "virtual threads (connection semaphore)";
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package ru.girqa.myblog.benchmark.common;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Synthetic blog content for benchmarks. Post ids are {@code 1..posts},
+ * tag ids are {@code 1..tags} and tags are named {@code tag<id>}.
+ * Every post text contains {@link #TERMS_PER_POST} words {@code term<n>} from a vocabulary
+ * of {@link #VOCABULARY} words, with log-uniform frequencies: low {@code n} are common words.
+ */
+public final class BenchmarkDataset {
+
+    public static final int POSTS = Integer.getInteger("benchmark.posts", 1_000_000);
+
+    public static final int TAGS = 100;
+
+    public static final int COMMENTARIES_PER_POST = 2;
+
+    public static final int VOCABULARY = 20_000;
+
+    public static final int TERMS_PER_POST = 8;
+
+    private BenchmarkDataset() {
+    }
+
+    public static void seed(JdbcTemplate jdbcTemplate) {
+        seed(jdbcTemplate, POSTS);
+    }
+
+    public static void seed(JdbcTemplate jdbcTemplate, int posts) {
+        jdbcTemplate.execute("truncate table posts, tags restart identity cascade");
+        jdbcTemplate.update("""
+                        insert into posts(title, post_text, excerpt, likes, comments_count)
+                        select 'Post ' || g,
+                               'Headline of post ' || g || E'\\n'
+                                   || (select string_agg('term' || floor(exp(random() * ln(?)))::int, ' ')
+                                       from generate_series(1, ?) w
+                                       where g > 0)
+                                   || E'\\n' || repeat('Lorem ipsum dolor sit amet. ', 8),
+                               'Headline of post ' || g,
+                               g % 1000,
+                               ?
+                        from generate_series(1, ?) g
+                        """,
+                VOCABULARY, TERMS_PER_POST, COMMENTARIES_PER_POST, posts);
+        jdbcTemplate.update("insert into post_versions(post_id) select id from posts");
+        jdbcTemplate.update("""
+                        insert into tags(tag_name)
+                        select 'tag' || g from generate_series(1, ?) g
+                        """,
+                TAGS);
+        jdbcTemplate.update("""
+                        insert into post_tags(post_id, tag_id)
+                        select p.id, (p.id * v.k) % ? + 1 from posts p, (values (1), (7), (13)) v(k)
+                        on conflict do nothing
+                        """,
+                TAGS);
+        // every post gets exactly COMMENTARIES_PER_POST commentaries, as stored in comments_count
+        jdbcTemplate.update("""
+                        insert into commentaries(post_id, commentary_text)
+                        select g % ? + 1, 'Commentary ' || g
+                        from generate_series(1, ?) g
+                        """,
+                posts, posts * COMMENTARIES_PER_POST);
+        jdbcTemplate.execute("vacuum analyze");
+    }
+}
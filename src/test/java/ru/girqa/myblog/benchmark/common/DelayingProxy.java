@@ -0,0 +1,108 @@
+package ru.girqa.myblog.benchmark.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TCP proxy delaying every chunk by half of the round trip in each direction, as a remote
+ * database would. Chunks are queued with their deadlines, so the delay adds latency
+ * without limiting throughput.
+ */
+public final class DelayingProxy implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+
+    private final String targetHost;
+
+    private final int targetPort;
+
+    private final long oneWayDelayNanos;
+
+    private DelayingProxy(String targetHost, int targetPort, long roundTripMillis) throws IOException {
+        this.serverSocket = new ServerSocket(0);
+        this.targetHost = targetHost;
+        this.targetPort = targetPort;
+        this.oneWayDelayNanos = TimeUnit.MILLISECONDS.toNanos(roundTripMillis) / 2;
+    }
+
+    public static DelayingProxy start(String targetHost, int targetPort, long roundTripMillis) {
+        try {
+            DelayingProxy proxy = new DelayingProxy(targetHost, targetPort, roundTripMillis);
+            Thread.ofVirtual().name("delaying-proxy").start(proxy::accept);
+            return proxy;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket client = serverSocket.accept();
+                Socket target = new Socket();
+                target.connect(new InetSocketAddress(targetHost, targetPort));
+                client.setTcpNoDelay(true);
+                target.setTcpNoDelay(true);
+                pipe(client, target);
+                pipe(target, client);
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private void pipe(Socket from, Socket to) throws IOException {
+        InputStream in = from.getInputStream();
+        OutputStream out = to.getOutputStream();
+        BlockingQueue<Chunk> chunks = new LinkedBlockingQueue<>();
+        Thread.ofVirtual().start(() -> {
+            byte[] buffer = new byte[16 * 1024];
+            try (from) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    chunks.put(new Chunk(System.nanoTime() + oneWayDelayNanos, Arrays.copyOf(buffer, read)));
+                }
+            } catch (IOException | InterruptedException ignored) {
+                // the other side closed the connection
+            } finally {
+                chunks.add(Chunk.END);
+            }
+        });
+        Thread.ofVirtual().start(() -> {
+            try (to) {
+                for (Chunk chunk = chunks.take(); chunk != Chunk.END; chunk = chunks.take()) {
+                    long wait = chunk.deadline() - System.nanoTime();
+                    if (wait > 0) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                    out.write(chunk.data());
+                    out.flush();
+                }
+            } catch (IOException | InterruptedException ignored) {
+                // the other side closed the connection
+            }
+        });
+    }
+
+    private record Chunk(long deadline, byte[] data) {
+
+        static final Chunk END = new Chunk(0, new byte[0]);
+    }
+}
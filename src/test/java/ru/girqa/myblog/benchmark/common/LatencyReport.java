@@ -0,0 +1,57 @@
+package ru.girqa.myblog.benchmark.common;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Latency distribution of one measured scenario
+ */
+public record LatencyReport(String name, long[] sortedNanos) {
+
+    public static LatencyReport of(String name, long[] nanos) {
+        long[] sorted = Arrays.copyOf(nanos, nanos.length);
+        Arrays.sort(sorted);
+        return new LatencyReport(name, sorted);
+    }
+
+    /**
+     * Runs {@code warmup} unmeasured and {@code iterations} measured calls of the action
+     */
+    public static LatencyReport measure(String name, int warmup, int iterations, IntAction action) {
+        for (int i = 0; i < warmup; ++i) {
+            action.run(i);
+        }
+        long[] nanos = new long[iterations];
+        for (int i = 0; i < iterations; ++i) {
+            long start = System.nanoTime();
+            action.run(i);
+            nanos[i] = System.nanoTime() - start;
+        }
+        return of(name, nanos);
+    }
+
+    public double percentileMillis(double percentile) {
+        if (sortedNanos.length == 0) return 0;
+        int index = (int) Math.ceil(percentile / 100 * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, Math.min(index, sortedNanos.length - 1))] / 1_000_000.0;
+    }
+
+    public double p50() {
+        return percentileMillis(50);
+    }
+
+    public double p99() {
+        return percentileMillis(99);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%-40s n=%-6d p50=%8.3f ms  p99=%8.3f ms  max=%8.3f ms",
+                name, sortedNanos.length, p50(), p99(), percentileMillis(100));
+    }
+
+    @FunctionalInterface
+    public interface IntAction {
+        void run(int iteration);
+    }
+}
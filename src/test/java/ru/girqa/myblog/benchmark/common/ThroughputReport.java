@@ -0,0 +1,64 @@
+package ru.girqa.myblog.benchmark.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Throughput and latency of one scenario run by many threads at once
+ */
+public record ThroughputReport(LatencyReport latency, long elapsedNanos) {
+
+    /**
+     * Starts {@code threads} threads together, each making {@code callsPerThread} measured calls
+     * of the action with its own thread number
+     */
+    public static ThroughputReport measure(String name, int threads, int callsPerThread,
+                                           LatencyReport.IntAction action) {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<long[]>> results = new ArrayList<>(threads);
+        long elapsed;
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for (int t = 0; t < threads; ++t) {
+                int thread = t;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    long[] nanos = new long[callsPerThread];
+                    for (int i = 0; i < callsPerThread; ++i) {
+                        long begin = System.nanoTime();
+                        action.run(thread);
+                        nanos[i] = System.nanoTime() - begin;
+                    }
+                    return nanos;
+                }));
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            long[] nanos = new long[threads * callsPerThread];
+            for (int t = 0; t < threads; ++t) {
+                System.arraycopy(results.get(t).get(), 0, nanos, t * callsPerThread, callsPerThread);
+            }
+            elapsed = System.nanoTime() - begin;
+            return new ThroughputReport(LatencyReport.of(name, nanos), elapsed);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public double callsPerSecond() {
+        return latency.sortedNanos().length * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%s  throughput=%10.0f calls/s", latency, callsPerSecond());
+    }
+}
@@ -10,16 +10,22 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.util.MultiValueMap;
 import org.testcontainers.shaded.com.google.common.net.MediaType;
 import ru.girqa.myblog.model.domain.Commentary;
+import ru.girqa.myblog.model.domain.CommentarySlice;
+import ru.girqa.myblog.model.dto.commentary.CommentaryDto;
+import ru.girqa.myblog.model.dto.commentary.CommentarySliceDto;
 import ru.girqa.myblog.model.dto.commentary.CreateCommentaryDto;
 import ru.girqa.myblog.model.mapper.CommentaryMapper;
 import ru.girqa.myblog.service.CommentaryService;
 
+import java.util.List;
 import java.util.Map;
 
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.xpath;
 
 @WebMvcTest(CommentaryController.class)
 class CommentaryControllerTest {
@@ -108,4 +114,46 @@ class CommentaryControllerTest {
         verify(commentaryServiceMock, times(1))
                 .delete(COMMENT_ID);
     }
-}
\ No newline at end of file
+
+    @Test
+    @SneakyThrows
+    void shouldRenderNextSliceOfCommentaries() {
+        final Long POST_ID = 8L;
+        CommentarySlice slice = new CommentarySlice(List.of(), 21L);
+        when(commentaryServiceMock.findSlice(POST_ID, 20L))
+                .thenReturn(slice);
+        when(commentaryMapperMock.toDto(slice))
+                .thenReturn(new CommentarySliceDto(List.of(
+                        new CommentaryDto(21L, POST_ID, "C1"),
+                        new CommentaryDto(22L, POST_ID, "Line1\nLine2")
+                ), 22L));
+
+        mockMvc.perform(get("/commentaries/post/{postId}", POST_ID)
+                        .param("after", "20")
+                        .accept(org.springframework.http.MediaType.TEXT_HTML))
+                .andExpect(status().isOk())
+                .andExpect(xpath("//div[@class='comment']").nodeCount(2))
+                .andExpect(xpath("//div[@id='comment-22']//p").nodeCount(2))
+                .andExpect(xpath("//input[@name='postId'][@value='8']").nodeCount(4))
+                .andExpect(xpath("//button[contains(@class, 'comments-more')]/@data-url")
+                        .string("/commentaries/post/8?after=22"));
+    }
+
+    @Test
+    @SneakyThrows
+    void shouldReturnSliceOfCommentariesAsJson() {
+        final Long POST_ID = 8L;
+        CommentarySlice slice = new CommentarySlice(List.of(), null);
+        when(commentaryServiceMock.findSlice(POST_ID, null))
+                .thenReturn(slice);
+        when(commentaryMapperMock.toDto(slice))
+                .thenReturn(new CommentarySliceDto(List.of(new CommentaryDto(3L, POST_ID, "C1")), null));
+
+        mockMvc.perform(get("/commentaries/post/{postId}", POST_ID)
+                        .accept(org.springframework.http.MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.commentaries[0].id").value(3))
+                .andExpect(jsonPath("$.commentaries[0].text").value("C1"))
+                .andExpect(jsonPath("$.nextAfter").doesNotExist());
+    }
+}
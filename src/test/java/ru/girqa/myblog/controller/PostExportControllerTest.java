@@ -0,0 +1,70 @@
+package ru.girqa.myblog.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.girqa.myblog.service.PostExportService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(PostExportController.class)
+class PostExportControllerTest {
+
+    @MockitoBean
+    PostExportService exportServiceMock;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void shouldExportNdjson() throws Exception {
+        when(exportServiceMock.exportNdjson(any(OutputStream.class))).thenAnswer(invocation -> {
+            write(invocation.getArgument(0), "{\"title\":\"First\"}\n");
+            return 1;
+        });
+
+        mockMvc.perform(get("/posts/export"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"posts.ndjson\""))
+                .andExpect(content().string("{\"title\":\"First\"}\n"));
+
+        verify(exportServiceMock, never()).exportArchive(any());
+    }
+
+    @Test
+    void shouldExportArchive() throws Exception {
+        when(exportServiceMock.exportArchive(any(OutputStream.class))).thenAnswer(invocation -> {
+            write(invocation.getArgument(0), "PK");
+            return 1;
+        });
+
+        mockMvc.perform(get("/posts/export").param("format", "zip"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(PostImportController.APPLICATION_ZIP_VALUE))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"posts.zip\""))
+                .andExpect(content().string("PK"));
+
+        verify(exportServiceMock, never()).exportNdjson(any());
+    }
+
+    static void write(OutputStream out, String content) {
+        try {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
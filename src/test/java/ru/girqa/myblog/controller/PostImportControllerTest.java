@@ -0,0 +1,77 @@
+package ru.girqa.myblog.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.girqa.myblog.exception.InvalidImportException;
+import ru.girqa.myblog.service.PostImportService;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(PostImportController.class)
+class PostImportControllerTest {
+
+    @MockitoBean
+    PostImportService importServiceMock;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void shouldImportNdjson() throws Exception {
+        when(importServiceMock.importNdjson(any(InputStream.class))).thenReturn(2);
+
+        mockMvc.perform(post("/posts/import")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{}\n{}\n".getBytes(StandardCharsets.UTF_8)))
+                .andExpect(status().isOk())
+                .andExpect(content().string("2"));
+
+        verify(importServiceMock).importNdjson(any(InputStream.class));
+        verify(importServiceMock, never()).importArchive(any());
+    }
+
+    @Test
+    void shouldImportArchive() throws Exception {
+        when(importServiceMock.importArchive(any(InputStream.class))).thenReturn(10_000);
+
+        mockMvc.perform(post("/posts/import")
+                        .contentType(PostImportController.APPLICATION_ZIP_VALUE)
+                        .content(new byte[]{'P', 'K', 3, 4}))
+                .andExpect(status().isOk())
+                .andExpect(content().string("10000"));
+
+        verify(importServiceMock).importArchive(any(InputStream.class));
+    }
+
+    @Test
+    void shouldAnswerBadRequestToInvalidImport() throws Exception {
+        when(importServiceMock.importNdjson(any(InputStream.class)))
+                .thenThrow(new InvalidImportException("Post 1 has no title"));
+
+        mockMvc.perform(post("/posts/import")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Post 1 has no title"));
+    }
+
+    @Test
+    void shouldRejectOtherFormats() throws Exception {
+        mockMvc.perform(post("/posts/import")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isUnsupportedMediaType());
+
+        verifyNoInteractions(importServiceMock);
+    }
+}
@@ -9,6 +9,9 @@ import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
@@ -17,9 +20,12 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultMatcher;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.multipart.MultipartFile;
+import ru.girqa.myblog.model.domain.PageCursor;
 import ru.girqa.myblog.model.domain.PageRequest;
 import ru.girqa.myblog.model.domain.Tag;
+import ru.girqa.myblog.model.domain.TagExpression;
 import ru.girqa.myblog.model.domain.post.Image;
+import ru.girqa.myblog.model.domain.post.ImageMetadata;
 import ru.girqa.myblog.model.domain.post.Post;
 import ru.girqa.myblog.model.domain.post.PostPreview;
 import ru.girqa.myblog.model.domain.post.PostsPage;
@@ -35,9 +41,13 @@ import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Stream;
 
+import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -45,6 +55,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @WebMvcTest(PostsController.class)
 class PostsControllerTest {
 
+    static final String IMAGE_HASH = "fff6a3fe81826ce4f48771d01939db08e24d52fcd3e16106a752ffe959812f02";
+
     @MockitoBean
     PostsService postsServiceMock;
 
@@ -66,7 +78,7 @@ class PostsControllerTest {
                 PostPreview.builder()
                         .id(2L)
                         .title("Title 1")
-                        .text("Text 1")
+                        .excerpt("Text 1")
                         .likes(5)
                         .comments(2L)
                         .tags(List.of(
@@ -83,7 +95,7 @@ class PostsControllerTest {
                 PostPreview.builder()
                         .id(3L)
                         .title("Title 2")
-                        .text("Text 2")
+                        .excerpt("Text 2")
                         .likes(8)
                         .comments(1L)
                         .tags(List.of(
@@ -104,7 +116,8 @@ class PostsControllerTest {
                     Arguments.of(null, 5, 50, "T1"),
                     Arguments.of(7, 4, null, "T1"),
                     Arguments.of(7, 9, 10, null),
-                    Arguments.of(2, 22, 20, "T")
+                    Arguments.of(2, 22, 20, "T"),
+                    Arguments.of(3, 8, 10, "T1 AND (T2 OR NOT T3)")
             );
         }
 
@@ -134,10 +147,168 @@ class PostsControllerTest {
                     .getPostsPage(PageRequest.builder()
                             .page(PAGE)
                             .posts(POSTS_PER_PAGE)
-                            .targetTag(tag)
+                            .tags(TagExpression.parse(tag).orElse(null))
+                            .build());
+        }
+
+        @Test
+        @SneakyThrows
+        void shouldPassCursorAndRenderCursorLinksForDeepPages() {
+            final int PAGE = PostsController.CURSOR_PAGING_THRESHOLD + 2;
+            final PageCursor cursor = PageCursor.after(40L);
+
+            when(postsServiceMock.getPostsPage(any()))
+                    .thenReturn(PostsPage.builder()
+                            .page(PAGE)
+                            .totalPages(PAGE + 5)
+                            .postsPerPage(2)
+                            .posts(preparedPosts)
+                            .nextCursor(PageCursor.after(3L))
+                            .previousCursor(PageCursor.before(2L))
+                            .build()
+                    );
+            when(postMapperMock.toDto(any(PostPreview.class)))
+                    .thenReturn(new PostPreviewDto(
+                            2L, "Title 1", "Text 1", 5, 2,
+                            List.of("T1", "T2"), "/posts/post/2/image?v=0123456789abcdef"
+                    ));
+
+            mockMvc.perform(get("/posts")
+                            .param("page", String.valueOf(PAGE))
+                            .param("postsPerPage", "2")
+                            .param("cursor", cursor.encode()))
+                    .andExpect(status().isOk())
+                    .andExpect(model().attribute("nextCursor", PageCursor.after(3L).encode()))
+                    .andExpect(model().attribute("previousCursor", PageCursor.before(2L).encode()))
+                    .andExpect(xpath("//a[contains(@href, 'cursor=%s')]", PageCursor.after(3L).encode()).exists())
+                    .andExpect(xpath("//a[contains(@href, 'cursor=%s')]", PageCursor.before(2L).encode()).exists());
+
+            verify(postsServiceMock, times(1))
+                    .getPostsPage(PageRequest.builder()
+                            .page(PAGE)
+                            .posts(2)
+                            .cursor(cursor)
+                            .build());
+        }
+
+        @Test
+        @SneakyThrows
+        void shouldPassSearchQuery() {
+            when(postsServiceMock.getPostsPage(any()))
+                    .thenReturn(PostsPage.builder()
+                            .page(1)
+                            .totalPages(3)
+                            .postsPerPage(10)
+                            .query("spring boot")
+                            .posts(List.of())
+                            .build()
+                    );
+
+            mockMvc.perform(get("/posts")
+                            .param("q", " spring boot ")
+                            .param("tag", "java"))
+                    .andExpect(status().isOk())
+                    .andExpect(model().attribute("searchQuery", "spring boot"))
+                    .andExpect(xpath("//input[@name='q'][@value='spring boot']").exists())
+                    .andExpect(xpath("//a[contains(@href, '%s')]", "q=spring%20boot").exists());
+
+            verify(postsServiceMock, times(1))
+                    .getPostsPage(PageRequest.builder()
+                            .page(PostsController.DEFAULT_PAGE)
+                            .posts(PostsController.DEFAULT_POSTS_PER_PAGE)
+                            .tags(new TagExpression.HasTag("java"))
+                            .query("spring boot")
                             .build());
         }
 
+        @Test
+        @SneakyThrows
+        void shouldShowCappedTotalPagesAsLowerBound() {
+            when(postsServiceMock.getPostsPage(any()))
+                    .thenReturn(PostsPage.builder()
+                            .page(100)
+                            .totalPages(100)
+                            .totalPagesCapped(true)
+                            .postsPerPage(10)
+                            .query("spring")
+                            .posts(List.of())
+                            .build()
+                    );
+
+            mockMvc.perform(get("/posts")
+                            .param("page", "100")
+                            .param("q", "spring"))
+                    .andExpect(status().isOk())
+                    .andExpect(model().attribute("totalPagesCapped", true))
+                    .andExpect(xpath("//div[contains(@class, 'btn')][text()='100/100+']").exists());
+        }
+
+        @Test
+        @SneakyThrows
+        void shouldUseOffsetLinksForShallowPages() {
+            when(postsServiceMock.getPostsPage(any()))
+                    .thenReturn(PostsPage.builder()
+                            .page(2)
+                            .totalPages(10)
+                            .postsPerPage(10)
+                            .posts(List.of())
+                            .nextCursor(PageCursor.after(3L))
+                            .previousCursor(PageCursor.before(2L))
+                            .build()
+                    );
+
+            mockMvc.perform(get("/posts")
+                            .param("page", "2")
+                            .param("cursor", "not a cursor"))
+                    .andExpect(status().isOk())
+                    .andExpect(model().attribute("nextCursor", nullValue()))
+                    .andExpect(model().attribute("previousCursor", nullValue()))
+                    .andExpect(xpath("//a[contains(@href, 'cursor=')]").doesNotExist());
+
+            verify(postsServiceMock, times(1))
+                    .getPostsPage(PageRequest.builder()
+                            .page(2)
+                            .posts(PostsController.DEFAULT_POSTS_PER_PAGE)
+                            .build());
+        }
+
+        @Test
+        @SneakyThrows
+        void shouldNotLoadFeedPageIfNotModified() {
+            when(postsServiceMock.findFeedVersion())
+                    .thenReturn(42L);
+
+            mockMvc.perform(get("/posts")
+                            .header(HttpHeaders.IF_NONE_MATCH, "W/\"42\""))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().string(HttpHeaders.ETAG, "W/\"42\""))
+                    .andExpect(content().bytes(new byte[0]));
+
+            verify(postsServiceMock, never()).getPostsPage(any());
+        }
+
+        @Test
+        @SneakyThrows
+        void shouldTagFeedPageWithVersionItWasLoadedAt() {
+            when(postsServiceMock.findFeedVersion())
+                    .thenReturn(43L);
+            prepareMocks(1, 1, 10, null);
+            when(postsServiceMock.getPostsPage(any()))
+                    .thenReturn(PostsPage.builder()
+                            .page(1)
+                            .totalPages(1)
+                            .postsPerPage(10)
+                            .posts(preparedPosts)
+                            .version(42L)
+                            .build());
+
+            mockMvc.perform(get("/posts")
+                            .header(HttpHeaders.IF_NONE_MATCH, "W/\"42\""))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.ETAG, "W/\"42\""))
+                    .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"));
+        }
+
         private void prepareMocks(Integer page,
                                   Integer totalPages,
                                   Integer postsPerPage,
@@ -147,7 +318,7 @@ class PostsControllerTest {
                             .page(page)
                             .totalPages(totalPages)
                             .postsPerPage(postsPerPage)
-                            .targetTag(tag)
+                            .tags(TagExpression.parse(tag).orElse(null))
                             .posts(preparedPosts)
                             .build()
                     );
@@ -155,12 +326,12 @@ class PostsControllerTest {
             when(postMapperMock.toDto(any(PostPreview.class)))
                     .thenReturn(new PostPreviewDto(
                             2L, "Title 1", "Text 1", 5, 2,
-                            List.of("T1", "T2")
+                            List.of("T1", "T2"), "/posts/post/2/image?v=0123456789abcdef"
                     ))
                     .thenReturn(
                             new PostPreviewDto(
                                     3L, "Title 2", "Text 2", 8, 1,
-                                    List.of("T1")
+                                    List.of("T1"), "/posts/post/3/image"
                             )
                     );
         }
@@ -181,7 +352,8 @@ class PostsControllerTest {
                         "postsPerPage",
                         "availablePostsPerPage",
                         "totalPages",
-                        "searchTag"
+                        "searchTag",
+                        "searchQuery"
                 ).match(mvcResult);
 
                 // controls
@@ -229,7 +401,7 @@ class PostsControllerTest {
                     xpath(BASE_TAG + "//img[contains(@src, '/posts/post/%d/image')]", post.getId())
                             .exists()
                             .match(mvcResult);
-                    xpath(BASE_TAG + "//p[@class='post_text'][text()='%s']", post.getText())
+                    xpath(BASE_TAG + "//p[@class='post_text'][text()='%s']", post.getExcerpt())
                             .exists()
                             .match(mvcResult);
                 }
@@ -253,13 +425,19 @@ class PostsControllerTest {
                             new CommentaryDto(6L, POST_ID, "C1"),
                             new CommentaryDto(7L, POST_ID, "C2")
                     ))
+                    .commentariesCursor(7L)
+                    .commentsCount(40)
                     .tags(List.of("T1", "T2"))
                     .likes(11L)
+                    .imageUrl("/posts/post/3/image?v=0123456789abcdef")
                     .build();
 
+            when(postsServiceMock.findPostVersion(POST_ID))
+                    .thenReturn(Optional.of(18L));
             when(postsServiceMock.findPost(POST_ID))
                     .thenReturn(Post.builder()
                             .id(POST_ID)
+                            .version(17L)
                             .build());
 
             when(postMapperMock.toDto(any(Post.class)))
@@ -272,6 +450,7 @@ class PostsControllerTest {
 
             mockMvc.perform(get("/posts/post/{id}", POST_ID))
                     .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.ETAG, "W/\"17\""))
                     .andExpect(content().contentType("text/html;charset=UTF-8"))
                     .andExpect(view().name("post"))
                     .andExpect(model().attributeExists("post", "editPost", "createCommentary"))
@@ -279,13 +458,31 @@ class PostsControllerTest {
                     .andExpect(xpath("//div[@id='postModal']").exists())
                     .andExpect(xpath("//h1[text()='%s']", post.getTitle()).exists())
                     .andExpect(xpath("//form[contains(@action, '/posts/post/%d')][@method='post']", post.getId()).exists())
-                    .andExpect(xpath("//img[contains(@src, '/posts/post/%d/image')]", post.getId()).exists())
+                    .andExpect(xpath("//img[@src='%s']", post.getImageUrl()).exists())
                     .andExpect(xpath("//div[contains(@class,'post-text')]").exists())
                     .andExpect(xpath("//div[contains(@class,'post-text')]/p").nodeCount(2))
                     .andExpect(xpath("//div[@class='tags-block']/span[@class='tag']").nodeCount(post.getTags().size()))
                     .andExpect(xpath("//span[@class='post-likes'][text()='%d']", post.getLikes()).exists())
                     .andExpect(xpath("//form[contains(@action, '/commentaries/commentary')]").exists())
-                    .andExpect(xpath("//div[@class='comment']").nodeCount(post.getCommentaries().size()));
+                    .andExpect(xpath("//div[@class='comment']").nodeCount(post.getCommentaries().size()))
+                    .andExpect(xpath("//span[@class='comments-count'][text()='40']").exists())
+                    .andExpect(xpath("//button[contains(@class, 'comments-more')]/@data-url")
+                            .string("/commentaries/post/3?after=7"));
+        }
+
+        @Test
+        @SneakyThrows
+        void shouldNotLoadPostIfNotModified() {
+            final Long POST_ID = 3L;
+            when(postsServiceMock.findPostVersion(POST_ID))
+                    .thenReturn(Optional.of(17L));
+
+            mockMvc.perform(get("/posts/post/{id}", POST_ID)
+                            .header(HttpHeaders.IF_NONE_MATCH, "W/\"17\""))
+                    .andExpect(status().isNotModified())
+                    .andExpect(content().bytes(new byte[0]));
+
+            verify(postsServiceMock, never()).findPost(any());
         }
 
         @Test
@@ -397,15 +594,157 @@ class PostsControllerTest {
         void shouldRequestPostImage() {
             final Long POST_ID = 54L;
 
-            when(postsServiceMock.getImage(POST_ID))
-                    .thenReturn("Mama ya v dubae".getBytes(StandardCharsets.UTF_8));
+            givenImage(POST_ID, new ByteArrayResource("Mama ya v dubae".getBytes(StandardCharsets.UTF_8)));
 
             mockMvc.perform(get("/posts/post/{id}/image", POST_ID))
                     .andExpect(status().isOk())
-                    .andExpect(content().contentType(MediaType.IMAGE_JPEG_VALUE))
+                    .andExpect(content().contentType(MediaType.IMAGE_PNG_VALUE))
+                    .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                    .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 15))
                     .andExpect(content().bytes("Mama ya v dubae".getBytes(StandardCharsets.UTF_8)));
         }
 
+        @Test
+        @SneakyThrows
+        void shouldRequestRangeOfPostImage() {
+            final Long POST_ID = 54L;
+
+            givenImage(POST_ID, new ByteArrayResource("Mama ya v dubae".getBytes(StandardCharsets.UTF_8)));
+
+            mockMvc.perform(get("/posts/post/{id}/image", POST_ID)
+                            .header(HttpHeaders.RANGE, "bytes=5-6"))
+                    .andExpect(status().isPartialContent())
+                    .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 5-6/15"))
+                    .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 2))
+                    .andExpect(content().bytes("ya".getBytes(StandardCharsets.UTF_8)));
+
+            mockMvc.perform(get("/posts/post/{id}/image", POST_ID)
+                            .header(HttpHeaders.RANGE, "bytes=-5"))
+                    .andExpect(status().isPartialContent())
+                    .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 10-14/15"))
+                    .andExpect(content().bytes("dubae".getBytes(StandardCharsets.UTF_8)));
+        }
+
+        @Test
+        @SneakyThrows
+        void shouldRejectNotSatisfiableRangeOfPostImage() {
+            final Long POST_ID = 54L;
+
+            givenImage(POST_ID, new ByteArrayResource("Mama ya v dubae".getBytes(StandardCharsets.UTF_8)));
+
+            mockMvc.perform(get("/posts/post/{id}/image", POST_ID)
+                            .header(HttpHeaders.RANGE, "bytes=100-200"))
+                    .andExpect(status().isRequestedRangeNotSatisfiable())
+                    .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */15"));
+        }
+
+        @Test
+        @SneakyThrows
+        void shouldSendStoredContentTypeAndValidator() {
+            final Long POST_ID = 54L;
+
+            givenImage(POST_ID, new ByteArrayResource(new byte[]{1, 2, 3}));
+
+            mockMvc.perform(get("/posts/post/{id}/image", POST_ID))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.IMAGE_PNG_VALUE))
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"%s\"".formatted(IMAGE_HASH)))
+                    .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"));
+        }
+
+        @Test
+        @SneakyThrows
+        void shouldCacheFingerprintedImageAsImmutable() {
+            final Long POST_ID = 54L;
+
+            givenImage(POST_ID, new ByteArrayResource(new byte[]{1, 2, 3}));
+
+            mockMvc.perform(get("/posts/post/{id}/image", POST_ID)
+                            .param("v", IMAGE_HASH.substring(0, ImageMetadata.FINGERPRINT_LENGTH)))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=31536000, public, immutable"));
+
+            mockMvc.perform(get("/posts/post/{id}/image", POST_ID)
+                            .param("v", "0123456789abcdef"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"));
+        }
+
+        @Test
+        @SneakyThrows
+        void shouldNotLoadImageBytesIfNotModified() {
+            final Long POST_ID = 54L;
+
+            doAnswer(invocation -> {
+                invocation.<PostsService.ImageWriter>getArgument(2).write(imageMetadata(POST_ID), null, () -> {
+                    throw new AssertionError("Image bytes must not be loaded");
+                });
+                return null;
+            }).when(postsServiceMock).writeImage(eq(POST_ID), isNull(), any());
+
+            mockMvc.perform(get("/posts/post/{id}/image", POST_ID)
+                            .header(HttpHeaders.IF_NONE_MATCH, "\"%s\"".formatted(IMAGE_HASH)))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"%s\"".formatted(IMAGE_HASH)))
+                    .andExpect(content().bytes(new byte[0]));
+        }
+
+        @Test
+        @SneakyThrows
+        void shouldServeImageVariantOfRequestedWidth() {
+            final Long POST_ID = 54L;
+            final String VARIANT_HASH = "b".repeat(64);
+
+            doAnswer(invocation -> {
+                invocation.<PostsService.ImageWriter>getArgument(2).write(
+                        imageMetadata(POST_ID),
+                        new ImageMetadata(POST_ID, 3, MediaType.IMAGE_JPEG_VALUE, VARIANT_HASH),
+                        () -> new ByteArrayResource(new byte[]{4, 5, 6}));
+                return null;
+            }).when(postsServiceMock).writeImage(eq(POST_ID), eq(320), any());
+
+            mockMvc.perform(get("/posts/post/{id}/image", POST_ID)
+                            .param("v", IMAGE_HASH.substring(0, ImageMetadata.FINGERPRINT_LENGTH))
+                            .param("w", "320"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.IMAGE_JPEG_VALUE))
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"%s\"".formatted(VARIANT_HASH)))
+                    .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=31536000, public, immutable"))
+                    .andExpect(content().bytes(new byte[]{4, 5, 6}));
+        }
+
+        @Test
+        @SneakyThrows
+        void shouldRevalidateOriginalServedInsteadOfMissingVariant() {
+            final Long POST_ID = 54L;
+
+            givenImage(POST_ID, 640, new ByteArrayResource(new byte[]{1, 2, 3}));
+
+            mockMvc.perform(get("/posts/post/{id}/image", POST_ID)
+                            .param("v", IMAGE_HASH.substring(0, ImageMetadata.FINGERPRINT_LENGTH))
+                            .param("w", "640"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"%s\"".formatted(IMAGE_HASH)))
+                    .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+                    .andExpect(content().bytes(new byte[]{1, 2, 3}));
+        }
+
+        private void givenImage(Long postId, Resource image) {
+            givenImage(postId, null, image);
+        }
+
+        @SneakyThrows
+        private void givenImage(Long postId, Integer width, Resource image) {
+            doAnswer(invocation -> {
+                invocation.<PostsService.ImageWriter>getArgument(2).write(imageMetadata(postId), null, () -> image);
+                return null;
+            }).when(postsServiceMock).writeImage(eq(postId), eq(width), any());
+        }
+
+        private static ImageMetadata imageMetadata(Long postId) {
+            return new ImageMetadata(postId, 15, MediaType.IMAGE_PNG_VALUE, IMAGE_HASH);
+        }
+
         @Test
         @SneakyThrows
         void shouldIncrementPostLikes() {
@@ -0,0 +1,40 @@
+package ru.girqa.myblog.job;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.girqa.myblog.config.CommentsCounterRepairProperties;
+import ru.girqa.myblog.repository.CommentaryRepository;
+import ru.girqa.myblog.repository.CommentaryRepository.RepairedBatch;
+
+import java.time.Duration;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CommentsCounterRepairJobTest {
+
+    @Mock
+    CommentaryRepository commentaryRepositoryMock;
+
+    @Test
+    void shouldWalkOverAllPostsInBatches() {
+        CommentsCounterRepairJob job = new CommentsCounterRepairJob(
+                commentaryRepositoryMock,
+                new CommentsCounterRepairProperties(Duration.ofHours(1), 100)
+        );
+
+        when(commentaryRepositoryMock.repairCommentsCounts(0L, 100))
+                .thenReturn(new RepairedBatch(120L, 3));
+        when(commentaryRepositoryMock.repairCommentsCounts(120L, 100))
+                .thenReturn(new RepairedBatch(250L, 0));
+        when(commentaryRepositoryMock.repairCommentsCounts(250L, 100))
+                .thenReturn(new RepairedBatch(null, 0));
+
+        job.repair();
+
+        verify(commentaryRepositoryMock, times(3))
+                .repairCommentsCounts(anyLong(), eq(100));
+    }
+}
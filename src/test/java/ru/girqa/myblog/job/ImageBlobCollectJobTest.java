@@ -0,0 +1,36 @@
+package ru.girqa.myblog.job;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.girqa.myblog.config.ImageStorageProperties;
+import ru.girqa.myblog.config.ImageStorageProperties.Storage;
+import ru.girqa.myblog.repository.ImageRepository;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImageBlobCollectJobTest {
+
+    @Mock
+    ImageRepository imageRepositoryMock;
+
+    @Test
+    void shouldCollectUntilNothingIsLeft() {
+        ImageBlobCollectJob job = new ImageBlobCollectJob(
+                imageRepositoryMock,
+                new ImageStorageProperties(Storage.JDBC, Path.of("images"), 50, Duration.ofHours(1), 100)
+        );
+
+        when(imageRepositoryMock.collectGarbage(100))
+                .thenReturn(100, 3, 0);
+
+        job.collect();
+
+        verify(imageRepositoryMock, times(3)).collectGarbage(100);
+    }
+}
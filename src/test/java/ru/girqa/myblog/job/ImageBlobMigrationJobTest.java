@@ -0,0 +1,42 @@
+package ru.girqa.myblog.job;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.girqa.myblog.config.ImageStorageProperties;
+import ru.girqa.myblog.config.ImageStorageProperties.Storage;
+import ru.girqa.myblog.repository.fs.FileSystemImageRepository;
+import ru.girqa.myblog.repository.fs.FileSystemImageRepository.MigratedBatch;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImageBlobMigrationJobTest {
+
+    @Mock
+    FileSystemImageRepository imageRepositoryMock;
+
+    @Test
+    void shouldWalkOverAllImagesInBatches() {
+        ImageBlobMigrationJob job = new ImageBlobMigrationJob(
+                imageRepositoryMock,
+                new ImageStorageProperties(Storage.FILESYSTEM, Path.of("images"), 50, Duration.ofHours(1), 100)
+        );
+
+        when(imageRepositoryMock.migrateBatch("", 50))
+                .thenReturn(new MigratedBatch("70", 50));
+        when(imageRepositoryMock.migrateBatch("70", 50))
+                .thenReturn(new MigratedBatch("90", 12));
+        when(imageRepositoryMock.migrateBatch("90", 50))
+                .thenReturn(new MigratedBatch(null, 0));
+
+        job.migrate();
+
+        verify(imageRepositoryMock, times(3))
+                .migrateBatch(anyString(), eq(50));
+    }
+}
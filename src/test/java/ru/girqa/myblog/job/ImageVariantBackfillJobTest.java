@@ -0,0 +1,61 @@
+package ru.girqa.myblog.job;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.girqa.myblog.config.ImageVariantProperties;
+import ru.girqa.myblog.repository.ImageRepository;
+import ru.girqa.myblog.service.ImageVariantService;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImageVariantBackfillJobTest {
+
+    @Mock
+    ImageRepository imageRepositoryMock;
+
+    @Mock
+    ImageVariantService imageVariantServiceMock;
+
+    final ImageVariantProperties properties = new ImageVariantProperties(2, 100, Duration.ofMinutes(10), 2);
+
+    @Test
+    void shouldQueueAllImagesWithoutVariants() {
+        ImageVariantBackfillJob job = new ImageVariantBackfillJob(imageRepositoryMock, imageVariantServiceMock, properties);
+
+        when(imageRepositoryMock.findPostIdsWithoutVariants(0L, 2))
+                .thenReturn(List.of(3L, 7L));
+        when(imageRepositoryMock.findPostIdsWithoutVariants(7L, 2))
+                .thenReturn(List.of(9L));
+        when(imageRepositoryMock.findPostIdsWithoutVariants(9L, 2))
+                .thenReturn(List.of());
+        when(imageVariantServiceMock.submit(anyLong()))
+                .thenReturn(true);
+
+        job.backfill();
+
+        verify(imageVariantServiceMock).submit(3L);
+        verify(imageVariantServiceMock).submit(7L);
+        verify(imageVariantServiceMock).submit(9L);
+    }
+
+    @Test
+    void shouldStopWhenQueueIsFull() {
+        ImageVariantBackfillJob job = new ImageVariantBackfillJob(imageRepositoryMock, imageVariantServiceMock, properties);
+
+        when(imageRepositoryMock.findPostIdsWithoutVariants(0L, 2))
+                .thenReturn(List.of(3L, 7L));
+        when(imageVariantServiceMock.submit(3L))
+                .thenReturn(false);
+
+        job.backfill();
+
+        verify(imageVariantServiceMock, never()).submit(7L);
+        verify(imageRepositoryMock, times(1)).findPostIdsWithoutVariants(anyLong(), anyInt());
+    }
+}
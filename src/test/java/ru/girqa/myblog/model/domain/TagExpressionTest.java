@@ -0,0 +1,80 @@
+package ru.girqa.myblog.model.domain;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import ru.girqa.myblog.model.domain.TagExpression.And;
+import ru.girqa.myblog.model.domain.TagExpression.HasTag;
+import ru.girqa.myblog.model.domain.TagExpression.Not;
+import ru.girqa.myblog.model.domain.TagExpression.Or;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TagExpressionTest {
+
+    @Test
+    void shouldNotParseBlankText() {
+        assertEquals(Optional.empty(), TagExpression.parse(null));
+        assertEquals(Optional.empty(), TagExpression.parse("  "));
+    }
+
+    @Test
+    void shouldParseTextWithoutOperatorsAsSingleTag() {
+        assertEquals(Optional.of(new HasTag("Tag 1")), TagExpression.parse(" Tag 1 "));
+        assertEquals(Optional.of(new HasTag("and or not")), TagExpression.parse("and or not"));
+    }
+
+    @Test
+    void shouldParseOperatorsByPrecedence() {
+        TagExpression expression = TagExpression.parse("java AND NOT kotlin OR spring boot").orElseThrow();
+
+        assertEquals(
+                new Or(List.of(
+                        new And(List.of(new HasTag("java"), new Not(new HasTag("kotlin")))),
+                        new HasTag("spring boot")
+                )),
+                expression
+        );
+    }
+
+    @Test
+    void shouldParseParentheses() {
+        TagExpression expression = TagExpression.parse("java AND (spring OR NOT (kotlin))").orElseThrow();
+
+        assertEquals(
+                new And(List.of(
+                        new HasTag("java"),
+                        new Or(List.of(new HasTag("spring"), new Not(new HasTag("kotlin"))))
+                )),
+                expression
+        );
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"java AND", "(java", "java)", "NOT", "AND java", "java OR OR spring"})
+    void shouldTreatInvalidExpressionAsSingleTag(String text) {
+        assertEquals(Optional.of(new HasTag(text)), TagExpression.parse(text));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"java", "java AND spring", "(java OR kotlin) AND NOT (spring OR boot)", "NOT NOT java"})
+    void shouldRenderParsableText(String text) {
+        TagExpression expression = TagExpression.parse(text).orElseThrow();
+
+        assertEquals(text, expression.toString());
+        assertEquals(Optional.of(expression), TagExpression.parse(expression.toString()));
+    }
+
+    @Test
+    void shouldMatchTagsOfPost() {
+        TagExpression expression = TagExpression.parse("java AND NOT kotlin OR spring boot").orElseThrow();
+
+        assertTrue(expression.matches(List.of("java")));
+        assertTrue(expression.matches(List.of("kotlin", "spring boot")));
+        assertFalse(expression.matches(List.of("java", "kotlin")));
+        assertFalse(expression.matches(List.of()));
+    }
+}
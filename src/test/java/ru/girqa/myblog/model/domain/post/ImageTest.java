@@ -0,0 +1,26 @@
+package ru.girqa.myblog.model.domain.post;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ImageTest {
+
+    @Test
+    void shouldCompareImagesRegardlessOfSource() {
+        Image first = Image.builder()
+                .postId(1L)
+                .name("cover.png")
+                .size(3)
+                .source(() -> new ByteArrayInputStream(new byte[]{1, 2, 3}))
+                .build();
+        Image second = first.toBuilder()
+                .source(() -> new ByteArrayInputStream(new byte[]{1, 2, 3}))
+                .build();
+
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+    }
+}
@@ -0,0 +1,52 @@
+package ru.girqa.myblog.model.domain.post;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static ru.girqa.myblog.model.domain.post.Post.EXCERPT_MAX_LENGTH;
+
+class PostTest {
+
+    @Test
+    void shouldTakeFirstLineAsExcerpt() {
+        assertEquals("First line", Post.excerptOf("First line\nSecond line\r\nThird line"));
+        assertEquals("Single line", Post.excerptOf("Single line"));
+    }
+
+    @Test
+    void shouldSkipBlankLeadingLines() {
+        assertEquals("  Text", Post.excerptOf("\n   \r\n\t\n  Text\nMore"));
+    }
+
+    @Test
+    void shouldReturnEmptyExcerptForBlankText() {
+        assertEquals("", Post.excerptOf(""));
+        assertEquals("", Post.excerptOf(" \n\n "));
+    }
+
+    @Test
+    void shouldCutLongFirstLine() {
+        String line = "a".repeat(EXCERPT_MAX_LENGTH + 10);
+
+        assertEquals("a".repeat(EXCERPT_MAX_LENGTH) + "…", Post.excerptOf(line + "\nNext"));
+        assertEquals("a".repeat(EXCERPT_MAX_LENGTH), Post.excerptOf("a".repeat(EXCERPT_MAX_LENGTH)));
+    }
+
+    @Test
+    void shouldNotSplitSurrogatePairWhenCutting() {
+        String line = "a".repeat(EXCERPT_MAX_LENGTH - 1) + "😀" + "b";
+
+        assertEquals("a".repeat(EXCERPT_MAX_LENGTH - 1) + "…", Post.excerptOf(line));
+    }
+
+    @Test
+    void shouldRefreshExcerptFromText() {
+        Post post = Post.builder()
+                .text("Title line\nBody")
+                .build();
+
+        post.refreshExcerpt();
+
+        assertEquals("Title line", post.getExcerpt());
+    }
+}
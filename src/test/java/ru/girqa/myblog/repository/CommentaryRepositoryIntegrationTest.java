@@ -7,6 +7,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.context.jdbc.SqlGroup;
 import ru.girqa.myblog.model.domain.Commentary;
@@ -86,12 +87,90 @@ class CommentaryRepositoryIntegrationTest {
                     .containsExactlyElementsOf(COMMENTARIES);
         }
 
+        @Test
+        void shouldFindCommentariesOfPostAfterCursor() {
+            List<Commentary> first = repository.findByPostIdAfter(POST_ID, 0, 4);
+            List<Commentary> next = repository.findByPostIdAfter(POST_ID, first.getLast().getId(), 100);
+
+            assertThat(first)
+                    .usingRecursiveFieldByFieldElementComparator()
+                    .containsExactlyElementsOf(COMMENTARIES.subList(0, 4));
+            assertThat(next)
+                    .usingRecursiveFieldByFieldElementComparator()
+                    .containsExactlyElementsOf(COMMENTARIES.subList(4, COMMENTARIES_COUNT));
+            assertTrue(repository.findByPostIdAfter(POST_ID + 1, 0, 100).isEmpty());
+        }
+
         @Test
         void shouldCountAllCommentariesOfPost() {
             Long countByPostId = repository.countByPostId(POST_ID);
             assertEquals(COMMENTARIES.size(), countByPostId);
         }
 
+        @Test
+        void shouldKeepCounterOnDelete() {
+            repository.delete(COMMENTARIES.getFirst().getId());
+            repository.delete(COMMENTARIES.getLast().getId());
+            repository.delete(COMMENTARIES.getLast().getId());
+
+            assertEquals(COMMENTARIES_COUNT - 2, repository.countByPostId(POST_ID));
+        }
+
+        @Test
+        void shouldCountZeroForNotPresentPost() {
+            assertEquals(0L, repository.countByPostId(POST_ID + 1));
+        }
+
+    }
+
+    @Nested
+    @SqlGroup({
+            @Sql(statements = {CLEAR, SET_POSTS_ID_SEQ, SET_COMMENTARIES_ID_SEQ, CREATE_POST}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD),
+            @Sql(statements = {SET_POSTS_ID_SEQ, SET_COMMENTARIES_ID_SEQ}, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+    })
+    class CommentsCounterRepairTests {
+
+        @Autowired
+        JdbcTemplate jdbcTemplate;
+
+        @BeforeEach
+        void setUpDriftedCounters() {
+            jdbcTemplate.update("""
+                    insert into posts(title, post_text, likes)
+                    values ('second', 'text', 0), ('third', 'text', 0)
+                    """);
+            jdbcTemplate.update("""
+                    insert into commentaries(post_id, commentary_text)
+                    values (5, 'c1'), (5, 'c2'), (7, 'c3')
+                    """);
+            jdbcTemplate.update("update posts set comments_count = 10 where id = 6");
+        }
+
+        @Test
+        void shouldRepairDriftedCountersInBatches() {
+            CommentaryRepository.RepairedBatch first = repository.repairCommentsCounts(0L, 2);
+            assertEquals(new CommentaryRepository.RepairedBatch(POST_ID + 1, 2), first);
+
+            CommentaryRepository.RepairedBatch second = repository.repairCommentsCounts(first.lastPostId(), 2);
+            assertEquals(new CommentaryRepository.RepairedBatch(POST_ID + 2, 1), second);
+
+            CommentaryRepository.RepairedBatch last = repository.repairCommentsCounts(second.lastPostId(), 2);
+            assertEquals(new CommentaryRepository.RepairedBatch(null, 0), last);
+
+            assertAll(
+                    () -> assertEquals(2L, repository.countByPostId(POST_ID)),
+                    () -> assertEquals(0L, repository.countByPostId(POST_ID + 1)),
+                    () -> assertEquals(1L, repository.countByPostId(POST_ID + 2))
+            );
+        }
+
+        @Test
+        void shouldNotTouchConsistentCounters() {
+            repository.repairCommentsCounts(0L, 10);
+
+            CommentaryRepository.RepairedBatch batch = repository.repairCommentsCounts(0L, 10);
+            assertEquals(new CommentaryRepository.RepairedBatch(POST_ID + 2, 0), batch);
+        }
     }
 
     @Nested
@@ -132,6 +211,9 @@ class CommentaryRepositoryIntegrationTest {
     })
     class CommentaryUpdateTests {
 
+        @Autowired
+        JdbcTemplate jdbcTemplate;
+
         Commentary sourceCommentary = Commentary.builder()
                 .id(null)
                 .postId(POST_ID)
@@ -146,7 +228,7 @@ class CommentaryRepositoryIntegrationTest {
         @Test
         void shouldDeleteCommentaryIfPresent() {
             assertTrue(repository.findById(COMMENTARY_ID).isPresent());
-            assertDoesNotThrow(() -> repository.delete(sourceCommentary.getId()));
+            assertEquals(Optional.of(POST_ID), repository.delete(sourceCommentary.getId()));
             assertTrue(repository.findById(COMMENTARY_ID).isEmpty());
         }
 
@@ -171,6 +253,21 @@ class CommentaryRepositoryIntegrationTest {
                     .isEqualTo(changedCommentary);
         }
 
+        @Test
+        void shouldChangePostVersionOnCommentaryChanges() {
+            long saved = postVersion();
+
+            repository.update(sourceCommentary.toBuilder().text("Changed text").build());
+            long updated = postVersion();
+            assertTrue(updated > saved);
+
+            repository.delete(sourceCommentary.getId());
+            assertTrue(postVersion() > updated);
+        }
+
+        private long postVersion() {
+            return jdbcTemplate.queryForObject("select version from post_versions where post_id = ?", Long.class, POST_ID);
+        }
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,313 @@
+package ru.girqa.myblog.repository;
+
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import ru.girqa.myblog.config.ImageStorageProperties;
+import ru.girqa.myblog.model.domain.post.Image;
+import ru.girqa.myblog.model.domain.post.ImageMetadata;
+import ru.girqa.myblog.model.domain.post.ImageVariant;
+import ru.girqa.myblog.repository.common.PostgresTestConfiguration;
+import ru.girqa.myblog.repository.fs.FileSystemImageRepository;
+import ru.girqa.myblog.repository.fs.FileSystemImageRepository.MigratedBatch;
+import ru.girqa.myblog.repository.fs.ImageBlobStore;
+import ru.girqa.myblog.repository.jdbc.ImageBlobRepository;
+import ru.girqa.myblog.util.ContentHash;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Import({PostgresTestConfiguration.class, FileSystemImageRepositoryIntegrationTest.Properties.class})
+@SpringBootTest(
+        classes = {FileSystemImageRepository.class, ImageBlobStore.class, ImageBlobRepository.class},
+        properties = {"blog.images.storage=filesystem", "blog.images.directory=build/test-images"}
+)
+class FileSystemImageRepositoryIntegrationTest {
+
+    static final Path DIRECTORY = Path.of("build/test-images");
+
+    @Autowired
+    FileSystemImageRepository imageRepository;
+
+    @Autowired
+    ImageBlobStore blobStore;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    static final Long POST_ID = 11L;
+
+    static final String CLEAR = "truncate table posts, image_blobs cascade;";
+
+    static final String CREATE_POSTS = """
+            select setval('posts_id_seq', 11, false);
+            insert into posts(title, post_text, likes)
+            values ('Title', 'lorem', 22), ('Title 2', 'ipsum', 0), ('Title 3', 'dolor', 1);
+            """;
+
+    static final String CREATE_DB_IMAGES = """
+            insert into image_blobs(content_hash, image_data, ref_count)
+            values (encode(sha256(convert_to('ehal greka', 'UTF8')), 'hex'), convert_to('ehal greka', 'UTF8'), 1),
+                   (encode(sha256(convert_to('cherez reku', 'UTF8')), 'hex'), convert_to('cherez reku', 'UTF8'), 1);
+            insert into images(post_id, image_name, image_size, content_type, content_hash)
+            values (11, 'First', 10, 'image/jpeg', encode(sha256(convert_to('ehal greka', 'UTF8')), 'hex')),
+                   (12, 'Second', 11, 'image/jpeg', encode(sha256(convert_to('cherez reku', 'UTF8')), 'hex'));
+            """;
+
+    @TestConfiguration
+    @EnableConfigurationProperties(ImageStorageProperties.class)
+    static class Properties {
+    }
+
+    @AfterEach
+    void clearDirectory() throws IOException {
+        if (!Files.exists(DIRECTORY)) return;
+        try (Stream<Path> files = Files.walk(DIRECTORY)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Nested
+    @Sql(statements = CREATE_POSTS, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+    @Sql(statements = CLEAR, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+    class SaveTests {
+
+        @Test
+        void shouldKeepOnlyHashInDatabase() {
+            final Image given = Image.builder()
+                    .postId(POST_ID)
+                    .name("Image")
+                    .data(new byte[]{'a', 'b', 'c', 'd'})
+                    .size(4)
+                    .build();
+
+            assertDoesNotThrow(() -> imageRepository.save(given));
+
+            String hash = jdbcTemplate.queryForObject(
+                    """
+                            select i.content_hash from images i
+                            join image_blobs b on b.content_hash = i.content_hash
+                            where i.post_id = ? and b.image_data is null
+                            """,
+                    String.class, POST_ID);
+            assertNotNull(hash);
+            assertArrayEquals(given.getData(), blobStore.read(hash));
+            assertEquals(
+                    Optional.of(new ImageMetadata(POST_ID, 4, "application/octet-stream", hash)),
+                    imageRepository.findMetadataByPostId(POST_ID)
+            );
+        }
+
+        @Test
+        void shouldFindImageFile() throws IOException {
+            byte[] data = new byte[]{'a', 'b', 'c'};
+            imageRepository.save(new Image(POST_ID, "Image", data.length, data));
+
+            Resource resource = imageRepository.findDataByHash(ContentHash.of(data)).orElseThrow();
+            assertTrue(resource.isFile());
+            assertEquals(3, resource.contentLength());
+            assertArrayEquals(data, resource.getContentAsByteArray());
+            assertTrue(imageRepository.findDataByHash("0".repeat(64)).isEmpty());
+        }
+
+        @Test
+        void shouldStreamUploadIntoFile() throws IOException {
+            byte[] data = "uploaded".getBytes(StandardCharsets.UTF_8);
+            imageRepository.save(Image.builder()
+                    .postId(POST_ID)
+                    .name("upload")
+                    .size(data.length)
+                    .source(new ByteArrayResource(data))
+                    .build());
+
+            ImageMetadata metadata = imageRepository.findMetadataByPostId(POST_ID).orElseThrow();
+            assertEquals(ContentHash.of(data), metadata.contentHash());
+            assertArrayEquals(data, imageRepository.findDataByHash(metadata.contentHash()).orElseThrow().getContentAsByteArray());
+        }
+
+        @Test
+        void shouldShareFileOfEqualImages() throws IOException {
+            byte[] data = "same".getBytes(StandardCharsets.UTF_8);
+            imageRepository.save(new Image(POST_ID, "first", data.length, data));
+            imageRepository.save(new Image(POST_ID + 1, "second", data.length, data));
+
+            assertEquals(1, jdbcTemplate.queryForObject(
+                    "select count(distinct content_hash) from images", Integer.class));
+            try (Stream<Path> files = Files.walk(DIRECTORY)) {
+                assertEquals(1, files.filter(Files::isRegularFile).count());
+            }
+        }
+
+        @Test
+        void shouldUpdateImage() {
+            imageRepository.save(new Image(POST_ID, "old", 3, new byte[]{'o', 'l', 'd'}));
+            Image updated = new Image(POST_ID, "new", 4, new byte[]{'n', 'e', 'w', '!'});
+
+            imageRepository.update(updated);
+
+            assertArrayEquals(updated.getData(), imageData(POST_ID));
+        }
+
+        @Test
+        void shouldNotFindNotPresentImage() {
+            assertTrue(imageRepository.findMetadataByPostId(POST_ID).isEmpty());
+        }
+
+        @Test
+        void shouldDeleteFileOfCollectedBlob() {
+            byte[] data = "collected".getBytes(StandardCharsets.UTF_8);
+            imageRepository.save(new Image(POST_ID, "first", data.length, data));
+            imageRepository.save(new Image(POST_ID + 1, "second", data.length, data));
+            String hash = ContentHash.of(data);
+
+            imageRepository.deleteByPostId(POST_ID);
+            assertEquals(0, imageRepository.collectGarbage(10));
+            assertTrue(blobStore.exists(hash));
+
+            imageRepository.deleteByPostId(POST_ID + 1);
+            assertEquals(1, imageRepository.collectGarbage(10));
+            assertFalse(blobStore.exists(hash));
+            assertEquals(0, jdbcTemplate.queryForObject("select count(*) from image_blobs", Integer.class));
+        }
+
+        @Test
+        void shouldStoreFileAgainAfterCollection() {
+            byte[] data = "revived".getBytes(StandardCharsets.UTF_8);
+            imageRepository.save(new Image(POST_ID, "first", data.length, data));
+            imageRepository.deleteByPostId(POST_ID);
+            imageRepository.collectGarbage(10);
+
+            imageRepository.save(new Image(POST_ID + 1, "second", data.length, data));
+
+            assertArrayEquals(data, imageData(POST_ID + 1));
+        }
+    }
+
+    @Nested
+    @Sql(statements = {CREATE_POSTS, CREATE_DB_IMAGES}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+    @Sql(statements = CLEAR, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+    class MigrationTests {
+
+        @Test
+        void shouldFindNotMigratedImageDataInDatabase() throws IOException {
+            Resource resource = imageRepository.findDataByHash(
+                    ContentHash.of("ehal greka".getBytes(StandardCharsets.UTF_8))).orElseThrow();
+            assertFalse(resource.isFile());
+            assertArrayEquals("ehal greka".getBytes(StandardCharsets.UTF_8), resource.getContentAsByteArray());
+        }
+
+        final String firstHash = ContentHash.of("ehal greka".getBytes(StandardCharsets.UTF_8));
+
+        final String secondHash = ContentHash.of("cherez reku".getBytes(StandardCharsets.UTF_8));
+
+        @Test
+        void shouldMoveImagesOutOfDatabaseInBatches() {
+            assertEquals(new MigratedBatch(secondHash, 1), imageRepository.migrateBatch("", 1));
+            assertEquals(new MigratedBatch(firstHash, 1), imageRepository.migrateBatch(secondHash, 1));
+            assertEquals(new MigratedBatch(null, 0), imageRepository.migrateBatch(firstHash, 1));
+
+            assertEquals(0, jdbcTemplate.queryForObject(
+                    "select count(*) from image_blobs where image_data is not null",
+                    Integer.class));
+            assertArrayEquals("ehal greka".getBytes(StandardCharsets.UTF_8),
+                    imageData(POST_ID));
+            assertArrayEquals("cherez reku".getBytes(StandardCharsets.UTF_8),
+                    imageData(POST_ID + 1));
+        }
+
+        @Test
+        void shouldKeepContentHashWhenMigrating() {
+            imageRepository.migrateBatch("", 10);
+
+            assertEquals(firstHash, imageRepository.findMetadataByPostId(POST_ID).orElseThrow().contentHash());
+            assertTrue(blobStore.exists(firstHash));
+        }
+
+        @Test
+        void shouldSkipAlreadyMigratedImages() {
+            imageRepository.update(new Image(POST_ID, "First", 3, new byte[]{'n', 'e', 'w'}));
+
+            assertEquals(new MigratedBatch(secondHash, 1), imageRepository.migrateBatch("", 10));
+            assertArrayEquals(new byte[]{'n', 'e', 'w'},
+                    imageData(POST_ID));
+        }
+    }
+
+    @Nested
+    @Sql(statements = {CREATE_POSTS, CREATE_DB_IMAGES}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+    @Sql(statements = CLEAR, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+    class VariantTests {
+
+        final String sourceHash = ContentHash.of("ehal greka".getBytes(StandardCharsets.UTF_8));
+
+        @Test
+        void shouldKeepVariantInFile() throws IOException {
+            byte[] data = {'s', 'm', 'a', 'l', 'l'};
+            imageRepository.saveVariant(ImageVariant.builder()
+                    .sourceHash(sourceHash)
+                    .width(640)
+                    .contentType("image/jpeg")
+                    .data(data)
+                    .build());
+
+            String hash = jdbcTemplate.queryForObject(
+                    """
+                            select v.content_hash from image_variants v
+                            join image_blobs b on b.content_hash = v.content_hash
+                            where v.source_hash = ? and b.image_data is null
+                            """,
+                    String.class, sourceHash);
+            assertEquals(ContentHash.of(data), hash);
+            assertArrayEquals(data, blobStore.read(hash));
+
+            assertEquals(
+                    Optional.of(new ImageMetadata(POST_ID, 5, "image/jpeg", hash)),
+                    imageRepository.findVariantMetadataByPostId(POST_ID, 640)
+            );
+            Resource resource = imageRepository.findDataByHash(hash).orElseThrow();
+            assertTrue(resource.isFile());
+            assertArrayEquals(data, resource.getContentAsByteArray());
+        }
+
+        @Test
+        void shouldFindVariantsOfMigratedImage() {
+            imageRepository.saveVariant(ImageVariant.builder()
+                    .sourceHash(sourceHash)
+                    .width(320)
+                    .contentType("image/jpeg")
+                    .data(new byte[]{1})
+                    .build());
+
+            imageRepository.migrateBatch("", 10);
+
+            assertTrue(imageRepository.findVariantMetadataByPostId(POST_ID, 320).isPresent());
+            assertEquals(List.of(POST_ID, POST_ID + 1), imageRepository.findPostIdsWithoutVariants(0L, 10));
+        }
+    }
+
+    /**
+     * Reads the post image the way it is served: by the hash found in its metadata
+     */
+    @SneakyThrows
+    byte[] imageData(Long postId) {
+        String contentHash = imageRepository.findMetadataByPostId(postId).orElseThrow().contentHash();
+        return imageRepository.findDataByHash(contentHash).orElseThrow().getContentAsByteArray();
+    }
+}
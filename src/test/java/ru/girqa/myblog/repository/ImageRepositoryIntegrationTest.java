@@ -1,24 +1,47 @@
 package ru.girqa.myblog.repository;
 
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.jdbc.Sql;
+import org.springframework.util.StreamUtils;
 import ru.girqa.myblog.model.domain.post.Image;
+import ru.girqa.myblog.model.domain.post.ImageMetadata;
+import ru.girqa.myblog.model.domain.post.ImageVariant;
 import ru.girqa.myblog.repository.common.PostgresTestConfiguration;
+import ru.girqa.myblog.repository.jdbc.ChunkedImageResource;
+import ru.girqa.myblog.repository.jdbc.ImageBlobRepository;
 import ru.girqa.myblog.repository.jdbc.ImageJdbcRepository;
+import ru.girqa.myblog.util.ContentHash;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
 
-import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 
 @Import(PostgresTestConfiguration.class)
-@SpringBootTest(classes = ImageJdbcRepository.class)
+@SpringBootTest(classes = {ImageJdbcRepository.class, ImageBlobRepository.class}, properties = "blog.images.storage=jdbc")
 class ImageRepositoryIntegrationTest {
 
     @Autowired
@@ -26,7 +49,7 @@ class ImageRepositoryIntegrationTest {
 
     static final Long POST_ID = 11L;
 
-    static final String CLEAR = "truncate table posts, images cascade;";
+    static final String CLEAR = "truncate table posts, image_blobs cascade;";
 
     static final String CREATE_POST = """
             select setval('posts_id_seq', 11, false);
@@ -35,8 +58,10 @@ class ImageRepositoryIntegrationTest {
             """;
 
     static final String CREATE_IMAGE = """
-            insert into images(post_id, image_name, image_data, image_size)
-            values (11, 'Image Name', convert_to('ehal greka', 'UTF8'), 10);
+            insert into image_blobs(content_hash, image_data, ref_count)
+            values (encode(sha256(convert_to('ehal greka', 'UTF8')), 'hex'), convert_to('ehal greka', 'UTF8'), 1);
+            insert into images(post_id, image_name, image_size, content_type, content_hash)
+            values (11, 'Image Name', 10, 'image/png', encode(sha256(convert_to('ehal greka', 'UTF8')), 'hex'));
             """;
 
     final Image dbImage = Image.builder()
@@ -52,18 +77,61 @@ class ImageRepositoryIntegrationTest {
     class FindTests {
 
         @Test
-        void shouldFindPresentImage() {
-            Optional<Image> image = assertDoesNotThrow(() -> imageRepository.findByPostId(POST_ID));
-            assertTrue(image.isPresent());
-            assertThat(image.get())
-                    .usingRecursiveComparison()
-                    .isEqualTo(dbImage);
+        void shouldFindImageMetadata() {
+            Optional<ImageMetadata> metadata = imageRepository.findMetadataByPostId(POST_ID);
+            assertTrue(metadata.isPresent());
+            assertEquals(new ImageMetadata(POST_ID, 10, "image/png", ContentHash.of(dbImage.getData())), metadata.get());
+            assertTrue(imageRepository.findMetadataByPostId(POST_ID + 222).isEmpty());
         }
 
         @Test
-        void shouldNotFindNotPresentImage() {
-            Optional<Image> image = assertDoesNotThrow(() -> imageRepository.findByPostId(POST_ID + 222));
-            assertTrue(image.isEmpty());
+        void shouldFindImageData() throws IOException {
+            Optional<Resource> data = imageRepository.findDataByHash(ContentHash.of(dbImage.getData()));
+            assertTrue(data.isPresent());
+            assertArrayEquals(dbImage.getData(), data.get().getContentAsByteArray());
+            assertTrue(imageRepository.findDataByHash("0".repeat(64)).isEmpty());
+        }
+    }
+
+    @Nested
+    @Sql(statements = CREATE_POST, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+    @Sql(statements = CLEAR, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+    class ChunkedReadTests {
+
+        final byte[] data = new byte[ChunkedImageResource.CHUNK_SIZE * 5 / 2];
+
+        @BeforeEach
+        void saveLargeImage() {
+            new Random(7).nextBytes(data);
+            imageRepository.save(Image.builder()
+                    .postId(POST_ID)
+                    .name("Large")
+                    .data(data)
+                    .size(data.length)
+                    .build());
+        }
+
+        @Test
+        void shouldReadImageInChunks() throws IOException {
+            Resource resource = imageRepository.findDataByHash(ContentHash.of(data)).orElseThrow();
+            assertEquals(data.length, resource.contentLength());
+
+            try (InputStream in = resource.getInputStream()) {
+                assertArrayEquals(data, in.readAllBytes());
+            }
+        }
+
+        @Test
+        void shouldReadRangeAcrossChunks() throws IOException {
+            Resource resource = imageRepository.findDataByHash(ContentHash.of(data)).orElseThrow();
+            int start = ChunkedImageResource.CHUNK_SIZE - 10;
+            int end = ChunkedImageResource.CHUNK_SIZE * 2 + 10;
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (InputStream in = resource.getInputStream()) {
+                StreamUtils.copyRange(in, out, start, end - 1);
+            }
+            assertArrayEquals(Arrays.copyOfRange(data, start, end), out.toByteArray());
         }
     }
 
@@ -83,11 +151,11 @@ class ImageRepositoryIntegrationTest {
 
             assertDoesNotThrow(() -> imageRepository.save(given));
 
-            Optional<Image> dbImage = imageRepository.findByPostId(POST_ID);
-            assertTrue(dbImage.isPresent());
-            assertThat(dbImage.get())
-                    .usingRecursiveComparison()
-                    .isEqualTo(given);
+            assertArrayEquals(given.getData(), imageData(POST_ID));
+            assertEquals(
+                    Optional.of(new ImageMetadata(POST_ID, 4, "application/octet-stream", ContentHash.of(given.getData()))),
+                    imageRepository.findMetadataByPostId(POST_ID)
+            );
         }
 
         @Test
@@ -104,8 +172,7 @@ class ImageRepositoryIntegrationTest {
                     () -> imageRepository.save(given)
             );
 
-            Optional<Image> dbImage = imageRepository.findByPostId(POST_ID);
-            assertTrue(dbImage.isEmpty());
+            assertTrue(imageRepository.findMetadataByPostId(POST_ID).isEmpty());
         }
 
         @Test
@@ -147,11 +214,11 @@ class ImageRepositoryIntegrationTest {
 
             assertDoesNotThrow(() -> imageRepository.update(updated));
 
-            Optional<Image> dbImageUpdated = imageRepository.findByPostId(POST_ID);
-            assertTrue(dbImageUpdated.isPresent());
-            assertThat(dbImageUpdated.get())
-                    .usingRecursiveComparison()
-                    .isEqualTo(updated);
+            assertArrayEquals(updated.getData(), imageData(POST_ID));
+            assertEquals(
+                    ContentHash.of(updated.getData()),
+                    imageRepository.findMetadataByPostId(POST_ID).orElseThrow().contentHash()
+            );
         }
 
         @Test
@@ -162,9 +229,286 @@ class ImageRepositoryIntegrationTest {
 
             assertDoesNotThrow(() -> imageRepository.update(updated));
 
-            Optional<Image> notFoundUpdate = imageRepository.findByPostId(updated.getPostId());
-            assertTrue(notFoundUpdate.isEmpty());
+            assertTrue(imageRepository.findMetadataByPostId(updated.getPostId()).isEmpty());
+        }
+    }
+
+    @Nested
+    @Sql(statements = {CREATE_POST, CREATE_IMAGE}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+    @Sql(statements = CLEAR, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+    class VariantTests {
+
+        final String sourceHash = ContentHash.of(dbImage.getData());
+
+        final ImageVariant variant = ImageVariant.builder()
+                .sourceHash(sourceHash)
+                .width(320)
+                .contentType("image/jpeg")
+                .data(new byte[]{'s', 'm', 'a', 'l', 'l'})
+                .build();
+
+        @Test
+        void shouldFindVariantOfCurrentImage() throws IOException {
+            imageRepository.saveVariant(variant);
+
+            assertEquals(List.of(320), imageRepository.findVariantWidths(sourceHash));
+            assertEquals(
+                    Optional.of(new ImageMetadata(POST_ID, 5, "image/jpeg", ContentHash.of(variant.getData()))),
+                    imageRepository.findVariantMetadataByPostId(POST_ID, 320)
+            );
+            Resource data = imageRepository.findDataByHash(ContentHash.of(variant.getData())).orElseThrow();
+            assertArrayEquals(variant.getData(), data.getContentAsByteArray());
+
+            assertTrue(imageRepository.findVariantMetadataByPostId(POST_ID, 640).isEmpty());
+        }
+
+        @Test
+        void shouldKeepFirstSavedVariant() {
+            imageRepository.saveVariant(variant);
+
+            assertDoesNotThrow(() -> imageRepository.saveVariant(ImageVariant.builder()
+                    .sourceHash(sourceHash)
+                    .width(320)
+                    .contentType("image/png")
+                    .data(new byte[]{'o', 't', 'h', 'e', 'r'})
+                    .build()));
+
+            assertEquals("image/jpeg", imageRepository.findVariantMetadataByPostId(POST_ID, 320)
+                    .orElseThrow()
+                    .contentType());
+        }
+
+        @Test
+        void shouldNotFindVariantsOfReplacedImage() {
+            imageRepository.saveVariant(variant);
+
+            imageRepository.update(dbImage.toBuilder()
+                    .data(new byte[]{'n', 'e', 'w'})
+                    .size(3)
+                    .build());
+
+            assertTrue(imageRepository.findVariantMetadataByPostId(POST_ID, 320).isEmpty());
+        }
+
+        @Test
+        void shouldFindPostsWithoutAllVariants() {
+            assertEquals(List.of(POST_ID), imageRepository.findPostIdsWithoutVariants(0L, 10));
+            assertEquals(List.of(), imageRepository.findPostIdsWithoutVariants(POST_ID, 10));
+
+            for (Integer width : ImageVariant.WIDTHS) {
+                imageRepository.saveVariant(ImageVariant.builder()
+                        .sourceHash(sourceHash)
+                        .width(width)
+                        .contentType("image/png")
+                        .data(dbImage.getData())
+                        .build());
+            }
+
+            assertEquals(List.of(), imageRepository.findPostIdsWithoutVariants(0L, 10));
         }
     }
 
-}
\ No newline at end of file
+    @Nested
+    @Sql(statements = CREATE_POST, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+    @Sql(statements = CLEAR, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+    class BlobTests {
+
+        static final byte[] BANNER = "banner".getBytes(StandardCharsets.UTF_8);
+
+        @Autowired
+        JdbcTemplate jdbcTemplate;
+
+        @BeforeEach
+        void createSecondPost() {
+            jdbcTemplate.update("insert into posts(title, post_text, likes) values ('Second', 'text', 0)");
+        }
+
+        @Test
+        void shouldStoreEqualImagesOnce() {
+            imageRepository.save(new Image(POST_ID, "first", BANNER.length, BANNER));
+            imageRepository.save(new Image(POST_ID + 1, "second", BANNER.length, BANNER));
+
+            assertEquals(List.of(2), jdbcTemplate.queryForList("select ref_count from image_blobs", Integer.class));
+            assertArrayEquals(BANNER, imageData(POST_ID + 1));
+        }
+
+        @Test
+        void shouldReleaseBlobOfReplacedAndDeletedImages() {
+            imageRepository.save(new Image(POST_ID, "first", BANNER.length, BANNER));
+            imageRepository.save(new Image(POST_ID + 1, "second", BANNER.length, BANNER));
+
+            imageRepository.update(new Image(POST_ID, "new", 3, new byte[]{'n', 'e', 'w'}));
+            assertEquals(1, refCount(BANNER));
+            assertEquals(1, refCount(new byte[]{'n', 'e', 'w'}));
+
+            imageRepository.deleteByPostId(POST_ID + 1);
+            assertEquals(0, refCount(BANNER));
+            assertTrue(imageRepository.findMetadataByPostId(POST_ID + 1).isEmpty());
+        }
+
+        @Test
+        void shouldCollectUnreferencedBlobsWithTheirVariants() {
+            imageRepository.save(new Image(POST_ID, "first", BANNER.length, BANNER));
+            imageRepository.saveVariant(ImageVariant.builder()
+                    .sourceHash(ContentHash.of(BANNER))
+                    .width(320)
+                    .contentType("image/png")
+                    .data(new byte[]{'s'})
+                    .build());
+            imageRepository.saveVariant(ImageVariant.builder()
+                    .sourceHash(ContentHash.of(BANNER))
+                    .width(640)
+                    .contentType("image/png")
+                    .data(BANNER)
+                    .build());
+            assertEquals(1, refCount(BANNER), "a variant equal to its source does not reference it");
+            assertEquals(0, imageRepository.collectGarbage(10));
+
+            imageRepository.deleteByPostId(POST_ID);
+
+            assertEquals(1, imageRepository.collectGarbage(10));
+            assertEquals(0, jdbcTemplate.queryForObject("select count(*) from image_variants", Integer.class));
+            assertEquals(0, refCount(new byte[]{'s'}));
+            assertEquals(1, imageRepository.collectGarbage(10));
+            assertEquals(0, imageRepository.collectGarbage(10));
+            assertEquals(0, jdbcTemplate.queryForObject("select count(*) from image_blobs", Integer.class));
+        }
+
+        @Test
+        void shouldReviveCollectableBlobOnUpload() {
+            imageRepository.save(new Image(POST_ID, "first", BANNER.length, BANNER));
+            imageRepository.deleteByPostId(POST_ID);
+
+            imageRepository.save(new Image(POST_ID + 1, "second", BANNER.length, BANNER));
+
+            assertEquals(0, imageRepository.collectGarbage(10));
+            assertArrayEquals(BANNER, imageData(POST_ID + 1));
+        }
+
+        private int refCount(byte[] data) {
+            return jdbcTemplate.queryForObject("select ref_count from image_blobs where content_hash = ?",
+                    Integer.class, ContentHash.of(data));
+        }
+    }
+
+    @Nested
+    @Sql(statements = CLEAR, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+    class StreamingUploadTests {
+
+        static final int UPLOADS = 50;
+
+        static final int IMAGE_SIZE = 5 * 1024 * 1024;
+
+        @Autowired
+        JdbcTemplate jdbcTemplate;
+
+        @BeforeEach
+        void createPosts() {
+            jdbcTemplate.queryForObject("select setval('posts_id_seq', 1, false)", Long.class);
+            jdbcTemplate.update("""
+                    insert into posts(title, post_text, likes)
+                    select 'Title', 'text', 0 from generate_series(1, ?)
+                    """, UPLOADS);
+        }
+
+        /**
+         * Each upload is streamed from its source, so the heap allocated by an upload
+         * stays a small fraction of the image however many are stored at once
+         */
+        @Test
+        void shouldStoreConcurrentUploadsWithinFixedHeapBudget() throws Exception {
+            imageRepository.save(upload(1L, 0));
+            imageRepository.update(upload(1L, 0));
+
+            List<Long> allocated;
+            try (ExecutorService executor = Executors.newFixedThreadPool(UPLOADS)) {
+                List<Future<Long>> futures = LongStream.rangeClosed(1, UPLOADS)
+                        .mapToObj(postId -> executor.submit(() -> allocatedBy(() -> {
+                            if (postId == 1) {
+                                imageRepository.update(upload(postId, postId));
+                            } else {
+                                imageRepository.save(upload(postId, postId));
+                            }
+                        })))
+                        .toList();
+                allocated = new ArrayList<>();
+                for (Future<Long> future : futures) {
+                    allocated.add(future.get(2, TimeUnit.MINUTES));
+                }
+            }
+            long max = allocated.stream().mapToLong(Long::longValue).max().orElseThrow();
+            long total = allocated.stream().mapToLong(Long::longValue).sum();
+
+            assertTrue(max < IMAGE_SIZE / 50, "an upload of %d bytes allocates %d, %d uploads allocate %d in total"
+                    .formatted(IMAGE_SIZE, max, UPLOADS, total));
+            assertEquals(UPLOADS, jdbcTemplate.queryForObject("""
+                            select count(*) from images i
+                            join image_blobs b on b.content_hash = i.content_hash
+                            where b.ref_count = 1 and octet_length(b.image_data) = ?
+                            """,
+                    Integer.class, IMAGE_SIZE));
+        }
+
+        /**
+         * @return image of pseudo-random bytes generated while it is read, so the test
+         * itself does not hold the images on the heap
+         */
+        private Image upload(long postId, long seed) {
+            return Image.builder()
+                    .postId(postId)
+                    .name("upload")
+                    .size(IMAGE_SIZE)
+                    .source(() -> new RandomInputStream(seed, IMAGE_SIZE))
+                    .build();
+        }
+
+        private static long allocatedBy(Runnable action) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long threadId = Thread.currentThread().threadId();
+            long before = threads.getThreadAllocatedBytes(threadId);
+            action.run();
+            return threads.getThreadAllocatedBytes(threadId) - before;
+        }
+    }
+
+    static class RandomInputStream extends InputStream {
+
+        private final Random random;
+
+        private long remaining;
+
+        RandomInputStream(long seed, long length) {
+            this.random = new Random(seed);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() {
+            if (remaining == 0) return -1;
+            remaining--;
+            return random.nextInt(256);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (remaining == 0) return -1;
+
+            int read = (int) Math.min(len, remaining);
+            for (int i = 0; i < read; i++) {
+                b[off + i] = (byte) random.nextInt(256);
+            }
+            remaining -= read;
+            return read;
+        }
+    }
+
+    /**
+     * Reads the post image the way it is served: by the hash found in its metadata
+     */
+    @SneakyThrows
+    byte[] imageData(Long postId) {
+        String contentHash = imageRepository.findMetadataByPostId(postId).orElseThrow().contentHash();
+        return imageRepository.findDataByHash(contentHash).orElseThrow().getContentAsByteArray();
+    }
+}
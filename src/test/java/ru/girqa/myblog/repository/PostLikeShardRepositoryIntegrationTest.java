@@ -0,0 +1,83 @@
+package ru.girqa.myblog.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import ru.girqa.myblog.repository.common.PostgresTestConfiguration;
+import ru.girqa.myblog.repository.jdbc.PostLikeShardRepository;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+@Import(PostgresTestConfiguration.class)
+@SpringBootTest(classes = PostLikeShardRepository.class)
+@Sql(statements = {
+        PostLikeShardRepositoryIntegrationTest.CLEAR,
+        PostLikeShardRepositoryIntegrationTest.CREATE_POSTS
+}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(statements = PostLikeShardRepositoryIntegrationTest.CLEAR, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class PostLikeShardRepositoryIntegrationTest {
+
+    static final Long POST_ID = 7L;
+
+    static final String CLEAR = "truncate table posts cascade;";
+
+    static final String CREATE_POSTS = """
+            select setval('posts_id_seq', 7, false);
+            insert into posts(title, post_text, excerpt, likes)
+            values ('first', 'text', 'text', 10), ('second', 'text', 'text', 0);
+            """;
+
+    @Autowired
+    PostLikeShardRepository shardRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void shouldCountLikesOfPostAndItsShards() {
+        assertEquals(Optional.of(1), shardRepository.increment(POST_ID, 0));
+        assertEquals(Optional.of(2), shardRepository.increment(POST_ID, 0));
+        assertEquals(Optional.of(1), shardRepository.increment(POST_ID, 3));
+        assertEquals(Optional.of(1), shardRepository.increment(POST_ID + 1, 0));
+
+        assertEquals(Optional.of(13), shardRepository.countLikes(POST_ID));
+        assertEquals(Optional.of(1), shardRepository.countLikes(POST_ID + 1));
+        assertEquals(10, jdbcTemplate.queryForObject("select likes from posts where id = ?", Integer.class, POST_ID));
+    }
+
+    @Test
+    void shouldNotLikeMissingPost() {
+        assertEquals(Optional.empty(), shardRepository.increment(POST_ID + 2, 0));
+        assertEquals(Optional.empty(), shardRepository.countLikes(POST_ID + 2));
+    }
+
+    @Test
+    void shouldFoldShardsIntoPosts() {
+        shardRepository.increment(POST_ID, 0);
+        shardRepository.increment(POST_ID, 1);
+        shardRepository.increment(POST_ID + 1, 1);
+
+        assertThat(shardRepository.compact()).containsExactlyInAnyOrder(POST_ID, POST_ID + 1);
+
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from post_like_shards", Integer.class));
+        assertEquals(12, jdbcTemplate.queryForObject("select likes from posts where id = ?", Integer.class, POST_ID));
+        assertEquals(Optional.of(12), shardRepository.countLikes(POST_ID));
+        assertEquals(Optional.of(1), shardRepository.countLikes(POST_ID + 1));
+        assertTrue(shardRepository.compact().isEmpty());
+    }
+
+    @Test
+    void shouldDropShardsOfDeletedPost() {
+        shardRepository.increment(POST_ID, 0);
+
+        jdbcTemplate.update("delete from posts where id = ?", POST_ID);
+
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from post_like_shards", Integer.class));
+    }
+}
@@ -4,6 +4,8 @@ import lombok.SneakyThrows;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
@@ -11,21 +13,33 @@ import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.jdbc.Sql;
+import ru.girqa.myblog.model.domain.Commentary;
+import ru.girqa.myblog.model.domain.PageCursor;
 import ru.girqa.myblog.model.domain.PageRequest;
+import ru.girqa.myblog.model.domain.Tag;
+import ru.girqa.myblog.model.domain.TagExpression;
 import ru.girqa.myblog.model.domain.post.Post;
 import ru.girqa.myblog.model.domain.post.PostPreview;
 import ru.girqa.myblog.model.domain.post.PostsPage;
 import ru.girqa.myblog.repository.common.PostgresTestConfiguration;
 import ru.girqa.myblog.repository.jdbc.PostJdbcRepository;
-
+import ru.girqa.myblog.repository.jdbc.TagJdbcRepository;
+import ru.girqa.myblog.repository.memory.PostCountRegistry;
+import ru.girqa.myblog.repository.memory.PostTagIndex;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 
 @Import(PostgresTestConfiguration.class)
-@SpringBootTest(classes = PostJdbcRepository.class)
+@SpringBootTest(classes = {PostJdbcRepository.class, PostCountRegistry.class, PostTagIndex.class})
 public class PostRepositoryIntegrationTest {
 
     @Autowired
@@ -34,12 +48,17 @@ public class PostRepositoryIntegrationTest {
     @Autowired
     JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    DataSource dataSource;
+
     static final Long FIRST_POST_ID = 4L;
 
-    static final String CLEAR = "truncate table posts, tags cascade;";
+    static final String CLEAR = "truncate table posts, tags, post_search_champions cascade;";
 
     static final String SET_POSTS_ID_SEQ = "select setval('posts_id_seq', 4, false);";
 
+    static final String CREATE_VERSIONS = "insert into post_versions(post_id) select id from posts";
+
     @Nested
     @Sql(statements = {CLEAR, SET_POSTS_ID_SEQ}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
     class PostSaveTests {
@@ -51,6 +70,7 @@ public class PostRepositoryIntegrationTest {
                     .title("Post")
                     .likes(10)
                     .text("Text")
+                    .excerpt("Excerpt")
                     .build();
 
             Post saved = postRepository.save(post);
@@ -59,6 +79,7 @@ public class PostRepositoryIntegrationTest {
             assertEquals(post.getImage(), saved.getImage());
             assertEquals(post.getLikes(), saved.getLikes());
             assertEquals(post.getText(), saved.getText());
+            assertEquals("Excerpt", postRepository.findById(saved.getId()).orElseThrow().getExcerpt());
         }
 
         @Test
@@ -84,11 +105,14 @@ public class PostRepositoryIntegrationTest {
                     insert into posts(title, post_text, likes)
                     values ('post1', 't1', 5)
                     """);
+            jdbcTemplate.update(CREATE_VERSIONS);
+            long version = postRepository.findVersion(FIRST_POST_ID).orElseThrow();
 
             Post updated = Post.builder()
                     .id(FIRST_POST_ID)
                     .title("New title")
                     .text("NewText")
+                    .excerpt("NewExcerpt")
                     .build();
 
             assertDoesNotThrow(() -> postRepository.update(updated));
@@ -97,10 +121,12 @@ public class PostRepositoryIntegrationTest {
             assertTrue(dbPost.isPresent());
             assertThat(dbPost.get())
                     .usingRecursiveComparison()
+                    .ignoringFields("version")
                     .isEqualTo(updated.toBuilder()
                             .likes(5) //this field should not update
                             .build()
                     );
+            assertTrue(dbPost.get().getVersion() > version);
         }
 
         @Test
@@ -119,14 +145,17 @@ public class PostRepositoryIntegrationTest {
         @Test
         void shouldIncrementLikes() {
             jdbcTemplate.update("""
-                    insert into posts(title, post_text, likes)
-                    values ('title', 'text', 2)
+                    insert into posts(title, post_text, excerpt, likes)
+                    values ('title', 'text', 'text', 2)
                     """);
+            jdbcTemplate.update(CREATE_VERSIONS);
+            long version = postRepository.findVersion(FIRST_POST_ID).orElseThrow();
 
             Post expected = Post.builder()
                     .id(FIRST_POST_ID)
                     .title("title")
                     .text("text")
+                    .excerpt("text")
                     .likes(2)
                     .build();
 
@@ -137,10 +166,31 @@ public class PostRepositoryIntegrationTest {
             assertTrue(dbPost.isPresent());
             assertThat(dbPost.get())
                     .usingRecursiveComparison()
+                    .ignoringFields("version")
                     .isEqualTo(expected.toBuilder()
                             .likes(expected.getLikes() + 1)
                             .build()
                     );
+            assertTrue(dbPost.get().getVersion() > version);
+        }
+
+        @Test
+        void shouldAddLikesOfSeveralPostsAtOnce() {
+            jdbcTemplate.update("""
+                    insert into posts(title, post_text, excerpt, likes)
+                    values ('first', 'text', 'text', 2), ('second', 'text', 'text', 0)
+                    """);
+
+            Map<Long, Integer> likes = postRepository.addLikes(Map.of(
+                    FIRST_POST_ID, 3L,
+                    FIRST_POST_ID + 1, 1L,
+                    FIRST_POST_ID + 2, 5L
+            ));
+
+            assertEquals(Map.of(FIRST_POST_ID, 5, FIRST_POST_ID + 1, 1), likes);
+            assertEquals(Optional.of(5), postRepository.findLikes(FIRST_POST_ID));
+            assertEquals(Optional.of(1), postRepository.findLikes(FIRST_POST_ID + 1));
+            assertEquals(Optional.empty(), postRepository.findLikes(FIRST_POST_ID + 2));
         }
 
         @Test
@@ -163,12 +213,92 @@ public class PostRepositoryIntegrationTest {
                     values ('title', 'text', 2)
                     """);
 
-            assertDoesNotThrow(() -> postRepository.deleteById(FIRST_POST_ID));
+            assertTrue(postRepository.deleteById(FIRST_POST_ID));
 
             Optional<Post> dbPost = postRepository.findById(FIRST_POST_ID);
             assertTrue(dbPost.isEmpty());
         }
 
+        @Test
+        void shouldNotDeleteNotPresentPost() {
+            assertFalse(postRepository.deleteById(FIRST_POST_ID));
+        }
+
+        @Test
+        void shouldCountAllPosts() {
+            jdbcTemplate.update("""
+                    insert into posts(title, post_text)
+                    values ('post1', 't1'), ('post2', 't2')
+                    """);
+
+            assertEquals(2, postRepository.countAll());
+        }
+
+    }
+
+    @Nested
+    @Sql(statements = {CLEAR, SET_POSTS_ID_SEQ}, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+    class PostVersionTests {
+
+        @Test
+        void shouldChangeFeedVersionOnEveryChange() {
+            long empty = postRepository.findFeedVersion();
+            assertEquals(empty, postRepository.findFeedVersion());
+
+            Post saved = postRepository.save(Post.builder().title("Post").likes(0).text("Text").excerpt("Text").build());
+            long created = postRepository.findFeedVersion();
+            assertNotEquals(empty, created);
+            assertTrue(postRepository.findVersion(saved.getId()).isPresent());
+
+            postRepository.addLikes(Map.of(saved.getId(), 2L));
+            long liked = postRepository.findFeedVersion();
+            assertNotEquals(created, liked);
+
+            assertTrue(postRepository.deleteById(saved.getId()));
+            assertNotEquals(liked, postRepository.findFeedVersion());
+            assertTrue(postRepository.findVersion(saved.getId()).isEmpty());
+        }
+
+        @Test
+        void shouldChangeFeedVersionWhenEarlierVersionCommitsLater() throws SQLException {
+            jdbcTemplate.update("""
+                    insert into posts(title, post_text, excerpt)
+                    values ('first', 'text', 'text'), ('second', 'text', 'text')
+                    """);
+            jdbcTemplate.update(CREATE_VERSIONS);
+
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(false);
+                // the first transaction draws its version, then a like of another post commits a later one
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate("update posts set title = 'updated' where id = " + FIRST_POST_ID);
+                    statement.executeUpdate("""
+                            insert into post_versions(post_id) values (%d)
+                            on conflict (post_id) do update set version = default
+                            """.formatted(FIRST_POST_ID));
+                }
+                postRepository.incrementLikes(FIRST_POST_ID + 1);
+                long beforeCommit = postRepository.findFeedVersion();
+
+                connection.commit();
+
+                assertNotEquals(beforeCommit, postRepository.findFeedVersion());
+            }
+        }
+
+        @Test
+        void shouldNotChangeVersionOfOtherPosts() {
+            jdbcTemplate.update("""
+                    insert into posts(title, post_text, excerpt)
+                    values ('first', 'text', 'text'), ('second', 'text', 'text')
+                    """);
+            jdbcTemplate.update(CREATE_VERSIONS);
+            long second = postRepository.findVersion(FIRST_POST_ID + 1).orElseThrow();
+
+            postRepository.incrementLikes(FIRST_POST_ID);
+
+            assertEquals(Optional.of(second), postRepository.findVersion(FIRST_POST_ID + 1));
+        }
     }
 
     @Nested
@@ -203,6 +333,69 @@ public class PostRepositoryIntegrationTest {
             Optional<Post> dbPost = postRepository.findById(FIRST_POST_ID + 5);
             assertTrue(dbPost.isEmpty());
         }
+
+        @Test
+        void shouldFindPostWithTagsAndCommentaries() {
+            jdbcTemplate.update("insert into tags(tag_name) values ('t2'), ('t1')");
+            jdbcTemplate.update("""
+                    insert into post_tags(post_id, tag_id)
+                    select 4, id from tags
+                    """);
+            jdbcTemplate.update("""
+                    insert into commentaries(post_id, commentary_text)
+                    values (4, 'first'), (5, 'other'), (4, 'second')
+                    """);
+            jdbcTemplate.update("update posts set comments_count = 2 where id = 4");
+            jdbcTemplate.update(CREATE_VERSIONS);
+
+            Post dbPost = postRepository.findAggregateById(FIRST_POST_ID, 10).orElseThrow();
+
+            assertAll(
+                    () -> assertEquals("post1", dbPost.getTitle()),
+                    () -> assertEquals(postRepository.findVersion(FIRST_POST_ID).orElseThrow(), dbPost.getVersion()),
+                    () -> assertEquals(List.of("t2", "t1"), dbPost.getTags().stream().map(Tag::getName).toList()),
+                    () -> assertEquals(List.of("first", "second"),
+                            dbPost.getCommentaries().stream().map(Commentary::getText).toList()),
+                    () -> assertTrue(dbPost.getCommentaries().stream()
+                            .allMatch(commentary -> commentary.getPostId().equals(FIRST_POST_ID))),
+                    () -> assertEquals(2, dbPost.getCommentsCount()),
+                    () -> assertNull(dbPost.getCommentariesCursor())
+            );
+        }
+
+        @Test
+        void shouldFindOnlyFirstCommentariesOfPost() {
+            jdbcTemplate.update("""
+                    insert into commentaries(post_id, commentary_text)
+                    select 4, 'commentary ' || g from generate_series(1, 5) g
+                    """);
+            jdbcTemplate.update("update posts set comments_count = 5 where id = 4");
+
+            Post dbPost = postRepository.findAggregateById(FIRST_POST_ID, 3).orElseThrow();
+
+            assertAll(
+                    () -> assertEquals(List.of("commentary 1", "commentary 2", "commentary 3"),
+                            dbPost.getCommentaries().stream().map(Commentary::getText).toList()),
+                    () -> assertEquals(dbPost.getCommentaries().getLast().getId(), dbPost.getCommentariesCursor()),
+                    () -> assertEquals(5, dbPost.getCommentsCount())
+            );
+        }
+
+        @Test
+        void shouldFindPostWithoutTagsAndCommentaries() {
+            Post dbPost = postRepository.findAggregateById(FIRST_POST_ID + 1, 10).orElseThrow();
+
+            assertAll(
+                    () -> assertEquals("post2", dbPost.getTitle()),
+                    () -> assertEquals(List.of(), dbPost.getTags()),
+                    () -> assertEquals(List.of(), dbPost.getCommentaries())
+            );
+        }
+
+        @Test
+        void shouldNotFindAggregateOfMissingPost() {
+            assertTrue(postRepository.findAggregateById(FIRST_POST_ID + 5, 10).isEmpty());
+        }
     }
 
     @Nested
@@ -215,21 +408,21 @@ public class PostRepositoryIntegrationTest {
         @SneakyThrows
         void setUpPosts() {
             jdbcTemplate.update("""
-                    insert into posts(title, post_text, likes)
-                    values ('post1', 't1', 5), ('post2', 't2', 4)
+                    insert into posts(title, post_text, excerpt, likes)
+                    values ('post1', E'\\nt1\\nbody', 't1', 5), ('post2', 't2', 't2', 4)
                     """);
 
             posts = List.of(
                     Post.builder()
                             .id(FIRST_POST_ID)
                             .title("post1")
-                            .text("t1")
+                            .excerpt("t1")
                             .likes(5)
                             .build(),
                     Post.builder()
                             .id(FIRST_POST_ID + 1)
                             .title("post2")
-                            .text("t2")
+                            .excerpt("t2")
                             .likes(4)
                             .build()
             );
@@ -238,6 +431,27 @@ public class PostRepositoryIntegrationTest {
         @Nested
         class WithoutTag {
 
+            @Test
+            void shouldFillImageHashOfPosts() {
+                jdbcTemplate.update("""
+                        insert into image_blobs(content_hash, ref_count)
+                        values (repeat('a', 64), 1)
+                        on conflict do nothing;
+                        insert into images(post_id, image_name, image_size, content_type, content_hash)
+                        values (?, 'image', 3, 'image/png', repeat('a', 64))
+                        """, FIRST_POST_ID);
+
+                PostsPage page = postRepository.findAllPaged(PageRequest.builder()
+                        .page(1)
+                        .posts(2)
+                        .build()
+                );
+
+                assertEquals("a".repeat(64), page.getPosts().get(0).getImageHash());
+                assertNull(page.getPosts().get(1).getImageHash());
+                assertEquals("a".repeat(64), postRepository.findById(FIRST_POST_ID).orElseThrow().getImageHash());
+            }
+
             @Test
             @SneakyThrows
             void shouldFindOnePostAtPage() {
@@ -313,7 +527,7 @@ public class PostRepositoryIntegrationTest {
                 PostsPage page = postRepository.findAllPaged(PageRequest.builder()
                         .page(1)
                         .posts(5)
-                        .targetTag("t1")
+                        .tags(new TagExpression.HasTag("t1"))
                         .build());
 
                 assertEquals(2, page.getPosts().size());
@@ -326,7 +540,7 @@ public class PostRepositoryIntegrationTest {
                 PostsPage page = postRepository.findAllPaged(PageRequest.builder()
                         .page(1)
                         .posts(5)
-                        .targetTag("t2")
+                        .tags(new TagExpression.HasTag("t2"))
                         .build());
 
                 assertEquals(1, page.getPosts().size());
@@ -338,18 +552,435 @@ public class PostRepositoryIntegrationTest {
                 PostsPage page = postRepository.findAllPaged(PageRequest.builder()
                         .page(1)
                         .posts(3)
-                        .targetTag("t3")
+                        .tags(new TagExpression.HasTag("t3"))
                         .build());
 
                 assertTrue(page.getPosts().isEmpty());
             }
+
+            @Test
+            void shouldFillStoredCommentsCountsAndTags() {
+                jdbcTemplate.update("update posts set comments_count = 3 where id = 5");
+
+                PostsPage page = postRepository.findAllPaged(PageRequest.builder()
+                        .page(1)
+                        .posts(5)
+                        .build());
+
+                PostPreview first = page.getPosts().getFirst();
+                PostPreview second = page.getPosts().getLast();
+                assertAll(
+                        () -> assertEquals(0L, first.getComments()),
+                        () -> assertEquals(List.of("t1"), first.getTags().stream().map(Tag::getName).toList()),
+                        () -> assertEquals(3L, second.getComments()),
+                        () -> assertEquals(List.of("t1", "t2"), second.getTags().stream().map(Tag::getName).toList()),
+                        () -> assertEquals(List.of(4L, 5L), second.getTags().stream().map(Tag::getId).toList())
+                );
+            }
+
+            @Test
+            void shouldReportTotalPagesForEmptyPage() {
+                PostsPage page = postRepository.findAllPaged(PageRequest.builder()
+                        .page(3)
+                        .posts(1)
+                        .tags(new TagExpression.HasTag("t1"))
+                        .build());
+
+                assertAll(
+                        () -> assertTrue(page.getPosts().isEmpty()),
+                        () -> assertEquals(2, page.getTotalPages())
+                );
+            }
+
+            @Test
+            void shouldTakeTotalFromLoadedRegistry() {
+                PostCountRegistry registry = new PostCountRegistry();
+                registry.reconcile(() -> {
+                }, () -> new PostCountRegistry.Snapshot(2, Map.of("t1", 7L)));
+                PostRepository repository = new PostJdbcRepository(jdbcTemplate, registry, new PostTagIndex());
+
+                PostsPage page = repository.findAllPaged(PageRequest.builder()
+                        .page(1)
+                        .posts(2)
+                        .tags(new TagExpression.HasTag("t1"))
+                        .build());
+
+                assertAll(
+                        () -> assertEquals(2, page.getPosts().size()),
+                        () -> assertEquals(4, page.getTotalPages())
+                );
+            }
+        }
+
+        @Nested
+        class WithCursor {
+
+            @BeforeEach
+            void setUpMorePosts() {
+                jdbcTemplate.update("""
+                        insert into posts(title, post_text, likes)
+                        values ('post3', 't3', 1), ('post4', 't4', 0)
+                        """);
+            }
+
+            @Test
+            void shouldReturnCursorsForOffsetPage() {
+                PostsPage page = postRepository.findAllPaged(PageRequest.builder()
+                        .page(1)
+                        .posts(2)
+                        .build());
+
+                assertAll(
+                        () -> assertEquals(2, page.getPosts().size()),
+                        () -> assertEquals(PageCursor.after(FIRST_POST_ID + 1), page.getNextCursor()),
+                        () -> assertNull(page.getPreviousCursor())
+                );
+            }
+
+            @Test
+            void shouldSeekPostsAfterCursor() {
+                PostsPage page = postRepository.findAllPaged(PageRequest.builder()
+                        .page(2)
+                        .posts(2)
+                        .cursor(PageCursor.after(FIRST_POST_ID + 1))
+                        .build());
+
+                assertAll(
+                        () -> assertEquals(2, page.getPage()),
+                        () -> assertEquals(2, page.getTotalPages()),
+                        () -> assertEquals(
+                                List.of(FIRST_POST_ID + 2, FIRST_POST_ID + 3),
+                                page.getPosts().stream().map(PostPreview::getId).toList()),
+                        () -> assertNull(page.getNextCursor()),
+                        () -> assertEquals(PageCursor.before(FIRST_POST_ID + 2), page.getPreviousCursor())
+                );
+            }
+
+            @Test
+            void shouldSeekPostsBeforeCursor() {
+                PostsPage page = postRepository.findAllPaged(PageRequest.builder()
+                        .page(2)
+                        .posts(2)
+                        .cursor(PageCursor.before(FIRST_POST_ID + 3))
+                        .build());
+
+                assertAll(
+                        () -> assertEquals(
+                                List.of(FIRST_POST_ID + 1, FIRST_POST_ID + 2),
+                                page.getPosts().stream().map(PostPreview::getId).toList()),
+                        () -> assertEquals(PageCursor.after(FIRST_POST_ID + 2), page.getNextCursor()),
+                        () -> assertEquals(PageCursor.before(FIRST_POST_ID + 1), page.getPreviousCursor())
+                );
+            }
+
+            @Test
+            void shouldNotReturnPreviousCursorOnFirstPostsBeforeCursor() {
+                PostsPage page = postRepository.findAllPaged(PageRequest.builder()
+                        .page(1)
+                        .posts(2)
+                        .cursor(PageCursor.before(FIRST_POST_ID + 2))
+                        .build());
+
+                assertAll(
+                        () -> assertEquals(
+                                List.of(FIRST_POST_ID, FIRST_POST_ID + 1),
+                                page.getPosts().stream().map(PostPreview::getId).toList()),
+                        () -> assertNull(page.getPreviousCursor())
+                );
+            }
+
+            @Test
+            void shouldSeekTaggedPostsAfterCursor() {
+                jdbcTemplate.execute("select setval('tags_id_seq', 4, false);");
+                jdbcTemplate.update("insert into tags(tag_name) values ('t1')");
+                jdbcTemplate.update("insert into post_tags(post_id, tag_id) values (4, 4), (6, 4), (7, 4)");
+
+                PostsPage page = postRepository.findAllPaged(PageRequest.builder()
+                        .page(2)
+                        .posts(1)
+                        .tags(new TagExpression.HasTag("t1"))
+                        .cursor(PageCursor.after(FIRST_POST_ID))
+                        .build());
+
+                assertAll(
+                        () -> assertEquals(3, page.getTotalPages()),
+                        () -> assertEquals(
+                                List.of(FIRST_POST_ID + 2),
+                                page.getPosts().stream().map(PostPreview::getId).toList()),
+                        () -> assertEquals(PageCursor.after(FIRST_POST_ID + 2), page.getNextCursor())
+                );
+            }
+        }
+
+        @Nested
+        class WithTagExpression {
+
+            @BeforeEach
+            void setUpTags() {
+                jdbcTemplate.update("""
+                        insert into posts(title, post_text, likes)
+                        values ('post3', 't3', 1), ('post4', 't4', 0)
+                        """);
+                jdbcTemplate.execute("select setval('tags_id_seq', 4, false);");
+                jdbcTemplate.update("insert into tags(tag_name) values ('t1'), ('t2')");
+                jdbcTemplate.update("insert into post_tags(post_id, tag_id) values (4, 4), (5, 4), (6, 4), (5, 5), (7, 5)");
+            }
+
+            /**
+             * @param indexed whether pages are answered by a loaded {@link PostTagIndex} or by SQL
+             */
+            PostRepository repository(boolean indexed) {
+                if (!indexed) return postRepository;
+
+                PostTagIndex index = new PostTagIndex();
+                index.load(new TagJdbcRepository(jdbcTemplate)::loadIndex);
+                return new PostJdbcRepository(jdbcTemplate, new PostCountRegistry(), index);
+            }
+
+            PostsPage findPage(boolean indexed, String expression, int page, int posts, PageCursor cursor) {
+                return repository(indexed).findAllPaged(PageRequest.builder()
+                        .page(page)
+                        .posts(posts)
+                        .tags(TagExpression.parse(expression).orElseThrow())
+                        .cursor(cursor)
+                        .build());
+            }
+
+            static List<Long> ids(PostsPage page) {
+                return page.getPosts().stream().map(PostPreview::getId).toList();
+            }
+
+            @ParameterizedTest
+            @ValueSource(booleans = {false, true})
+            void shouldFindPostsWithTagButNotOther(boolean indexed) {
+                PostsPage page = findPage(indexed, "t1 AND NOT t2", 1, 1, null);
+
+                assertAll(
+                        () -> assertEquals(List.of(FIRST_POST_ID), ids(page)),
+                        () -> assertEquals(2, page.getTotalPages()),
+                        () -> assertEquals(PageCursor.after(FIRST_POST_ID), page.getNextCursor()),
+                        () -> assertEquals(List.of("t1"), page.getPosts().getFirst().getTags().stream()
+                                .map(Tag::getName)
+                                .toList())
+                );
+            }
+
+            @ParameterizedTest
+            @ValueSource(booleans = {false, true})
+            void shouldFindPostsWithAnyTag(boolean indexed) {
+                PostsPage page = findPage(indexed, "t1 OR t2", 2, 2, null);
+
+                assertAll(
+                        () -> assertEquals(List.of(FIRST_POST_ID + 2, FIRST_POST_ID + 3), ids(page)),
+                        () -> assertEquals(2, page.getTotalPages()),
+                        () -> assertNull(page.getNextCursor()),
+                        () -> assertEquals(PageCursor.before(FIRST_POST_ID + 2), page.getPreviousCursor())
+                );
+            }
+
+            @ParameterizedTest
+            @ValueSource(booleans = {false, true})
+            void shouldFindPostsWithoutTag(boolean indexed) {
+                PostsPage page = findPage(indexed, "NOT t1", 1, 5, null);
+
+                assertAll(
+                        () -> assertEquals(List.of(FIRST_POST_ID + 3), ids(page)),
+                        () -> assertEquals(1, page.getTotalPages())
+                );
+            }
+
+            @ParameterizedTest
+            @ValueSource(booleans = {false, true})
+            void shouldSeekPostsAfterCursor(boolean indexed) {
+                PostsPage page = findPage(indexed, "t1 OR t2", 2, 2, PageCursor.after(FIRST_POST_ID));
+
+                assertAll(
+                        () -> assertEquals(List.of(FIRST_POST_ID + 1, FIRST_POST_ID + 2), ids(page)),
+                        () -> assertEquals(PageCursor.after(FIRST_POST_ID + 2), page.getNextCursor()),
+                        () -> assertEquals(PageCursor.before(FIRST_POST_ID + 1), page.getPreviousCursor())
+                );
+            }
+
+            @ParameterizedTest
+            @ValueSource(booleans = {false, true})
+            void shouldSeekPostsBeforeCursor(boolean indexed) {
+                PostsPage page = findPage(indexed, "t1 OR t2", 1, 2, PageCursor.before(FIRST_POST_ID + 2));
+
+                assertAll(
+                        () -> assertEquals(List.of(FIRST_POST_ID, FIRST_POST_ID + 1), ids(page)),
+                        () -> assertEquals(PageCursor.after(FIRST_POST_ID + 1), page.getNextCursor()),
+                        () -> assertNull(page.getPreviousCursor())
+                );
+            }
+
+            @ParameterizedTest
+            @ValueSource(booleans = {false, true})
+            void shouldReportTotalPagesForEmptyPage(boolean indexed) {
+                PostsPage page = findPage(indexed, "t1 AND t2", 3, 1, null);
+
+                assertAll(
+                        () -> assertTrue(page.getPosts().isEmpty()),
+                        () -> assertEquals(1, page.getTotalPages())
+                );
+            }
+        }
+
+        @Nested
+        class WithSearch {
+
+            @BeforeEach
+            void setUpSearchablePosts() {
+                jdbcTemplate.update("""
+                        insert into posts(title, post_text, likes)
+                        values ('Кошки и собаки', 'Заметки о домашних животных', 1),
+                               ('Прогулка', 'Гуляли с собакой в парке', 2),
+                               ('Spring Boot', 'Configuring dogs and cats services', 3)
+                        """);
+                jdbcTemplate.execute("select setval('tags_id_seq', 4, false);");
+                jdbcTemplate.update("insert into tags(tag_name) values ('pets')");
+                jdbcTemplate.update("insert into post_tags(post_id, tag_id) values (6, 4), (7, 4)");
+            }
+
+            PostsPage search(String query, int page, int posts, TagExpression tags) {
+                return postRepository.findAllPaged(PageRequest.builder()
+                        .page(page)
+                        .posts(posts)
+                        .query(query)
+                        .tags(tags)
+                        .build());
+            }
+
+            static List<Long> ids(PostsPage page) {
+                return page.getPosts().stream().map(PostPreview::getId).toList();
+            }
+
+            @Test
+            void shouldRankTitleMatchesFirst() {
+                PostsPage page = search("собака", 1, 5, null);
+
+                assertAll(
+                        () -> assertEquals(List.of(FIRST_POST_ID + 2, FIRST_POST_ID + 3), ids(page)),
+                        () -> assertEquals(1, page.getTotalPages()),
+                        () -> assertEquals("собака", page.getQuery()),
+                        () -> assertNull(page.getNextCursor()),
+                        () -> assertNull(page.getPreviousCursor())
+                );
+            }
+
+            @Test
+            void shouldSupportWebSearchSyntax() {
+                assertAll(
+                        () -> assertEquals(List.of(FIRST_POST_ID + 4), ids(search("dog cats", 1, 5, null))),
+                        () -> assertEquals(List.of(FIRST_POST_ID + 3), ids(search("собаки -кошки", 1, 5, null))),
+                        () -> assertEquals(List.of(), ids(search("\"cats and dogs\"", 1, 5, null)))
+                );
+            }
+
+            @Test
+            void shouldFilterSearchResultsByTags() {
+                PostsPage page = search("собаки OR dogs", 1, 5, new TagExpression.HasTag("pets"));
+
+                assertEquals(List.of(FIRST_POST_ID + 2, FIRST_POST_ID + 3), ids(page));
+            }
+
+            @Test
+            void shouldPageSearchResults() {
+                PostsPage first = search("собаки OR dogs", 1, 2, null);
+                PostsPage last = search("собаки OR dogs", 2, 2, null);
+                PostsPage empty = search("собаки OR dogs", 3, 2, null);
+
+                assertAll(
+                        () -> assertEquals(List.of(FIRST_POST_ID + 2, FIRST_POST_ID + 4), ids(first)),
+                        () -> assertEquals(List.of(FIRST_POST_ID + 3), ids(last)),
+                        () -> assertTrue(empty.getPosts().isEmpty()),
+                        () -> assertEquals(2, empty.getTotalPages())
+                );
+            }
+
+            Long insertFoxPosts() {
+                Long best = jdbcTemplate.queryForObject("""
+                        insert into posts(title, post_text, likes)
+                        values ('Лиса', 'Лиса у норы', 0)
+                        returning id
+                        """, Long.class);
+                jdbcTemplate.update("""
+                        insert into posts(title, post_text, likes)
+                        select 'Заметка ' || n, 'Видели лису', 0 from generate_series(1, 500) n
+                        """);
+                return best;
+            }
+
+            @Test
+            void shouldRankAndCountEveryMatchOfWordWithoutChampions() {
+                Long best = insertFoxPosts();
+
+                PostsPage page = search("лиса", 1, 10, null);
+
+                assertAll(
+                        () -> assertEquals(best, ids(page).getFirst()),
+                        () -> assertEquals(51, page.getTotalPages()),
+                        () -> assertFalse(page.isTotalPagesCapped())
+                );
+            }
+
+            @Test
+            void shouldRankOnlyChampionsOfFrequentWord() {
+                Long best = insertFoxPosts();
+                // "лиса" and "заметка" (the notes post above makes it 501) get lists
+                assertEquals(1000, postRepository.rebuildSearchChampions());
+
+                PostsPage page = search("лиса", 1, 10, null);
+                PostsPage beyond = search("лиса", 51, 10, null);
+
+                assertAll(
+                        () -> assertEquals(best, ids(page).getFirst()),
+                        () -> assertEquals(50, page.getTotalPages()),
+                        () -> assertTrue(page.isTotalPagesCapped()),
+                        () -> assertTrue(beyond.getPosts().isEmpty())
+                );
+            }
+
+            @Test
+            void shouldAddNewPostsToChampions() {
+                Long best = insertFoxPosts();
+                postRepository.rebuildSearchChampions();
+
+                Post saved = postRepository.save(Post.builder()
+                        .title("Лиса")
+                        .likes(0)
+                        .text("Лиса у норы")
+                        .excerpt("Лиса у норы")
+                        .build());
+
+                assertEquals(List.of(saved.getId(), best), ids(search("лиса", 1, 2, null)));
+            }
+
+            @Test
+            void shouldCountEveryMatchBelowCap() {
+                PostsPage page = search("собаки OR dogs", 1, 2, null);
+
+                assertFalse(page.isTotalPagesCapped());
+            }
+
+            @Test
+            void shouldFillCommentsCountsAndTagsOfFoundPosts() {
+                PostsPage page = search("прогулка", 1, 5, null);
+
+                PostPreview found = page.getPosts().getFirst();
+                assertAll(
+                        () -> assertEquals("Прогулка", found.getTitle()),
+                        () -> assertEquals(2, found.getLikes()),
+                        () -> assertEquals(0L, found.getComments()),
+                        () -> assertEquals(List.of("pets"), found.getTags().stream().map(Tag::getName).toList())
+                );
+            }
         }
 
         void assertPreviewCorrect(Post post, PostPreview preview) {
             assertAll(
                     () -> assertEquals(post.getId(), preview.getId()),
                     () -> assertEquals(post.getTitle(), preview.getTitle()),
-                    () -> assertEquals(post.getText(), preview.getText()),
+                    () -> assertEquals(post.getExcerpt(), preview.getExcerpt()),
                     () -> assertEquals(post.getLikes(), preview.getLikes())
             );
         }
@@ -10,10 +10,13 @@ import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.jdbc.Sql;
 import ru.girqa.myblog.model.domain.Tag;
+import ru.girqa.myblog.model.domain.TagExpression;
 import ru.girqa.myblog.repository.common.PostgresTestConfiguration;
 import ru.girqa.myblog.repository.jdbc.TagJdbcRepository;
+import ru.girqa.myblog.repository.memory.PostTagIndex;
 
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -143,6 +146,30 @@ class TagRepositoryIntegrationTest {
             assertEquals(FIRST_TAG_ID + 1, secondTag.getId());
             assertEquals("Tag 2", secondTag.getName());
         }
+
+        @Test
+        void shouldCountPostsByTagName() {
+            jdbcTemplate.update("insert into tags(tag_name) values ('Tag 3')");
+
+            Map<String, Long> counts = tagRepository.countPostsByTagName();
+            assertEquals(Map.of("Tag 1", 1L, "Tag 2", 1L), counts);
+        }
+
+        @Test
+        void shouldStreamIndexSnapshot() {
+            PostTagIndex index = new PostTagIndex();
+            index.load(tagRepository::loadIndex);
+
+            PostTagIndex.Footprint footprint = index.footprint().orElseThrow();
+            assertAll(
+                    () -> assertEquals(1, footprint.posts()),
+                    () -> assertEquals(2, footprint.tags()),
+                    () -> assertEquals(2, footprint.bindings()),
+                    () -> assertEquals(1, index.evaluate(TagExpression.parse("Tag 1 AND Tag 2").orElseThrow())
+                            .orElseThrow()
+                            .getLongCardinality())
+            );
+        }
     }
 
     @Nested
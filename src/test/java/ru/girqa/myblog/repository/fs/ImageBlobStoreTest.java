@@ -0,0 +1,85 @@
+package ru.girqa.myblog.repository.fs;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.girqa.myblog.config.ImageStorageProperties;
+import ru.girqa.myblog.config.ImageStorageProperties.Storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageBlobStoreTest {
+
+    // sha256 of "ehal greka"
+    static final String HASH = "fff6a3fe81826ce4f48771d01939db08e24d52fcd3e16106a752ffe959812f02";
+
+    @TempDir
+    Path directory;
+
+    ImageBlobStore blobStore;
+
+    @BeforeEach
+    void setUp() {
+        blobStore = new ImageBlobStore(new ImageStorageProperties(Storage.FILESYSTEM, directory, 100, Duration.ofHours(1), 100));
+    }
+
+    @Test
+    void shouldNameFileBySha256OfContent() {
+        byte[] data = "ehal greka".getBytes(StandardCharsets.UTF_8);
+
+        String hash = blobStore.write(data);
+
+        assertEquals(HASH, hash);
+        assertEquals(directory.resolve("ff").resolve("f6").resolve(HASH), blobStore.path(hash));
+        assertTrue(blobStore.exists(hash));
+        assertArrayEquals(data, blobStore.read(hash));
+    }
+
+    @Test
+    void shouldStoreBlobForcedAfterStaging() {
+        byte[] data = "ehal greka".getBytes(StandardCharsets.UTF_8);
+
+        try (ImageBlobStore.StagedBlob staged = blobStore.stage(new ByteArrayInputStream(data), false)) {
+            assertEquals(HASH, staged.hash());
+            assertFalse(blobStore.exists(HASH));
+
+            staged.force();
+            staged.store();
+        }
+
+        assertArrayEquals(data, blobStore.read(HASH));
+    }
+
+    @Test
+    void shouldStoreEqualContentOnce() throws IOException {
+        String first = blobStore.write(new byte[]{1, 2, 3});
+        String second = blobStore.write(new byte[]{1, 2, 3});
+        String other = blobStore.write(new byte[]{3, 2, 1});
+
+        assertEquals(first, second);
+        assertNotEquals(first, other);
+        try (Stream<Path> files = Files.walk(directory)) {
+            assertEquals(2, files.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    void shouldNotReadMissingFile() {
+        assertFalse(blobStore.exists(HASH));
+        assertThrows(UncheckedIOException.class, () -> blobStore.read(HASH));
+    }
+
+    @Test
+    void shouldRejectNotHashNames() {
+        assertThrows(IllegalArgumentException.class, () -> blobStore.read("../../etc/passwd"));
+    }
+}
@@ -0,0 +1,88 @@
+package ru.girqa.myblog.repository.jdbc;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ConnectionLimitingDataSourceTest {
+
+    @Mock
+    DataSource targetMock;
+
+    final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    ConnectionLimitingDataSource dataSource;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new ConnectionLimitingDataSource(targetMock, 2, Duration.ofMillis(50), meterRegistry);
+    }
+
+    @Test
+    void shouldFailWhenAllPermitsAreTaken() throws SQLException {
+        when(targetMock.getConnection())
+                .thenAnswer(invocation -> mock(Connection.class));
+        dataSource.getConnection();
+        dataSource.getConnection();
+
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+        verify(targetMock, times(2)).getConnection();
+        assertEquals(0, meterRegistry.get("blog.datasource.connections.permits").gauge().value());
+    }
+
+    @Test
+    void shouldReturnPermitOnceConnectionIsClosed() throws SQLException {
+        Connection target = mock(Connection.class);
+        when(targetMock.getConnection())
+                .thenReturn(target);
+        Connection first = dataSource.getConnection();
+        dataSource.getConnection();
+
+        first.close();
+        first.close();
+
+        assertNotNull(dataSource.getConnection());
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+        verify(target, times(2)).close();
+    }
+
+    @Test
+    void shouldReturnPermitIfConnectionCannotBeTaken() throws SQLException {
+        when(targetMock.getConnection())
+                .thenThrow(new SQLTransientConnectionException("pool exhausted"))
+                .thenAnswer(invocation -> mock(Connection.class));
+
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+
+        assertNotNull(dataSource.getConnection());
+        assertNotNull(dataSource.getConnection());
+    }
+
+    @Test
+    void shouldPassCallsToTargetConnection() throws SQLException {
+        Connection target = mock(Connection.class);
+        when(targetMock.getConnection())
+                .thenReturn(target);
+        when(target.getAutoCommit())
+                .thenThrow(new SQLException("closed"));
+
+        Connection connection = dataSource.getConnection();
+        connection.setAutoCommit(false);
+
+        verify(target).setAutoCommit(false);
+        assertThrows(SQLException.class, connection::getAutoCommit);
+    }
+}
@@ -0,0 +1,128 @@
+package ru.girqa.myblog.repository.memory;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.girqa.myblog.config.FeedCacheProperties;
+import ru.girqa.myblog.model.domain.PageRequest;
+import ru.girqa.myblog.model.domain.TagExpression;
+import ru.girqa.myblog.model.domain.post.PostsPage;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FeedCacheTest {
+
+    final AtomicLong nanos = new AtomicLong();
+
+    final FeedCache feedCache = new FeedCache(
+            new FeedCacheProperties(100, Duration.ofSeconds(10)), new SimpleMeterRegistry(), nanos::get);
+
+    final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void shouldLoadPageOnce() {
+        PageRequest request = request(null);
+
+        PostsPage page = feedCache.get(request, this::load);
+
+        assertSame(page, feedCache.get(request(null), this::load));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void shouldNotCacheSearchResults() {
+        PageRequest request = PageRequest.builder().page(1).posts(10).query("java").build();
+
+        feedCache.get(request, this::load);
+        feedCache.get(request, this::load);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void shouldServePageUntilItIsStale() {
+        feedCache.get(request(null), this::load);
+
+        nanos.set(Duration.ofSeconds(9).toNanos());
+        feedCache.get(request(null), this::load);
+        assertEquals(1, loads.get());
+
+        nanos.set(Duration.ofSeconds(11).toNanos());
+        feedCache.get(request(null), this::load);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void shouldDropOnlyPagesThePostPasses() {
+        PageRequest plain = request(null);
+        PageRequest java = request("java");
+        PageRequest kotlin = request("kotlin");
+        PageRequest notJava = request("NOT java");
+        List.of(plain, java, kotlin, notJava).forEach(request -> feedCache.get(request, this::load));
+
+        feedCache.postCreated(List.of("java", "spring"));
+
+        List.of(plain, java, kotlin, notJava).forEach(request -> feedCache.get(request, this::load));
+        assertEquals(4 + 2, loads.get());
+    }
+
+    @Test
+    void shouldDropAllPagesOnBulkCreation() {
+        PageRequest plain = request(null);
+        PageRequest java = request("java");
+        PageRequest notJava = request("NOT java");
+        List.of(plain, java, notJava).forEach(request -> feedCache.get(request, this::load));
+
+        feedCache.postsCreated();
+
+        List.of(plain, java, notJava).forEach(request -> feedCache.get(request, this::load));
+        assertEquals(3 + 3, loads.get());
+    }
+
+    @Test
+    void shouldDropPagesTheChangedPostLeaves() {
+        PageRequest java = request("java");
+        PageRequest kotlin = request("kotlin");
+        PageRequest spring = request("spring");
+        List.of(java, kotlin, spring).forEach(request -> feedCache.get(request, this::load));
+
+        feedCache.postChanged(List.of("java"), List.of("kotlin"));
+
+        List.of(java, kotlin, spring).forEach(request -> feedCache.get(request, this::load));
+        assertEquals(3 + 2, loads.get());
+    }
+
+    @Test
+    void shouldNotKeepPageLoadedWhilePostChanged() {
+        feedCache.get(request("spring"), request -> {
+            feedCache.postDeleted(List.of("java"));
+            return load(request);
+        });
+
+        feedCache.get(request("spring"), this::load);
+
+        assertEquals(2, loads.get());
+    }
+
+    PostsPage load(PageRequest request) {
+        loads.incrementAndGet();
+        return PostsPage.builder()
+                .page(request.getPage())
+                .postsPerPage(request.getPosts())
+                .tags(request.getTags())
+                .posts(List.of())
+                .build();
+    }
+
+    static PageRequest request(String tags) {
+        return PageRequest.builder()
+                .page(1)
+                .posts(10)
+                .tags(TagExpression.parse(tags).orElse(null))
+                .build();
+    }
+}
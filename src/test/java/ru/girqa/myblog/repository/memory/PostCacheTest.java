@@ -0,0 +1,88 @@
+package ru.girqa.myblog.repository.memory;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import ru.girqa.myblog.config.PostCacheProperties;
+import ru.girqa.myblog.exception.PostNotFoundException;
+import ru.girqa.myblog.model.domain.Commentary;
+import ru.girqa.myblog.model.domain.Tag;
+import ru.girqa.myblog.model.domain.post.Post;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostCacheTest {
+
+    final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    final PostCache postCache = new PostCache(new PostCacheProperties(DataSize.ofMegabytes(1)), meterRegistry);
+
+    @Test
+    void shouldLoadPostOnce() {
+        AtomicInteger loads = new AtomicInteger();
+
+        postCache.get(1L, id -> post(id, "text", loads));
+        postCache.get(1L, id -> post(id, "text", loads));
+
+        assertEquals(1, loads.get());
+        assertEquals(0.5, meterRegistry.get("blog.posts.cache.hit.ratio").gauge().value());
+        assertTrue(meterRegistry.get("blog.posts.cache.memory").gauge().value() > 0);
+        assertEquals(1, meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void shouldLoadPostAgainAfterInvalidation() {
+        AtomicInteger loads = new AtomicInteger();
+        postCache.get(1L, id -> post(id, "text", loads));
+
+        postCache.invalidate(1L);
+
+        assertEquals("new", postCache.get(1L, id -> post(id, "new", loads)).getText());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void shouldNotKeepPostLoadedWhileItChanged() {
+        AtomicInteger loads = new AtomicInteger();
+        postCache.get(1L, id -> {
+            postCache.invalidate(id);
+            return post(id, "old", loads);
+        });
+
+        assertEquals("new", postCache.get(1L, id -> post(id, "new", loads)).getText());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void shouldNotCacheMissingPost() {
+        assertThrows(PostNotFoundException.class, () -> postCache.get(1L, id -> {
+            throw new PostNotFoundException();
+        }));
+
+        assertEquals("text", postCache.get(1L, id -> post(id, "text", new AtomicInteger())).getText());
+    }
+
+    @Test
+    void shouldWeighPostByItsContent() {
+        Post small = Post.builder().title("t").text("text").build();
+        Post large = small.toBuilder()
+                .text("text".repeat(1000))
+                .tags(List.of(new Tag(1L, "java")))
+                .commentaries(List.of(Commentary.builder().text("comment").build()))
+                .build();
+
+        assertTrue(PostCache.estimateSize(large) - PostCache.estimateSize(small) > 2 * 4 * 999);
+    }
+
+    static Post post(Long id, String text, AtomicInteger loads) {
+        loads.incrementAndGet();
+        return Post.builder()
+                .id(id)
+                .title("title")
+                .text(text)
+                .build();
+    }
+}
@@ -0,0 +1,157 @@
+package ru.girqa.myblog.repository.memory;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import ru.girqa.myblog.repository.memory.PostCountRegistry.Snapshot;
+
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostCountRegistryTest {
+
+    static final Runnable NO_PIN = () -> {
+    };
+
+    PostCountRegistry registry = new PostCountRegistry();
+
+    @Test
+    void shouldNotKnowCountsBeforeReconcile() {
+        registry.postCreated(List.of("t1"));
+
+        assertEquals(OptionalLong.empty(), registry.count(null));
+        assertEquals(OptionalLong.empty(), registry.count("t1"));
+    }
+
+    @Test
+    void shouldLoadCountsOnReconcile() {
+        registry.reconcile(NO_PIN, () -> new Snapshot(10, Map.of("t1", 4L)));
+
+        assertAll(
+                () -> assertEquals(OptionalLong.of(10), registry.count(null)),
+                () -> assertEquals(OptionalLong.of(4), registry.count("t1")),
+                () -> assertEquals(OptionalLong.of(0), registry.count("t2"))
+        );
+    }
+
+    @Test
+    void shouldApplyIncrementalUpdates() {
+        registry.reconcile(NO_PIN, () -> new Snapshot(10, Map.of("t1", 4L, "t2", 1L)));
+
+        registry.postCreated(List.of("t1", "t3"));
+        registry.postRetagged(List.of("t1", "t2"), List.of("t2", "t3"));
+        registry.postDeleted(List.of("t2"));
+
+        assertAll(
+                () -> assertEquals(OptionalLong.of(10), registry.count(null)),
+                () -> assertEquals(OptionalLong.of(4), registry.count("t1")),
+                () -> assertEquals(OptionalLong.of(0), registry.count("t2")),
+                () -> assertEquals(OptionalLong.of(2), registry.count("t3"))
+        );
+    }
+
+    @Test
+    void shouldApplyBulkCreation() {
+        registry.reconcile(NO_PIN, () -> new Snapshot(10, Map.of("t1", 4L)));
+
+        registry.postsCreated(1000, Map.of("t1", 600L, "t2", 3L));
+
+        assertAll(
+                () -> assertEquals(OptionalLong.of(1010), registry.count(null)),
+                () -> assertEquals(OptionalLong.of(604), registry.count("t1")),
+                () -> assertEquals(OptionalLong.of(3), registry.count("t2"))
+        );
+    }
+
+    @Test
+    void shouldKeepUpdatesMadeWhileReconciling() {
+        registry.reconcile(NO_PIN, () -> new Snapshot(1, Map.of()));
+
+        registry.reconcile(NO_PIN, () -> {
+            registry.postCreated(List.of("t1"));
+            return new Snapshot(5, Map.of("t1", 2L));
+        });
+
+        assertAll(
+                () -> assertEquals(OptionalLong.of(6), registry.count(null)),
+                () -> assertEquals(OptionalLong.of(3), registry.count("t1"))
+        );
+    }
+
+    @Test
+    void shouldNotReplayUpdatesCommittedBeforeSnapshot() {
+        registry.reconcile(NO_PIN, () -> new Snapshot(1, Map.of()));
+
+        registry.reconcile(() -> registry.postCreated(List.of("t1")), () -> new Snapshot(2, Map.of("t1", 1L)));
+
+        assertAll(
+                () -> assertEquals(OptionalLong.of(2), registry.count(null)),
+                () -> assertEquals(OptionalLong.of(1), registry.count("t1"))
+        );
+    }
+
+    @Test
+    void shouldPinSnapshotOnlyAfterCommittingUpdateIsApplied() throws Exception {
+        registry.reconcile(NO_PIN, () -> new Snapshot(1, Map.of()));
+        CountDownLatch committing = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        AtomicReference<OptionalLong> countAtPin = new AtomicReference<>();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            Future<?> writer = executor.submit(() -> {
+                TransactionSynchronizationManager.initSynchronization();
+                try {
+                    registry.postCreated(List.of("t1"));
+                    TransactionSynchronizationUtils.triggerBeforeCommit(false);
+                    committing.countDown();
+                    commit.await();
+                    TransactionSynchronizationUtils.triggerAfterCommit();
+                    TransactionSynchronizationUtils.triggerAfterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+                } finally {
+                    TransactionSynchronizationManager.clearSynchronization();
+                }
+                return null;
+            });
+            committing.await();
+
+            // the post is committed, so the snapshot pinned once the writer lets go counts it
+            Future<?> reconcile = executor.submit(() -> registry.reconcile(
+                    () -> countAtPin.set(registry.count(null)),
+                    () -> new Snapshot(2, Map.of("t1", 1L))));
+            Thread.sleep(100);
+            assertFalse(reconcile.isDone());
+
+            commit.countDown();
+            writer.get(5, TimeUnit.SECONDS);
+            reconcile.get(5, TimeUnit.SECONDS);
+        }
+
+        assertAll(
+                () -> assertEquals(OptionalLong.of(2), countAtPin.get()),
+                () -> assertEquals(OptionalLong.of(2), registry.count(null)),
+                () -> assertEquals(OptionalLong.of(1), registry.count("t1"))
+        );
+    }
+
+    @Test
+    void shouldKeepCountsIfReconcileFailed() {
+        registry.reconcile(NO_PIN, () -> new Snapshot(3, Map.of()));
+
+        assertThrows(IllegalStateException.class, () -> registry.reconcile(NO_PIN, () -> {
+            throw new IllegalStateException();
+        }));
+        registry.postCreated(List.of());
+
+        assertEquals(OptionalLong.of(4), registry.count(null));
+    }
+}
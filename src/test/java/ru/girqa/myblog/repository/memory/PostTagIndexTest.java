@@ -0,0 +1,175 @@
+package ru.girqa.myblog.repository.memory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.girqa.myblog.model.domain.Tag;
+import ru.girqa.myblog.model.domain.TagExpression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostTagIndexTest {
+
+    PostTagIndex index;
+
+    @BeforeEach
+    void setUpIndex() {
+        index = new PostTagIndex();
+    }
+
+    void loadPosts() {
+        index.load(loader -> {
+            loader.tag(1, "java");
+            loader.tag(2, "kotlin");
+            loader.tag(3, "spring");
+            for (long post = 1; post <= 6; ++post) {
+                loader.post(post);
+            }
+            loader.binding(1, 1);
+            loader.binding(2, 1);
+            loader.binding(2, 2);
+            loader.binding(3, 2);
+            loader.binding(4, 1);
+            loader.binding(4, 3);
+            loader.binding(5, 3);
+        });
+    }
+
+    List<Long> matching(String expression) {
+        Roaring64NavigableMap posts = index.evaluate(TagExpression.parse(expression).orElseThrow())
+                .orElseThrow();
+        List<Long> ids = new ArrayList<>();
+        posts.forEach(ids::add);
+        return ids;
+    }
+
+    @Test
+    void shouldNotEvaluateBeforeLoad() {
+        assertFalse(index.isLoaded());
+        assertEquals(Optional.empty(), index.evaluate(new TagExpression.HasTag("java")));
+    }
+
+    @Test
+    void shouldEvaluateExpressions() {
+        loadPosts();
+
+        assertAll(
+                () -> assertEquals(List.of(1L, 2L, 4L), matching("java")),
+                () -> assertEquals(List.of(), matching("python")),
+                () -> assertEquals(List.of(2L), matching("java AND kotlin")),
+                () -> assertEquals(List.of(1L, 2L, 3L, 4L), matching("java OR kotlin")),
+                () -> assertEquals(List.of(3L, 5L, 6L), matching("NOT java")),
+                () -> assertEquals(List.of(1L, 4L), matching("java AND NOT kotlin")),
+                () -> assertEquals(List.of(6L), matching("NOT java AND NOT kotlin AND NOT spring")),
+                () -> assertEquals(List.of(2L, 3L, 4L, 5L), matching("(kotlin OR spring) AND NOT (java AND NOT kotlin AND NOT spring)"))
+        );
+    }
+
+    @Test
+    void shouldNotExposeIndexedBitmaps() {
+        loadPosts();
+
+        index.evaluate(new TagExpression.HasTag("java")).orElseThrow().addLong(6);
+
+        assertEquals(List.of(1L, 2L, 4L), matching("java"));
+    }
+
+    @Test
+    void shouldApplyUpdates() {
+        loadPosts();
+
+        index.postSaved(7);
+        index.postRetagged(7, () -> List.of(new Tag(4L, "python"), new Tag(1L, "java")));
+        index.postRetagged(2, List::of);
+        index.postDeleted(4);
+
+        assertAll(
+                () -> assertEquals(List.of(1L, 7L), matching("java")),
+                () -> assertEquals(List.of(7L), matching("python")),
+                () -> assertEquals(List.of(3L), matching("kotlin")),
+                () -> assertEquals(List.of(2L, 3L, 5L, 6L), matching("NOT java AND NOT python"))
+        );
+    }
+
+    @Test
+    void shouldKeepCommittedTagsWhenRetagHooksRunOutOfOrder() {
+        loadPosts();
+        AtomicReference<List<Tag>> committedTags = new AtomicReference<>();
+
+        TransactionSynchronizationManager.initSynchronization();
+        index.postRetagged(1, committedTags::get);
+        List<TransactionSynchronization> first = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+
+        TransactionSynchronizationManager.initSynchronization();
+        index.postRetagged(1, committedTags::get);
+        List<TransactionSynchronization> second = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+
+        // the first transaction commits kotlin, the second commits spring, their hooks run in reverse
+        committedTags.set(List.of(new Tag(2L, "kotlin")));
+        committedTags.set(List.of(new Tag(3L, "spring")));
+        second.forEach(TransactionSynchronization::afterCommit);
+        first.forEach(TransactionSynchronization::afterCommit);
+
+        assertAll(
+                () -> assertEquals(List.of(2L, 4L), matching("java")),
+                () -> assertEquals(List.of(2L, 3L), matching("kotlin")),
+                () -> assertEquals(List.of(1L, 4L, 5L), matching("spring"))
+        );
+    }
+
+    @Test
+    void shouldAddImportedPosts() {
+        loadPosts();
+
+        index.postsImported(loader -> {
+            loader.post(7);
+            loader.post(8);
+            loader.tag(1, "java");
+            loader.tag(4, "python");
+            loader.binding(7, 1);
+            loader.binding(7, 4);
+        });
+
+        assertAll(
+                () -> assertEquals(List.of(1L, 2L, 4L, 7L), matching("java")),
+                () -> assertEquals(List.of(7L), matching("python")),
+                () -> assertEquals(List.of(3L, 5L, 6L, 8L), matching("NOT java"))
+        );
+    }
+
+    @Test
+    void shouldReplayUpdatesMadeBeforeLoad() {
+        index.postSaved(7);
+        index.postRetagged(7, () -> List.of(new Tag(2L, "kotlin")));
+        index.postDeleted(1);
+
+        loadPosts();
+
+        assertAll(
+                () -> assertEquals(List.of(2L, 4L), matching("java")),
+                () -> assertEquals(List.of(2L, 3L, 7L), matching("kotlin"))
+        );
+    }
+
+    @Test
+    void shouldReportFootprint() {
+        loadPosts();
+
+        PostTagIndex.Footprint footprint = index.footprint().orElseThrow();
+        assertAll(
+                () -> assertEquals(6, footprint.posts()),
+                () -> assertEquals(3, footprint.tags()),
+                () -> assertEquals(7, footprint.bindings()),
+                () -> assertTrue(footprint.sizeInBytes() > 0)
+        );
+    }
+}
@@ -0,0 +1,130 @@
+package ru.girqa.myblog.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import ru.girqa.myblog.exception.PostNotFoundException;
+import ru.girqa.myblog.repository.PostRepository;
+import ru.girqa.myblog.repository.memory.PostCache;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BufferedLikeCounterTest {
+
+    @Mock
+    PostRepository postRepositoryMock;
+
+    @Mock
+    PostCache postCacheMock;
+
+    @InjectMocks
+    BufferedLikeCounter likeCounter;
+
+    @Test
+    void shouldCountLikesWithoutWritingThem() {
+        when(postRepositoryMock.findLikes(5L))
+                .thenReturn(Optional.of(10));
+
+        assertEquals(11, likeCounter.increment(5L));
+        assertEquals(12, likeCounter.increment(5L));
+
+        verify(postRepositoryMock, times(1)).findLikes(5L);
+        verify(postRepositoryMock, never()).incrementLikes(any());
+        verify(postRepositoryMock, never()).addLikes(anyMap());
+    }
+
+    @Test
+    void shouldWriteSummedLikesOnFlush() {
+        when(postRepositoryMock.findLikes(5L))
+                .thenReturn(Optional.of(10));
+        when(postRepositoryMock.findLikes(6L))
+                .thenReturn(Optional.of(0));
+        when(postRepositoryMock.addLikes(Map.of(5L, 2L, 6L, 1L)))
+                .thenReturn(Map.of(5L, 15, 6L, 1));
+        likeCounter.increment(5L);
+        likeCounter.increment(5L);
+        likeCounter.increment(6L);
+
+        assertEquals(2, likeCounter.flush());
+        verify(postCacheMock).invalidate(5L);
+        verify(postCacheMock).invalidate(6L);
+
+        assertEquals(16, likeCounter.increment(5L));
+        assertEquals(2, likeCounter.increment(6L));
+    }
+
+    @Test
+    void shouldKeepLikesArrivingDuringFlush() {
+        when(postRepositoryMock.findLikes(5L))
+                .thenReturn(Optional.of(10));
+        when(postRepositoryMock.addLikes(Map.of(5L, 1L)))
+                .thenAnswer(invocation -> {
+                    assertEquals(12, likeCounter.increment(5L));
+                    return Map.of(5L, 11);
+                });
+        likeCounter.increment(5L);
+
+        assertEquals(1, likeCounter.flush());
+        assertEquals(13, likeCounter.increment(5L));
+
+        when(postRepositoryMock.addLikes(Map.of(5L, 2L)))
+                .thenReturn(Map.of(5L, 13));
+        assertEquals(1, likeCounter.flush());
+    }
+
+    @Test
+    void shouldNotWriteWithoutLikes() {
+        assertEquals(0, likeCounter.flush());
+
+        verify(postRepositoryMock, never()).addLikes(anyMap());
+    }
+
+    @Test
+    void shouldKeepLikesWhenFlushFails() {
+        when(postRepositoryMock.findLikes(5L))
+                .thenReturn(Optional.of(10));
+        when(postRepositoryMock.addLikes(Map.of(5L, 1L)))
+                .thenThrow(new QueryTimeoutException("timeout"));
+        when(postRepositoryMock.addLikes(Map.of(5L, 2L)))
+                .thenReturn(Map.of(5L, 12));
+        likeCounter.increment(5L);
+
+        assertThrows(QueryTimeoutException.class, () -> likeCounter.flush());
+        likeCounter.increment(5L);
+
+        assertEquals(1, likeCounter.flush());
+        assertEquals(0, likeCounter.flush());
+    }
+
+    @Test
+    void shouldForgetDeletedPost() {
+        when(postRepositoryMock.findLikes(5L))
+                .thenReturn(Optional.of(10))
+                .thenReturn(Optional.empty());
+        when(postRepositoryMock.addLikes(Map.of(5L, 1L)))
+                .thenReturn(Map.of());
+        likeCounter.increment(5L);
+
+        assertEquals(0, likeCounter.flush());
+
+        assertThrows(PostNotFoundException.class, () -> likeCounter.increment(5L));
+    }
+
+    @Test
+    void shouldNotCountLikesOfMissingPost() {
+        when(postRepositoryMock.findLikes(5L))
+                .thenReturn(Optional.empty());
+
+        assertThrows(PostNotFoundException.class, () -> likeCounter.increment(5L));
+        assertEquals(0, likeCounter.flush());
+    }
+}
@@ -5,10 +5,15 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import ru.girqa.myblog.config.CommentaryPageProperties;
 import ru.girqa.myblog.model.domain.Commentary;
+import ru.girqa.myblog.model.domain.CommentarySlice;
 import ru.girqa.myblog.repository.CommentaryRepository;
+import ru.girqa.myblog.repository.memory.PostCache;
 
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -21,6 +26,12 @@ class CommentaryServiceTest {
     @Mock
     CommentaryRepository repositoryMock;
 
+    @Mock
+    PostCache postCacheMock;
+
+    @Spy
+    CommentaryPageProperties pageProperties = new CommentaryPageProperties(2);
+
     @InjectMocks
     CommentaryService commentaryService;
 
@@ -52,6 +63,8 @@ class CommentaryServiceTest {
 
         verify(repositoryMock, times(1))
                 .save(commentary);
+        verify(postCacheMock, times(1))
+                .invalidate(2L);
     }
 
     @Test
@@ -77,14 +90,60 @@ class CommentaryServiceTest {
 
         verify(repositoryMock, times(1))
                 .update(updatedComment);
+        verify(postCacheMock, times(1))
+                .invalidate(2L);
     }
 
     @Test
     void shouldDeleteCommentary() {
+        when(repositoryMock.delete(53L))
+                .thenReturn(Optional.of(2L));
+
         commentaryService.delete(53L);
 
         verify(repositoryMock, times(1))
                 .delete(53L);
+        verify(postCacheMock, times(1))
+                .invalidate(2L);
+    }
+
+    @Test
+    void shouldNotInvalidateAnythingWhenCommentaryIsMissing() {
+        when(repositoryMock.delete(53L))
+                .thenReturn(Optional.empty());
+
+        commentaryService.delete(53L);
+
+        verifyNoInteractions(postCacheMock);
     }
 
+    @Test
+    void shouldFindSliceWithCursorToNextOne() {
+        when(repositoryMock.findByPostIdAfter(2L, 0, 3))
+                .thenReturn(List.of(commentary(4L), commentary(5L), commentary(7L)));
+
+        CommentarySlice slice = commentaryService.findSlice(2L, null);
+
+        assertEquals(List.of(commentary(4L), commentary(5L)), slice.commentaries());
+        assertEquals(5L, slice.nextAfter());
+    }
+
+    @Test
+    void shouldFindLastSliceWithoutCursor() {
+        when(repositoryMock.findByPostIdAfter(2L, 5L, 3))
+                .thenReturn(List.of(commentary(7L)));
+
+        CommentarySlice slice = commentaryService.findSlice(2L, 5L);
+
+        assertEquals(List.of(commentary(7L)), slice.commentaries());
+        assertNull(slice.nextAfter());
+    }
+
+    private static Commentary commentary(Long id) {
+        return Commentary.builder()
+                .id(id)
+                .postId(2L)
+                .text("Comment " + id)
+                .build();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,36 @@
+package ru.girqa.myblog.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.girqa.myblog.repository.PostRepository;
+import ru.girqa.myblog.repository.memory.PostCache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DirectLikeCounterTest {
+
+    @Mock
+    PostRepository postRepositoryMock;
+
+    @Mock
+    PostCache postCacheMock;
+
+    @InjectMocks
+    DirectLikeCounter likeCounter;
+
+    @Test
+    void shouldWriteLikeAndDropCachedPost() {
+        when(postRepositoryMock.incrementLikes(5L))
+                .thenReturn(11);
+
+        assertEquals(11, likeCounter.increment(5L));
+
+        verify(postRepositoryMock, times(1)).incrementLikes(5L);
+        verify(postCacheMock, times(1)).invalidate(5L);
+    }
+}
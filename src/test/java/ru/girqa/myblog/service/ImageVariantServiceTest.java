@@ -0,0 +1,135 @@
+package ru.girqa.myblog.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.mock.env.MockEnvironment;
+import ru.girqa.myblog.config.ImageVariantProperties;
+import ru.girqa.myblog.model.domain.post.ImageMetadata;
+import ru.girqa.myblog.model.domain.post.ImageVariant;
+import ru.girqa.myblog.repository.ImageRepository;
+import ru.girqa.myblog.util.ContentHash;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImageVariantServiceTest {
+
+    @Mock
+    ImageRepository imageRepositoryMock;
+
+    SimpleMeterRegistry meterRegistry;
+
+    ImageVariantService imageVariantService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        imageVariantService = new ImageVariantService(
+                imageRepositoryMock,
+                new ImageVariantProperties(1, 1, Duration.ofMinutes(10), 100),
+                meterRegistry,
+                new MockEnvironment()
+        );
+    }
+
+    @AfterEach
+    void shutdown() {
+        imageVariantService.shutdown();
+    }
+
+    @Test
+    void shouldGenerateOnlyMissingVariants() {
+        byte[] data = "not an image".getBytes(StandardCharsets.UTF_8);
+        String sourceHash = ContentHash.of(data);
+        when(imageRepositoryMock.findMetadataByPostId(5L))
+                .thenReturn(Optional.of(new ImageMetadata(5L, data.length, "image/png", sourceHash)));
+        when(imageRepositoryMock.findVariantWidths(sourceHash))
+                .thenReturn(List.of(320));
+        when(imageRepositoryMock.findDataByHash(sourceHash))
+                .thenReturn(Optional.of(new ByteArrayResource(data)));
+
+        imageVariantService.generate(5L);
+
+        ArgumentCaptor<ImageVariant> saved = ArgumentCaptor.forClass(ImageVariant.class);
+        verify(imageRepositoryMock, times(ImageVariant.WIDTHS.size() - 1))
+                .saveVariant(saved.capture());
+        assertEquals(
+                ImageVariant.WIDTHS.stream().filter(width -> width != 320).toList(),
+                saved.getAllValues().stream().map(ImageVariant::getWidth).toList()
+        );
+        assertTrue(saved.getAllValues().stream().allMatch(v -> sourceHash.equals(v.getSourceHash())));
+        assertEquals(1, meterRegistry.get("blog.images.variants.resize").timer().count());
+    }
+
+    @Test
+    void shouldSkipImageWithAllVariantsWithoutReadingIt() {
+        String sourceHash = "a".repeat(64);
+        when(imageRepositoryMock.findMetadataByPostId(5L))
+                .thenReturn(Optional.of(new ImageMetadata(5L, 3, "image/png", sourceHash)));
+        when(imageRepositoryMock.findVariantWidths(sourceHash))
+                .thenReturn(ImageVariant.WIDTHS);
+
+        imageVariantService.generate(5L);
+
+        verify(imageRepositoryMock, never())
+                .findDataByHash(any());
+        verify(imageRepositoryMock, never())
+                .saveVariant(any());
+    }
+
+    @Test
+    void shouldSkipImageWhoseBlobIsCollected() {
+        String sourceHash = "a".repeat(64);
+        when(imageRepositoryMock.findMetadataByPostId(5L))
+                .thenReturn(Optional.of(new ImageMetadata(5L, 3, "image/png", sourceHash)));
+        when(imageRepositoryMock.findVariantWidths(sourceHash))
+                .thenReturn(List.of());
+        when(imageRepositoryMock.findDataByHash(sourceHash))
+                .thenReturn(Optional.empty());
+
+        imageVariantService.generate(5L);
+
+        verify(imageRepositoryMock, never())
+                .saveVariant(any());
+    }
+
+    @Test
+    void shouldDropImagesWhenQueueIsFull() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(imageRepositoryMock.findMetadataByPostId(anyLong()))
+                .thenAnswer(invocation -> {
+                    started.countDown();
+                    release.await();
+                    return Optional.empty();
+                });
+
+        assertTrue(imageVariantService.submit(1L));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(imageVariantService.submit(2L));
+        assertTrue(imageVariantService.submit(2L), "an image already queued is not queued twice");
+        assertEquals(1, meterRegistry.get("blog.images.variants.queue").gauge().value());
+
+        assertFalse(imageVariantService.submit(3L));
+        assertEquals(1, meterRegistry.get("blog.images.variants.rejected").counter().count());
+
+        release.countDown();
+        verify(imageRepositoryMock, timeout(5000).times(2))
+                .findMetadataByPostId(anyLong());
+    }
+}
@@ -0,0 +1,178 @@
+package ru.girqa.myblog.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import ru.girqa.myblog.config.FeedCacheProperties;
+import ru.girqa.myblog.config.ImageStorageProperties;
+import ru.girqa.myblog.config.PostImportProperties;
+import ru.girqa.myblog.repository.common.PostgresTestConfiguration;
+import ru.girqa.myblog.repository.fs.ImageBlobStore;
+import ru.girqa.myblog.repository.jdbc.ImageBlobRepository;
+import ru.girqa.myblog.repository.jdbc.ImageJdbcRepository;
+import ru.girqa.myblog.repository.jdbc.PostExportRepository;
+import ru.girqa.myblog.repository.jdbc.PostImportRepository;
+import ru.girqa.myblog.repository.memory.FeedCache;
+import ru.girqa.myblog.repository.memory.PostCountRegistry;
+import ru.girqa.myblog.repository.memory.PostTagIndex;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Import({PostgresTestConfiguration.class, PostExportServiceIntegrationTest.Properties.class})
+@SpringBootTest(
+        classes = {
+                PostExportService.class, PostExportRepository.class, ImageJdbcRepository.class, ImageBlobRepository.class,
+                PostImportService.class, PostImportRepository.class, ImageBlobStore.class,
+                PostCountRegistry.class, PostTagIndex.class, FeedCache.class,
+                SimpleMeterRegistry.class, JacksonAutoConfiguration.class
+        },
+        properties = "blog.images.storage=jdbc"
+)
+@Sql(statements = PostExportServiceIntegrationTest.CREATE_POSTS, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(statements = PostExportServiceIntegrationTest.CLEAR, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class PostExportServiceIntegrationTest {
+
+    static final String CLEAR = "truncate table posts, tags, image_blobs cascade;";
+
+    static final String PNG_HASH = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa";
+
+    static final String CREATE_POSTS = CLEAR + """
+            insert into posts(id, title, post_text, excerpt, likes) overriding system value values
+                (1, 'First', 'Line one\nline two', 'Line one', 3),
+                (2, 'Second', 'Text', 'Text', 0),
+                (3, 'No image', 'Text', 'Text', 0);
+            insert into post_like_shards(post_id, shard, count) values (1, 0, 2);
+            insert into image_blobs(content_hash, image_data, ref_count) values
+                ('aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa', '\\x89504e470d0a1a0a010203', 2);
+            insert into images(post_id, image_name, image_size, content_type, content_hash) values
+                (1, 'cover.png', 11, 'image/png', 'aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa'),
+                (2, 'covers/copy.png', 11, 'image/png', 'aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa');
+            insert into tags(id, tag_name) overriding system value values (1, 'spring'), (2, 'java');
+            insert into post_tags(post_id, tag_id) values (1, 1), (1, 2), (2, 1);
+            insert into commentaries(post_id, commentary_text) values (1, 'Nice'), (1, 'Thanks');
+            """;
+
+    static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 1, 2, 3};
+
+    @Autowired
+    PostExportService exportService;
+
+    @Autowired
+    PostImportService importService;
+
+    @Autowired
+    PostTagIndex postTagIndex;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @TestConfiguration
+    @EnableConfigurationProperties({ImageStorageProperties.class, PostImportProperties.class, FeedCacheProperties.class})
+    static class Properties {
+    }
+
+    @BeforeEach
+    void loadIndex() {
+        if (!postTagIndex.isLoaded()) postTagIndex.load(loader -> {
+        });
+    }
+
+    @Test
+    void shouldExportNdjsonWithInlinedImages() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(3, exportService.exportNdjson(out));
+
+        List<JsonNode> posts = lines(out.toByteArray());
+        JsonNode first = posts.getFirst();
+        assertAll(
+                () -> assertEquals(3, posts.size()),
+                () -> assertEquals(1, first.get("id").asLong()),
+                () -> assertEquals("Line one\nline two", first.get("text").asText()),
+                () -> assertEquals(5, first.get("likes").asInt()),
+                () -> assertEquals(List.of("java", "spring"), strings(first.get("tags"))),
+                () -> assertEquals(List.of("Nice", "Thanks"), strings(first.get("commentaries"))),
+                () -> assertEquals("cover.png", first.get("image").asText()),
+                () -> assertArrayEquals(PNG, Base64.getDecoder().decode(first.get("imageData").asText())),
+                () -> assertEquals(List.of(), strings(posts.get(2).get("tags"))),
+                () -> assertNull(posts.get(2).get("image"))
+        );
+    }
+
+    @Test
+    void shouldExportArchiveReadByImport() throws IOException {
+        jdbcTemplate.update("delete from posts where id = 3");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(2, exportService.exportArchive(out));
+
+        Map<String, byte[]> entries = unzip(out.toByteArray());
+        assertEquals(List.of("posts.ndjson", "images/1/cover.png", "images/2/covers_copy.png"),
+                List.copyOf(entries.keySet()));
+        assertArrayEquals(PNG, entries.get("images/2/covers_copy.png"));
+        assertEquals("images/1/cover.png", lines(entries.get("posts.ndjson")).getFirst().get("image").asText());
+
+        jdbcTemplate.execute(CLEAR);
+        assertEquals(2, importService.importArchive(new ByteArrayInputStream(out.toByteArray())));
+
+        assertAll(
+                () -> assertEquals(List.of("First", "Second"), jdbcTemplate.queryForList(
+                        "select title from posts order by id", String.class)),
+                () -> assertEquals(List.of("cover.png", "covers_copy.png"), jdbcTemplate.queryForList(
+                        "select image_name from images order by post_id", String.class)),
+                () -> assertEquals(List.of("java", "spring"), jdbcTemplate.queryForList(
+                        "select tag_name from tags order by tag_name", String.class)),
+                () -> assertEquals(2, jdbcTemplate.queryForObject(
+                        "select ref_count from image_blobs", Integer.class))
+        );
+    }
+
+    List<JsonNode> lines(byte[] ndjson) throws IOException {
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : new String(ndjson, StandardCharsets.UTF_8).split("\n")) {
+            lines.add(objectMapper.readTree(line));
+        }
+        return lines;
+    }
+
+    static List<String> strings(JsonNode array) {
+        List<String> strings = new ArrayList<>();
+        array.forEach(node -> strings.add(node.asText()));
+        return strings;
+    }
+
+    static Map<String, byte[]> unzip(byte[] archive) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries.put(entry.getName(), zip.readAllBytes());
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,271 @@
+package ru.girqa.myblog.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import ru.girqa.myblog.config.FeedCacheProperties;
+import ru.girqa.myblog.config.ImageStorageProperties;
+import ru.girqa.myblog.config.PostImportProperties;
+import ru.girqa.myblog.exception.InvalidImportException;
+import ru.girqa.myblog.model.domain.TagExpression;
+import ru.girqa.myblog.repository.common.PostgresTestConfiguration;
+import ru.girqa.myblog.repository.fs.ImageBlobStore;
+import ru.girqa.myblog.repository.jdbc.PostImportRepository;
+import ru.girqa.myblog.repository.memory.FeedCache;
+import ru.girqa.myblog.repository.memory.PostCountRegistry;
+import ru.girqa.myblog.repository.memory.PostTagIndex;
+import ru.girqa.myblog.util.ContentHash;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Import({PostgresTestConfiguration.class, PostImportServiceIntegrationTest.Properties.class})
+@SpringBootTest(
+        classes = {
+                PostImportService.class, PostImportRepository.class, ImageBlobStore.class,
+                PostCountRegistry.class, PostTagIndex.class, FeedCache.class,
+                SimpleMeterRegistry.class, JacksonAutoConfiguration.class
+        },
+        properties = {"blog.images.storage=jdbc", "blog.posts.import.copy-buffer=1KB"}
+)
+@Sql(statements = PostImportServiceIntegrationTest.CREATE_TAG, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(statements = PostImportServiceIntegrationTest.CLEAR, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class PostImportServiceIntegrationTest {
+
+    static final String CLEAR = "truncate table posts, tags, image_blobs cascade;";
+
+    static final String CREATE_TAG = CLEAR + "insert into tags(tag_name) values ('java');";
+
+    static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 1, 2, 3};
+
+    static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 4, 5, 6};
+
+    @Autowired
+    PostImportService importService;
+
+    @Autowired
+    PostTagIndex postTagIndex;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @TestConfiguration
+    @EnableConfigurationProperties({ImageStorageProperties.class, PostImportProperties.class, FeedCacheProperties.class})
+    static class Properties {
+    }
+
+    @BeforeEach
+    void loadIndex() {
+        if (!postTagIndex.isLoaded()) postTagIndex.load(loader -> {
+        });
+    }
+
+    @Test
+    void shouldImportArchiveInOrderOfLines() throws IOException {
+        byte[] archive = zip(Map.of(
+                "posts.ndjson", """
+                        {"title": "First", "text": "Line one\\nline two", "tags": ["java", "spring", "java"], "image": "images/cover.png"}
+                        {"title": "Second", "text": "Text", "tags": [], "image": "images/cover.png"}
+                        {"title": "Third", "text": "Text", "tags": ["spring"], "image": "photo.jpg"}
+                        """.getBytes(StandardCharsets.UTF_8),
+                "images/cover.png", PNG,
+                "photo.jpg", JPEG,
+                "unused.png", new byte[]{7}
+        ));
+
+        assertEquals(3, importService.importArchive(new ByteArrayInputStream(archive)));
+
+        List<Map<String, Object>> posts = jdbcTemplate.queryForList("""
+                select p.id, p.title, p.excerpt, i.image_name, i.content_type, i.content_hash,
+                       array_to_string(array(select t.tag_name from post_tags pt join tags t on t.id = pt.tag_id
+                                              where pt.post_id = p.id order by t.tag_name), ',') as tags
+                from posts p
+                join images i on i.post_id = p.id
+                order by p.id
+                """);
+        assertAll(
+                () -> assertEquals(List.of("First", "Second", "Third"), posts.stream().map(p -> p.get("title")).toList()),
+                () -> assertEquals("Line one", posts.get(0).get("excerpt")),
+                () -> assertEquals(List.of("java,spring", "", "spring"), posts.stream().map(p -> p.get("tags")).toList()),
+                () -> assertEquals("cover.png", posts.get(0).get("image_name")),
+                () -> assertEquals("image/jpeg", posts.get(2).get("content_type")),
+                () -> assertEquals(ContentHash.of(PNG), posts.get(1).get("content_hash")),
+                () -> assertEquals(1, jdbcTemplate.queryForObject(
+                        "select count(*) from tags where tag_name = 'java'", Integer.class)),
+                () -> assertEquals(List.of(2, 1), jdbcTemplate.queryForList(
+                        "select ref_count from image_blobs order by ref_count desc", Integer.class)),
+                () -> assertArrayEquals(PNG, jdbcTemplate.queryForObject(
+                        "select image_data from image_blobs where content_hash = ?", byte[].class, ContentHash.of(PNG)))
+        );
+
+        long firstId = ((Number) posts.getFirst().get("id")).longValue();
+        assertEquals(List.of(firstId, firstId + 2), ids(postTagIndex.evaluate(TagExpression.parse("spring").orElseThrow())
+                .orElseThrow()));
+    }
+
+    @Test
+    void shouldImportNdjsonWithInlinedImages() {
+        String png = Base64.getEncoder().encodeToString(PNG);
+        String ndjson = """
+                {"title": "Tabs\\tand \\\\ slashes", "text": "Text", "tags": ["a \\"quoted\\" tag", "back\\\\slash"], "image": "image", "imageData": "%s"}
+                {"title": "Second", "text": "Text", "tags": ["a \\"quoted\\" tag"], "image": "image", "imageData": "%s"}
+                """.formatted(png, png);
+
+        assertEquals(2, importService.importNdjson(new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8))));
+
+        assertAll(
+                () -> assertEquals("Tabs\tand \\ slashes", jdbcTemplate.queryForObject(
+                        "select title from posts order by id limit 1", String.class)),
+                () -> assertEquals(List.of("a \"quoted\" tag", "back\\slash", "java"), jdbcTemplate.queryForList(
+                        "select tag_name from tags order by tag_name", String.class)),
+                () -> assertEquals(2, jdbcTemplate.queryForObject(
+                        "select ref_count from image_blobs", Integer.class))
+        );
+    }
+
+    @Test
+    void shouldRejectPostReferringToMissingImage() throws IOException {
+        byte[] archive = zip(Map.of(
+                "posts.ndjson", """
+                        {"title": "First", "text": "Text", "image": "cover.png"}
+                        {"title": "Second", "text": "Text", "image": "missing.png"}
+                        """.getBytes(StandardCharsets.UTF_8),
+                "cover.png", PNG
+        ));
+
+        InvalidImportException e = assertThrows(InvalidImportException.class,
+                () -> importService.importArchive(new ByteArrayInputStream(archive)));
+
+        assertEquals("Post 2 refers to image missing.png which is not in the archive", e.getMessage());
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from posts", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from image_blobs", Integer.class));
+    }
+
+    @Test
+    void shouldRejectPostWithoutTitle() {
+        String ndjson = """
+                {"title": "First", "text": "Text", "imageData": "AQID"}
+                {"text": "Text", "imageData": "AQID"}
+                """;
+
+        InvalidImportException e = assertThrows(InvalidImportException.class,
+                () -> importService.importNdjson(new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8))));
+
+        assertEquals("Post 2 has no title", e.getMessage());
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from posts", Integer.class));
+    }
+
+    @Test
+    void shouldRejectImageKeyedTwice() throws IOException {
+        byte[] archive = zip(Map.of(
+                "posts.ndjson", """
+                        {"title": "First", "text": "Text", "imageData": "AQID"}
+                        """.getBytes(StandardCharsets.UTF_8),
+                "#1", PNG
+        ));
+
+        InvalidImportException e = assertThrows(InvalidImportException.class,
+                () -> importService.importArchive(new ByteArrayInputStream(archive)));
+
+        assertEquals("Archive holds image #1 twice", e.getMessage());
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from posts", Integer.class));
+    }
+
+    @Test
+    void shouldRejectArchiveWithoutPosts() throws IOException {
+        byte[] archive = zip(Map.of("cover.png", PNG));
+
+        assertThrows(InvalidImportException.class, () -> importService.importArchive(new ByteArrayInputStream(archive)));
+    }
+
+    static byte[] zip(Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                zip.write(entry.getValue());
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    static List<Long> ids(Roaring64NavigableMap posts) {
+        List<Long> ids = new ArrayList<>();
+        posts.forEach(ids::add);
+        return ids;
+    }
+
+    @Nested
+    @TestPropertySource(properties = {"blog.images.storage=filesystem", "blog.images.directory=build/test-import-images"})
+    class FileSystemStorage {
+
+        static final Path DIRECTORY = Path.of("build/test-import-images");
+
+        @Autowired
+        PostImportService fileSystemImportService;
+
+        @Autowired
+        ImageBlobStore blobStore;
+
+        @AfterEach
+        void clearDirectory() throws IOException {
+            if (!Files.exists(DIRECTORY)) return;
+            try (Stream<Path> paths = Files.walk(DIRECTORY)) {
+                paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+            }
+        }
+
+        @Test
+        void shouldStoreReferencedImagesOnly() throws IOException {
+            byte[] archive = zip(Map.of(
+                    "posts.ndjson", """
+                            {"title": "First", "text": "Text", "image": "cover.png"}
+                            {"title": "Second", "text": "Text", "image": "copy.png"}
+                            """.getBytes(StandardCharsets.UTF_8),
+                    "cover.png", PNG,
+                    "copy.png", PNG,
+                    "unused.jpg", JPEG
+            ));
+
+            assertEquals(2, fileSystemImportService.importArchive(new ByteArrayInputStream(archive)));
+
+            assertAll(
+                    () -> assertArrayEquals(PNG, blobStore.read(ContentHash.of(PNG))),
+                    () -> assertFalse(blobStore.exists(ContentHash.of(JPEG))),
+                    () -> assertEquals(2, jdbcTemplate.queryForObject(
+                            "select ref_count from image_blobs where image_data is null", Integer.class)),
+                    () -> {
+                        try (Stream<Path> files = Files.list(DIRECTORY)) {
+                            assertTrue(files.noneMatch(path -> path.toString().endsWith(".tmp")));
+                        }
+                    }
+            );
+        }
+    }
+}
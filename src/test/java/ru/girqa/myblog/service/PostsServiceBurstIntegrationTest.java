@@ -0,0 +1,194 @@
+package ru.girqa.myblog.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.context.jdbc.Sql;
+import ru.girqa.myblog.config.CommentaryPageProperties;
+import ru.girqa.myblog.config.FeedCacheProperties;
+import ru.girqa.myblog.config.PostCacheProperties;
+import ru.girqa.myblog.model.domain.post.ImageMetadata;
+import ru.girqa.myblog.model.domain.post.Post;
+import ru.girqa.myblog.repository.ImageRepository;
+import ru.girqa.myblog.repository.PostRepository;
+import ru.girqa.myblog.repository.common.PostgresTestConfiguration;
+import ru.girqa.myblog.repository.jdbc.CommentaryJdbcRepository;
+import ru.girqa.myblog.repository.jdbc.ImageBlobRepository;
+import ru.girqa.myblog.repository.jdbc.ImageJdbcRepository;
+import ru.girqa.myblog.repository.jdbc.PostJdbcRepository;
+import ru.girqa.myblog.repository.jdbc.TagJdbcRepository;
+import ru.girqa.myblog.repository.memory.FeedCache;
+import ru.girqa.myblog.repository.memory.PostCache;
+import ru.girqa.myblog.repository.memory.PostCountRegistry;
+import ru.girqa.myblog.repository.memory.PostTagIndex;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Sends many more identical reads at once than the pool has connections. Every load waits
+ * until all other callers have joined it, so without coalescing the burst would exhaust the pool.
+ */
+@Import({PostgresTestConfiguration.class, PostsServiceBurstIntegrationTest.Properties.class})
+@SpringBootTest(
+        classes = {
+                PostsService.class, PostJdbcRepository.class, TagJdbcRepository.class,
+                CommentaryJdbcRepository.class, ImageJdbcRepository.class, ImageBlobRepository.class,
+                PostCountRegistry.class, PostTagIndex.class, PostCache.class, FeedCache.class,
+                SimpleMeterRegistry.class
+        },
+        properties = {"blog.images.storage=jdbc", "spring.datasource.hikari.maximum-pool-size=" + PostsServiceBurstIntegrationTest.POOL_SIZE}
+)
+@Sql(statements = PostsServiceBurstIntegrationTest.CREATE_POST, executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Sql(statements = PostsServiceBurstIntegrationTest.CLEAR, executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+class PostsServiceBurstIntegrationTest {
+
+    static final int POOL_SIZE = 10;
+
+    static final int BURST = 20 * POOL_SIZE;
+
+    static final Long POST_ID = 7L;
+
+    static final String CREATE_POST = """
+            select setval('posts_id_seq', 7, false);
+            insert into posts(title, post_text, excerpt) values ('Viral', 'text', 'text');
+            insert into image_blobs(content_hash, image_data, ref_count)
+            values (encode(sha256(convert_to('ehal greka', 'UTF8')), 'hex'), convert_to('ehal greka', 'UTF8'), 1);
+            insert into images(post_id, image_name, image_size, content_type, content_hash)
+            values (7, 'Viral', 10, 'image/jpeg', encode(sha256(convert_to('ehal greka', 'UTF8')), 'hex'));
+            """;
+
+    static final String CLEAR = "truncate table posts, image_blobs cascade;";
+
+    @Autowired
+    PostsService postsService;
+
+    @MockitoSpyBean
+    PostRepository postRepository;
+
+    @MockitoSpyBean
+    ImageRepository imageRepository;
+
+    @MockitoBean
+    ImageVariantService imageVariantService;
+
+    @MockitoBean
+    LikeCounter likeCounter;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    DataSource dataSource;
+
+    final ExecutorService executor = Executors.newFixedThreadPool(BURST);
+
+    final List<Integer> activeConnections = new ArrayList<>();
+
+    final List<Integer> waitingForConnection = new ArrayList<>();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void shouldLoadPostOnceForBurstOfViews() throws Exception {
+        doAnswer(invocation -> {
+            awaitJoined("posts");
+            return invocation.callRealMethod();
+        }).when(postRepository).findAggregateById(anyLong(), anyInt());
+
+        List<Post> posts = burst(() -> postsService.findPost(POST_ID));
+
+        assertTrue(posts.stream().allMatch(post -> post.getTitle().equals("Viral")));
+        verify(postRepository, times(1)).findAggregateById(eq(POST_ID), anyInt());
+        assertPoolNotSaturated();
+    }
+
+    @Test
+    void shouldLookUpImageOnceForBurstOfRequests() throws Exception {
+        doAnswer(invocation -> {
+            awaitJoined("images");
+            return invocation.callRealMethod();
+        }).when(imageRepository).findMetadataByPostId(anyLong());
+
+        List<ImageMetadata> images = burst(() -> {
+            List<ImageMetadata> written = new ArrayList<>();
+            postsService.writeImage(POST_ID, null, (image, variant, data) -> written.add(image));
+            return written.getFirst();
+        });
+
+        assertTrue(images.stream().allMatch(image -> image.contentType().equals("image/jpeg")));
+        verify(imageRepository, times(1)).findMetadataByPostId(POST_ID);
+        assertPoolNotSaturated();
+    }
+
+    private <T> List<T> burst(Callable<T> request) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<T>> futures = new ArrayList<>();
+        for (int i = 0; i < BURST; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return request.call();
+            }));
+        }
+        start.countDown();
+
+        List<T> results = new ArrayList<>();
+        for (Future<T> future : futures) {
+            results.add(future.get(30, TimeUnit.SECONDS));
+        }
+        return results;
+    }
+
+    /**
+     * Holds the load until every other caller of the burst has joined it and samples the pool meanwhile
+     */
+    private void awaitJoined(String name) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (meterRegistry.get("blog.singleflight.coalesced").tag("name", name).counter().count() < BURST - 1) {
+            assertTrue(System.nanoTime() < deadline, "Requests of the burst were not coalesced");
+            Thread.sleep(1);
+        }
+        HikariPoolMXBean pool = ((HikariDataSource) dataSource).getHikariPoolMXBean();
+        activeConnections.add(pool.getActiveConnections());
+        waitingForConnection.add(pool.getThreadsAwaitingConnection());
+    }
+
+    private void assertPoolNotSaturated() {
+        assertEquals(1, activeConnections.size());
+        assertTrue(activeConnections.getFirst() <= 1, "Connections in use: " + activeConnections);
+        assertEquals(List.of(0), waitingForConnection);
+    }
+
+    @TestConfiguration
+    @EnableConfigurationProperties({PostCacheProperties.class, FeedCacheProperties.class, CommentaryPageProperties.class})
+    static class Properties {
+    }
+}
@@ -1,27 +1,45 @@
 package ru.girqa.myblog.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.util.unit.DataSize;
+import ru.girqa.myblog.config.CommentaryPageProperties;
+import ru.girqa.myblog.config.FeedCacheProperties;
+import ru.girqa.myblog.config.PostCacheProperties;
 import ru.girqa.myblog.exception.PostNotFoundException;
 import ru.girqa.myblog.model.domain.Commentary;
 import ru.girqa.myblog.model.domain.PageRequest;
 import ru.girqa.myblog.model.domain.Tag;
 import ru.girqa.myblog.model.domain.post.Image;
+import ru.girqa.myblog.model.domain.post.ImageMetadata;
 import ru.girqa.myblog.model.domain.post.Post;
 import ru.girqa.myblog.model.domain.post.PostsPage;
-import ru.girqa.myblog.repository.CommentaryRepository;
 import ru.girqa.myblog.repository.ImageRepository;
 import ru.girqa.myblog.repository.PostRepository;
 import ru.girqa.myblog.repository.TagRepository;
+import ru.girqa.myblog.repository.memory.FeedCache;
+import ru.girqa.myblog.repository.memory.PostCache;
+import ru.girqa.myblog.repository.memory.PostCountRegistry;
+import ru.girqa.myblog.repository.memory.PostTagIndex;
 
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -31,6 +49,8 @@ import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 class PostsServiceTest {
 
+    static final int COMMENTARIES_PAGE_SIZE = 20;
+
     @Mock
     PostRepository postRepositoryMock;
 
@@ -41,14 +61,35 @@ class PostsServiceTest {
     TagRepository tagRepositoryMock;
 
     @Mock
-    CommentaryRepository commentaryRepositoryMock;
+    PostCountRegistry postCountRegistryMock;
+
+    @Mock
+    PostTagIndex postTagIndexMock;
+
+    @Mock
+    ImageVariantService imageVariantServiceMock;
+
+    @Mock
+    LikeCounter likeCounterMock;
+
+    @Spy
+    PostCache postCache = new PostCache(new PostCacheProperties(DataSize.ofMegabytes(1)), new SimpleMeterRegistry());
+
+    @Spy
+    FeedCache feedCache = new FeedCache(new FeedCacheProperties(100, Duration.ofSeconds(10)), new SimpleMeterRegistry());
+
+    @Spy
+    CommentaryPageProperties commentaryPageProperties = new CommentaryPageProperties(COMMENTARIES_PAGE_SIZE);
+
+    @Spy
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
 
     @InjectMocks
     PostsService postsService;
 
     @BeforeEach
     void setUpMocks() {
-        reset(postRepositoryMock, tagRepositoryMock, commentaryRepositoryMock);
+        reset(postRepositoryMock, tagRepositoryMock);
     }
 
     @Test
@@ -98,6 +139,7 @@ class PostsServiceTest {
 
         verify(postRepositoryMock, times(1))
                 .save(post);
+        assertEquals("Text", post.getExcerpt());
 
         verify(imageRepositoryMock, times(1))
                 .save(image.toBuilder()
@@ -111,6 +153,22 @@ class PostsServiceTest {
         verify(tagRepositoryMock, times(1))
                 .bindTagsToPost(saved.getId(), mergedTags);
 
+        verify(postTagIndexMock, times(1))
+                .postSaved(POST_ID);
+        ArgumentCaptor<Supplier<? extends Collection<Tag>>> currentTags = ArgumentCaptor.captor();
+        verify(postTagIndexMock, times(1))
+                .postRetagged(eq(POST_ID), currentTags.capture());
+        when(tagRepositoryMock.findByPostId(POST_ID))
+                .thenReturn(mergedTags);
+        assertEquals(mergedTags, currentTags.getValue().get());
+        verify(postCountRegistryMock, times(1))
+                .postCreated(List.of("Linux", "Windows"));
+        verify(feedCache, times(1))
+                .postCreated(List.of("Linux", "Windows"));
+
+        verify(imageVariantServiceMock, times(1))
+                .generateAfterCommit(POST_ID);
+
         assertAll(
                 () -> assertEquals(POST_ID, saved.getId()),
                 () -> assertEquals(post.getTitle(), saved.getTitle()),
@@ -152,10 +210,19 @@ class PostsServiceTest {
         when(postRepositoryMock.findById(post.getId()))
                 .thenReturn(Optional.of(post));
 
+        when(tagRepositoryMock.findByPostId(post.getId()))
+                .thenReturn(List.of(Tag.builder()
+                        .id(2L)
+                        .name("t3")
+                        .build()));
+
         postsService.update(post);
 
         verify(postRepositoryMock, times(1))
                 .update(post);
+        assertEquals("text", post.getExcerpt());
+        verify(postCache, times(1))
+                .invalidate(post.getId());
 
         verify(tagRepositoryMock, times(1))
                 .unboundTagsFromPost(post.getId());
@@ -165,6 +232,16 @@ class PostsServiceTest {
 
         verify(tagRepositoryMock, times(1))
                 .bindTagsToPost(post.getId(), mergedTags);
+
+        verify(postTagIndexMock, times(1))
+                .postRetagged(eq(post.getId()), any());
+        verify(postCountRegistryMock, times(1))
+                .postRetagged(List.of("t3"), List.of("t1", "t2"));
+        verify(feedCache, times(1))
+                .postChanged(List.of("t3"), List.of("t1", "t2"));
+
+        verify(imageVariantServiceMock, times(1))
+                .generateAfterCommit(post.getId());
     }
 
     @Test
@@ -213,14 +290,11 @@ class PostsServiceTest {
                         .build()
         );
 
-        when(postRepositoryMock.findById(post.getId()))
-                .thenReturn(Optional.of(post));
-
-        when(tagRepositoryMock.findByPostId(post.getId()))
-                .thenReturn(tags);
-
-        when(commentaryRepositoryMock.findByPostIdOrderById(post.getId()))
-                .thenReturn(commentaries);
+        when(postRepositoryMock.findAggregateById(post.getId(), COMMENTARIES_PAGE_SIZE))
+                .thenReturn(Optional.of(post.toBuilder()
+                        .tags(tags)
+                        .commentaries(commentaries)
+                        .build()));
 
         Post dbPost = postsService.findPost(post.getId());
 
@@ -236,9 +310,26 @@ class PostsServiceTest {
         assertEquals(commentaries, dbPost.getCommentaries());
     }
 
+    @Test
+    void shouldServeRepeatedViewsFromCache() {
+        Post post = Post.builder()
+                .id(12L)
+                .title("Title")
+                .text("Text")
+                .likes(1)
+                .build();
+        when(postRepositoryMock.findAggregateById(12L, COMMENTARIES_PAGE_SIZE))
+                .thenReturn(Optional.of(post));
+
+        assertSame(postsService.findPost(12L), postsService.findPost(12L));
+
+        verify(postRepositoryMock, times(1)).findAggregateById(12L, COMMENTARIES_PAGE_SIZE);
+        verifyNoInteractions(tagRepositoryMock);
+    }
+
     @Test
     void shouldThrowExceptionIfNotFoundPost() {
-        when(postRepositoryMock.findById(anyLong()))
+        when(postRepositoryMock.findAggregateById(anyLong(), anyInt()))
                 .thenReturn(Optional.empty());
 
         assertThrows(
@@ -265,44 +356,178 @@ class PostsServiceTest {
         );
 
         assertEquals(page, dbPage);
+        assertSame(dbPage, postsService.getPostsPage(PageRequest.builder()
+                .page(1)
+                .posts(3)
+                .build()
+        ));
+        verify(postRepositoryMock, times(1))
+                .findAllPaged(any());
     }
 
     @Test
-    void shouldFindImageByPostId() {
-        when(imageRepositoryMock.findByPostId(5L))
-                .thenReturn(Optional.of(Image.builder()
-                        .data("DATA".getBytes(StandardCharsets.UTF_8))
-                        .build())
-                );
+    void shouldStampPageWithFeedVersionReadBeforeIt() {
+        when(postRepositoryMock.findFeedVersion())
+                .thenReturn(42L);
+        when(postRepositoryMock.findAllPaged(any()))
+                .thenReturn(PostsPage.builder().page(1).totalPages(1).postsPerPage(3).build());
 
-        byte[] data = assertDoesNotThrow(() -> postsService.getImage(5L));
-        assertArrayEquals("DATA".getBytes(StandardCharsets.UTF_8), data);
+        PostsPage page = postsService.getPostsPage(PageRequest.builder()
+                .page(1)
+                .posts(3)
+                .build()
+        );
+
+        assertEquals(42L, page.getVersion());
+        InOrder order = inOrder(postRepositoryMock);
+        order.verify(postRepositoryMock).findFeedVersion();
+        order.verify(postRepositoryMock).findAllPaged(any());
+    }
+
+    @Test
+    @SneakyThrows
+    void shouldWriteImageByPostId() {
+        ImageMetadata metadata = new ImageMetadata(5L, 4, "image/png", "a".repeat(64));
+        Resource image = new ByteArrayResource("DATA".getBytes(StandardCharsets.UTF_8));
+        when(imageRepositoryMock.findMetadataByPostId(5L))
+                .thenReturn(Optional.of(metadata));
+        when(imageRepositoryMock.findDataByHash("a".repeat(64)))
+                .thenReturn(Optional.of(image));
+
+        List<Resource> written = new ArrayList<>();
+        postsService.writeImage(5L, null, (m, variant, data) -> {
+            assertEquals(metadata, m);
+            assertNull(variant);
+            written.add(data.get());
+        });
+        assertEquals(List.of(image), written);
+    }
+
+    @Test
+    @SneakyThrows
+    void shouldWriteImageVariantByPostId() {
+        ImageMetadata metadata = new ImageMetadata(5L, 4, "image/png", "a".repeat(64));
+        ImageMetadata variantMetadata = new ImageMetadata(5L, 2, "image/png", "b".repeat(64));
+        Resource variantImage = new ByteArrayResource("DA".getBytes(StandardCharsets.UTF_8));
+        when(imageRepositoryMock.findMetadataByPostId(5L))
+                .thenReturn(Optional.of(metadata));
+        when(imageRepositoryMock.findVariantMetadataByPostId(5L, 640))
+                .thenReturn(Optional.of(variantMetadata));
+        when(imageRepositoryMock.findDataByHash("b".repeat(64)))
+                .thenReturn(Optional.of(variantImage));
+
+        List<Resource> written = new ArrayList<>();
+        postsService.writeImage(5L, 640, (m, variant, data) -> {
+            assertEquals(metadata, m);
+            assertEquals(variantMetadata, variant);
+            written.add(data.get());
+        });
+        assertEquals(List.of(variantImage), written);
+        verify(imageRepositoryMock, never())
+                .findDataByHash("a".repeat(64));
+    }
+
+    @Test
+    @SneakyThrows
+    void shouldWriteOriginalImageUntilVariantExists() {
+        ImageMetadata metadata = new ImageMetadata(5L, 4, "image/png", "a".repeat(64));
+        Resource image = new ByteArrayResource("DATA".getBytes(StandardCharsets.UTF_8));
+        when(imageRepositoryMock.findMetadataByPostId(5L))
+                .thenReturn(Optional.of(metadata));
+        when(imageRepositoryMock.findVariantMetadataByPostId(5L, 320))
+                .thenReturn(Optional.empty());
+        when(imageRepositoryMock.findDataByHash("a".repeat(64)))
+                .thenReturn(Optional.of(image));
+
+        List<Resource> written = new ArrayList<>();
+        postsService.writeImage(5L, 320, (m, variant, data) -> {
+            assertNull(variant);
+            written.add(data.get());
+        });
+        assertEquals(List.of(image), written);
+    }
+
+    @Test
+    @SneakyThrows
+    void shouldIgnoreNotGeneratedWidth() {
+        when(imageRepositoryMock.findMetadataByPostId(5L))
+                .thenReturn(Optional.of(new ImageMetadata(5L, 4, "image/png", "a".repeat(64))));
+
+        postsService.writeImage(5L, 333, (metadata, variant, data) -> assertNull(variant));
+
+        verify(imageRepositoryMock, never())
+                .findVariantMetadataByPostId(anyLong(), anyInt());
+    }
+
+    @Test
+    @SneakyThrows
+    void shouldNotLoadImageBytesUnlessAsked() {
+        when(imageRepositoryMock.findMetadataByPostId(5L))
+                .thenReturn(Optional.of(new ImageMetadata(5L, 4, "image/png", "a".repeat(64))));
+
+        postsService.writeImage(5L, null, (metadata, variant, data) -> {
+        });
+
+        verify(imageRepositoryMock, never())
+                .findDataByHash(anyString());
     }
 
     @Test
     void shouldNotFindImage() {
-        when(imageRepositoryMock.findByPostId(anyLong()))
+        when(imageRepositoryMock.findMetadataByPostId(anyLong()))
                 .thenReturn(Optional.empty());
 
         assertThrows(
                 PostNotFoundException.class,
-                () -> postsService.getImage(2L)
+                () -> postsService.writeImage(2L, null, (metadata, variant, data) -> fail())
         );
     }
 
     @Test
     void shouldIncrementLikes() {
-        postsService.incrementLikes(98L);
+        when(likeCounterMock.increment(98L))
+                .thenReturn(7);
 
-        verify(postRepositoryMock, times(1))
-                .incrementLikes(98L);
+        assertEquals(7, postsService.incrementLikes(98L));
+
+        verify(likeCounterMock, times(1))
+                .increment(98L);
     }
 
     @Test
     void shouldDeletePost() {
+        when(tagRepositoryMock.findByPostId(76L))
+                .thenReturn(List.of(Tag.builder()
+                        .id(3L)
+                        .name("t1")
+                        .build()));
+        when(postRepositoryMock.deleteById(76L))
+                .thenReturn(true);
+
         postsService.delete(76L);
 
+        verify(imageRepositoryMock, times(1))
+                .deleteByPostId(76L);
+        verify(postCache, times(1))
+                .invalidate(76L);
         verify(postRepositoryMock, times(1))
                 .deleteById(76L);
+
+        verify(postTagIndexMock, times(1))
+                .postDeleted(76L);
+        verify(postCountRegistryMock, times(1))
+                .postDeleted(List.of("t1"));
+        verify(feedCache, times(1))
+                .postDeleted(List.of("t1"));
+    }
+
+    @Test
+    void shouldNotCountNotPresentPostDeletion() {
+        when(postRepositoryMock.deleteById(77L))
+                .thenReturn(false);
+
+        postsService.delete(77L);
+
+        verifyNoInteractions(postCountRegistryMock, postTagIndexMock);
     }
 }
\ No newline at end of file
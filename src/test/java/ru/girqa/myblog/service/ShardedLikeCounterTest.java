@@ -0,0 +1,85 @@
+package ru.girqa.myblog.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.girqa.myblog.config.LikeProperties;
+import ru.girqa.myblog.config.LikeProperties.Mode;
+import ru.girqa.myblog.exception.PostNotFoundException;
+import ru.girqa.myblog.repository.jdbc.PostLikeShardRepository;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ShardedLikeCounterTest {
+
+    @Mock
+    PostLikeShardRepository shardRepositoryMock;
+
+    final AtomicLong nanos = new AtomicLong();
+
+    ShardedLikeCounter likeCounter;
+
+    @BeforeEach
+    void setUp() {
+        likeCounter = new ShardedLikeCounter(
+                shardRepositoryMock,
+                new LikeProperties(Mode.SHARDED, Duration.ofMillis(200), 4, Duration.ofSeconds(1), Duration.ofSeconds(5)),
+                nanos::get
+        );
+    }
+
+    @Test
+    void shouldSpreadLikesOverShards() {
+        when(shardRepositoryMock.increment(eq(5L), anyInt()))
+                .thenReturn(Optional.of(1));
+        when(shardRepositoryMock.countLikes(5L))
+                .thenReturn(Optional.of(1));
+
+        for (int i = 0; i < 100; ++i) {
+            likeCounter.increment(5L);
+        }
+
+        for (int shard = 0; shard < 4; ++shard) {
+            verify(shardRepositoryMock, atLeastOnce()).increment(5L, shard);
+        }
+        verify(shardRepositoryMock, never()).increment(eq(5L), intThat(shard -> shard < 0 || shard >= 4));
+    }
+
+    @Test
+    void shouldReuseSumOfShardsWithinTtl() {
+        when(shardRepositoryMock.increment(eq(5L), anyInt()))
+                .thenReturn(Optional.of(1));
+        when(shardRepositoryMock.countLikes(5L))
+                .thenReturn(Optional.of(11))
+                .thenReturn(Optional.of(20));
+
+        assertEquals(11, likeCounter.increment(5L));
+        nanos.set(Duration.ofMillis(500).toNanos());
+        assertEquals(12, likeCounter.increment(5L));
+        nanos.set(Duration.ofMillis(999).toNanos());
+        assertEquals(13, likeCounter.increment(5L));
+        nanos.set(Duration.ofMillis(1_000).toNanos());
+        assertEquals(20, likeCounter.increment(5L));
+
+        verify(shardRepositoryMock, times(2)).countLikes(5L);
+    }
+
+    @Test
+    void shouldNotLikeMissingPost() {
+        when(shardRepositoryMock.increment(eq(5L), anyInt()))
+                .thenReturn(Optional.empty());
+
+        assertThrows(PostNotFoundException.class, () -> likeCounter.increment(5L));
+        verify(shardRepositoryMock, never()).countLikes(any());
+    }
+}
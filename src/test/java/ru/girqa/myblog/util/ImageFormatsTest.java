@@ -0,0 +1,25 @@
+package ru.girqa.myblog.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ImageFormatsTest {
+
+    @Test
+    void shouldDetectFormatBySignature() {
+        assertEquals("image/jpeg", ImageFormats.contentTypeOf(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0}));
+        assertEquals("image/png", ImageFormats.contentTypeOf(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0}));
+        assertEquals("image/gif", ImageFormats.contentTypeOf("GIF89a".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals("image/webp", ImageFormats.contentTypeOf("RIFF\0\0\0\0WEBPVP8 ".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    void shouldNotGuessUnknownFormat() {
+        assertEquals("application/octet-stream", ImageFormats.contentTypeOf(new byte[0]));
+        assertEquals("application/octet-stream", ImageFormats.contentTypeOf(new byte[]{(byte) 0xFF, (byte) 0xD8}));
+        assertEquals("application/octet-stream", ImageFormats.contentTypeOf("RIFF\0\0\0\0WAVE".getBytes(StandardCharsets.US_ASCII)));
+    }
+}
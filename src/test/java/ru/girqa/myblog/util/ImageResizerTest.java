@@ -0,0 +1,89 @@
+package ru.girqa.myblog.util;
+
+import org.junit.jupiter.api.Test;
+import ru.girqa.myblog.model.domain.post.ImageVariant;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageResizerTest {
+
+    static final String SOURCE_HASH = "a".repeat(64);
+
+    @Test
+    void shouldScaleJpegToEveryWidth() throws IOException {
+        byte[] data = image(2000, 1000, BufferedImage.TYPE_INT_RGB, "jpeg");
+
+        List<ImageVariant> variants = ImageResizer.resize(data, SOURCE_HASH, List.of(320, 640, 1280));
+
+        assertEquals(List.of(320, 640, 1280), variants.stream().map(ImageVariant::getWidth).toList());
+        for (ImageVariant variant : variants) {
+            BufferedImage decoded = decode(variant.getData());
+            assertEquals(variant.getWidth(), decoded.getWidth());
+            assertEquals(variant.getWidth() / 2, decoded.getHeight(), 1);
+            assertEquals("image/jpeg", variant.getContentType());
+            assertEquals(SOURCE_HASH, variant.getSourceHash());
+        }
+    }
+
+    @Test
+    void shouldKeepTransparencyOfPng() throws IOException {
+        byte[] data = image(800, 400, BufferedImage.TYPE_INT_ARGB, "png");
+
+        ImageVariant variant = ImageResizer.resize(data, SOURCE_HASH, List.of(320)).getFirst();
+
+        assertEquals("image/png", variant.getContentType());
+        BufferedImage decoded = decode(variant.getData());
+        assertEquals(320, decoded.getWidth());
+        assertTrue(decoded.getColorModel().hasAlpha());
+    }
+
+    @Test
+    void shouldNotUpscaleNarrowImage() throws IOException {
+        byte[] data = image(500, 300, BufferedImage.TYPE_INT_RGB, "jpeg");
+
+        List<ImageVariant> variants = ImageResizer.resize(data, SOURCE_HASH, List.of(320, 640, 1280));
+
+        assertEquals(320, decode(variants.get(0).getData()).getWidth());
+        assertArrayEquals(data, variants.get(1).getData());
+        assertArrayEquals(data, variants.get(2).getData());
+    }
+
+    @Test
+    void shouldKeepUndecodableImageAsIs() {
+        byte[] data = "not an image".getBytes(StandardCharsets.UTF_8);
+
+        List<ImageVariant> variants = ImageResizer.resize(data, SOURCE_HASH, List.of(320, 640));
+
+        assertEquals(2, variants.size());
+        for (ImageVariant variant : variants) {
+            assertArrayEquals(data, variant.getData());
+            assertEquals("application/octet-stream", variant.getContentType());
+        }
+    }
+
+    static byte[] image(int width, int height, int type, String format) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(new Color(30, 120, 200, 128));
+        graphics.fillOval(0, 0, width, height);
+        graphics.dispose();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(image, format, out));
+        return out.toByteArray();
+    }
+
+    private static BufferedImage decode(byte[] data) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(data));
+    }
+}
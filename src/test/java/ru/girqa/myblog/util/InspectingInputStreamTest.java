@@ -0,0 +1,63 @@
+package ru.girqa.myblog.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InspectingInputStreamTest {
+
+    static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13, 'I', 'H', 'D', 'R'};
+
+    @Test
+    void shouldPassBytesThroughWhileInspecting() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InspectingInputStream in = new InspectingInputStream(new ByteArrayInputStream(PNG), PNG.length)) {
+            in.transferTo(out);
+
+            assertArrayEquals(PNG, out.toByteArray());
+            assertEquals(PNG.length, in.size());
+            assertEquals(ContentHash.of(PNG), in.contentHash());
+            assertEquals("image/png", in.contentType());
+        }
+    }
+
+    @Test
+    void shouldInspectByteByByteReads() throws IOException {
+        byte[] data = "ehal greka".getBytes(StandardCharsets.UTF_8);
+        try (InspectingInputStream in = new InspectingInputStream(new ByteArrayInputStream(data), data.length)) {
+            while (in.read() >= 0) {
+            }
+
+            assertEquals("fff6a3fe81826ce4f48771d01939db08e24d52fcd3e16106a752ffe959812f02", in.contentHash());
+            assertEquals("application/octet-stream", in.contentType());
+        }
+    }
+
+    @Test
+    void shouldFailOnUnexpectedLength() {
+        assertThrows(IOException.class, () -> drain(new InspectingInputStream(new ByteArrayInputStream(PNG), PNG.length - 1)));
+        assertThrows(IOException.class, () -> drain(new InspectingInputStream(new ByteArrayInputStream(PNG), PNG.length + 1)));
+    }
+
+    @Test
+    void shouldNotTellHashBeforeEnd() throws IOException {
+        try (InspectingInputStream in = new InspectingInputStream(new ByteArrayInputStream(PNG), PNG.length)) {
+            assertEquals(4, in.read(new byte[4]));
+
+            assertThrows(IllegalStateException.class, in::contentHash);
+        }
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        try (in) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+}
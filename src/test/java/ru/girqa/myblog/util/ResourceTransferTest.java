@@ -0,0 +1,139 @@
+package ru.girqa.myblog.util;
+
+import jakarta.servlet.ServletOutputStream;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.DelegatingServletOutputStream;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResourceTransferTest {
+
+    static final int IMAGE_SIZE = 5 * 1024 * 1024;
+
+    @TempDir
+    Path directory;
+
+    Path file;
+
+    byte[] data;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        data = new byte[IMAGE_SIZE];
+        new Random(42).nextBytes(data);
+        file = Files.write(directory.resolve("image"), data);
+    }
+
+    @Test
+    @SneakyThrows
+    void shouldHandFileToContainerWhenSendfileIsSupported() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(ResourceTransfer.SENDFILE_SUPPORT, true);
+        request.addHeader(HttpHeaders.RANGE, "bytes=100-");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        ResourceTransfer.send(new FileSystemResource(file), MediaType.IMAGE_JPEG, request, response);
+
+        assertEquals(206, response.getStatus());
+        assertEquals(IMAGE_SIZE - 100, response.getContentLengthLong());
+        assertEquals(file.toAbsolutePath().toString(), request.getAttribute(ResourceTransfer.SENDFILE_FILENAME));
+        assertEquals(100L, request.getAttribute(ResourceTransfer.SENDFILE_START));
+        assertEquals((long) IMAGE_SIZE, request.getAttribute(ResourceTransfer.SENDFILE_END));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    @SneakyThrows
+    void shouldCopyFileRangeWithoutSendfile() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.RANGE, "bytes=1000-1999");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        ResourceTransfer.send(new FileSystemResource(file), MediaType.IMAGE_JPEG, request, response);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 1000-1999/" + IMAGE_SIZE, response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(Arrays.copyOfRange(data, 1000, 2000), response.getContentAsByteArray());
+        assertNull(request.getAttribute(ResourceTransfer.SENDFILE_FILENAME));
+    }
+
+    @Test
+    @SneakyThrows
+    void shouldSendWholeResourceForSeveralRanges() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-10, 20-30");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        ResourceTransfer.send(new FileSystemResource(file), MediaType.IMAGE_JPEG, request, response);
+
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(data, response.getContentAsByteArray());
+    }
+
+    /**
+     * Compares heap allocated by the calling thread while serving a 5 MB image
+     * as a byte array (as the controller did before) and as a file resource.
+     */
+    @Test
+    @SneakyThrows
+    void shouldNotAllocateHeapProportionalToImageSize() {
+        Resource image = new FileSystemResource(file);
+        for (int i = 0; i < 5; i++) {
+            sendAsByteArray(image);
+            sendAsResource(image);
+        }
+
+        long asByteArray = allocatedBy(() -> sendAsByteArray(image));
+        long asResource = allocatedBy(() -> sendAsResource(image));
+
+        assertTrue(asByteArray >= IMAGE_SIZE, "byte[] allocates " + asByteArray);
+        assertTrue(asResource < IMAGE_SIZE / 50, "resource allocates " + asResource);
+    }
+
+    @SneakyThrows
+    private static void sendAsByteArray(Resource image) {
+        byte[] bytes = image.getContentAsByteArray();
+        discardingResponse().getOutputStream().write(bytes);
+    }
+
+    @SneakyThrows
+    private static void sendAsResource(Resource image) {
+        ResourceTransfer.send(image, MediaType.IMAGE_JPEG, new MockHttpServletRequest(), discardingResponse());
+    }
+
+    private static MockHttpServletResponse discardingResponse() {
+        return new MockHttpServletResponse() {
+            private final ServletOutputStream out = new DelegatingServletOutputStream(OutputStream.nullOutputStream());
+
+            @Override
+            public ServletOutputStream getOutputStream() {
+                return out;
+            }
+        };
+    }
+
+    private static long allocatedBy(Runnable action) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        action.run();
+        return threads.getThreadAllocatedBytes(threadId) - before;
+    }
+}
@@ -0,0 +1,122 @@
+package ru.girqa.myblog.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.girqa.myblog.exception.PostNotFoundException;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    final SingleFlight<Long, String> singleFlight = new SingleFlight<>("posts", meterRegistry);
+
+    final ExecutorService executor = Executors.newCachedThreadPool();
+
+    final CountDownLatch loadStarted = new CountDownLatch(1);
+
+    final CountDownLatch loadReleased = new CountDownLatch(1);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void shouldShareLoadWithConcurrentCallers() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        Future<String> first = executor.submit(() -> singleFlight.load(1L, () -> blockedLoad(loads, "post")));
+        assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+
+        Future<String> second = executor.submit(() -> singleFlight.load(1L, () -> blockedLoad(loads, "other")));
+        awaitCoalesced(1);
+        loadReleased.countDown();
+
+        assertEquals("post", first.get(5, TimeUnit.SECONDS));
+        assertEquals("post", second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+        assertEquals(1, meterRegistry.get("blog.singleflight.loads").tag("name", "posts").counter().count());
+    }
+
+    @Test
+    void shouldLoadAgainOnceLoadEnded() {
+        AtomicInteger loads = new AtomicInteger();
+
+        singleFlight.load(1L, () -> "post" + loads.incrementAndGet());
+
+        assertEquals("post2", singleFlight.load(1L, () -> "post" + loads.incrementAndGet()));
+        assertEquals(0, meterRegistry.get("blog.singleflight.coalesced").tag("name", "posts").counter().count());
+    }
+
+    @Test
+    void shouldLoadDifferentKeysSeparately() {
+        assertEquals("second", singleFlight.load(1L, () -> singleFlight.load(2L, () -> "second")));
+        assertEquals(2, meterRegistry.get("blog.singleflight.loads").tag("name", "posts").counter().count());
+    }
+
+    @Test
+    void shouldRethrowLoadExceptionToEveryCaller() throws Exception {
+        Future<String> first = executor.submit(() -> singleFlight.load(1L, () -> {
+            loadStarted.countDown();
+            await(loadReleased);
+            throw new PostNotFoundException();
+        }));
+        assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+        Future<String> second = executor.submit(() -> singleFlight.load(1L, () -> "post"));
+        awaitCoalesced(1);
+        loadReleased.countDown();
+
+        List<Future<String>> callers = List.of(first, second);
+        for (Future<String> caller : callers) {
+            Exception e = assertThrows(Exception.class, () -> caller.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(PostNotFoundException.class, e.getCause());
+        }
+    }
+
+    @Test
+    void shouldNotJoinForgottenLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        Future<String> stale = executor.submit(() -> singleFlight.load(1L, () -> blockedLoad(loads, "old")));
+        assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+
+        singleFlight.forget(1L);
+
+        assertEquals("new", singleFlight.load(1L, () -> "new"));
+        loadReleased.countDown();
+        assertEquals("old", stale.get(5, TimeUnit.SECONDS));
+        assertEquals(0, meterRegistry.get("blog.singleflight.coalesced").tag("name", "posts").counter().count());
+    }
+
+    private String blockedLoad(AtomicInteger loads, String value) {
+        loads.incrementAndGet();
+        loadStarted.countDown();
+        await(loadReleased);
+        return value;
+    }
+
+    private void awaitCoalesced(int callers) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("blog.singleflight.coalesced").tag("name", "posts").counter().count() < callers) {
+            assertTrue(System.nanoTime() < deadline, "Callers did not join the load");
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}